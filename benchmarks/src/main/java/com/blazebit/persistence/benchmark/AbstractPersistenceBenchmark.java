@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.benchmark;
+
+import com.blazebit.persistence.Criteria;
+import com.blazebit.persistence.CriteriaBuilderFactory;
+import com.blazebit.persistence.benchmark.model.Document;
+import com.blazebit.persistence.benchmark.model.Person;
+import com.blazebit.persistence.benchmark.model.Version;
+import com.blazebit.persistence.benchmark.view.DocumentFlatView;
+import com.blazebit.persistence.benchmark.view.DocumentWithVersionsView;
+import com.blazebit.persistence.benchmark.view.VersionView;
+import com.blazebit.persistence.spi.CriteriaBuilderConfiguration;
+import com.blazebit.persistence.view.EntityViewManager;
+import com.blazebit.persistence.view.EntityViews;
+import com.blazebit.persistence.view.spi.EntityViewConfiguration;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base state for all benchmarks that need a persistence unit. Every benchmark thread gets its own in-memory H2 database
+ * that is populated with {@link #DOCUMENT_COUNT} documents, each having an owner and {@link #VERSIONS_PER_DOCUMENT}
+ * versions.
+ *
+ * The benchmarks are packaged into an executable jar by the build and can be run with
+ * <code>java -jar benchmarks/target/benchmarks.jar -prof gc</code>. The <code>gc</code> profiler additionally reports
+ * the normalized allocation rate per operation which is the most interesting number for most of the hot paths.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public abstract class AbstractPersistenceBenchmark {
+
+    protected static final int DOCUMENT_COUNT = 1000;
+    protected static final int VERSIONS_PER_DOCUMENT = 5;
+    protected static final int PAGE_SIZE = 20;
+
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    protected EntityManagerFactory emf;
+    protected EntityManager em;
+    protected CriteriaBuilderFactory cbf;
+    protected EntityViewManager evm;
+
+    @Setup
+    public void setUpPersistence() {
+        Properties properties = new Properties();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:benchmark" + DATABASE_COUNTER.incrementAndGet());
+        properties.put("javax.persistence.jdbc.user", "admin");
+        properties.put("javax.persistence.jdbc.password", "admin");
+        properties.put("javax.persistence.jdbc.driver", "org.h2.Driver");
+        properties.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.show_sql", "false");
+
+        emf = Persistence.createEntityManagerFactory("Benchmark", properties);
+        em = emf.createEntityManager();
+
+        CriteriaBuilderConfiguration config = Criteria.getDefault();
+        cbf = configure(config).createCriteriaBuilderFactory();
+
+        EntityViewConfiguration viewConfig = EntityViews.createDefaultConfiguration();
+        viewConfig.addEntityView(DocumentFlatView.class);
+        viewConfig.addEntityView(DocumentWithVersionsView.class);
+        viewConfig.addEntityView(VersionView.class);
+        evm = viewConfig.createEntityViewManager();
+
+        if (isDataRequired()) {
+            insertData();
+        }
+    }
+
+    @TearDown
+    public void tearDownPersistence() {
+        em.close();
+        emf.close();
+    }
+
+    protected CriteriaBuilderConfiguration configure(CriteriaBuilderConfiguration config) {
+        return config;
+    }
+
+    protected boolean isDataRequired() {
+        return true;
+    }
+
+    private void insertData() {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            Date now = new Date();
+
+            for (int i = 0; i < DOCUMENT_COUNT; i++) {
+                Person owner = new Person("owner" + i);
+                owner.setAge(i % 80);
+                em.persist(owner);
+
+                Document document = new Document("doc" + i, owner);
+                document.setAge(i);
+                document.setLastModified(now);
+                em.persist(document);
+
+                for (int j = 0; j < VERSIONS_PER_DOCUMENT; j++) {
+                    em.persist(new Version(document, j, "http://localhost/doc" + i + "/" + j));
+                }
+
+                if (i % 100 == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            em.flush();
+            tx.commit();
+            em.clear();
+        } catch (RuntimeException ex) {
+            tx.rollback();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.benchmark;
+
+import com.blazebit.persistence.CriteriaBuilder;
+import com.blazebit.persistence.benchmark.model.Document;
+import com.blazebit.persistence.benchmark.view.DocumentFlatView;
+import com.blazebit.persistence.benchmark.view.DocumentWithVersionsView;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures the object building of entity views, i.e. the view type object builder for flat views and the tuple
+ * transformation for views with collections of subviews.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class EntityViewBenchmark extends AbstractPersistenceBenchmark {
+
+    private static final int MAX_RESULTS = 100;
+
+    @Benchmark
+    public List<DocumentFlatView> flatView() {
+        CriteriaBuilder<DocumentFlatView> cb = evm.applyObjectBuilder(DocumentFlatView.class, createCriteriaBuilder());
+        return cb.getQuery().setMaxResults(MAX_RESULTS).getResultList();
+    }
+
+    @Benchmark
+    public List<DocumentWithVersionsView> nestedCollectionView() {
+        CriteriaBuilder<DocumentWithVersionsView> cb = evm.applyObjectBuilder(DocumentWithVersionsView.class, createCriteriaBuilder());
+        // Every document has the same amount of versions so limiting the tuples results in full collections
+        return cb.getQuery().setMaxResults(MAX_RESULTS * VERSIONS_PER_DOCUMENT).getResultList();
+    }
+
+    private CriteriaBuilder<Document> createCriteriaBuilder() {
+        return cbf.from(em, Document.class, "d")
+            .orderByAsc("d.id");
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.benchmark;
+
+import com.blazebit.persistence.impl.expression.Expression;
+import com.blazebit.persistence.impl.expression.ExpressionFactory;
+import com.blazebit.persistence.impl.expression.ExpressionFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing of typical expressions with and without the expression cache.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExpressionParsingBenchmark {
+
+    @Param({ "0", "1024" })
+    private int cacheSize;
+
+    private ExpressionFactory expressionFactory;
+
+    @Setup
+    public void setUp() {
+        expressionFactory = new ExpressionFactoryImpl(cacheSize);
+    }
+
+    @Benchmark
+    public Expression simplePath() {
+        return expressionFactory.createSimpleExpression("d.owner.name");
+    }
+
+    @Benchmark
+    public Expression arithmetic() {
+        return expressionFactory.createSimpleExpression("d.age + d.owner.age * 2");
+    }
+
+    @Benchmark
+    public Expression function() {
+        return expressionFactory.createSimpleExpression("COALESCE(d.owner.name, CONCAT(d.name, :suffix))");
+    }
+
+    @Benchmark
+    public Expression caseWhen() {
+        return expressionFactory.createSimpleExpression("CASE WHEN d.age > 10 THEN d.name ELSE d.owner.name END", true);
+    }
+}
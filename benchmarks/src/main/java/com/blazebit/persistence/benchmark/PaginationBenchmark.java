@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.benchmark;
+
+import com.blazebit.persistence.KeySet;
+import com.blazebit.persistence.PagedList;
+import com.blazebit.persistence.PaginatedCriteriaBuilder;
+import com.blazebit.persistence.benchmark.model.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the execution of paginated queries, i.e. count, id and object query, with offset and with key set pagination.
+ * The persistence context is cleared after every invocation so that it does not grow over the run.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class PaginationBenchmark extends AbstractPersistenceBenchmark {
+
+    private static final int PAGE_OFFSET = DOCUMENT_COUNT / 2;
+
+    private KeySet keySet;
+
+    @Setup
+    public void setUpKeySet() {
+        keySet = createCriteriaBuilder(null, PAGE_OFFSET - PAGE_SIZE).getResultList().getKeySet();
+        em.clear();
+    }
+
+    @Benchmark
+    public PagedList<Document> offset() {
+        PagedList<Document> result = createCriteriaBuilder(null, PAGE_OFFSET).getResultList();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public PagedList<Document> keySet() {
+        PagedList<Document> result = createCriteriaBuilder(keySet, PAGE_OFFSET).getResultList();
+        em.clear();
+        return result;
+    }
+
+    private PaginatedCriteriaBuilder<Document> createCriteriaBuilder(KeySet keySet, int firstResult) {
+        return cbf.from(em, Document.class, "d")
+            .where("d.owner.age").ge(0L)
+            .orderByDesc("d.age")
+            .orderByAsc("d.id")
+            .page(keySet, firstResult, PAGE_SIZE);
+    }
+}
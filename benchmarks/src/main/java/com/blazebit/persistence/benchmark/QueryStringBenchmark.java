@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.benchmark;
+
+import com.blazebit.persistence.CriteriaBuilder;
+import com.blazebit.persistence.benchmark.model.Document;
+import com.blazebit.persistence.impl.ConfigurationProperties;
+import com.blazebit.persistence.spi.CriteriaBuilderConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures the construction of query builders and the generation of the JPQL query string.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class QueryStringBenchmark extends AbstractPersistenceBenchmark {
+
+    @Param({ "0", "512" })
+    private int queryStringCacheSize;
+
+    @Override
+    protected CriteriaBuilderConfiguration configure(CriteriaBuilderConfiguration config) {
+        return config.setProperty(ConfigurationProperties.QUERY_STRING_CACHE_SIZE, Integer.toString(queryStringCacheSize));
+    }
+
+    @Override
+    protected boolean isDataRequired() {
+        return false;
+    }
+
+    @Benchmark
+    public String simple() {
+        CriteriaBuilder<Document> cb = cbf.from(em, Document.class, "d")
+            .where("d.name").eq("doc1")
+            .orderByAsc("d.id");
+        return cb.getQueryString();
+    }
+
+    @Benchmark
+    public String deeplyJoined() {
+        CriteriaBuilder<Document> cb = cbf.from(em, Document.class, "d")
+            .leftJoin("d.owner", "o")
+            .leftJoin("o.partnerDocument", "pd")
+            .leftJoin("pd.owner", "po")
+            .leftJoin("po.partnerDocument", "ppd")
+            .leftJoin("d.versions", "v")
+            .where("o.name").like("owner%")
+            .where("ppd.owner.name").isNotNull()
+            .where("v.versionIdx").gt(1)
+            .orderByDesc("po.name")
+            .orderByAsc("v.url")
+            .orderByAsc("d.id");
+        return cb.getQueryString();
+    }
+}
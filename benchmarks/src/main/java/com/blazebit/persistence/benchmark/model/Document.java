@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.benchmark.model;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+@Entity
+public class Document implements Serializable {
+
+    private Long id;
+    private String name;
+    private long age;
+    private Person owner;
+    private Set<Version> versions = new HashSet<Version>();
+    private Set<Person> partners = new HashSet<Person>();
+    private Date lastModified;
+
+    public Document() {
+    }
+
+    public Document(String name, Person owner) {
+        this.name = name;
+        this.owner = owner;
+    }
+
+    @Id
+    @GeneratedValue
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getAge() {
+        return age;
+    }
+
+    public void setAge(long age) {
+        this.age = age;
+    }
+
+    @ManyToOne(optional = false)
+    public Person getOwner() {
+        return owner;
+    }
+
+    public void setOwner(Person owner) {
+        this.owner = owner;
+    }
+
+    @OneToMany(mappedBy = "document")
+    public Set<Version> getVersions() {
+        return versions;
+    }
+
+    public void setVersions(Set<Version> versions) {
+        this.versions = versions;
+    }
+
+    @OneToMany(mappedBy = "partnerDocument")
+    public Set<Person> getPartners() {
+        return partners;
+    }
+
+    public void setPartners(Set<Person> partners) {
+        this.partners = partners;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+}
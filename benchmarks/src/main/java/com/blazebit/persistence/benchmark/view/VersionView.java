@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.benchmark.view;
+
+import com.blazebit.persistence.benchmark.model.Version;
+import com.blazebit.persistence.view.EntityView;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+@EntityView(Version.class)
+public interface VersionView {
+
+    public Long getId();
+
+    public Integer getVersionIdx();
+
+    public String getUrl();
+}
@@ -15,6 +15,7 @@
  */
 package com.blazebit.persistence;
 
+import java.util.Collection;
 import javax.persistence.EntityManager;
 
 /**
@@ -46,4 +47,55 @@ public interface CriteriaBuilderFactory {
      * @return A new criteria builder
      */
     public <T> CriteriaBuilder<T> from(EntityManager entityManager, Class<T> entityClass, String alias);
+
+    /**
+     * Serializes the given key set into a compact URL safe token that can be handed out to clients. The token contains the
+     * page position and size, the ordering and the lowest and highest key tuples, secured by a checksum that is keyed with
+     * the configured key set token secret.
+     *
+     * @param keySet The key set of a {@link PagedList}
+     * @return The token
+     * @throws IllegalArgumentException if the key set contains key elements of a type that is not supported
+     * @throws IllegalStateException if no key set token secret is configured
+     */
+    public String serializeKeySet(KeySet keySet);
+
+    /**
+     * Restores a key set from a token produced by {@link CriteriaBuilderFactory#serializeKeySet(com.blazebit.persistence.KeySet)}
+     * so it can be passed to {@link QueryBuilder#page(com.blazebit.persistence.KeySet, int, int)}.
+     * Invalid or tampered tokens result in null, which makes the pagination fall back to offset pagination.
+     * The same happens when the ordering of the query differs from the ordering the token was created for.
+     *
+     * @param token The token of a key set
+     * @return The key set or null if the token is invalid
+     * @throws IllegalStateException if no key set token secret is configured
+     */
+    public KeySet deserializeKeySet(String token);
+
+    /**
+     * Returns the number of times a query string could be served from the query string cache of this factory.
+     *
+     * @return The number of query string cache hits
+     */
+    public long getQueryStringCacheHits();
+
+    /**
+     * Returns the number of times a query string had to be generated because it was not found in the query string cache of
+     * this factory.
+     *
+     * @return The number of query string cache misses
+     */
+    public long getQueryStringCacheMisses();
+
+    /**
+     * Parses the given expressions into the expression cache of this factory, so that queries using them later do not have to
+     * parse them anymore. The select expressions are parsed like {@link BaseQueryBuilder#select(java.lang.String)} does and
+     * the subquery expressions like the expression around a subquery in
+     * {@link BaseQueryBuilder#selectSubquery(java.lang.String, java.lang.String)}. An expression that can not be parsed
+     * results in the same exception as if it was used in a query.
+     *
+     * @param selectExpressions The expressions that are used as select items
+     * @param subqueryExpressions The expressions that are used around subqueries in select items
+     */
+    public void warmUpExpressions(Collection<String> selectExpressions, Collection<String> subqueryExpressions);
 }
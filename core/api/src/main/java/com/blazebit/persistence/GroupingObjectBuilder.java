@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+import java.util.List;
+
+/**
+ * An object builder that builds an object from multiple tuples in {@link ObjectBuilder#buildList(java.util.List)} and
+ * requires the tuples of an object to be adjacent in the result list. A query builder orders the result by the grouping
+ * expressions after all other order by items, regardless of the order in which the order by items were added. The other
+ * order by items must not refer to collections, since the tuples of an object would not be adjacent otherwise.
+ *
+ * @param <T> The type that this builder produces
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public interface GroupingObjectBuilder<T> extends ObjectBuilder<T> {
+
+    /**
+     * Returns the expressions that identify the object that is built from a tuple, or an empty list if the tuples of the
+     * objects don't have to be adjacent.
+     *
+     * @return The expressions by which the tuples are grouped
+     */
+    public List<String> getGroupingExpressions();
+}
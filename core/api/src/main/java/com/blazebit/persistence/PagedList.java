@@ -27,12 +27,31 @@ import java.util.List;
 public interface PagedList<T> extends List<T> {
 
     /**
-     * The total size of the list.
+     * The total size of the list. If the count query was disabled, this is only a lower bound of the total size which is
+     * derived from the position of the page and whether a next page exists. If the count query was disabled and the page is
+     * empty, the total size is unknown and -1 is returned.
      *
      * @return The total size
+     * @see #isTotalSizeKnown()
      */
     public long totalSize();
 
+    /**
+     * Returns whether {@link #totalSize()} is the exact total size or only a lower bound because the count query was
+     * disabled.
+     *
+     * @see PaginatedCriteriaBuilder#withCountQuery(boolean)
+     * @return True if the total size is exact, false otherwise
+     */
+    public boolean isTotalSizeKnown();
+
+    /**
+     * Returns whether there are more elements after the elements of this page.
+     *
+     * @return True if a next page exists, false otherwise
+     */
+    public boolean hasNextPage();
+
     /**
      * Returns the key set for this paged list which can be used for key set pagination.
      * The key set may be null if key set pagination wasn't used.
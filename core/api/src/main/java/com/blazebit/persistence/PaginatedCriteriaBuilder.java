@@ -15,6 +15,9 @@
  */
 package com.blazebit.persistence;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.Tuple;
 
 /**
@@ -40,6 +43,77 @@ public interface PaginatedCriteriaBuilder<T> extends QueryBuilder<T, PaginatedCr
      */
     public String getPageIdQueryString();
 
+    /**
+     * Enables or disables the execution of the count query. By default the count query is executed to determine the
+     * total size of the paged list. When disabled, one element more than the page size is fetched by the id query to
+     * determine whether a next page exists and the resulting {@link PagedList} only knows a lower bound of the total size.
+     * Key set extraction works the same in both modes.
+     *
+     * @param withCountQuery Whether the count query should be executed
+     * @return This paginated criteria builder
+     * @see PagedList#isTotalSizeKnown()
+     * @see PagedList#hasNextPage()
+     */
+    public PaginatedCriteriaBuilder<T> withCountQuery(boolean withCountQuery);
+
+    /**
+     * Like {@link PaginatedCriteriaBuilder#getResultList()} but executes the count query concurrently to the queries that
+     * fetch the page, so the latency of a page is the maximum instead of the sum of both. The count query is executed through
+     * the given executor on a new entity manager of the given entity manager factory, which is closed afterwards. The page
+     * itself is fetched by the calling thread with the entity manager of this builder before this method returns, because an
+     * entity manager must not be used by multiple threads. The returned future completes as soon as the count query is done.
+     *
+     * If the count query is disabled, the page is fetched like by {@link PaginatedCriteriaBuilder#getResultList()} and the
+     * returned future is already done.
+     *
+     * @param countEntityManagerFactory The entity manager factory to create the entity manager for the count query
+     * @param executor The executor that runs the count query
+     * @return The future of the paged list
+     */
+    public Future<PagedList<T>> getResultListAsync(EntityManagerFactory countEntityManagerFactory, Executor executor);
+
+    /**
+     * Returns an iterator over all results starting at the first result of this page. The results are fetched in chunks of the
+     * page size by using key set pagination, so every chunk is fetched with the key set of the previous one and no count query
+     * is executed. The chunks are fetched on demand with the entity manager of this builder and the results of a chunk are
+     * detached when the iterator moves past it. Other entities of the persistence context are not affected, which includes
+     * entities that were loaded together with the results, like fetched or eagerly loaded associations. Use
+     * {@link PaginatedCriteriaBuilder#getChunkedResultIterator(boolean)} to clear the persistence context instead.
+     *
+     * The order by items must define a unique ordering for key set pagination to work correctly. The builder must not be
+     * modified or used otherwise while the iterator is in use.
+     *
+     * @return The iterator over all results
+     */
+    public ResultIterator<T> getChunkedResultIterator();
+
+    /**
+     * Like {@link PaginatedCriteriaBuilder#getChunkedResultIterator()} but optionally clears the persistence context of the
+     * entity manager of this builder when the iterator moves past a chunk instead of only detaching the results of the chunk.
+     * Clearing also detaches the entities that were loaded together with the results, so the persistence context doesn't grow
+     * with the number of chunks. It detaches every other entity of the persistence context too and discards their unflushed
+     * changes.
+     *
+     * @param clearPersistenceContext Whether the persistence context should be cleared after every chunk
+     * @return The iterator over all results
+     */
+    public ResultIterator<T> getChunkedResultIterator(boolean clearPersistenceContext);
+
+    /**
+     * Like {@link PaginatedCriteriaBuilder#getChunkedResultIterator()} but prefetches the next chunk through the given executor
+     * while the current one is consumed. If the chunks require an id query, because the query has collection joins, only the
+     * id query of the next chunk is executed by the executor. The object query for these ids is then executed by the iterating
+     * thread when the iterator reaches the chunk. Otherwise the executor fetches the whole chunk with a single query. Every
+     * chunk is fetched with a new entity manager of the given entity manager factory which is closed when the iterator moves
+     * past the chunk or is closed, so the results of a chunk and all entities loaded with them get detached afterwards. The
+     * entity manager of this builder is not used for fetching the chunks.
+     *
+     * @param prefetchEntityManagerFactory The entity manager factory to create the entity managers for the chunks
+     * @param executor The executor that fetches the chunks
+     * @return The iterator over all results
+     */
+    public ResultIterator<T> getChunkedResultIterator(EntityManagerFactory prefetchEntityManagerFactory, Executor executor);
+
     /*
      * Covariant overrides
      */
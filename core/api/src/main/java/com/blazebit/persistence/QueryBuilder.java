@@ -20,6 +20,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import javax.persistence.EntityManager;
 import javax.persistence.Parameter;
 import javax.persistence.TemporalType;
 import javax.persistence.Tuple;
@@ -113,12 +114,32 @@ public interface QueryBuilder<T, X extends QueryBuilder<T, X>> extends BaseQuery
      */
     public Object getParameterValue(String name);
 
+    /**
+     * Returns the temporal type with which the value for the parameter with the given name has been set. If the value has been
+     * set without a temporal type, no value has been set, or the parameter does not exist, null is returned.
+     *
+     * @param name The name of the parameter for which the temporal type should be returned
+     * @return The temporal type of the parameter value or null
+     */
+    public TemporalType getParameterTemporalType(String name);
+
     /**
      * Execute the query and return the result as a type List.
      *
      * @return The list of the results
      */
     public List<T> getResultList();
+
+    /**
+     * Execute the query and return an iterator that fetches the results lazily from the database while iterating, so
+     * that the memory consumption does not depend on the size of the result. The object builder of the select clause
+     * is applied to every row separately, so it must be a {@link StreamableObjectBuilder} that supports streaming.
+     * Note that entities returned by the iterator are still managed by the entity manager.
+     *
+     * @return The iterator over the results which must be closed after usage
+     * @throws IllegalStateException if the object builder of the query needs the complete result list
+     */
+    public ResultIterator<T> getResultIterator();
     
     /**
      * Execute the query expecting a single result.
@@ -134,6 +155,21 @@ public interface QueryBuilder<T, X extends QueryBuilder<T, X>> extends BaseQuery
      */
     public Metamodel getMetamodel();
 
+    /**
+     * Returns the entity manager which is used by this query builder.
+     *
+     * @return The entity manager
+     */
+    public EntityManager getEntityManager();
+
+    /**
+     * Returns the criteria builder factory which created this query builder.
+     * It can be used to create further queries, e.g. to fetch data related to the results of this query.
+     *
+     * @return The criteria builder factory
+     */
+    public CriteriaBuilderFactory getCriteriaBuilderFactory();
+
     /**
      * Paginates the results of this query.
      *
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator over the results of a query that fetches the results lazily while iterating.
+ * The iterator holds database resources like a cursor until it is exhausted or closed, so it should always be closed.
+ *
+ * @param <T> The type of the results
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public interface ResultIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Releases the resources of this iterator. Calling this method multiple times has no effect.
+     */
+    @Override
+    public void close();
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+/**
+ * An object builder that can tell whether the objects can be built from single tuples alone. This is the case if
+ * {@link ObjectBuilder#buildList(java.util.List)} returns the given list unchanged. Only such object builders can be
+ * used for streaming results with {@link QueryBuilder#getResultIterator()}.
+ *
+ * @param <T> The type that this builder produces
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public interface StreamableObjectBuilder<T> extends ObjectBuilder<T> {
+
+    /**
+     * Returns whether {@link ObjectBuilder#build(java.lang.Object[])} alone produces the final objects, so that results can
+     * be built row by row without collecting the complete result list.
+     *
+     * @return True if the results can be streamed, false otherwise
+     */
+    public boolean isStreamable();
+}
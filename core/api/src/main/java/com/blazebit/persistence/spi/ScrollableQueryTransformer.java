@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.spi;
+
+import com.blazebit.persistence.ResultIterator;
+import javax.persistence.Query;
+
+/**
+ * Optional extension of a {@link QueryTransformer} for JPA providers that can scroll through the results of a query.
+ * If no registered query transformer implements this interface, result iterators fall back to iterating over the result list.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public interface ScrollableQueryTransformer extends QueryTransformer {
+
+    /**
+     * Executes the query and returns an iterator over the result rows that uses the scrolling facility of the JPA provider,
+     * so that rows are only fetched from the database cursor while iterating. Every row is returned as object array, even
+     * if only a single item is selected.
+     *
+     * @param query The query to execute
+     * @return The iterator over the result rows
+     */
+    public ResultIterator<Object[]> scrollQuery(Query query);
+}
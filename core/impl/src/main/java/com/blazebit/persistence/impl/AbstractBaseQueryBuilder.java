@@ -20,13 +20,13 @@ import com.blazebit.persistence.CaseWhenBuilder;
 import com.blazebit.persistence.HavingOrBuilder;
 import com.blazebit.persistence.JoinOnBuilder;
 import com.blazebit.persistence.JoinType;
+import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.RestrictionBuilder;
 import com.blazebit.persistence.SimpleCaseWhenBuilder;
 import com.blazebit.persistence.SubqueryInitiator;
 import com.blazebit.persistence.WhereOrBuilder;
 import com.blazebit.persistence.impl.expression.Expression;
 import com.blazebit.persistence.impl.expression.ExpressionFactory;
-import com.blazebit.persistence.impl.expression.SubqueryExpressionFactory;
 import com.blazebit.persistence.impl.predicate.VisitorAdapter;
 import com.blazebit.persistence.spi.QueryTransformer;
 import java.util.Arrays;
@@ -63,6 +63,7 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
     protected final QueryGenerator queryGenerator;
     private final SubqueryInitiatorFactory subqueryInitFactory;
 
+    protected final JPAMetadata jpaMetadata;
     protected final JPAInfo jpaInfo;
 
     protected final AliasManager aliasManager;
@@ -89,6 +90,7 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
         this.joinManager = builder.joinManager;
         this.queryGenerator = builder.queryGenerator;
         this.em = builder.em;
+        this.jpaMetadata = builder.jpaMetadata;
         this.jpaInfo = builder.jpaInfo;
         this.subqueryInitFactory = builder.subqueryInitFactory;
         this.aliasManager = builder.aliasManager;
@@ -112,20 +114,21 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
         }
 
         this.cbf = cbf;
-        this.jpaInfo = new JPAInfo(em);
+        this.jpaMetadata = cbf.getJpaMetadata(em);
+        this.jpaInfo = jpaMetadata.getJpaInfo();
         this.fromClazz = fromClazz;
         this.aliasManager = new AliasManager(aliasManager);
         this.expressionFactory = expressionFactory;
 
         this.parameterManager = parameterManager;
 
-        this.queryGenerator = new QueryGenerator(this, this.aliasManager);
+        this.queryGenerator = new QueryGenerator(this, this.aliasManager, parameterManager);
 
-        this.joinManager = new JoinManager(alias, fromClazz, queryGenerator, parameterManager, null, expressionFactory, jpaInfo, this.aliasManager, this, em.getMetamodel(),
+        this.joinManager = new JoinManager(alias, fromClazz, queryGenerator, parameterManager, null, expressionFactory, jpaMetadata, this.aliasManager, this, em.getMetamodel(),
                                            parentJoinManager);
 
         ArrayExpressionTransformer arrayExpressionTransformer = new ArrayExpressionTransformer(joinManager, this, parentArrayExpressionTransformer);
-        this.subqueryInitFactory = new SubqueryInitiatorFactory(cbf, em, parameterManager, this.aliasManager, joinManager, new SubqueryExpressionFactory(),
+        this.subqueryInitFactory = new SubqueryInitiatorFactory(cbf, em, parameterManager, this.aliasManager, joinManager, cbf.getSubqueryExpressionFactory(),
                                                                 arrayExpressionTransformer);
 
         this.joinManager.setSubqueryInitFactory(subqueryInitFactory);
@@ -147,7 +150,7 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
     }
 
     public AbstractBaseQueryBuilder(CriteriaBuilderFactoryImpl cbf, EntityManager em, Class<T> clazz, String alias) {
-        this(cbf, em, clazz, clazz, alias, new ParameterManager(), null, null, cbf.getExpressionFactory(), null);
+        this(cbf, em, clazz, clazz, alias, new ParameterManager(cbf.isInListPadding(), cbf.getInListChunkSize()), null, null, cbf.getExpressionFactory(), null);
     }
 
 
@@ -456,6 +459,11 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
     }
 
     protected void applyImplicitJoins() {
+        if (cbf.isCanonicalQueryStrings()) {
+            // Implicit join aliases are generated in the order of the predicates, so they must be ordered before
+            canonicalize();
+        }
+
         final JoinVisitor joinVisitor = new JoinVisitor(joinManager);
         final JoinNodeVisitor joinNodeVisitor = new OnClauseJoinNodeVisitor(joinVisitor) {
 
@@ -479,6 +487,8 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
         joinVisitor.setJoinWithObjectLeafAllowed(false);
         orderByManager.acceptVisitor(joinVisitor);
         joinVisitor.setJoinWithObjectLeafAllowed(true);
+        joinManager.setImplicitJoinsApplied(true);
+        orderByManager.verifyGroupingOrderBys();
     }
 
     protected void applyVisitor(VisitorAdapter expressionVisitor) {
@@ -544,7 +554,7 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
 
         sbSelectFrom.append(selectManager.buildSelect(joinManager.getRootAlias()));
         sbSelectFrom.append("FROM ")
-            .append(fromClazz.getSimpleName())
+            .append(jpaMetadata.getEntityName(em.getMetamodel(), fromClazz))
             .append(' ')
             .append(joinManager.getRootAlias());
 
@@ -565,6 +575,70 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
         return sbSelectFrom.append(sbRemaining).toString();
     }
     
+    /**
+     * Renders the structure of this builder, i.e. the unresolved expressions as they were given by the user, into the given buffer.
+     * Builders with the same structure generate the same query string, regardless of the parameter values.
+     *
+     * @param sb The buffer to render the shape into
+     * @return false if no shape could be rendered because the expressions of this or a subquery builder were already resolved
+     */
+    boolean buildQueryShape(StringBuilder sb) {
+        verifyBuilderEnded();
+        if (joinManager.isImplicitJoinsApplied()) {
+            return false;
+        }
+
+        queryGenerator.setQueryShapeMode(true);
+        try {
+            appendQueryShape(sb);
+            return queryGenerator.isQueryShapeComplete();
+        } finally {
+            queryGenerator.setQueryShapeMode(false);
+        }
+    }
+
+    /**
+     * Renders the structure of this builder into the given buffer like {@link #buildQueryShape(java.lang.StringBuilder)} but
+     * without generated parameter names and regardless of whether the expressions were already resolved. The predicates of
+     * this builder are ordered canonically before.
+     *
+     * @param sb The buffer to render the key into
+     */
+    void buildCanonicalKey(StringBuilder sb) {
+        orderPredicatesCanonically();
+        queryGenerator.setCanonicalKeyMode(true);
+        try {
+            appendQueryShape(sb);
+        } finally {
+            queryGenerator.setCanonicalKeyMode(false);
+        }
+    }
+
+    private void appendQueryShape(StringBuilder sb) {
+        sb.append(fromClazz.getName())
+            .append(' ')
+            .append(joinManager.getRootAlias());
+        joinManager.buildJoinShape(sb);
+        sb.append(' ');
+        selectManager.buildSelectShape(sb);
+        whereManager.buildClause(sb);
+        groupByManager.buildGroupBy(sb);
+        havingManager.buildClause(sb);
+        orderByManager.buildOrderBy(sb);
+    }
+
+    /**
+     * Makes the structure of this builder canonical, see {@link ConfigurationProperties#CANONICAL_QUERY_STRINGS}.
+     */
+    protected void canonicalize() {
+        orderPredicatesCanonically();
+    }
+
+    void orderPredicatesCanonically() {
+        whereManager.orderPredicatesCanonically();
+        havingManager.orderPredicatesCanonically();
+    }
+    
     protected void addWhereClauseConjuncts(StringBuilder sbRemaining, boolean includeSelects) {
         // Added a workaround for #45 and HHH-9329
         StringBuilder whereClauseConjuncts = joinManager.generateWhereClauseConjuncts(includeSelects);
@@ -592,9 +666,9 @@ public class AbstractBaseQueryBuilder<T, X extends BaseQueryBuilder<T, X>> imple
         return i == s.length();
     }
 
-    protected void transformQuery(TypedQuery<T> query) {
+    protected void transformQuery(TypedQuery<T> query, ObjectBuilder<T> objectBuilder) {
         for (QueryTransformer transformer : cbf.getQueryTransformers()) {
-            transformer.transformQuery(query, selectManager.getSelectObjectBuilder());
+            transformer.transformQuery(query, objectBuilder);
         }
     }
 }
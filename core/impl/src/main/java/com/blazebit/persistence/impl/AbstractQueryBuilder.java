@@ -16,18 +16,30 @@
 package com.blazebit.persistence.impl;
 
 import com.blazebit.persistence.CaseWhenBuilder;
+import com.blazebit.persistence.CriteriaBuilderFactory;
+import com.blazebit.persistence.GroupingObjectBuilder;
 import com.blazebit.persistence.JoinType;
 import com.blazebit.persistence.KeySet;
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.PaginatedCriteriaBuilder;
 import com.blazebit.persistence.QueryBuilder;
+import com.blazebit.persistence.ResultIterator;
 import com.blazebit.persistence.SelectObjectBuilder;
 import com.blazebit.persistence.SimpleCaseWhenBuilder;
+import com.blazebit.persistence.StreamableObjectBuilder;
 import com.blazebit.persistence.SubqueryInitiator;
+import com.blazebit.persistence.impl.expression.ParameterExpression;
+import com.blazebit.persistence.impl.expression.SubqueryExpression;
+import com.blazebit.persistence.impl.predicate.VisitorAdapter;
+import com.blazebit.persistence.spi.QueryTransformer;
+import com.blazebit.persistence.spi.ScrollableQueryTransformer;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.Parameter;
@@ -56,6 +68,15 @@ public abstract class AbstractQueryBuilder<T, X extends QueryBuilder<T, X>> exte
      * PaginatedCriteriaBuilder as well.
      */
     private boolean createdPaginatedBuilder = false;
+    /**
+     * The parameter binding plans of the query strings executed by this builder.
+     * The map is shared with copies of this builder since they share the parameter manager.
+     */
+    private final Map<String, ParameterBindingPlan> bindingPlans;
+    /**
+     * The parameter registration count of the parameter manager when the parameters were last numbered canonically.
+     */
+    private int canonicalRegistrationCount = -1;
 
     /**
      * Create flat copy of builder
@@ -64,10 +85,13 @@ public abstract class AbstractQueryBuilder<T, X extends QueryBuilder<T, X>> exte
      */
     protected AbstractQueryBuilder(AbstractQueryBuilder<T, ? extends QueryBuilder<T, ?>> builder) {
         super(builder);
+        this.bindingPlans = builder.bindingPlans;
+        this.canonicalRegistrationCount = builder.canonicalRegistrationCount;
     }
 
     public AbstractQueryBuilder(CriteriaBuilderFactoryImpl cbf, EntityManager em, Class<T> clazz, String alias) {
         super(cbf, em, clazz, alias);
+        this.bindingPlans = new HashMap<String, ParameterBindingPlan>();
     }
 
     @Override
@@ -75,6 +99,30 @@ public abstract class AbstractQueryBuilder<T, X extends QueryBuilder<T, X>> exte
         return getQuery().getResultList();
     }
 
+    @Override
+    public ResultIterator<T> getResultIterator() {
+        ObjectBuilder<T> objectBuilder = selectManager.getSelectObjectBuilder();
+
+        if (objectBuilder != null && !(objectBuilder instanceof StreamableObjectBuilder<?> && ((StreamableObjectBuilder<?>) objectBuilder).isStreamable())) {
+            throw new IllegalStateException("The object builder '" + objectBuilder.getClass().getName() + "' can't be used for streaming because it might need the complete result list");
+        }
+
+        // The query is not transformed because the object builder is applied to every row by the iterator
+        String queryString = getQueryString();
+        Query query = em.createQuery(queryString);
+        parameterizeQuery(query, queryString);
+
+        for (QueryTransformer transformer : cbf.getQueryTransformers()) {
+            if (transformer instanceof ScrollableQueryTransformer) {
+                ResultIterator<Object[]> rowIterator = ((ScrollableQueryTransformer) transformer).scrollQuery(query);
+                return new ObjectBuilderResultIterator<T>(rowIterator, objectBuilder);
+            }
+        }
+
+        // Without a provider integration that can scroll, we can only iterate over the list
+        return new ObjectBuilderResultIterator<T>(new ResultListIterator(query.getResultList()), objectBuilder);
+    }
+
     @Override
     public T getSingleResult() {
         return getQuery().getSingleResult();
@@ -153,6 +201,13 @@ public abstract class AbstractQueryBuilder<T, X extends QueryBuilder<T, X>> exte
 
         verifyBuilderEnded();
         selectManager.selectNew(this, objectBuilder);
+
+        if (objectBuilder instanceof GroupingObjectBuilder<?>) {
+            for (String expression : ((GroupingObjectBuilder<?>) objectBuilder).getGroupingExpressions()) {
+                orderByManager.groupingOrderBy(expressionFactory.createSimpleExpression(expression));
+            }
+        }
+
         return (QueryBuilder<Y, ?>) this;
     }
 
@@ -233,33 +288,106 @@ public abstract class AbstractQueryBuilder<T, X extends QueryBuilder<T, X>> exte
         return (X) this;
     }
 
+    @Override
+    public String getQueryString() {
+        if (cbf.isCanonicalQueryStrings()) {
+            // The query shape must already contain the canonical parameter names
+            canonicalize();
+        }
+
+        QueryStringCache queryStringCache = cbf.getQueryStringCache();
+
+        if (queryStringCache == null) {
+            return super.getQueryString();
+        }
+
+        StringBuilder sbShape = new StringBuilder();
+        if (!buildQueryShape(sbShape)) {
+            return super.getQueryString();
+        }
+
+        String queryShape = sbShape.toString();
+        Metamodel metamodel = em.getMetamodel();
+        String queryString = queryStringCache.get(metamodel, queryShape);
+
+        if (queryString == null) {
+            queryString = super.getQueryString();
+            queryStringCache.put(metamodel, queryShape, queryString);
+        }
+
+        return queryString;
+    }
+
     @Override
     public TypedQuery<T> getQuery() {
-        TypedQuery<T> query = (TypedQuery) em.createQuery(getQueryString(), Object[].class);
-        if (selectManager.getSelectObjectBuilder() != null) {
-            transformQuery(query);
+        return getQuery(em);
+    }
+
+    TypedQuery<T> getQuery(EntityManager entityManager) {
+        return getQuery(entityManager, getQueryString(), selectManager.getSelectObjectBuilder());
+    }
+
+    TypedQuery<T> getQuery(EntityManager entityManager, String queryString, ObjectBuilder<T> objectBuilder) {
+        TypedQuery<T> query = (TypedQuery) entityManager.createQuery(queryString, Object[].class);
+        if (objectBuilder != null) {
+            transformQuery(query, objectBuilder);
         }
 
-        parameterizeQuery(query);
+        parameterizeQuery(query, queryString);
         return query;
     }
 
-    void parameterizeQuery(Query q) {
-        for (Parameter<?> p : q.getParameters()) {
-            if (!isParameterSet(p.getName())) {
-                throw new IllegalStateException("Unsatisfied parameter " + p.getName());
-            }
-            Object paramValue = parameterManager.getParameterValue(p.getName());
-            if (paramValue instanceof ParameterManager.TemporalCalendarParameterWrapper) {
-                ParameterManager.TemporalCalendarParameterWrapper wrappedValue = (ParameterManager.TemporalCalendarParameterWrapper) paramValue;
-                q.setParameter(p.getName(), wrappedValue.getValue(), wrappedValue.getType());
-            } else if (paramValue instanceof ParameterManager.TemporalDateParameterWrapper) {
-                ParameterManager.TemporalDateParameterWrapper wrappedValue = (ParameterManager.TemporalDateParameterWrapper) paramValue;
-                q.setParameter(p.getName(), wrappedValue.getValue(), wrappedValue.getType());
-            } else {
-                q.setParameter(p.getName(), paramValue);
+    /**
+     * Additionally to ordering the predicates, numbers the generated parameters in the order of their appearance, including
+     * the parameters of subqueries which share the parameter manager with this builder.
+     */
+    @Override
+    protected void canonicalize() {
+        super.canonicalize();
+
+        // Adding predicates keeps the relative order of the existing parameters, so only added parameters require renumbering
+        if (canonicalRegistrationCount == parameterManager.getRegistrationCount()) {
+            return;
+        }
+
+        ParameterOrderCollector collector = new ParameterOrderCollector();
+        applyVisitor(collector);
+        parameterManager.renumberGeneratedParameters(collector.values);
+
+        for (ParameterExpression expression : collector.expressions) {
+            expression.setName(parameterManager.getParamNameForObject(expression.getValue()));
+        }
+
+        canonicalRegistrationCount = parameterManager.getRegistrationCount();
+    }
+
+    void parameterizeQuery(Query q, String queryString) {
+        getBindingPlan(q, queryString).bind(q, parameterManager);
+    }
+
+    private ParameterBindingPlan getBindingPlan(Query q, String queryString) {
+        ParameterBindingPlan bindingPlan = bindingPlans.get(queryString);
+
+        if (bindingPlan != null) {
+            return bindingPlan;
+        }
+
+        QueryStringCache queryStringCache = cbf.getQueryStringCache();
+
+        if (queryStringCache != null) {
+            bindingPlan = queryStringCache.getBindingPlan(em.getMetamodel(), queryString);
+        }
+
+        if (bindingPlan == null) {
+            bindingPlan = ParameterBindingPlan.compile(q, parameterManager);
+
+            if (queryStringCache != null) {
+                queryStringCache.putBindingPlan(em.getMetamodel(), queryString, bindingPlan);
             }
         }
+
+        bindingPlans.put(queryString, bindingPlan);
+        return bindingPlan;
     }
 
     @Override
@@ -287,11 +415,26 @@ public abstract class AbstractQueryBuilder<T, X extends QueryBuilder<T, X>> exte
         return parameterManager.getParameterValue(name);
     }
 
+    @Override
+    public TemporalType getParameterTemporalType(String name) {
+        return parameterManager.getParameterTemporalType(name);
+    }
+
     @Override
     public Metamodel getMetamodel() {
         return em.getMetamodel();
     }
 
+    @Override
+    public EntityManager getEntityManager() {
+        return em;
+    }
+
+    @Override
+    public CriteriaBuilderFactory getCriteriaBuilderFactory() {
+        return cbf;
+    }
+
     @Override
     public X groupBy(String expression) {
         if (createdPaginatedBuilder) {
@@ -366,4 +509,28 @@ public abstract class AbstractQueryBuilder<T, X extends QueryBuilder<T, X>> exte
         return (SubqueryInitiator<? extends QueryBuilder<Tuple, ?>>) super.selectSubquery(subqueryAlias, expression, selectAlias);
     }
 
+
+    /**
+     * Collects the parameter expressions that have a value in the order in which they are visited.
+     */
+    private static class ParameterOrderCollector extends VisitorAdapter {
+
+        private final List<Object> values = new ArrayList<Object>();
+        private final List<ParameterExpression> expressions = new ArrayList<ParameterExpression>();
+
+        @Override
+        public void visit(ParameterExpression expression) {
+            if (expression.getValue() != null) {
+                values.add(expression.getValue());
+                expressions.add(expression);
+            }
+        }
+
+        @Override
+        public void visit(SubqueryExpression expression) {
+            AbstractBaseQueryBuilder<?, ?> builder = (AbstractBaseQueryBuilder<?, ?>) expression.getBuilder();
+            builder.orderPredicatesCanonically();
+            builder.applyVisitor(this);
+        }
+    }
 }
@@ -22,4 +22,61 @@ package com.blazebit.persistence.impl;
  */
 public interface ConfigurationProperties {
 
+    /**
+     * The maximum number of generated query strings that are kept in the query string cache of a criteria builder factory.
+     * Query strings are cached by the structure of the builder, so builders that only differ in parameter values share an entry.
+     * A value of 0 or less disables the cache. The default value is 512.
+     */
+    public static final String QUERY_STRING_CACHE_SIZE = "com.blazebit.persistence.query_string_cache_size";
+
+    /**
+     * The maximum number of parsed expressions that are kept in the expression caches of a criteria builder factory.
+     * A value of 0 or less disables the cache. The default value is 1024.
+     */
+    public static final String EXPRESSION_CACHE_SIZE = "com.blazebit.persistence.expression_cache_size";
+
+    /**
+     * Whether key set pagination should use row value comparisons like <code>(a, b) &gt; (:a, :b)</code> instead of the expanded
+     * disjunction. Row values are only rendered if all order by items have the same direction, no key element is null and
+     * no key column can produce nulls that sort into the requested range, so the result is always the same. Only enable this
+     * when the database supports row value comparisons. The default value is false.
+     */
+    public static final String KEY_SET_ROW_VALUE_COMPARISON = "com.blazebit.persistence.key_set_row_value_comparison";
+
+    /**
+     * The secret that is used to sign serialized key set tokens. Key set tokens can only be used when a secret is configured,
+     * because only a keyed checksum detects tokens that were modified on purpose. There is no default value.
+     */
+    public static final String KEY_SET_TOKEN_SECRET = "com.blazebit.persistence.key_set_token_secret";
+
+    /**
+     * Whether collection values that are bound to parameters should be padded to the next power of two by repeating the last
+     * element. This limits the number of distinct SQL strings that IN predicates produce, which keeps the query plan cache of
+     * the JPA provider and the statement cache of the database effective. The default value is false.
+     */
+    public static final String IN_LIST_PADDING = "com.blazebit.persistence.in_list_padding";
+
+    /**
+     * The maximum number of elements of a collection parameter that are rendered into a single IN predicate. Larger collections
+     * are split into chunks that are combined with OR, or with AND for NOT IN predicates. The number of chunks depends on the
+     * collection size, so the query string only stays stable if {@link #IN_LIST_PADDING} is enabled too, which pads the number
+     * of chunks to the next power of two. A value of 0 or less disables chunking. The default value is 0.
+     */
+    public static final String IN_LIST_CHUNK_SIZE = "com.blazebit.persistence.in_list_chunk_size";
+
+    /**
+     * Whether the object query of a paginated query restricts composite ids with a row value IN predicate like
+     * <code>(a, b) IN ((:a0, :b0), (:a1, :b1))</code> instead of a disjunction of the id attribute equalities. Only enable this
+     * when the database supports row value IN predicates. The default value is false.
+     */
+    public static final String COMPOSITE_ID_ROW_VALUE_IN = "com.blazebit.persistence.composite_id_row_value_in";
+
+    /**
+     * Whether generated query strings should be canonical, so that builders with the same structure produce the same query
+     * string regardless of the order in which the builder methods were called. The top level conjuncts of the WHERE and HAVING
+     * clauses are ordered by their structure before implicit joins are generated, and generated parameter names are numbered
+     * in the order of their appearance in the query. This improves the hit rate of the query plan cache of the JPA provider and
+     * the statement cache of the database. The default value is false.
+     */
+    public static final String CANONICAL_QUERY_STRINGS = "com.blazebit.persistence.canonical_query_strings";
 }
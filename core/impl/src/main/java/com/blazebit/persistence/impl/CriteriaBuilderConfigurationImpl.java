@@ -16,6 +16,7 @@
 package com.blazebit.persistence.impl;
 
 import com.blazebit.persistence.CriteriaBuilderFactory;
+import com.blazebit.persistence.impl.expression.AbstractExpressionFactory;
 import com.blazebit.persistence.spi.CriteriaBuilderConfiguration;
 import com.blazebit.persistence.spi.QueryTransformer;
 import java.util.ArrayList;
@@ -41,6 +42,13 @@ public class CriteriaBuilderConfigurationImpl implements CriteriaBuilderConfigur
     }
 
     private void loadDefaultProperties() {
+        properties.put(ConfigurationProperties.QUERY_STRING_CACHE_SIZE, Integer.toString(CriteriaBuilderFactoryImpl.DEFAULT_QUERY_STRING_CACHE_SIZE));
+        properties.put(ConfigurationProperties.EXPRESSION_CACHE_SIZE, Integer.toString(AbstractExpressionFactory.DEFAULT_CACHE_SIZE));
+        properties.put(ConfigurationProperties.KEY_SET_ROW_VALUE_COMPARISON, "false");
+        properties.put(ConfigurationProperties.IN_LIST_PADDING, "false");
+        properties.put(ConfigurationProperties.IN_LIST_CHUNK_SIZE, "0");
+        properties.put(ConfigurationProperties.COMPOSITE_ID_ROW_VALUE_IN, "false");
+        properties.put(ConfigurationProperties.CANONICAL_QUERY_STRINGS, "false");
     }
 
     private void loadQueryTransformers() {
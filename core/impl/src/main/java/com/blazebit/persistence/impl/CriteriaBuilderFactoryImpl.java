@@ -17,10 +17,14 @@ package com.blazebit.persistence.impl;
 
 import com.blazebit.persistence.CriteriaBuilder;
 import com.blazebit.persistence.CriteriaBuilderFactory;
+import com.blazebit.persistence.KeySet;
 import com.blazebit.persistence.impl.expression.ExpressionFactory;
+import com.blazebit.persistence.impl.expression.AbstractExpressionFactory;
 import com.blazebit.persistence.impl.expression.ExpressionFactoryImpl;
+import com.blazebit.persistence.impl.expression.SubqueryExpressionFactory;
 import com.blazebit.persistence.spi.QueryTransformer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,14 +38,35 @@ import javax.persistence.EntityManager;
  */
 public class CriteriaBuilderFactoryImpl implements CriteriaBuilderFactory {
 
+    static final int DEFAULT_QUERY_STRING_CACHE_SIZE = 512;
+
     private final List<QueryTransformer> queryTransformers;
     private final ExpressionFactory expressionFactory;
+    private final ExpressionFactory subqueryExpressionFactory;
     private final Map<String, Object> properties;
+    private final QueryStringCache queryStringCache;
+    private final boolean keySetRowValueComparison;
+    private final KeySetTokenSerializer keySetTokenSerializer;
+    private final boolean inListPadding;
+    private final int inListChunkSize;
+    private final boolean compositeIdRowValueIn;
+    private final boolean canonicalQueryStrings;
+    private final JPAMetadataCache jpaMetadataCache = new JPAMetadataCache();
 
     public CriteriaBuilderFactoryImpl(CriteriaBuilderConfigurationImpl config) {
         this.queryTransformers = new ArrayList<QueryTransformer>(config.getQueryTransformers());
-        this.expressionFactory = new ExpressionFactoryImpl();
         this.properties = copyProperties(config.getProperties());
+        this.queryStringCache = createQueryStringCache(config.getProperty(ConfigurationProperties.QUERY_STRING_CACHE_SIZE));
+
+        int expressionCacheSize = parseSize(ConfigurationProperties.EXPRESSION_CACHE_SIZE, config.getProperty(ConfigurationProperties.EXPRESSION_CACHE_SIZE), AbstractExpressionFactory.DEFAULT_CACHE_SIZE);
+        this.expressionFactory = new ExpressionFactoryImpl(expressionCacheSize);
+        this.subqueryExpressionFactory = new SubqueryExpressionFactory(expressionCacheSize);
+        this.keySetRowValueComparison = Boolean.parseBoolean(config.getProperty(ConfigurationProperties.KEY_SET_ROW_VALUE_COMPARISON));
+        this.keySetTokenSerializer = new KeySetTokenSerializer(config.getProperty(ConfigurationProperties.KEY_SET_TOKEN_SECRET));
+        this.inListPadding = Boolean.parseBoolean(config.getProperty(ConfigurationProperties.IN_LIST_PADDING));
+        this.inListChunkSize = Math.max(0, parseSize(ConfigurationProperties.IN_LIST_CHUNK_SIZE, config.getProperty(ConfigurationProperties.IN_LIST_CHUNK_SIZE), 0));
+        this.compositeIdRowValueIn = Boolean.parseBoolean(config.getProperty(ConfigurationProperties.COMPOSITE_ID_ROW_VALUE_IN));
+        this.canonicalQueryStrings = Boolean.parseBoolean(config.getProperty(ConfigurationProperties.CANONICAL_QUERY_STRINGS));
     }
 
     public List<QueryTransformer> getQueryTransformers() {
@@ -52,10 +77,73 @@ public class CriteriaBuilderFactoryImpl implements CriteriaBuilderFactory {
         return expressionFactory;
     }
 
+    public ExpressionFactory getSubqueryExpressionFactory() {
+        return subqueryExpressionFactory;
+    }
+
     public Map<String, Object> getProperties() {
         return properties;
     }
 
+    public JPAMetadata getJpaMetadata(EntityManager em) {
+        return jpaMetadataCache.getMetadata(em);
+    }
+
+    public QueryStringCache getQueryStringCache() {
+        return queryStringCache;
+    }
+
+    public boolean isKeySetRowValueComparison() {
+        return keySetRowValueComparison;
+    }
+
+    public boolean isInListPadding() {
+        return inListPadding;
+    }
+
+    public int getInListChunkSize() {
+        return inListChunkSize;
+    }
+
+    public boolean isCompositeIdRowValueIn() {
+        return compositeIdRowValueIn;
+    }
+
+    public boolean isCanonicalQueryStrings() {
+        return canonicalQueryStrings;
+    }
+
+    @Override
+    public String serializeKeySet(KeySet keySet) {
+        return keySetTokenSerializer.serialize(keySet);
+    }
+
+    @Override
+    public KeySet deserializeKeySet(String token) {
+        return keySetTokenSerializer.deserialize(token);
+    }
+
+    @Override
+    public long getQueryStringCacheHits() {
+        return queryStringCache == null ? 0 : queryStringCache.getHits();
+    }
+
+    @Override
+    public long getQueryStringCacheMisses() {
+        return queryStringCache == null ? 0 : queryStringCache.getMisses();
+    }
+
+    @Override
+    public void warmUpExpressions(Collection<String> selectExpressions, Collection<String> subqueryExpressions) {
+        // The flags have to match the ones the query builders parse with since they are part of the cache key
+        for (String expression : selectExpressions) {
+            expressionFactory.createSimpleExpression(expression, true);
+        }
+        for (String expression : subqueryExpressions) {
+            expressionFactory.createSimpleExpression(expression);
+        }
+    }
+
     @Override
     public <T> CriteriaBuilder<T> from(EntityManager em, Class<T> clazz) {
         return new CriteriaBuilderImpl<T>(this, em, clazz, clazz.getSimpleName().toLowerCase());
@@ -66,6 +154,28 @@ public class CriteriaBuilderFactoryImpl implements CriteriaBuilderFactory {
         return new CriteriaBuilderImpl<T>(this, em, clazz, alias);
     }
 
+    private static QueryStringCache createQueryStringCache(String sizeValue) {
+        int size = parseSize(ConfigurationProperties.QUERY_STRING_CACHE_SIZE, sizeValue, DEFAULT_QUERY_STRING_CACHE_SIZE);
+
+        if (size <= 0) {
+            return null;
+        }
+
+        return new QueryStringCache(size);
+    }
+
+    private static int parseSize(String propertyName, String sizeValue, int defaultSize) {
+        if (sizeValue == null) {
+            return defaultSize;
+        }
+
+        try {
+            return Integer.parseInt(sizeValue.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value for " + propertyName + ": " + sizeValue, ex);
+        }
+    }
+
     private Map<String, Object> copyProperties(Properties properties) {
         Map<String, Object> newProperties = new HashMap<String, Object>();
 
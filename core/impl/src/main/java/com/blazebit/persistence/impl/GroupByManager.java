@@ -40,6 +40,10 @@ public class GroupByManager extends AbstractManager {
         registerParameterExpressions(expr);
     }
 
+    boolean hasGroupBys() {
+        return !groupByInfos.isEmpty();
+    }
+
     void buildGroupBy(StringBuilder sb) {
         queryGenerator.setQueryBuffer(sb);
         applyGroupBys(queryGenerator, sb, groupByInfos);
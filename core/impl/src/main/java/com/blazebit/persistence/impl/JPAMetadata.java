@@ -0,0 +1,236 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import com.blazebit.persistence.JoinType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EmbeddableType;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+
+/**
+ * Caches the provider capabilities and the metamodel information that is needed for building queries of one persistence unit.
+ * Only derived information is kept so that the cache does not hold references to the metamodel.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class JPAMetadata {
+
+    private final JPAInfo jpaInfo;
+    private final ConcurrentMap<Class<?>, ManagedTypeInfo> managedTypes = new ConcurrentHashMap<Class<?>, ManagedTypeInfo>();
+
+    public JPAMetadata(EntityManager em) {
+        this.jpaInfo = new JPAInfo(em);
+    }
+
+    public JPAInfo getJpaInfo() {
+        return jpaInfo;
+    }
+
+    /**
+     * Returns the paths of the id attributes of the given entity class relative to the entity.
+     * A simple id results in a single path, an embedded id in one path per attribute of the embeddable and
+     * an id class in one path per id attribute. The paths of composite ids are ordered by their names.
+     *
+     * @param metamodel   The metamodel of the persistence unit
+     * @param entityClass The entity class
+     * @return The paths of the id attributes
+     */
+    public String[] getIdAttributePaths(Metamodel metamodel, Class<?> entityClass) {
+        ManagedTypeInfo info = getManagedTypeInfo(entityClass);
+        String[] idAttributePaths = info.idAttributePaths;
+
+        if (idAttributePaths == null) {
+            EntityType<?> entityType = metamodel.entity(entityClass);
+            List<String> paths = new ArrayList<String>();
+
+            if (!entityType.hasSingleIdAttribute()) {
+                for (SingularAttribute<?, ?> idAttribute : entityType.getIdClassAttributes()) {
+                    paths.add(idAttribute.getName());
+                }
+            } else {
+                SingularAttribute<?, ?> idAttribute = entityType.getId(entityType.getIdType().getJavaType());
+
+                if (idAttribute.getType().getPersistenceType() == Type.PersistenceType.EMBEDDABLE) {
+                    for (Attribute<?, ?> attribute : ((EmbeddableType<?>) idAttribute.getType()).getAttributes()) {
+                        paths.add(idAttribute.getName() + "." + attribute.getName());
+                    }
+                } else {
+                    paths.add(idAttribute.getName());
+                }
+            }
+
+            // The attribute sets of the metamodel have no defined order
+            Collections.sort(paths);
+            idAttributePaths = paths.toArray(new String[paths.size()]);
+            info.idAttributePaths = idAttributePaths;
+        }
+
+        return idAttributePaths;
+    }
+
+    /**
+     * Returns the entity name of the given class or the simple class name if the class is not an entity.
+     *
+     * @param metamodel   The metamodel of the persistence unit
+     * @param entityClass The entity class
+     * @return The entity name
+     */
+    public String getEntityName(Metamodel metamodel, Class<?> entityClass) {
+        ManagedTypeInfo info = getManagedTypeInfo(entityClass);
+        String entityName = info.entityName;
+
+        if (entityName == null) {
+            try {
+                entityName = metamodel.entity(entityClass).getName();
+            } catch (IllegalArgumentException ex) {
+                entityName = entityClass.getSimpleName();
+            }
+            info.entityName = entityName;
+        }
+
+        return entityName;
+    }
+
+    /**
+     * Returns the information about the attribute with the given name of the given managed type.
+     *
+     * @param metamodel     The metamodel of the persistence unit
+     * @param type          The managed type class
+     * @param attributeName The name of the attribute
+     * @return The attribute information or null if there is no such attribute
+     */
+    public AttributeInfo getAttributeInfo(Metamodel metamodel, Class<?> type, String attributeName) {
+        ManagedTypeInfo info = getManagedTypeInfo(type);
+        AttributeInfo attributeInfo = info.attributes.get(attributeName);
+
+        if (attributeInfo == null) {
+            ManagedType<?> managedType = metamodel.managedType(type);
+            Attribute<?, ?> attr = managedType.getAttribute(attributeName);
+
+            if (attr == null) {
+                return null;
+            }
+
+            attributeInfo = new AttributeInfo(attr);
+            info.attributes.putIfAbsent(attributeName, attributeInfo);
+        }
+
+        return attributeInfo;
+    }
+
+    private ManagedTypeInfo getManagedTypeInfo(Class<?> type) {
+        ManagedTypeInfo info = managedTypes.get(type);
+
+        if (info == null) {
+            info = new ManagedTypeInfo();
+            ManagedTypeInfo oldInfo = managedTypes.putIfAbsent(type, info);
+
+            if (oldInfo != null) {
+                info = oldInfo;
+            }
+        }
+
+        return info;
+    }
+
+    private static class ManagedTypeInfo {
+
+        // Both values are idempotently computed, so racing writers are fine
+        private volatile String[] idAttributePaths;
+        private volatile String entityName;
+        private final ConcurrentMap<String, AttributeInfo> attributes = new ConcurrentHashMap<String, AttributeInfo>();
+    }
+
+    /**
+     * The information of an attribute that is relevant for joining.
+     *
+     * @author Christian Beikov
+     * @since 1.0
+     */
+    public static class AttributeInfo {
+
+        private final boolean joinable;
+        private final boolean collection;
+        private final Class<?> resolvedFieldClass;
+        private final JoinType modelAwareJoinType;
+        private final boolean nullable;
+
+        private AttributeInfo(Attribute<?, ?> attr) {
+            Attribute.PersistentAttributeType persistentAttributeType = attr.getPersistentAttributeType();
+            boolean singularAssociation = persistentAttributeType == Attribute.PersistentAttributeType.MANY_TO_ONE
+                || persistentAttributeType == Attribute.PersistentAttributeType.ONE_TO_ONE;
+
+            this.collection = attr.isCollection();
+            this.joinable = collection || singularAssociation;
+
+            if (collection) {
+                this.resolvedFieldClass = ((PluralAttribute<?, ?, ?>) attr).getElementType().getJavaType();
+            } else {
+                this.resolvedFieldClass = attr.getJavaType();
+            }
+
+            if (singularAssociation && !((SingularAttribute<?, ?>) attr).isOptional()) {
+                this.modelAwareJoinType = JoinType.INNER;
+            } else {
+                this.modelAwareJoinType = JoinType.LEFT;
+            }
+
+            if (collection) {
+                this.nullable = true;
+            } else {
+                SingularAttribute<?, ?> singularAttr = (SingularAttribute<?, ?>) attr;
+                this.nullable = singularAttr.isOptional() && !singularAttr.isId() && !attr.getJavaType().isPrimitive();
+            }
+        }
+
+        public boolean isJoinable() {
+            return joinable;
+        }
+
+        public boolean isCollection() {
+            return collection;
+        }
+
+        public Class<?> getResolvedFieldClass() {
+            return resolvedFieldClass;
+        }
+
+        public JoinType getModelAwareJoinType() {
+            return modelAwareJoinType;
+        }
+
+        /**
+         * Returns whether the attribute may be null according to the metamodel.
+         *
+         * @return False if the attribute is known to be never null, true otherwise
+         */
+        public boolean isNullable() {
+            return nullable;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Holds the {@link JPAMetadata} per entity manager factory. Entity manager factories are referenced weakly so that closed
+ * persistence units can be garbage collected.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class JPAMetadataCache {
+
+    private final Map<EntityManagerFactory, JPAMetadata> metadata = new WeakHashMap<EntityManagerFactory, JPAMetadata>();
+
+    public JPAMetadata getMetadata(EntityManager em) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+
+        synchronized (metadata) {
+            JPAMetadata jpaMetadata = metadata.get(emf);
+
+            if (jpaMetadata == null) {
+                jpaMetadata = new JPAMetadata(em);
+                metadata.put(emf, jpaMetadata);
+            }
+
+            return jpaMetadata;
+        }
+    }
+}
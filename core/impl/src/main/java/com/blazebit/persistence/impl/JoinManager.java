@@ -51,7 +51,6 @@ import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.ManagedType;
 import javax.persistence.metamodel.Metamodel;
 import javax.persistence.metamodel.PluralAttribute;
-import javax.persistence.metamodel.SingularAttribute;
 import javax.persistence.metamodel.Type;
 
 /**
@@ -73,6 +72,7 @@ public class JoinManager extends AbstractManager {
     private final AliasManager aliasManager;
     private final BaseQueryBuilder<?, ?> aliasOwner;
     private final Metamodel metamodel; // needed for model-aware joins
+    private final JPAMetadata jpaMetadata;
     private final JoinManager parent;
     private final JoinOnBuilderEndedListener joinOnBuilderListener;
     private SubqueryInitiatorFactory subqueryInitFactory;
@@ -81,6 +81,8 @@ public class JoinManager extends AbstractManager {
     // helper collections for join rendering
     private final Set<JoinNode> renderedJoins = Collections.newSetFromMap(new IdentityHashMap<JoinNode, Boolean>());
     private final Set<JoinNode> markedJoinNodes = Collections.newSetFromMap(new IdentityHashMap<JoinNode, Boolean>());
+    // Set as soon as implicit joins have been applied since the join tree and path expressions are resolved afterwards
+    private boolean implicitJoinsApplied = false;
 
     private static enum JoinClauseBuildMode {
 
@@ -89,7 +91,7 @@ public class JoinManager extends AbstractManager {
         ID
     };
 
-    JoinManager(String rootAlias, Class<?> clazz, QueryGenerator queryGenerator, ParameterManager parameterManager, SubqueryInitiatorFactory subqueryInitFactory, ExpressionFactory expressionFactory, JPAInfo jpaInfo, AliasManager aliasManager, BaseQueryBuilder<?, ?> aliasOwner, Metamodel metamodel, JoinManager parent) {
+    JoinManager(String rootAlias, Class<?> clazz, QueryGenerator queryGenerator, ParameterManager parameterManager, SubqueryInitiatorFactory subqueryInitFactory, ExpressionFactory expressionFactory, JPAMetadata jpaMetadata, AliasManager aliasManager, BaseQueryBuilder<?, ?> aliasOwner, Metamodel metamodel, JoinManager parent) {
         super(queryGenerator, parameterManager);
         if (rootAlias == null) {
             rootAlias = aliasManager.generatePostfixedAlias(clazz.getSimpleName().toLowerCase());
@@ -104,7 +106,8 @@ public class JoinManager extends AbstractManager {
         this.aliasOwner = aliasOwner;
         this.metamodel = metamodel;
         this.parent = parent;
-        this.joinRestrictionKeyword = " " + jpaInfo.getOnClause() + " ";
+        this.jpaMetadata = jpaMetadata;
+        this.joinRestrictionKeyword = " " + jpaMetadata.getJpaInfo().getOnClause() + " ";
         this.joinOnBuilderListener = new JoinOnBuilderEndedListener();
         this.subqueryInitFactory = subqueryInitFactory;
         this.expressionFactory = expressionFactory;
@@ -125,13 +128,145 @@ public class JoinManager extends AbstractManager {
     void buildJoins(StringBuilder sb, boolean includeSelect) {
         rootNode.registerDependencies();
         renderedJoins.clear();
-        applyJoins(sb, rootNode.getAliasInfo(), rootNode.getNodes(), includeSelect);
+        applyJoins(sb, rootNode.getAliasInfo(), rootNode.getNodes(), includeSelect, null);
+    }
+
+    /**
+     * Like {@link JoinManager#buildJoins(java.lang.StringBuilder, boolean)} without select only joins, but additionally prunes
+     * LEFT joins to singular associations that are not referenced by the given nodes. Such joins can neither filter nor
+     * multiply the rows of the root entity, so they are irrelevant for a count query.
+     *
+     * @param sb The buffer to render the joins to
+     * @param referencedNodes The join nodes that are referenced by the WHERE, GROUP BY and HAVING clauses
+     */
+    void buildCountJoins(StringBuilder sb, Set<JoinNode> referencedNodes) {
+        rootNode.registerDependencies();
+        renderedJoins.clear();
+        Set<JoinNode> requiredNodes = Collections.newSetFromMap(new IdentityHashMap<JoinNode, Boolean>());
+
+        for (JoinNode node : referencedNodes) {
+            addRequiredNode(requiredNodes, node);
+        }
+
+        collectRequiredNodes(requiredNodes, rootNode.getNodes());
+        applyJoins(sb, rootNode.getAliasInfo(), rootNode.getNodes(), false, requiredNodes);
+    }
+
+    private void collectRequiredNodes(Set<JoinNode> requiredNodes, Map<String, JoinTreeNode> nodes) {
+        for (JoinTreeNode treeNode : nodes.values()) {
+            for (JoinNode node : treeNode.getJoinNodes().values()) {
+                if (node.isSelectOnly()) {
+                    continue;
+                }
+                // Joins that can filter or multiply rows are always required
+                if (node.getType() != JoinType.LEFT || node.isCollection()) {
+                    addRequiredNode(requiredNodes, node);
+                }
+
+                collectRequiredNodes(requiredNodes, node.getNodes());
+            }
+        }
+    }
+
+    private void addRequiredNode(Set<JoinNode> requiredNodes, JoinNode node) {
+        JoinNode current = node;
+
+        while (current != null && requiredNodes.add(current)) {
+            // The nodes used in the ON clause of a required node are required too
+            for (JoinNode dependency : current.getDependencies()) {
+                addRequiredNode(requiredNodes, dependency);
+            }
+
+            current = current.getParent();
+        }
+    }
+
+    /**
+     * Returns whether the join tree contains a join that could multiply the rows of the root entity.
+     *
+     * @return True if a collection join or a right join exists, false otherwise
+     */
+    boolean hasCollectionJoins() {
+        return hasCollectionJoins(rootNode.getNodes(), true);
+    }
+
+    /**
+     * Like {@link JoinManager#hasCollectionJoins()} but only considers the joins that are rendered by
+     * {@link JoinManager#buildJoins(java.lang.StringBuilder, boolean)} with the same includeSelect value.
+     *
+     * @param includeSelect Whether joins that are only required by the select clause should be considered
+     * @return True if a rendered collection join or right join exists, false otherwise
+     */
+    boolean hasCollectionJoins(boolean includeSelect) {
+        return hasCollectionJoins(rootNode.getNodes(), includeSelect);
+    }
+
+    private static boolean hasCollectionJoins(Map<String, JoinTreeNode> nodes, boolean includeSelect) {
+        for (JoinTreeNode treeNode : nodes.values()) {
+            for (JoinNode node : treeNode.getJoinNodes().values()) {
+                if (!includeSelect && node.isSelectOnly()) {
+                    continue;
+                }
+                if (node.isCollection() || node.getType() == JoinType.RIGHT) {
+                    return true;
+                }
+                if (hasCollectionJoins(node.getNodes(), includeSelect)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
     }
 
     void verifyBuilderEnded() {
         joinOnBuilderListener.verifyBuilderEnded();
     }
 
+    boolean isImplicitJoinsApplied() {
+        return implicitJoinsApplied;
+    }
+
+    void setImplicitJoinsApplied(boolean implicitJoinsApplied) {
+        this.implicitJoinsApplied = implicitJoinsApplied;
+    }
+
+    void buildJoinShape(StringBuilder sb) {
+        applyJoinShapes(sb, rootNode.getAliasInfo(), rootNode.getNodes());
+    }
+
+    private void applyJoinShapes(StringBuilder sb, JoinAliasInfo joinBase, Map<String, JoinTreeNode> nodes) {
+        for (Map.Entry<String, JoinTreeNode> nodeEntry : nodes.entrySet()) {
+            JoinTreeNode treeNode = nodeEntry.getValue();
+
+            for (JoinNode node : treeNode.getJoinNodes().values()) {
+                sb.append(' ').append(node.getType());
+                if (node.isFetch()) {
+                    sb.append(" FETCH");
+                }
+                if (treeNode.getDefaultNode() == node) {
+                    sb.append(" DEFAULT");
+                }
+                if (node.getAliasInfo().isImplicit()) {
+                    sb.append(" IMPLICIT");
+                }
+                sb.append(' ').append(joinBase.getAlias()).append('.').append(treeNode.getRelationName()).append(' ').append(node.getAliasInfo().getAlias());
+
+                if (node.getWithPredicate() != null && !node.getWithPredicate().getChildren().isEmpty()) {
+                    sb.append(joinRestrictionKeyword);
+                    queryGenerator.setQueryBuffer(sb);
+                    node.getWithPredicate().accept(queryGenerator);
+                }
+
+                if (!node.getNodes().isEmpty()) {
+                    sb.append(" (");
+                    applyJoinShapes(sb, node.getAliasInfo(), node.getNodes());
+                    sb.append(" )");
+                }
+            }
+        }
+    }
+
     void acceptVisitor(JoinNodeVisitor v) {
         rootNode.accept(v);
     }
@@ -267,7 +402,7 @@ public class JoinManager extends AbstractManager {
         }
     }
 
-    private void applyJoins(StringBuilder sb, JoinAliasInfo joinBase, Map<String, JoinTreeNode> nodes, boolean includeSelect) {
+    private void applyJoins(StringBuilder sb, JoinAliasInfo joinBase, Map<String, JoinTreeNode> nodes, boolean includeSelect, Set<JoinNode> requiredNodes) {
         for (Map.Entry<String, JoinTreeNode> nodeEntry : nodes.entrySet()) {
             JoinTreeNode treeNode = nodeEntry.getValue();
 
@@ -275,6 +410,10 @@ public class JoinManager extends AbstractManager {
                 if ((includeSelect == false && node.isSelectOnly() == true)) {
                     continue;
                 }
+                if (requiredNodes != null && !requiredNodes.contains(node)) {
+                    // Children of a pruned node are pruned too because they would have been required otherwise
+                    continue;
+                }
 
                 if (!node.getDependencies().isEmpty()) {
                     renderReverseDependency(sb, node);
@@ -283,7 +422,7 @@ public class JoinManager extends AbstractManager {
                 renderJoinNode(sb, joinBase, node);
 
                 if (!node.getNodes().isEmpty()) {
-                    applyJoins(sb, node.getAliasInfo(), node.getNodes(), includeSelect);
+                    applyJoins(sb, node.getAliasInfo(), node.getNodes(), includeSelect, requiredNodes);
                 }
             }
         }
@@ -664,14 +803,14 @@ public class JoinManager extends AbstractManager {
                 field = attributeName;
             }
         } else {
-            Class baseNodeType = baseNode.getPropertyClass();
-            Attribute attr = metamodel.managedType(baseNodeType).getAttribute(attributeName);
+            Class<?> baseNodeType = baseNode.getPropertyClass();
+            JPAMetadata.AttributeInfo attr = jpaMetadata.getAttributeInfo(metamodel, baseNodeType, attributeName);
             if (attr == null) {
                 throw new IllegalArgumentException("Field with name "
                         + attributeName + " was not found within class "
                         + baseNodeType.getName());
             }
-            if (isJoinable(attr)) {
+            if (attr.isJoinable()) {
                 throw new IllegalArgumentException("No object leaf allowed but " + attributeName + " is an object leaf");
             }
             newBaseNode = baseNode;
@@ -693,42 +832,16 @@ public class JoinManager extends AbstractManager {
         }
     }
 
-    private boolean isJoinable(Attribute attr) {
-        return attr.isCollection()
-                || attr.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_ONE
-                || attr.getPersistentAttributeType() == Attribute.PersistentAttributeType.ONE_TO_ONE;
-    }
-
-    private Class<?> resolveFieldClass(Attribute attr) {
-        if (attr.isCollection()) {
-            return ((PluralAttribute) attr).getElementType().getJavaType();
-        }
-
-        return attr.getJavaType();
-    }
-
-    private JoinType getModelAwareType(Attribute attr) {
-        if ((attr.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_ONE
-                || attr.getPersistentAttributeType() == Attribute.PersistentAttributeType.ONE_TO_ONE)
-                && ((SingularAttribute) attr).isOptional() == false) {
-            return JoinType.INNER;
-        } else {
-            return JoinType.LEFT;
-        }
-    }
-
     private JoinNode createOrUpdateNode(JoinNode baseNode, String joinRelationName, String alias, JoinType joinType, boolean implicit, boolean defaultJoin) {
         Class<?> baseNodeType = baseNode.getPropertyClass();
-        ManagedType type = metamodel.managedType(baseNodeType);
-        Attribute attr = type.getAttribute(joinRelationName);
+        JPAMetadata.AttributeInfo attr = jpaMetadata.getAttributeInfo(metamodel, baseNodeType, joinRelationName);
         if (attr == null) {
             throw new IllegalArgumentException("Field with name "
                     + joinRelationName + " was not found within class "
                     + baseNodeType.getName());
         }
-        Class<?> resolvedFieldClass = resolveFieldClass(attr);
 
-        if (!isJoinable(attr)) {
+        if (!attr.isJoinable()) {
             LOG.fine(new StringBuilder("Field with name ").append(joinRelationName).append(" of class ").append(baseNodeType.getName()).append(
                     " is parseable and therefore it has not to be fetched explicitly.").toString());
             return baseNode;
@@ -743,10 +856,10 @@ public class JoinManager extends AbstractManager {
             }
         }
         if (joinType == null) {
-            joinType = getModelAwareType(attr);
+            joinType = attr.getModelAwareJoinType();
         }
 
-        JoinNode newNode = getOrCreate(baseNode, joinRelationName, resolvedFieldClass, alias, joinType, "Ambiguous implicit join", implicit, attr.isCollection(), defaultJoin);
+        JoinNode newNode = getOrCreate(baseNode, joinRelationName, attr.getResolvedFieldClass(), alias, joinType, "Ambiguous implicit join", implicit, attr.isCollection(), defaultJoin);
 
         return newNode;
     }
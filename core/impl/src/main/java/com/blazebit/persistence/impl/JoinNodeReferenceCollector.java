@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import com.blazebit.persistence.BaseQueryBuilder;
+import com.blazebit.persistence.impl.expression.PathExpression;
+import com.blazebit.persistence.impl.expression.SubqueryExpression;
+import com.blazebit.persistence.impl.predicate.VisitorAdapter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the join nodes of a query that are referenced by the visited expressions, including correlated references
+ * from within subqueries.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class JoinNodeReferenceCollector extends VisitorAdapter {
+
+    private final AliasManager aliasManager;
+    private final BaseQueryBuilder<?, ?> aliasOwner;
+    private final Set<JoinNode> referencedNodes = new HashSet<JoinNode>();
+
+    public JoinNodeReferenceCollector(AliasManager aliasManager, BaseQueryBuilder<?, ?> aliasOwner) {
+        this.aliasManager = aliasManager;
+        this.aliasOwner = aliasOwner;
+    }
+
+    public Set<JoinNode> getReferencedNodes() {
+        return referencedNodes;
+    }
+
+    @Override
+    public void visit(PathExpression expression) {
+        AliasInfo aliasInfo = aliasManager.getAliasInfo(expression.toString());
+
+        if (aliasInfo != null && aliasInfo instanceof SelectManager.SelectInfo) {
+            ((SelectManager.SelectInfo) aliasInfo).getExpression().accept(this);
+        } else {
+            JoinNode joinNode = (JoinNode) expression.getBaseNode();
+
+            if (joinNode != null && joinNode.getAliasInfo().getAliasOwner() == aliasOwner) {
+                referencedNodes.add(joinNode);
+            }
+        }
+    }
+
+    @Override
+    public void visit(SubqueryExpression expression) {
+        SubqueryBuilderImpl<?> builder = (SubqueryBuilderImpl<?>) expression.getBuilder();
+        builder.applyVisitor(this);
+    }
+}
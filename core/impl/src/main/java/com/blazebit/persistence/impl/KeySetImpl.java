@@ -17,6 +17,7 @@ package com.blazebit.persistence.impl;
 
 import com.blazebit.persistence.KeySet;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  *
@@ -62,4 +63,14 @@ public class KeySetImpl implements KeySet {
     public String[] getOrderByExpressions() {
         return orderByExpressions;
     }
+
+    /**
+     * Returns whether this key set was created for the given order by expressions.
+     *
+     * @param orderByExpressions The absolute order by expressions of a query
+     * @return True if the ordering is the same, false otherwise
+     */
+    public boolean isOrderedBy(String[] orderByExpressions) {
+        return Arrays.equals(this.orderByExpressions, orderByExpressions);
+    }
 }
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import com.blazebit.persistence.KeySet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.UUID;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Serializes key sets into compact URL safe tokens and restores them, so that key set pagination can be used by stateless
+ * clients. A token contains the page position, the page size, the order by expressions and the lowest and highest key
+ * tuples followed by a checksum.
+ *
+ * Key elements are encoded with a type tag, only the common basic types are supported. The checksum is a truncated HMAC of
+ * the content that is keyed with the configured secret, so tokens can't be forged without knowing the secret.
+ * Invalid tokens are never restored, so the pagination falls back to offset pagination.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class KeySetTokenSerializer {
+
+    private static final byte VERSION = 2;
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final int MAX_TUPLE_LENGTH = 64;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final char[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+
+        for (int i = 0; i < BASE64_ALPHABET.length; i++) {
+            BASE64_VALUES[BASE64_ALPHABET[i]] = i;
+        }
+    }
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_SHORT = 4;
+    private static final byte TYPE_BYTE = 5;
+    private static final byte TYPE_DOUBLE = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_BOOLEAN = 8;
+    private static final byte TYPE_CHARACTER = 9;
+    private static final byte TYPE_BIG_DECIMAL = 10;
+    private static final byte TYPE_BIG_INTEGER = 11;
+    private static final byte TYPE_DATE = 12;
+    private static final byte TYPE_SQL_DATE = 13;
+    private static final byte TYPE_SQL_TIME = 14;
+    private static final byte TYPE_SQL_TIMESTAMP = 15;
+    private static final byte TYPE_CALENDAR = 16;
+    private static final byte TYPE_UUID = 17;
+
+    private final byte[] secret;
+
+    /**
+     * Creates a serializer that signs the tokens with the given secret.
+     *
+     * @param secret The secret to use for the checksum or null if key set tokens are not used
+     */
+    public KeySetTokenSerializer(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            this.secret = null;
+        } else {
+            this.secret = toBytes(secret);
+        }
+    }
+
+    /**
+     * Serializes the given key set into a token.
+     *
+     * @param keySet The key set of a paged list
+     * @return The token
+     * @throws IllegalArgumentException if the key set was not created by a paged list or contains unsupported key elements
+     * @throws IllegalStateException if no secret is configured
+     */
+    public String serialize(KeySet keySet) {
+        verifySecret();
+
+        if (keySet == null) {
+            throw new NullPointerException("keySet");
+        }
+        if (!(keySet instanceof KeySetImpl)) {
+            throw new IllegalArgumentException("Invalid key set given. Only key sets of paged lists are allowed.");
+        }
+
+        KeySetImpl keySetImpl = (KeySetImpl) keySet;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(baos);
+
+        try {
+            out.writeByte(VERSION);
+            out.writeInt(keySetImpl.getFirstResult());
+            out.writeInt(keySetImpl.getMaxResults());
+            writeStrings(out, keySetImpl.getOrderByExpressions());
+            writeTuple(out, keySetImpl.getLowest());
+            writeTuple(out, keySetImpl.getHighest());
+            out.write(checksum(baos.toByteArray()));
+            out.flush();
+        } catch (IOException ex) {
+            // Can't happen for in memory streams
+            throw new IllegalStateException(ex);
+        }
+
+        return encode(baos.toByteArray());
+    }
+
+    /**
+     * Restores the key set from the given token.
+     *
+     * @param token The token of a key set
+     * @return The key set or null if the token is invalid
+     * @throws IllegalStateException if no secret is configured
+     */
+    public KeySet deserialize(String token) {
+        verifySecret();
+
+        if (token == null) {
+            return null;
+        }
+
+        byte[] bytes;
+
+        try {
+            bytes = decode(token);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+
+        if (bytes.length <= CHECKSUM_LENGTH) {
+            return null;
+        }
+
+        byte[] content = Arrays.copyOf(bytes, bytes.length - CHECKSUM_LENGTH);
+        byte[] checksum = Arrays.copyOfRange(bytes, content.length, bytes.length);
+
+        if (!MessageDigest.isEqual(checksum, checksum(content))) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+
+        try {
+            if (in.readByte() != VERSION) {
+                return null;
+            }
+
+            int firstResult = in.readInt();
+            int maxResults = in.readInt();
+            String[] orderByExpressions = readStrings(in);
+            Serializable[] lowest = readTuple(in);
+            Serializable[] highest = readTuple(in);
+
+            if (in.available() != 0 || firstResult < 0 || maxResults <= 0) {
+                return null;
+            }
+
+            return new KeySetImpl(firstResult, maxResults, orderByExpressions, lowest, highest);
+        } catch (IOException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private void verifySecret() {
+        if (secret == null) {
+            throw new IllegalStateException("Key set tokens require a secret, configure it with the property " + ConfigurationProperties.KEY_SET_TOKEN_SECRET);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        if (strings.length > MAX_TUPLE_LENGTH) {
+            throw new IllegalArgumentException("Key sets with more than " + MAX_TUPLE_LENGTH + " order by expressions are not supported");
+        }
+
+        out.writeByte(strings.length);
+
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int length = in.readByte();
+
+        if (length < 0 || length > MAX_TUPLE_LENGTH) {
+            throw new IllegalArgumentException("Invalid order by expression count: " + length);
+        }
+
+        String[] strings = new String[length];
+
+        for (int i = 0; i < length; i++) {
+            strings[i] = in.readUTF();
+        }
+
+        return strings;
+    }
+
+    private static void writeTuple(DataOutputStream out, Serializable[] tuple) throws IOException {
+        if (tuple == null) {
+            out.writeByte(-1);
+            return;
+        }
+        if (tuple.length > MAX_TUPLE_LENGTH) {
+            throw new IllegalArgumentException("Key set tuples with more than " + MAX_TUPLE_LENGTH + " elements are not supported");
+        }
+
+        out.writeByte(tuple.length);
+
+        for (Serializable element : tuple) {
+            writeElement(out, element);
+        }
+    }
+
+    private static Serializable[] readTuple(DataInputStream in) throws IOException {
+        int length = in.readByte();
+
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_TUPLE_LENGTH) {
+            throw new IllegalArgumentException("Invalid tuple length: " + length);
+        }
+
+        Serializable[] tuple = new Serializable[length];
+
+        for (int i = 0; i < length; i++) {
+            tuple[i] = readElement(in);
+        }
+
+        return tuple;
+    }
+
+    private static void writeElement(DataOutputStream out, Serializable element) throws IOException {
+        if (element == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (element instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF((String) element);
+        } else if (element instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) element);
+        } else if (element instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) element);
+        } else if (element instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) element);
+        } else if (element instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) element);
+        } else if (element instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) element);
+        } else if (element instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) element);
+        } else if (element instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) element);
+        } else if (element instanceof Character) {
+            out.writeByte(TYPE_CHARACTER);
+            out.writeChar((Character) element);
+        } else if (element instanceof BigDecimal) {
+            BigDecimal value = (BigDecimal) element;
+            out.writeByte(TYPE_BIG_DECIMAL);
+            out.writeInt(value.scale());
+            writeBytes(out, value.unscaledValue().toByteArray());
+        } else if (element instanceof BigInteger) {
+            out.writeByte(TYPE_BIG_INTEGER);
+            writeBytes(out, ((BigInteger) element).toByteArray());
+        } else if (element instanceof java.sql.Timestamp) {
+            java.sql.Timestamp value = (java.sql.Timestamp) element;
+            out.writeByte(TYPE_SQL_TIMESTAMP);
+            out.writeLong(value.getTime());
+            out.writeInt(value.getNanos());
+        } else if (element instanceof java.sql.Date) {
+            out.writeByte(TYPE_SQL_DATE);
+            out.writeLong(((Date) element).getTime());
+        } else if (element instanceof java.sql.Time) {
+            out.writeByte(TYPE_SQL_TIME);
+            out.writeLong(((Date) element).getTime());
+        } else if (element.getClass() == Date.class) {
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((Date) element).getTime());
+        } else if (element instanceof Calendar) {
+            Calendar value = (Calendar) element;
+            out.writeByte(TYPE_CALENDAR);
+            out.writeLong(value.getTimeInMillis());
+            out.writeUTF(value.getTimeZone().getID());
+        } else if (element instanceof UUID) {
+            UUID value = (UUID) element;
+            out.writeByte(TYPE_UUID);
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        } else {
+            throw new IllegalArgumentException("Unsupported key set element type: " + element.getClass().getName());
+        }
+    }
+
+    private static Serializable readElement(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return in.readUTF();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_SHORT:
+                return in.readShort();
+            case TYPE_BYTE:
+                return in.readByte();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_CHARACTER:
+                return in.readChar();
+            case TYPE_BIG_DECIMAL:
+                int scale = in.readInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case TYPE_BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            case TYPE_DATE:
+                return new Date(in.readLong());
+            case TYPE_SQL_DATE:
+                return new java.sql.Date(in.readLong());
+            case TYPE_SQL_TIME:
+                return new java.sql.Time(in.readLong());
+            case TYPE_SQL_TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case TYPE_CALENDAR:
+                long millis = in.readLong();
+                Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(in.readUTF()));
+                calendar.setTimeInMillis(millis);
+                return calendar;
+            case TYPE_UUID:
+                return new UUID(in.readLong(), in.readLong());
+            default:
+                throw new IllegalArgumentException("Unknown key set element type: " + type);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private byte[] checksum(byte[] content) {
+        byte[] checksum;
+
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            checksum = mac.doFinal(content);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Could not compute the key set token checksum", ex);
+        }
+
+        return Arrays.copyOf(checksum, CHECKSUM_LENGTH);
+    }
+
+    /**
+     * Encodes the bytes with the URL safe base64 alphabet and without padding.
+     */
+    private static String encode(byte[] bytes) {
+        StringBuilder sb = new StringBuilder((bytes.length * 4 + 2) / 3);
+        int i = 0;
+
+        for (; i + 2 < bytes.length; i += 3) {
+            int value = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            sb.append(BASE64_ALPHABET[value >>> 18])
+                .append(BASE64_ALPHABET[(value >>> 12) & 0x3F])
+                .append(BASE64_ALPHABET[(value >>> 6) & 0x3F])
+                .append(BASE64_ALPHABET[value & 0x3F]);
+        }
+
+        int remaining = bytes.length - i;
+
+        if (remaining == 1) {
+            int value = (bytes[i] & 0xFF) << 16;
+            sb.append(BASE64_ALPHABET[value >>> 18])
+                .append(BASE64_ALPHABET[(value >>> 12) & 0x3F]);
+        } else if (remaining == 2) {
+            int value = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8;
+            sb.append(BASE64_ALPHABET[value >>> 18])
+                .append(BASE64_ALPHABET[(value >>> 12) & 0x3F])
+                .append(BASE64_ALPHABET[(value >>> 6) & 0x3F]);
+        }
+
+        return sb.toString();
+    }
+
+    private static byte[] decode(String token) {
+        int length = token.length();
+
+        if (length % 4 == 1) {
+            throw new IllegalArgumentException("Invalid token length: " + length);
+        }
+
+        byte[] bytes = new byte[length * 3 / 4];
+        int value = 0;
+        int bits = 0;
+        int index = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            int digit = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+
+            if (digit == -1) {
+                throw new IllegalArgumentException("Invalid token character: " + c);
+            }
+
+            value = value << 6 | digit;
+            bits += 6;
+
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[index++] = (byte) (value >>> bits);
+                value &= (1 << bits) - 1;
+            }
+        }
+
+        return bytes;
+    }
+
+    private static byte[] toBytes(String secret) {
+        try {
+            return secret.getBytes("UTF-8");
+        } catch (java.io.UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import com.blazebit.persistence.ObjectBuilder;
+import com.blazebit.persistence.ResultIterator;
+
+/**
+ * Builds the results of a result iterator row by row with an object builder.
+ *
+ * @param <T> The type of the results
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class ObjectBuilderResultIterator<T> implements ResultIterator<T> {
+
+    private final ResultIterator<Object[]> rowIterator;
+    private final ObjectBuilder<T> objectBuilder;
+
+    /**
+     * Creates a new iterator.
+     *
+     * @param rowIterator The iterator over the result rows
+     * @param objectBuilder The object builder or null if the rows are the results
+     */
+    public ObjectBuilderResultIterator(ResultIterator<Object[]> rowIterator, ObjectBuilder<T> objectBuilder) {
+        this.rowIterator = rowIterator;
+        this.objectBuilder = objectBuilder;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rowIterator.hasNext();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        Object[] row = rowIterator.next();
+
+        if (objectBuilder == null) {
+            // Same as for untyped JPA queries, a single select item is not wrapped in an array
+            return (T) (row.length == 1 ? row[0] : row);
+        }
+
+        return objectBuilder.build(row);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing is not supported");
+    }
+
+    @Override
+    public void close() {
+        rowIterator.close();
+    }
+}
@@ -16,6 +16,8 @@
 package com.blazebit.persistence.impl;
 
 import com.blazebit.persistence.impl.expression.Expression;
+import com.blazebit.persistence.impl.expression.ExpressionVisitorAdapter;
+import com.blazebit.persistence.impl.expression.PathExpression;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -29,6 +31,8 @@ import java.util.List;
 public class OrderByManager extends AbstractManager {
 
     private final List<OrderByInfo> orderByInfos = new ArrayList<OrderByInfo>();
+    // The order by items of a grouping object builder which are rendered after all other order by items
+    private final List<OrderByInfo> groupingOrderByInfos = new ArrayList<OrderByInfo>();
     private final AliasManager aliasManager;
     private final String fromClassName;
 
@@ -58,6 +62,27 @@ public class OrderByManager extends AbstractManager {
         return realExpressions;
     }
 
+    /**
+     * Like {@link #getRealExpressions()} but additionally returns the ordering of the expressions.
+     *
+     * @return The order by expressions with select aliases replaced by the select expressions
+     */
+    List<OrderByExpression> getRealOrderByExpressions() {
+        if (orderByInfos.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Expression> realExpressions = getRealExpressions();
+        List<OrderByExpression> orderByExpressions = new ArrayList<OrderByExpression>(orderByInfos.size());
+
+        for (int i = 0; i < orderByInfos.size(); i++) {
+            OrderByInfo orderByInfo = orderByInfos.get(i);
+            orderByExpressions.add(new OrderByExpression(realExpressions.get(i), orderByInfo.ascending, orderByInfo.nullFirst));
+        }
+
+        return orderByExpressions;
+    }
+
     String[] getAbsoluteExpressionStrings() {
         if (orderByInfos.isEmpty()) {
             return new String[0];
@@ -127,16 +152,63 @@ public class OrderByManager extends AbstractManager {
         registerParameterExpressions(expr);
     }
 
+    /**
+     * Adds an ascending order by item that is rendered after all order by items added with
+     * {@link #orderBy(com.blazebit.persistence.impl.expression.Expression, boolean, boolean)}.
+     *
+     * @param expr The grouping expression of a {@link com.blazebit.persistence.GroupingObjectBuilder}
+     */
+    void groupingOrderBy(Expression expr) {
+        groupingOrderByInfos.add(new OrderByInfo(expr, true, false));
+        registerParameterExpressions(expr);
+    }
+
+    /**
+     * Verifies that no order by item refers to a collection if grouping order by items exist, since the tuples of a group
+     * would not be adjacent otherwise. The implicit joins must have been applied before.
+     */
+    void verifyGroupingOrderBys() {
+        if (groupingOrderByInfos.isEmpty()) {
+            return;
+        }
+
+        Expression.Visitor collectionVisitor = new ExpressionVisitorAdapter() {
+
+            @Override
+            public void visit(PathExpression expression) {
+                JoinNode node = (JoinNode) expression.getBaseNode();
+
+                while (node != null) {
+                    if (node.isCollection()) {
+                        throw new IllegalStateException("The order by item '" + expression + "' refers to a collection which is not allowed for a grouping object builder");
+                    }
+
+                    node = node.getParent();
+                }
+            }
+        };
+
+        for (Expression expression : getRealExpressions()) {
+            expression.accept(collectionVisitor);
+        }
+    }
+
     void acceptVisitor(Expression.Visitor v) {
         for (OrderByInfo orderBy : orderByInfos) {
             orderBy.getExpression().accept(v);
         }
+        for (OrderByInfo orderBy : groupingOrderByInfos) {
+            orderBy.getExpression().accept(v);
+        }
     }
 
     void applyTransformer(ExpressionTransformer transformer) {
         for (OrderByInfo orderBy : orderByInfos) {
             orderBy.setExpression(transformer.transform(orderBy.getExpression()));
         }
+        for (OrderByInfo orderBy : groupingOrderByInfos) {
+            orderBy.setExpression(transformer.transform(orderBy.getExpression()));
+        }
     }
 
     void buildSelectClauses(StringBuilder sb, boolean allClauses) {
@@ -180,33 +252,75 @@ public class OrderByManager extends AbstractManager {
     }
 
     void buildOrderBy(StringBuilder sb) {
-        if (orderByInfos.isEmpty()) {
+        buildOrderBy(sb, false);
+    }
+
+    /**
+     * Renders the ORDER BY clause, optionally with every item in the reverse direction and null ordering, which is used to
+     * fetch the elements before a key set.
+     */
+    void buildOrderBy(StringBuilder sb, boolean reverse) {
+        if (orderByInfos.isEmpty() && groupingOrderByInfos.isEmpty()) {
             return;
         }
         queryGenerator.setQueryBuffer(sb);
         sb.append(" ORDER BY ");
-        Iterator<OrderByInfo> iter = orderByInfos.iterator();
-        applyOrderBy(sb, iter.next());
-        while (iter.hasNext()) {
-            sb.append(", ");
-            applyOrderBy(sb, iter.next());
+        boolean first = true;
+        for (OrderByInfo orderByInfo : orderByInfos) {
+            if (!first) {
+                sb.append(", ");
+            }
+            applyOrderBy(sb, orderByInfo, reverse);
+            first = false;
+        }
+        for (OrderByInfo orderByInfo : groupingOrderByInfos) {
+            if (!first) {
+                sb.append(", ");
+            }
+            applyOrderBy(sb, orderByInfo, reverse);
+            first = false;
         }
     }
 
-    private void applyOrderBy(StringBuilder sb, OrderByInfo orderBy) {
+    private void applyOrderBy(StringBuilder sb, OrderByInfo orderBy, boolean reverse) {
         orderBy.getExpression().accept(queryGenerator);
-        if (!orderBy.ascending) {
+        if (orderBy.ascending == reverse) {
             sb.append(" DESC");
         } else {
             sb.append(" ASC");
         }
-        if (orderBy.nullFirst) {
+        if (orderBy.nullFirst != reverse) {
             sb.append(" NULLS FIRST");
         } else {
             sb.append(" NULLS LAST");
         }
     }
 
+    static class OrderByExpression {
+
+        private final Expression expression;
+        private final boolean ascending;
+        private final boolean nullFirst;
+
+        OrderByExpression(Expression expression, boolean ascending, boolean nullFirst) {
+            this.expression = expression;
+            this.ascending = ascending;
+            this.nullFirst = nullFirst;
+        }
+
+        public Expression getExpression() {
+            return expression;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+
+        public boolean isNullFirst() {
+            return nullFirst;
+        }
+    }
+
     private static class OrderByInfo extends NodeInfo {
 
         private boolean ascending;
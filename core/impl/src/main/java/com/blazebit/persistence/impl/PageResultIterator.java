@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import com.blazebit.persistence.ResultIterator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A result iterator over the results of an already built page. Unlike {@link ResultListIterator}, the results are returned as
+ * they are and are not treated as rows.
+ *
+ * @param <T> The type of the results
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class PageResultIterator<T> implements ResultIterator<T> {
+
+    private final Iterator<T> iterator;
+
+    public PageResultIterator(List<T> page) {
+        this.iterator = page.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing is not supported");
+    }
+
+    @Override
+    public void close() {
+    }
+}
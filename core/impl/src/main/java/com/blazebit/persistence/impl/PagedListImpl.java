@@ -31,16 +31,22 @@ public class PagedListImpl<T> extends ArrayList<T> implements PagedList<T> {
 
     private final KeySet keySet;
     private final long totalSize;
+    private final boolean totalSizeKnown;
+    private final boolean hasNextPage;
 
     public PagedListImpl(long totalSize) {
         this.keySet = null;
         this.totalSize = totalSize;
+        this.totalSizeKnown = true;
+        this.hasNextPage = false;
     }
 
-    PagedListImpl(Collection<? extends T> collection, KeySet keySet, long totalSize) {
+    PagedListImpl(Collection<? extends T> collection, KeySet keySet, long totalSize, boolean totalSizeKnown, boolean hasNextPage) {
         super(collection);
         this.keySet = keySet;
         this.totalSize = totalSize;
+        this.totalSizeKnown = totalSizeKnown;
+        this.hasNextPage = hasNextPage;
     }
 
     @Override
@@ -48,6 +54,16 @@ public class PagedListImpl<T> extends ArrayList<T> implements PagedList<T> {
         return totalSize;
     }
 
+    @Override
+    public boolean isTotalSizeKnown() {
+        return totalSizeKnown;
+    }
+
+    @Override
+    public boolean hasNextPage() {
+        return hasNextPage;
+    }
+
     @Override
     public KeySet getKeySet() {
         return keySet;
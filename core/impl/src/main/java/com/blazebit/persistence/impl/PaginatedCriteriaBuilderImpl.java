@@ -16,24 +16,40 @@
 package com.blazebit.persistence.impl;
 
 import com.blazebit.persistence.CaseWhenBuilder;
+import com.blazebit.persistence.JoinType;
 import com.blazebit.persistence.KeySet;
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.PagedList;
 import com.blazebit.persistence.PaginatedCriteriaBuilder;
 import com.blazebit.persistence.QueryBuilder;
+import com.blazebit.persistence.ResultIterator;
 import com.blazebit.persistence.SelectObjectBuilder;
 import com.blazebit.persistence.SimpleCaseWhenBuilder;
 import com.blazebit.persistence.SubqueryInitiator;
 import com.blazebit.persistence.impl.expression.Expression;
+import com.blazebit.persistence.impl.expression.PathExpression;
+import com.blazebit.persistence.impl.objectbuilder.KeySetExtractingObjectBuilder;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
 import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.metamodel.EntityType;
-import javax.persistence.metamodel.Metamodel;
 
 /**
  *
@@ -44,6 +60,8 @@ import javax.persistence.metamodel.Metamodel;
 public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, PaginatedCriteriaBuilder<T>> implements PaginatedCriteriaBuilder<T> {
 
     private static final String KEY_SET_PARAMETER_NAME = "_keySetParameter";
+    private static final String TRUE_PREDICATE = "1 = 1";
+    private static final String FALSE_PREDICATE = "1 = 0";
 
     private final boolean extractKeySet;
     private final KeySetImpl keySet;
@@ -53,6 +71,7 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
     private String[] orderByExpressionStrings;
     private KeySetMode keySetMode = KeySetMode.NONE;
     private boolean needsNewIdList = false;
+    private boolean withCountQuery = true;
 
     private static enum KeySetMode {
 
@@ -87,7 +106,7 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
             return KeySetMode.NONE;
         }
         // Ordering has changed
-        if (!Arrays.equals(keySet.getOrderByExpressions(), orderByExpressionStrings)) {
+        if (!keySet.isOrderedBy(orderByExpressionStrings)) {
             return KeySetMode.NONE;
         }
 
@@ -124,6 +143,19 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
         return key != null && key.length == orderByExpressionStrings.length;
     }
 
+    @Override
+    public PaginatedCriteriaBuilder<T> withCountQuery(boolean withCountQuery) {
+        this.withCountQuery = withCountQuery;
+        return this;
+    }
+
+    @Override
+    public ResultIterator<T> getResultIterator() {
+        // A page is bounded by the max results, so iterating the already built page is fine
+        List<T> page = getResultList();
+        return new PageResultIterator<T>(page);
+    }
+
     @Override
     public PagedList<T> getResultList() {
         if (!orderByManager.hasOrderBys()) {
@@ -131,46 +163,222 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
         }
 
         applyImplicitJoins();
-        
-        String countQueryString = getPageCountQueryString();
-        TypedQuery<Long> countQuery = em.createQuery(countQueryString, Long.class);
-        parameterizeQuery(countQuery);
 
-        long totalSize = countQuery.getSingleResult();
+        long totalSize = -1L;
+
+        if (withCountQuery) {
+            String countQueryString = getPageCountQueryString();
+            TypedQuery<Long> countQuery = em.createQuery(countQueryString, Long.class);
+            parameterizeQuery(countQuery, countQueryString);
+
+            totalSize = countQuery.getSingleResult();
+
+            if (totalSize == 0L) {
+                return new PagedListImpl<T>(totalSize);
+            }
+        }
+
+        return getPage(em, totalSize);
+    }
+
+    @Override
+    public Future<PagedList<T>> getResultListAsync(EntityManagerFactory countEntityManagerFactory, Executor executor) {
+        if (countEntityManagerFactory == null) {
+            throw new NullPointerException("countEntityManagerFactory");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (!orderByManager.hasOrderBys()) {
+            throw new IllegalStateException("Pagination requires at least one order by item!");
+        }
+
+        applyImplicitJoins();
+
+        if (!withCountQuery) {
+            return new PagedListFuture<T>(null, getPage(em, -1L));
+        }
+
+        EntityManager countEntityManager = countEntityManagerFactory.createEntityManager();
+        FutureTask<Long> countTask;
+
+        try {
+            // The query is created and parameterized here because the parameters may change while the count query runs
+            String countQueryString = getPageCountQueryString();
+            TypedQuery<Long> countQuery = countEntityManager.createQuery(countQueryString, Long.class);
+            parameterizeQuery(countQuery, countQueryString);
+            countTask = new FutureTask<Long>(new CountQueryCallable(countEntityManager, countQuery));
+            executor.execute(countTask);
+        } catch (RuntimeException ex) {
+            countEntityManager.close();
+            throw ex;
+        }
+
+        // The count task closes the entity manager itself, so it is not cancelled when the page can't be fetched
+        return new PagedListFuture<T>(countTask, getPage(em, -1L));
+    }
+
+    @Override
+    public ResultIterator<T> getChunkedResultIterator() {
+        return getChunkedResultIterator(false);
+    }
+
+    @Override
+    public ResultIterator<T> getChunkedResultIterator(boolean clearPersistenceContext) {
+        if (!orderByManager.hasOrderBys()) {
+            throw new IllegalStateException("Pagination requires at least one order by item!");
+        }
+
+        return new ChunkedResultIterator(null, null, clearPersistenceContext);
+    }
+
+    @Override
+    public ResultIterator<T> getChunkedResultIterator(EntityManagerFactory prefetchEntityManagerFactory, Executor executor) {
+        if (prefetchEntityManagerFactory == null) {
+            throw new NullPointerException("prefetchEntityManagerFactory");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (!orderByManager.hasOrderBys()) {
+            throw new IllegalStateException("Pagination requires at least one order by item!");
+        }
+
+        return new ChunkedResultIterator(prefetchEntityManagerFactory, executor, false);
+    }
+
+    /**
+     * Creates the builder for the chunk at the given position with key set pagination and without a count query.
+     * The builder shares the state of the base builder, like a builder created by
+     * {@link AbstractQueryBuilder#page(com.blazebit.persistence.KeySet, int, int)}, so it must only be used by the thread that
+     * consumes the chunks.
+     */
+    private PaginatedCriteriaBuilderImpl<T> createChunkBuilder(KeySet chunkKeySet, int chunkFirstRow) {
+        PaginatedCriteriaBuilderImpl<T> chunkBuilder = new PaginatedCriteriaBuilderImpl<T>(baseBuilder, true, (KeySetImpl) chunkKeySet, chunkFirstRow, pageSize);
+        chunkBuilder.applyImplicitJoins();
+        return chunkBuilder;
+    }
+
+    /**
+     * Fetches the page with the id query and the object query or only the object query if possible.
+     *
+     * @param entityManager The entity manager to use for the queries
+     * @param totalSize The result of the count query or -1 if the count query was not executed
+     */
+    private PagedList<T> getPage(EntityManager entityManager, long totalSize) {
+        PageQuery pageQuery = createPageQuery(entityManager, totalSize);
+        return pageQuery.getPage(pageQuery.execute());
+    }
+
+    /**
+     * Creates the first query of the page, which is the object query if the page can be fetched with a single query, see
+     * {@link #isSingleQuery()}, and the id query otherwise. The query is rendered and parameterized completely, so that it can
+     * be executed by another thread without accessing this builder.
+     *
+     * @param entityManager The entity manager to use for the queries
+     * @param totalSize The result of the count query or -1 if the count query was not executed
+     */
+    private PageQuery createPageQuery(EntityManager entityManager, long totalSize) {
+        // Without a count query we fetch one more element to know if there is a next page
+        int maxResults = totalSize != -1L ? pageSize : pageSize + 1;
+
+        if (isSingleQuery()) {
+            String queryString = getSingleQueryString();
+            ObjectBuilder<T> objectBuilder = selectManager.getSelectObjectBuilder();
+            KeySetExtractingObjectBuilder<T> keySetObjectBuilder = null;
+
+            if (extractKeySet) {
+                // The key set elements are selected after the actual select items
+                int selectSize = selectManager.getSelectInfos().isEmpty() ? 1 : selectManager.getSelectInfos().size();
+                keySetObjectBuilder = new KeySetExtractingObjectBuilder<T>(objectBuilder, selectSize, orderByExpressionStrings.length);
+                objectBuilder = keySetObjectBuilder;
+            }
+
+            Query query = getQuery(entityManager, queryString, objectBuilder)
+                .setMaxResults(maxResults);
+
+            if (keySetMode == KeySetMode.NONE) {
+                query.setFirstResult(firstRow);
+            }
 
-        if (totalSize == 0L) {
-            return new PagedListImpl<T>(totalSize);
+            return new PageQuery(entityManager, query, totalSize, true, keySetObjectBuilder);
         }
 
         String idQueryString = getPageIdQueryString();
-        Query idQuery = em.createQuery(idQueryString)
-            .setMaxResults(pageSize);
+        Query idQuery = entityManager.createQuery(idQueryString)
+            .setMaxResults(maxResults);
 
         if (keySetMode == KeySetMode.NONE) {
             idQuery.setFirstResult(firstRow);
         }
 
-        parameterizeQuery(idQuery);
-        List ids = idQuery.getResultList();
+        parameterizeQuery(idQuery, idQueryString);
+        return new PageQuery(entityManager, idQuery, totalSize, false, null);
+    }
+
+    /**
+     * Builds the page from the ids of the id query by executing the object query.
+     */
+    private PagedList<T> getIdQueryPage(EntityManager entityManager, List<?> ids, long totalSize) {
+        boolean totalSizeKnown = totalSize != -1L;
 
         if (ids.isEmpty()) {
             // TODO: maybe we need to add the previous keyset here?
-            return new PagedListImpl<T>(totalSize);
+            if (totalSizeKnown) {
+                return new PagedListImpl<T>(totalSize);
+            }
+
+            // Without a count query nothing is known about the elements before an empty page
+            return new PagedListImpl<T>(Collections.<T>emptyList(), null, -1L, false, false);
+        }
+
+        boolean previous = keySetMode == KeySetMode.PREVIOUS;
+        boolean hasNextPage;
+
+        if (totalSizeKnown) {
+            hasNextPage = firstRow + ids.size() < totalSize;
+        } else {
+            boolean hasMoreElements = ids.size() > pageSize;
+
+            if (hasMoreElements) {
+                ids = new ArrayList<Object>(ids.subList(0, pageSize));
+            }
+
+            // When going back, the additional element lies before the page and the page of the key set comes next
+            hasNextPage = previous || hasMoreElements;
+            // The elements before the page and the ones on the page plus at least the next one exist
+            totalSize = firstRow + ids.size() + (hasNextPage ? 1 : 0);
+        }
+
+        if (previous) {
+            // The ids before the key set were fetched in reverse order
+            ids = new ArrayList<Object>(ids);
+            Collections.reverse(ids);
         }
 
         Serializable[] lowest = null;
         Serializable[] highest = null;
 
+        int idSize = getIdClauses().length;
+
         if (needsNewIdList) {
             if (extractKeySet) {
-                lowest = extractKey((Object[]) ids.get(0), 1);
-                highest = extractKey((Object[]) ids.get(ids.size() - 1), 1);
+                lowest = extractKey((Object[]) ids.get(0), idSize);
+                highest = extractKey((Object[]) ids.get(ids.size() - 1), idSize);
             }
 
-            List newIds = new ArrayList(ids.size());
+            List<Object> newIds = new ArrayList<Object>(ids.size());
 
             for (int i = 0; i < ids.size(); i++) {
-                newIds.add(((Object[]) ids.get(i))[0]);
+                Object[] tuple = (Object[]) ids.get(i);
+
+                if (idSize == 1) {
+                    newIds.add(tuple[0]);
+                } else {
+                    Object[] id = new Object[idSize];
+                    System.arraycopy(tuple, 0, id, 0, idSize);
+                    newIds.add(id);
+                }
             }
 
             ids = newIds;
@@ -178,16 +386,198 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
 
         parameterManager.addParameterMapping(idParamName, ids);
 
+        if (idSize > 1) {
+            // Composite ids are restricted by comparing every id attribute with its own parameter, padding ids repeat the last one
+            int idTupleCount = getCompositeIdTupleCount();
+
+            for (int i = 0; i < idTupleCount; i++) {
+                Object[] id = (Object[]) ids.get(Math.min(i, ids.size() - 1));
+
+                for (int j = 0; j < idSize; j++) {
+                    parameterManager.addParameterMapping(getCompositeIdParameterName(i, j), id[j]);
+                }
+            }
+        }
+
         KeySet newKeySet = null;
 
         if (extractKeySet) {
             newKeySet = new KeySetImpl(firstRow, pageSize, orderByExpressionStrings, lowest, highest);
         }
 
-        PagedList<T> pagedResultList = new PagedListImpl<T>(super.getResultList(), newKeySet, totalSize);
+        PagedList<T> pagedResultList = new PagedListImpl<T>(getQuery(entityManager).getResultList(), newKeySet, totalSize, totalSizeKnown, hasNextPage);
         return pagedResultList;
     }
 
+    /**
+     * Builds the page from the results of the object query that was executed with the limits of the page applied.
+     */
+    private PagedList<T> getSingleQueryPage(List<T> resultList, long totalSize, KeySetExtractingObjectBuilder<T> keySetObjectBuilder) {
+        boolean totalSizeKnown = totalSize != -1L;
+
+        if (resultList.isEmpty()) {
+            if (totalSizeKnown) {
+                return new PagedListImpl<T>(totalSize);
+            }
+
+            // Without a count query nothing is known about the elements before an empty page
+            return new PagedListImpl<T>(Collections.<T>emptyList(), null, -1L, false, false);
+        }
+
+        boolean previous = keySetMode == KeySetMode.PREVIOUS;
+        boolean hasNextPage;
+
+        if (totalSizeKnown) {
+            hasNextPage = firstRow + resultList.size() < totalSize;
+        } else {
+            boolean hasMoreElements = resultList.size() > pageSize;
+
+            if (hasMoreElements) {
+                resultList = new ArrayList<T>(resultList.subList(0, pageSize));
+            }
+
+            // When going back, the additional element lies before the page and the page of the key set comes next
+            hasNextPage = previous || hasMoreElements;
+            totalSize = firstRow + resultList.size() + (hasNextPage ? 1 : 0);
+        }
+
+        KeySet newKeySet = null;
+
+        if (extractKeySet) {
+            // The keys are in the order of the fetched rows, which is the reverse order when going back
+            int lastIndex = resultList.size() - 1;
+            Serializable[] lowest = keySetObjectBuilder.getKey(previous ? lastIndex : 0);
+            Serializable[] highest = keySetObjectBuilder.getKey(previous ? 0 : lastIndex);
+            newKeySet = new KeySetImpl(firstRow, pageSize, orderByExpressionStrings, lowest, highest);
+        }
+
+        if (previous) {
+            resultList = new ArrayList<T>(resultList);
+            Collections.reverse(resultList);
+        }
+
+        return new PagedListImpl<T>(resultList, newKeySet, totalSize, totalSizeKnown, hasNextPage);
+    }
+
+    /**
+     * Returns whether the page can be fetched with a single query. This is the case when the join tree contains
+     * no collection joins, because then every row of the object query corresponds to exactly one root entity and
+     * the limits can be applied to the object query directly instead of fetching the ids first.
+     * Grouped and distinct queries are excluded because the key set elements can't be selected additionally.
+     * The key set elements are removed from the rows by an object builder, which requires a query transformer.
+     */
+    private boolean isSingleQuery() {
+        if (joinManager.hasCollectionJoins() || groupByManager.hasGroupBys() || selectManager.isDistinct()) {
+            return false;
+        }
+
+        return !extractKeySet || !cbf.getQueryTransformers().isEmpty();
+    }
+
+    private void prepareKeySetMode() {
+        orderByExpressionStrings = orderByManager.getAbsoluteExpressionStrings();
+        keySetMode = getKeySetMode();
+    }
+
+    /**
+     * Returns the id attribute paths of the root entity qualified with the root alias.
+     */
+    private String[] getIdClauses() {
+        String[] idPaths = jpaMetadata.getIdAttributePaths(em.getMetamodel(), fromClazz);
+        String[] idClauses = new String[idPaths.length];
+
+        for (int i = 0; i < idPaths.length; i++) {
+            idClauses[i] = joinManager.getRootAlias() + "." + idPaths[i];
+        }
+
+        return idClauses;
+    }
+
+    /**
+     * Returns the number of id tuples that the composite id restriction of the object query renders. This is the number of
+     * fetched ids, padded to the next power of two with IN list padding, so that the query string only changes for a few
+     * page sizes. Before the ids are fetched, the number of elements of a full page is assumed.
+     */
+    private int getCompositeIdTupleCount() {
+        Object ids = parameterManager.getParameterValue(idParamName);
+        int size = pageSize;
+
+        if (ids instanceof Collection<?> && !((Collection<?>) ids).isEmpty()) {
+            size = ((Collection<?>) ids).size();
+        }
+
+        if (cbf.isInListPadding() && size > 1) {
+            return Integer.highestOneBit(size - 1) << 1;
+        }
+
+        return size;
+    }
+
+    /**
+     * Restricts the object query to the ids of the page with a row value IN predicate if enabled, or by OR-ing the equality
+     * of every id tuple otherwise.
+     * (a, b) IN ((:ids_0_0, :ids_0_1), (:ids_1_0, :ids_1_1)) => ((a = :ids_0_0 AND b = :ids_0_1) OR (a = :ids_1_0 AND b = :ids_1_1))
+     * The number of id tuples is determined by {@link #getCompositeIdTupleCount()}.
+     */
+    private void applyCompositeIdClause(StringBuilder sbRemaining, String[] idClauses) {
+        int idTupleCount = getCompositeIdTupleCount();
+
+        if (cbf.isCompositeIdRowValueIn()) {
+            sbRemaining.append(" WHERE (");
+            appendJoined(sbRemaining, idClauses);
+            sbRemaining.append(") IN (");
+
+            for (int i = 0; i < idTupleCount; i++) {
+                if (i != 0) {
+                    sbRemaining.append(", ");
+                }
+
+                sbRemaining.append('(');
+
+                for (int j = 0; j < idClauses.length; j++) {
+                    if (j != 0) {
+                        sbRemaining.append(", ");
+                    }
+
+                    sbRemaining.append(':').append(getCompositeIdParameterName(i, j));
+                }
+
+                sbRemaining.append(')');
+            }
+
+            sbRemaining.append(')');
+            return;
+        }
+
+        sbRemaining.append(" WHERE (");
+
+        for (int i = 0; i < idTupleCount; i++) {
+            if (i != 0) {
+                sbRemaining.append(" OR ");
+            }
+
+            sbRemaining.append('(');
+
+            for (int j = 0; j < idClauses.length; j++) {
+                if (j != 0) {
+                    sbRemaining.append(" AND ");
+                }
+
+                sbRemaining.append(idClauses[j])
+                    .append(" = :")
+                    .append(getCompositeIdParameterName(i, j));
+            }
+
+            sbRemaining.append(')');
+        }
+
+        sbRemaining.append(')');
+    }
+
+    private static String getCompositeIdParameterName(int idIndex, int attributeIndex) {
+        return new StringBuilder(idParamName).append('_').append(idIndex).append('_').append(attributeIndex).toString();
+    }
+
     private Serializable[] extractKey(Object[] tuple, int offset) {
         Serializable[] key = new Serializable[tuple.length - offset];
         System.arraycopy(tuple, offset, key, 0, key.length);
@@ -202,20 +592,12 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
         applyImplicitJoins();
         applyExpressionTransformers();
 
-        Metamodel m = em.getMetamodel();
-        EntityType<?> entityType = m.entity(fromClazz);
-        String idName = entityType.getId(entityType.getIdType()
-            .getJavaType())
-            .getName();
-
-        String idClause = new StringBuilder(joinManager.getRootAlias())
-            .append('.')
-            .append(idName)
-            .toString();
+        // JPQL can't count tuples, but id attributes are never null, so counting the first one of a composite id is the same
+        String idClause = getIdClauses()[0];
 
         sbSelectFrom.append("SELECT COUNT(").append(idClause).append(')');
         sbSelectFrom.append(" FROM ")
-            .append(fromClazz.getSimpleName())
+            .append(jpaMetadata.getEntityName(em.getMetamodel(), fromClazz))
             .append(' ')
             .append(joinManager.getRootAlias());
 
@@ -224,7 +606,13 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
         groupByManager.buildGroupBy(sbRemaining);
         havingManager.buildClause(sbRemaining);
 
-        joinManager.buildJoins(sbSelectFrom, false);
+        // Only the joins used for filtering or that multiply rows are relevant for the count
+        JoinNodeReferenceCollector referenceCollector = new JoinNodeReferenceCollector(aliasManager, baseBuilder);
+        whereManager.acceptVisitor(referenceCollector);
+        groupByManager.acceptVisitor(referenceCollector);
+        havingManager.acceptVisitor(referenceCollector);
+
+        joinManager.buildCountJoins(sbSelectFrom, referenceCollector.getReferencedNodes());
         addWhereClauseConjuncts(sbRemaining, false);
 
         return sbSelectFrom.append(sbRemaining).toString();
@@ -233,30 +621,45 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
     @Override
     public String getQueryString() {
         verifyBuilderEnded();
-        StringBuilder sbSelectFrom = new StringBuilder();
         applyImplicitJoins(); //TODO: redundant
         applyExpressionTransformers();
 
-        Metamodel m = em.getMetamodel();
-        EntityType<?> entityType = m.entity(fromClazz);
-        String idName = entityType.getId(entityType.getIdType()
-            .getJavaType())
-            .getName();
+        StringBuilder sbSelectFrom = new StringBuilder();
 
         sbSelectFrom.append(selectManager.buildSelect(joinManager.getRootAlias()));
         sbSelectFrom.append("FROM ")
-            .append(fromClazz.getSimpleName())
+            .append(jpaMetadata.getEntityName(em.getMetamodel(), fromClazz))
             .append(' ')
             .append(joinManager.getRootAlias());
 
         StringBuilder sbRemaining = new StringBuilder();
-        sbRemaining.append(" WHERE ")
-            .append(joinManager.getRootAlias())
-            .append('.')
-            .append(idName)
-            .append(" IN :")
-            .append(idParamName)
-            .append("");
+        String[] idClauses = getIdClauses();
+        String idClause = idClauses[0];
+        int idChunkCount = parameterManager.getChunkCount(idParamName);
+
+        if (idClauses.length > 1) {
+            applyCompositeIdClause(sbRemaining, idClauses);
+        } else if (idChunkCount < 2) {
+            sbRemaining.append(" WHERE ")
+                .append(idClause)
+                .append(" IN :")
+                .append(idParamName);
+        } else {
+            sbRemaining.append(" WHERE (");
+
+            for (int i = 0; i < idChunkCount; i++) {
+                if (i != 0) {
+                    sbRemaining.append(" OR ");
+                }
+
+                sbRemaining.append(idClause)
+                    .append(" IN (:")
+                    .append(ParameterManager.getChunkParameterName(idParamName, i))
+                    .append(')');
+            }
+
+            sbRemaining.append(')');
+        }
 
         groupByManager.buildGroupBy(sbRemaining);
         havingManager.buildClause(sbRemaining);
@@ -267,36 +670,89 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
         return sbSelectFrom.append(sbRemaining).toString();
     }
 
+    /**
+     * Returns the object query with the key set predicate and the key set elements, but without the id restriction.
+     */
+    private String getSingleQueryString() {
+        verifyBuilderEnded();
+        applyImplicitJoins();
+        applyExpressionTransformers();
+
+        StringBuilder sbSelectFrom = new StringBuilder();
+        prepareKeySetMode();
+
+        sbSelectFrom.append(selectManager.buildSelect(joinManager.getRootAlias()));
+
+        if (extractKeySet) {
+            // Select the key set elements after the select items, they are removed from the tuples when building the results
+            sbSelectFrom.setLength(sbSelectFrom.length() - 1);
+            queryGenerator.setQueryBuffer(sbSelectFrom);
+
+            for (Expression expr : orderByManager.getRealExpressions()) {
+                sbSelectFrom.append(", ");
+                expr.accept(queryGenerator);
+            }
+
+            sbSelectFrom.append(' ');
+        }
+
+        sbSelectFrom.append("FROM ")
+            .append(jpaMetadata.getEntityName(em.getMetamodel(), fromClazz))
+            .append(' ')
+            .append(joinManager.getRootAlias());
+
+        StringBuilder sbRemaining = new StringBuilder();
+
+        if (keySetMode == KeySetMode.NONE) {
+            whereManager.buildClause(sbRemaining);
+        } else {
+            sbRemaining.append(" WHERE ");
+            applyKeySetClause(sbRemaining, keySetMode, orderByManager.getRealOrderByExpressions(), keySet);
+
+            if (whereManager.hasPredicates()) {
+                sbRemaining.append(" AND (");
+                whereManager.buildClausePredicate(sbRemaining);
+                sbRemaining.append(')');
+            }
+        }
+
+        groupByManager.buildGroupBy(sbRemaining);
+        havingManager.buildClause(sbRemaining);
+        // The elements before the key set are fetched in reverse order, so that the limit applies to the closest ones
+        orderByManager.buildOrderBy(sbRemaining, keySetMode == KeySetMode.PREVIOUS);
+
+        joinManager.buildJoins(sbSelectFrom, true);
+        addWhereClauseConjuncts(sbRemaining, true);
+
+        // execute illegal collection access check
+        orderByManager.acceptVisitor(new IllegalSubqueryDetector(aliasManager, baseBuilder));
+
+        return sbSelectFrom.append(sbRemaining).toString();
+    }
+
     @Override
     public String getPageIdQueryString() {
         verifyBuilderEnded();
         StringBuilder sbSelectFrom = new StringBuilder();
-        Metamodel m = em.getMetamodel();
-        EntityType<?> entityType = m.entity(fromClazz);
-        String idName = entityType.getId(entityType.getIdType()
-            .getJavaType())
-            .getName();
 
         applyImplicitJoins();
         applyExpressionTransformers();
 
-        String idClause = new StringBuilder(joinManager.getRootAlias())
-            .append('.')
-            .append(idName)
-            .toString();
+        StringBuilder sbIdClause = new StringBuilder();
+        appendJoined(sbIdClause, getIdClauses());
+        String idClause = sbIdClause.toString();
 
         sbSelectFrom.append("SELECT ")
             .append(idClause);
 
-        orderByExpressionStrings = orderByManager.getAbsoluteExpressionStrings();
-        keySetMode = getKeySetMode();
+        prepareKeySetMode();
         if (needsNewIdList = orderByManager.hasOrderBys(extractKeySet)) {
             sbSelectFrom.append(", ");
             orderByManager.buildSelectClauses(sbSelectFrom, extractKeySet);
         }
 
         sbSelectFrom.append(" FROM ")
-            .append(fromClazz.getSimpleName())
+            .append(jpaMetadata.getEntityName(em.getMetamodel(), fromClazz))
             .append(' ')
             .append(joinManager.getRootAlias());
 
@@ -306,7 +762,7 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
             whereManager.buildClause(sbRemaining);
         } else {
             sbRemaining.append(" WHERE ");
-            applyKeySetClause(sbRemaining, keySetMode, orderByManager.getRealExpressions(), keySet);
+            applyKeySetClause(sbRemaining, keySetMode, orderByManager.getRealOrderByExpressions(), keySet);
 
             if (whereManager.hasPredicates()) {
                 sbRemaining.append(" AND (");
@@ -315,8 +771,11 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
             }
         }
 
-        sbRemaining.append(" GROUP BY ").append(idClause);
-        orderByManager.buildOrderBy(sbRemaining);
+        // Grouping is only needed to eliminate duplicate ids produced by joins that multiply rows
+        if (joinManager.hasCollectionJoins(false)) {
+            sbRemaining.append(" GROUP BY ").append(idClause);
+        }
+        orderByManager.buildOrderBy(sbRemaining, keySetMode == KeySetMode.PREVIOUS);
 
         joinManager.buildJoins(sbSelectFrom, false);
         addWhereClauseConjuncts(sbRemaining, false);
@@ -327,79 +786,192 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
         return sbSelectFrom.append(sbRemaining).toString();
     }
 
-    private void applyKeySetClause(StringBuilder sbRemaining, KeySetMode keySetMode, List<Expression> realExpressions, KeySet keySet) {
-        String operator;
-        Serializable[] key;
-
-        if (keySetMode == KeySetMode.SAME) {
-            key = keySet.getLowest();
+    private void applyKeySetClause(StringBuilder sbRemaining, KeySetMode keySetMode, List<OrderByManager.OrderByExpression> orderByExpressions, KeySet keySet) {
+        // SAME selects everything from the lowest key on, NEXT everything after the highest key and PREVIOUS everything before the lowest key
+        Serializable[] key = keySetMode == KeySetMode.NEXT ? keySet.getHighest() : keySet.getLowest();
+        boolean forward = keySetMode != KeySetMode.PREVIOUS;
+        boolean inclusive = keySetMode == KeySetMode.SAME;
+        int size = orderByExpressions.size();
+        String[] expressions = new String[size];
+        String[] parameters = new String[size];
+        boolean[] nullable = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            Expression expr = orderByExpressions.get(i).getExpression();
+            StringBuilder sb = new StringBuilder();
+            queryGenerator.setQueryBuffer(sb);
+            expr.accept(queryGenerator);
+            expressions[i] = sb.toString();
+            nullable[i] = isNullable(expr);
+
+            // Null key elements are compared with IS NULL, so they need no parameter
+            if (key[i] != null) {
+                String parameterName = new StringBuilder(KEY_SET_PARAMETER_NAME).append('_').append(i).toString();
+                parameterManager.addParameterMapping(parameterName, key[i]);
+                parameters[i] = ':' + parameterName;
+            }
+        }
 
-            int expressionCount = realExpressions.size();
+        if (size > 1 && cbf.isKeySetRowValueComparison() && canUseRowValue(orderByExpressions, parameters, nullable, forward)) {
+            // (x, y) > (a, b)
             sbRemaining.append('(');
+            appendJoined(sbRemaining, expressions);
+            sbRemaining.append(") ")
+                .append(getComparisonOperator(orderByExpressions.get(0).isAscending(), forward, inclusive))
+                .append(" (");
+            appendJoined(sbRemaining, parameters);
+            sbRemaining.append(')');
+            return;
+        }
 
-            for (int i = 0; i < expressionCount; i++) {
-                if (i != 0) {
-                    sbRemaining.append(" AND ");
-                }
-                Expression expr = realExpressions.get(i);
-                applyKeySetItem(0, sbRemaining, expr, ">=", i, false, key[i]);
+        String predicate = getKeySetPredicate(orderByExpressions, expressions, parameters, nullable, 0, forward, inclusive);
+
+        if (size > 1 && predicate != TRUE_PREDICATE && predicate != FALSE_PREDICATE) {
+            // A leading bounding predicate on the first item allows the database to do an index range seek
+            // (x, y) > (a, b) => x >= a AND (x > a OR (x = a AND y > b))
+            String boundingPredicate = getComparisonPredicate(orderByExpressions.get(0), expressions[0], parameters[0], nullable[0], forward, true);
+
+            if (boundingPredicate != TRUE_PREDICATE) {
+                sbRemaining.append(boundingPredicate).append(" AND ");
             }
+        }
 
-            sbRemaining.append(')');
+        sbRemaining.append(predicate);
+    }
 
-            return;
+    /**
+     * Renders the lexicographic comparison of the order by items starting at the given position.
+     * (x, y, z) > (a, b, c) => (x > a OR (x = a AND (y > b OR (y = b AND z > c))))
+     */
+    private String getKeySetPredicate(List<OrderByManager.OrderByExpression> orderByExpressions, String[] expressions, String[] parameters, boolean[] nullable, int position, boolean forward, boolean inclusive) {
+        boolean last = position + 1 == expressions.length;
+        String comparison = getComparisonPredicate(orderByExpressions.get(position), expressions[position], parameters[position], nullable[position], forward, inclusive && last);
+
+        if (last) {
+            return comparison;
+        }
+
+        String rest = getKeySetPredicate(orderByExpressions, expressions, parameters, nullable, position + 1, forward, inclusive);
+        String equality;
+
+        if (parameters[position] == null) {
+            equality = expressions[position] + " IS NULL";
+        } else {
+            equality = expressions[position] + " = " + parameters[position];
         }
 
-        if (keySetMode == KeySetMode.NEXT) {
-            // order by items must be > keySet.getHighest()
-            // (x,y) > (a,b) => (x > a OR (x = a AND y > b) )
-            // (x,y,z) > (a,b,c) => (x > a OR (x = a AND (y > b OR (y = b AND z > c) ) ) )
-            operator = ">";
-            key = keySet.getHighest();
+        String equalityPredicate;
+
+        if (rest == FALSE_PREDICATE) {
+            equalityPredicate = FALSE_PREDICATE;
+        } else if (rest == TRUE_PREDICATE) {
+            equalityPredicate = equality;
         } else {
-            // order by items must be < keySet.getLowest()
-            // (x,y) < (a,b) => (x < a OR (x = a AND y < b) )
-            // (x,y,z) < (a,b,c) => (x < a OR (x = a AND (y < b OR (y = b AND z < c) ) ) )
-            operator = "<";
-            key = keySet.getLowest();
+            equalityPredicate = "(" + equality + " AND " + rest + ")";
         }
 
-        int expressionCount = realExpressions.size();
-        int brackets = 0;
-        for (int i = 0; i < expressionCount; i++) {
-            boolean openBracket = i + 1 != expressionCount;
+        if (comparison == FALSE_PREDICATE) {
+            return equalityPredicate;
+        } else if (comparison == TRUE_PREDICATE) {
+            return TRUE_PREDICATE;
+        } else if (equalityPredicate == FALSE_PREDICATE) {
+            return comparison;
+        }
 
-            if (i != 0) {
-                brackets++;
-                sbRemaining.append(" OR (");
-                Expression expr = realExpressions.get(i - 1);
+        return "(" + comparison + " OR " + equalityPredicate + ")";
+    }
 
-                brackets = applyKeySetItem(brackets, sbRemaining, expr, "=", i - 1, openBracket, key[i - 1]);
-                sbRemaining.append(" AND ");
+    /**
+     * Renders the comparison of a single order by item with the key element that respects the null ordering.
+     * Nulls that are ordered after the key element in the scan direction are included, the others are excluded.
+     */
+    private String getComparisonPredicate(OrderByManager.OrderByExpression orderByExpression, String expression, String parameter, boolean nullable, boolean forward, boolean inclusive) {
+        boolean nullsBefore = orderByExpression.isNullFirst() == forward;
+
+        if (parameter == null) {
+            if (nullsBefore) {
+                // Every non-null value comes after a null key element
+                return inclusive ? TRUE_PREDICATE : expression + " IS NOT NULL";
             }
-            Expression expr = realExpressions.get(i);
-            brackets = applyKeySetItem(brackets, sbRemaining, expr, operator, i, openBracket, key[i]);
+
+            // Only nulls can come after a null key element, but they are equal
+            return inclusive ? expression + " IS NULL" : FALSE_PREDICATE;
         }
-        for (int i = 0; i < brackets; i++) {
-            sbRemaining.append(')');
+
+        String comparison = expression + " " + getComparisonOperator(orderByExpression.isAscending(), forward, inclusive) + " " + parameter;
+
+        if (nullable && !nullsBefore) {
+            return "(" + comparison + " OR " + expression + " IS NULL)";
         }
+
+        return comparison;
     }
 
-    private int applyKeySetItem(int brackets, StringBuilder sbRemaining, Expression expr, String operator, int position, boolean openBracket, Serializable keyElement) {
-        if (openBracket) {
-            brackets++;
-            sbRemaining.append("(");
+    private static String getComparisonOperator(boolean ascending, boolean forward, boolean inclusive) {
+        String operator = ascending == forward ? ">" : "<";
+        return inclusive ? operator + "=" : operator;
+    }
+
+    private boolean canUseRowValue(List<OrderByManager.OrderByExpression> orderByExpressions, String[] parameters, boolean[] nullable, boolean forward) {
+        boolean ascending = orderByExpressions.get(0).isAscending();
+
+        for (int i = 0; i < parameters.length; i++) {
+            OrderByManager.OrderByExpression orderByExpression = orderByExpressions.get(i);
+
+            if (parameters[i] == null || orderByExpression.isAscending() != ascending) {
+                return false;
+            }
+            // Row value comparisons never match nulls, which is only right if nulls are ordered before the key
+            if (nullable[i] && orderByExpression.isNullFirst() != forward) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the given expression can evaluate to null, which is assumed unless the expression is a path to a
+     * non-optional attribute that is reachable only through inner joins.
+     */
+    private boolean isNullable(Expression expr) {
+        if (!(expr instanceof PathExpression)) {
+            return true;
+        }
+
+        PathExpression pathExpr = (PathExpression) expr;
+        String field = pathExpr.getField();
+
+        if (!(pathExpr.getBaseNode() instanceof JoinNode) || field == null || field.indexOf('.') != -1) {
+            return true;
+        }
+
+        JoinNode baseNode = (JoinNode) pathExpr.getBaseNode();
+
+        for (JoinNode node = baseNode; node.getParent() != null; node = node.getParent()) {
+            if (node.getType() != JoinType.INNER) {
+                return true;
+            }
+        }
+
+        JPAMetadata.AttributeInfo attributeInfo;
+
+        try {
+            attributeInfo = jpaMetadata.getAttributeInfo(em.getMetamodel(), baseNode.getPropertyClass(), field);
+        } catch (IllegalArgumentException ex) {
+            return true;
         }
 
-        queryGenerator.setQueryBuffer(sbRemaining);
-        expr.accept(queryGenerator);
-        sbRemaining.append(" ");
-        sbRemaining.append(operator);
-        sbRemaining.append(" :");
-        String parameterName = new StringBuilder(KEY_SET_PARAMETER_NAME).append('_').append(position).toString();
-        sbRemaining.append(parameterName);
-        parameterManager.addParameterMapping(parameterName, keyElement);
-        return brackets;
+        return attributeInfo == null || attributeInfo.isNullable();
+    }
+
+    private static void appendJoined(StringBuilder sb, String[] elements) {
+        for (int i = 0; i < elements.length; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(elements[i]);
+        }
     }
 
     @Override
@@ -476,4 +1048,335 @@ public class PaginatedCriteriaBuilderImpl<T> extends AbstractQueryBuilder<T, Pag
     public SubqueryInitiator<PaginatedCriteriaBuilder<Tuple>> selectSubquery(String subqueryAlias, String expression, String selectAlias) {
         return (SubqueryInitiator<PaginatedCriteriaBuilder<Tuple>>) super.selectSubquery(subqueryAlias, expression, selectAlias);
     }
+
+    /**
+     * Executes a count query on its own entity manager and closes the entity manager afterwards.
+     */
+    private static class CountQueryCallable implements Callable<Long> {
+
+        private final EntityManager entityManager;
+        private final TypedQuery<Long> countQuery;
+
+        public CountQueryCallable(EntityManager entityManager, TypedQuery<Long> countQuery) {
+            this.entityManager = entityManager;
+            this.countQuery = countQuery;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            try {
+                return countQuery.getSingleResult();
+            } finally {
+                entityManager.close();
+            }
+        }
+    }
+
+    /**
+     * Combines an already fetched page with the result of a count query that might still be running.
+     * The page was fetched like without a count query, so the next page information is already present.
+     */
+    private static class PagedListFuture<T> implements Future<PagedList<T>> {
+
+        private final Future<Long> countFuture;
+        private final PagedList<T> page;
+
+        public PagedListFuture(Future<Long> countFuture, PagedList<T> page) {
+            this.countFuture = countFuture;
+            this.page = page;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return countFuture != null && countFuture.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return countFuture != null && countFuture.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return countFuture == null || countFuture.isDone();
+        }
+
+        @Override
+        public PagedList<T> get() throws InterruptedException, ExecutionException {
+            if (countFuture == null) {
+                return page;
+            }
+
+            return withTotalSize(countFuture.get());
+        }
+
+        @Override
+        public PagedList<T> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (countFuture == null) {
+                return page;
+            }
+
+            return withTotalSize(countFuture.get(timeout, unit));
+        }
+
+        private PagedList<T> withTotalSize(long totalSize) {
+            // The count might be lower than the lower bound determined by the page if data changed in between
+            return new PagedListImpl<T>(page, page.getKeySet(), Math.max(totalSize, page.totalSize()), true, page.hasNextPage());
+        }
+    }
+
+    /**
+     * The first query of a page, see {@link PaginatedCriteriaBuilderImpl#createPageQuery(javax.persistence.EntityManager, long)}.
+     * The query can be executed by any thread, but the page must be built by the thread that uses the builder, because the
+     * object query of a page that needs an id query is created by the builder.
+     */
+    private class PageQuery {
+
+        private final EntityManager entityManager;
+        private final Query query;
+        private final long totalSize;
+        private final boolean singleQuery;
+        private final KeySetExtractingObjectBuilder<T> keySetObjectBuilder;
+
+        public PageQuery(EntityManager entityManager, Query query, long totalSize, boolean singleQuery, KeySetExtractingObjectBuilder<T> keySetObjectBuilder) {
+            this.entityManager = entityManager;
+            this.query = query;
+            this.totalSize = totalSize;
+            this.singleQuery = singleQuery;
+            this.keySetObjectBuilder = keySetObjectBuilder;
+        }
+
+        public List<?> execute() {
+            return query.getResultList();
+        }
+
+        @SuppressWarnings("unchecked")
+        public PagedList<T> getPage(List<?> rows) {
+            if (singleQuery) {
+                return getSingleQueryPage((List<T>) rows, totalSize, keySetObjectBuilder);
+            }
+
+            return getIdQueryPage(entityManager, rows, totalSize);
+        }
+    }
+
+    /**
+     * Iterates over all results chunk by chunk, the next chunk is fetched with the key set of the previous one.
+     * Without a prefetch executor the chunks are fetched on demand with the entity manager of this builder and the results of a
+     * chunk are detached when the iterator moves past it. With a prefetch executor every chunk is fetched with a new entity
+     * manager that is closed when the iterator moves past the chunk. The first query of the next chunk is rendered by the
+     * iterating thread and only executed in the background, so the builder is never used by another thread.
+     */
+    private class ChunkedResultIterator implements ResultIterator<T> {
+
+        private final EntityManagerFactory prefetchEntityManagerFactory;
+        private final Executor executor;
+        private final boolean clearPersistenceContext;
+        private Iterator<T> chunkIterator;
+        private List<T> chunkResults;
+        private KeySet chunkKeySet;
+        private int chunkFirstRow;
+        private boolean hasNextChunk = true;
+        private EntityManager chunkEntityManager;
+        private EntityManager nextChunkEntityManager;
+        private PageQuery nextChunkQuery;
+        private FutureTask<List<?>> nextChunkTask;
+        private List<Class<?>> entityClasses;
+        private boolean closed;
+
+        public ChunkedResultIterator(EntityManagerFactory prefetchEntityManagerFactory, Executor executor, boolean clearPersistenceContext) {
+            this.prefetchEntityManagerFactory = prefetchEntityManagerFactory;
+            this.executor = executor;
+            this.clearPersistenceContext = clearPersistenceContext;
+            this.chunkKeySet = extractKeySet ? keySet : null;
+            this.chunkFirstRow = firstRow;
+
+            if (executor != null) {
+                prefetch();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+
+            while (chunkIterator == null || !chunkIterator.hasNext()) {
+                if (!hasNextChunk) {
+                    close();
+                    return false;
+                }
+
+                nextChunk();
+            }
+
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return chunkIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Removing is not supported");
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            chunkIterator = null;
+            chunkResults = null;
+            closeChunkEntityManager();
+
+            if (nextChunkTask != null && !nextChunkTask.cancel(false)) {
+                // The prefetch already started, so we have to wait for it before its entity manager can be closed
+                try {
+                    nextChunkTask.get();
+                } catch (Exception ex) {
+                    // The entity manager is closed anyway
+                }
+            }
+
+            nextChunkTask = null;
+            nextChunkQuery = null;
+
+            if (nextChunkEntityManager != null) {
+                nextChunkEntityManager.close();
+                nextChunkEntityManager = null;
+            }
+        }
+
+        private void nextChunk() {
+            PagedList<T> chunk;
+
+            if (executor == null) {
+                if (chunkResults != null) {
+                    if (clearPersistenceContext) {
+                        em.clear();
+                    } else {
+                        // Only the results of the previous chunk are detached, other changes of the persistence context are kept
+                        detachAll(chunkResults);
+                    }
+                }
+
+                chunk = createChunkBuilder(chunkKeySet, chunkFirstRow).getPage(em, -1L);
+            } else {
+                List<?> rows = awaitChunk();
+                closeChunkEntityManager();
+                chunkEntityManager = nextChunkEntityManager;
+                nextChunkEntityManager = null;
+                PageQuery pageQuery = nextChunkQuery;
+                nextChunkQuery = null;
+                chunk = pageQuery.getPage(rows);
+            }
+
+            hasNextChunk = chunk.hasNextPage();
+            chunkKeySet = chunk.getKeySet();
+            chunkFirstRow += pageSize;
+            chunkResults = chunk;
+            chunkIterator = chunk.iterator();
+
+            if (executor != null && hasNextChunk) {
+                // Fetch the next chunk while this one is consumed
+                prefetch();
+            }
+        }
+
+        private void prefetch() {
+            EntityManager entityManager = prefetchEntityManagerFactory.createEntityManager();
+
+            try {
+                // The query is created here, the executor only runs it. For an id query, the object query depends on the fetched
+                // ids and this builder, so it is executed by the iterating thread
+                final PageQuery pageQuery = createChunkBuilder(chunkKeySet, chunkFirstRow).createPageQuery(entityManager, -1L);
+                nextChunkTask = new FutureTask<List<?>>(new Callable<List<?>>() {
+
+                    @Override
+                    public List<?> call() throws Exception {
+                        return pageQuery.execute();
+                    }
+                });
+                nextChunkQuery = pageQuery;
+                nextChunkEntityManager = entityManager;
+            } catch (RuntimeException ex) {
+                entityManager.close();
+                throw ex;
+            }
+
+            executor.execute(nextChunkTask);
+        }
+
+        private List<?> awaitChunk() {
+            FutureTask<List<?>> task = nextChunkTask;
+            nextChunkTask = null;
+
+            try {
+                return task.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RuntimeException("Interrupted while waiting for the next chunk", ex);
+            } catch (ExecutionException ex) {
+                close();
+
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+
+        private void detachAll(List<?> results) {
+            if (entityClasses == null) {
+                entityClasses = new ArrayList<Class<?>>();
+
+                for (EntityType<?> entityType : em.getMetamodel().getEntities()) {
+                    entityClasses.add(entityType.getJavaType());
+                }
+            }
+
+            for (Object result : results) {
+                if (result instanceof Object[]) {
+                    detachAll(Arrays.asList((Object[]) result));
+                } else if (result instanceof Tuple) {
+                    detachAll(Arrays.asList(((Tuple) result).toArray()));
+                } else if (isEntity(result) && em.contains(result)) {
+                    em.detach(result);
+                }
+            }
+        }
+
+        private boolean isEntity(Object result) {
+            if (result == null) {
+                return false;
+            }
+
+            for (Class<?> entityClass : entityClasses) {
+                if (entityClass.isInstance(result)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void closeChunkEntityManager() {
+            if (chunkEntityManager != null) {
+                chunkEntityManager.close();
+                chunkEntityManager = null;
+            }
+        }
+    }
 }
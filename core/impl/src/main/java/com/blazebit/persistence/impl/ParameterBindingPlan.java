@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import java.util.Set;
+import javax.persistence.Parameter;
+import javax.persistence.Query;
+
+/**
+ * The precomputed binding of the parameters of a generated query string. The parameters of the query and the names and
+ * chunks of the values that have to be bound to them are resolved once, so that binding the parameters of a query is
+ * only a loop over the plan. Since the plan only depends on the query string, it can be cached together with it.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class ParameterBindingPlan {
+
+    private final String[] queryParameterNames;
+    private final String[] valueParameterNames;
+    private final int[] chunks;
+
+    private ParameterBindingPlan(String[] queryParameterNames, String[] valueParameterNames, int[] chunks) {
+        this.queryParameterNames = queryParameterNames;
+        this.valueParameterNames = valueParameterNames;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Creates the binding plan for the parameters of the given query.
+     *
+     * @param q The query created from the query string
+     * @param parameterManager The parameter manager of the builder that generated the query string
+     * @return The binding plan
+     */
+    static ParameterBindingPlan compile(Query q, ParameterManager parameterManager) {
+        Set<Parameter<?>> parameters = q.getParameters();
+        int size = parameters.size();
+        String[] queryParameterNames = new String[size];
+        String[] valueParameterNames = new String[size];
+        int[] chunks = new int[size];
+        int i = 0;
+
+        for (Parameter<?> p : parameters) {
+            String queryParameterName = p.getName();
+            String valueParameterName = parameterManager.getValueParameterName(queryParameterName);
+            queryParameterNames[i] = queryParameterName;
+            valueParameterNames[i] = valueParameterName;
+            chunks[i] = ParameterManager.getChunkIndex(queryParameterName, valueParameterName);
+            i++;
+        }
+
+        return new ParameterBindingPlan(queryParameterNames, valueParameterNames, chunks);
+    }
+
+    /**
+     * Binds the current parameter values of the given parameter manager to the given query.
+     *
+     * @param q The query created from the query string of this plan
+     * @param parameterManager The parameter manager that holds the values
+     */
+    void bind(Query q, ParameterManager parameterManager) {
+        for (int i = 0; i < queryParameterNames.length; i++) {
+            String queryParameterName = queryParameterNames[i];
+
+            if (!parameterManager.isParameterSet(valueParameterNames[i])) {
+                throw new IllegalStateException("Unsatisfied parameter " + queryParameterName);
+            }
+
+            // Temporal types are part of the value which might be replaced between executions, so they are checked here
+            Object paramValue = parameterManager.getBindValue(valueParameterNames[i], chunks[i]);
+            if (paramValue instanceof ParameterManager.TemporalCalendarParameterWrapper) {
+                ParameterManager.TemporalCalendarParameterWrapper wrappedValue = (ParameterManager.TemporalCalendarParameterWrapper) paramValue;
+                q.setParameter(queryParameterName, wrappedValue.getValue(), wrappedValue.getType());
+            } else if (paramValue instanceof ParameterManager.TemporalDateParameterWrapper) {
+                ParameterManager.TemporalDateParameterWrapper wrappedValue = (ParameterManager.TemporalDateParameterWrapper) paramValue;
+                q.setParameter(queryParameterName, wrappedValue.getValue(), wrappedValue.getType());
+            } else {
+                q.setParameter(queryParameterName, paramValue);
+            }
+        }
+    }
+}
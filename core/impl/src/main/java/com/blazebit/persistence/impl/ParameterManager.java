@@ -15,11 +15,16 @@
  */
 package com.blazebit.persistence.impl;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.persistence.Parameter;
@@ -34,9 +39,20 @@ public class ParameterManager {
 
     private static final String prefix = "param_";
     private int counter;
+    private int registrationCount;
     private final Map<Object, String> nameCache = new IdentityHashMap<Object, String>();
+    // The generated names in the order of their numbers
+    private final Map<String, Object> generatedNames = new LinkedHashMap<String, Object>();
     private final Map<String, Object> parameters = new HashMap<String, Object>();
     private static final Object REGISTERED_PLACEHOLDER = new Object();
+    private static final String CHUNK_INFIX = "_chunk_";
+    private final boolean inListPadding;
+    private final int inListChunkSize;
+
+    public ParameterManager(boolean inListPadding, int inListChunkSize) {
+        this.inListPadding = inListPadding;
+        this.inListChunkSize = inListChunkSize;
+    }
 
     Parameter<?> getParameter(String parameterName) {
         if (parameterName == null) {
@@ -54,9 +70,9 @@ public class ParameterManager {
     Set<? extends Parameter<?>> getParameters() {
         Set<Parameter<?>> result = new HashSet<Parameter<?>>();
 
-        for (Map.Entry<String, Object> paramEntry : parameters.entrySet()) {
-            Class<?> paramClass = paramEntry.getValue() == null || paramEntry.getValue() == REGISTERED_PLACEHOLDER ? null : paramEntry.getValue().getClass();
-            result.add(new ParameterImpl(paramClass, paramEntry.getKey()));
+        for (String paramName : parameters.keySet()) {
+            Object value = getParameterValue(paramName);
+            result.add(new ParameterImpl(value == null ? null : value.getClass(), paramName));
         }
         return result;
     }
@@ -76,6 +92,37 @@ public class ParameterManager {
     }
 
     Object getParameterValue(String parameterName) {
+        Object o = getRawParameterValue(parameterName);
+
+        if (o instanceof TemporalCalendarParameterWrapper) {
+            return ((TemporalCalendarParameterWrapper) o).getValue();
+        } else if (o instanceof TemporalDateParameterWrapper) {
+            return ((TemporalDateParameterWrapper) o).getValue();
+        }
+
+        return o;
+    }
+
+    /**
+     * Returns the temporal type with which the value of the given parameter was set or null if it was set without one.
+     *
+     * @param parameterName The name of the parameter
+     * @return The temporal type of the parameter value or null
+     */
+    TemporalType getParameterTemporalType(String parameterName) {
+        Object o = getRawParameterValue(parameterName);
+
+        if (o instanceof TemporalCalendarParameterWrapper) {
+            return ((TemporalCalendarParameterWrapper) o).getType();
+        } else if (o instanceof TemporalDateParameterWrapper) {
+            return ((TemporalDateParameterWrapper) o).getType();
+        }
+
+        return null;
+    }
+
+    // Temporal values are returned in their wrappers, so that they can be bound with their temporal type
+    private Object getRawParameterValue(String parameterName) {
         if (parameterName == null) {
             throw new NullPointerException("parameterName");
         }
@@ -87,15 +134,71 @@ public class ParameterManager {
         if (o == null) {
             throw new NullPointerException();
         }
+        registrationCount++;
         String existingName = nameCache.get(o);
         if (existingName == null) {
             existingName = prefix + counter++;
             nameCache.put(o, existingName);
+            generatedNames.put(existingName, o);
             parameters.put(existingName, o);
         }
         return existingName;
     }
 
+    /**
+     * Returns the number of times a name was requested for a parameter value. Since every parameter expression with a value
+     * requests a name when it is added to a query, a changed count means that parameter expressions were added.
+     *
+     * @return The number of parameter value registrations
+     */
+    int getRegistrationCount() {
+        return registrationCount;
+    }
+
+    boolean isGeneratedParameterName(String parameterName) {
+        return generatedNames.containsKey(parameterName);
+    }
+
+    /**
+     * Renames the generated parameters so that their numbers follow the given order of their values.
+     * Generated parameters whose values are not contained in the given list are numbered afterwards in their previous order.
+     *
+     * @param values The parameter values in the order in which they appear in the query
+     */
+    void renumberGeneratedParameters(List<Object> values) {
+        List<Object> orderedValues = new ArrayList<Object>(generatedNames.size());
+        Map<Object, Boolean> contained = new IdentityHashMap<Object, Boolean>();
+
+        for (Object value : values) {
+            if (nameCache.containsKey(value) && contained.put(value, Boolean.TRUE) == null) {
+                orderedValues.add(value);
+            }
+        }
+
+        // The values of the generated names are ordered by their current numbers
+        for (Object value : generatedNames.values()) {
+            if (contained.put(value, Boolean.TRUE) == null) {
+                orderedValues.add(value);
+            }
+        }
+
+        for (String generatedName : generatedNames.keySet()) {
+            parameters.remove(generatedName);
+        }
+
+        generatedNames.clear();
+
+        for (int i = 0; i < orderedValues.size(); i++) {
+            Object value = orderedValues.get(i);
+            String name = prefix + i;
+            nameCache.put(value, name);
+            generatedNames.put(name, value);
+            parameters.put(name, value);
+        }
+
+        counter = orderedValues.size();
+    }
+
     void addParameterMapping(String parameterName, Object o) {
         if (parameterName == null) {
             throw new NullPointerException("parameterName");
@@ -122,6 +225,132 @@ public class ParameterManager {
         parameters.put(parameterName, parameterValue);
     }
 
+    /**
+     * Returns the number of IN predicate chunks that should be rendered for the given parameter.
+     * With IN list padding the number of chunks is padded to the next power of two, so that the query string only changes
+     * for a few collection sizes.
+     *
+     * @param parameterName The name of the parameter
+     * @return The number of chunks, 1 if the parameter value should not be split
+     */
+    int getChunkCount(String parameterName) {
+        if (inListChunkSize <= 0 || parameterName == null) {
+            return 1;
+        }
+
+        Object value = getParameterValue(parameterName);
+
+        if (!(value instanceof Collection<?>)) {
+            return 1;
+        }
+
+        int size = ((Collection<?>) value).size();
+        int chunkCount = Math.max(1, (size + inListChunkSize - 1) / inListChunkSize);
+
+        if (inListPadding && chunkCount > 1) {
+            return Integer.highestOneBit(chunkCount - 1) << 1;
+        }
+
+        return chunkCount;
+    }
+
+    static String getChunkParameterName(String parameterName, int chunk) {
+        return parameterName + CHUNK_INFIX + chunk;
+    }
+
+    /**
+     * Returns the name of the parameter that holds the value for the given query parameter name. This is the name of the
+     * chunked parameter for chunk parameter names and the given name otherwise.
+     *
+     * @param queryParameterName The name of a parameter of a generated query
+     * @return The name of the parameter that holds the value
+     */
+    String getValueParameterName(String queryParameterName) {
+        if (inListChunkSize <= 0 || parameters.containsKey(queryParameterName)) {
+            return queryParameterName;
+        }
+
+        int chunkIndex = queryParameterName.lastIndexOf(CHUNK_INFIX);
+
+        if (chunkIndex == -1) {
+            return queryParameterName;
+        }
+
+        return queryParameterName.substring(0, chunkIndex);
+    }
+
+    /**
+     * Returns the index of the chunk that the given query parameter name refers to.
+     *
+     * @param queryParameterName The name of a parameter of a generated query
+     * @param valueParameterName The name of the parameter that holds the value, see {@link #getValueParameterName(java.lang.String)}
+     * @return The chunk index or -1 if the query parameter is not a chunk parameter
+     */
+    static int getChunkIndex(String queryParameterName, String valueParameterName) {
+        if (queryParameterName.equals(valueParameterName)) {
+            return -1;
+        }
+
+        return Integer.parseInt(queryParameterName.substring(valueParameterName.length() + CHUNK_INFIX.length()));
+    }
+
+    /**
+     * Returns the value that should be bound to the given chunk of a parameter.
+     * Collection values are split into chunks and padded according to the IN list settings.
+     *
+     * @param parameterName The name of the parameter that holds the value
+     * @param chunk The index of the chunk or -1 if the whole value should be bound
+     * @return The value to bind
+     */
+    Object getBindValue(String parameterName, int chunk) {
+        Object value = getRawParameterValue(parameterName);
+
+        if (!(value instanceof Collection<?>)) {
+            return value;
+        }
+
+        List<?> list = value instanceof List<?> ? (List<?>) value : new ArrayList<Object>((Collection<?>) value);
+
+        if (chunk != -1) {
+            int start = chunk * inListChunkSize;
+
+            if (start >= list.size()) {
+                // Padding chunks repeat the last element which doesn't change the result of the predicate
+                return Collections.nCopies(inListChunkSize, list.get(list.size() - 1));
+            }
+
+            list = list.subList(start, Math.min(start + inListChunkSize, list.size()));
+
+            if (inListPadding) {
+                // Every chunk has the same size, so the number of rendered SQL parameters only depends on the chunk count
+                return pad(list, inListChunkSize);
+            }
+        } else if (inListPadding) {
+            int size = list.size();
+            return size < 2 ? list : pad(list, Integer.highestOneBit(size - 1) << 1);
+        }
+
+        return list == value ? value : new ArrayList<Object>(list);
+    }
+
+    private static Object pad(List<?> list, int paddedSize) {
+        int size = list.size();
+
+        if (paddedSize <= size) {
+            return list;
+        }
+
+        List<Object> paddedList = new ArrayList<Object>(paddedSize);
+        paddedList.addAll(list);
+        Object last = list.get(size - 1);
+
+        for (int i = size; i < paddedSize; i++) {
+            paddedList.add(last);
+        }
+
+        return paddedList;
+    }
+
     private class ParameterImpl<T> implements Parameter<T> {
 
         private final Class<T> paramClass;
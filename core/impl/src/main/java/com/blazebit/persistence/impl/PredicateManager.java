@@ -32,6 +32,11 @@ import com.blazebit.persistence.impl.predicate.NotInPredicate;
 import com.blazebit.persistence.impl.predicate.NotPredicate;
 import com.blazebit.persistence.impl.predicate.Predicate;
 import com.blazebit.persistence.impl.predicate.VisitorAdapter;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -46,6 +51,8 @@ public abstract class PredicateManager<T> extends AbstractManager {
     private final LeftHandsideSubqueryPredicateBuilder leftSubqueryPredicateBuilderListener = new LeftHandsideSubqueryPredicateBuilder();
     private SuperExpressionLeftHandsideSubqueryPredicateBuilder superExprLeftSubqueryPredicateBuilderListener;
     protected final ExpressionFactory expressionFactory;
+    // Predicates are only ever appended, so the ones up to this count are already in canonical order
+    private int canonicalPredicateCount;
 
     PredicateManager(QueryGenerator queryGenerator, ParameterManager parameterManager, SubqueryInitiatorFactory subqueryInitFactory, ExpressionFactory expressionFactory) {
         super(queryGenerator, parameterManager);
@@ -108,6 +115,47 @@ public abstract class PredicateManager<T> extends AbstractManager {
         rootPredicate.predicate.accept(v);
     }
 
+    /**
+     * Orders the top level conjuncts by their structure, so that the order in which they were added is irrelevant.
+     * The conjuncts are only ordered again after new ones were added.
+     */
+    void orderPredicatesCanonically() {
+        List<Predicate> children = rootPredicate.predicate.getChildren();
+
+        if (children.size() == canonicalPredicateCount) {
+            return;
+        }
+
+        canonicalPredicateCount = children.size();
+
+        if (children.size() < 2) {
+            return;
+        }
+
+        final Map<Predicate, String> keys = new IdentityHashMap<Predicate, String>(children.size());
+        queryGenerator.setCanonicalKeyMode(true);
+
+        try {
+            for (Predicate child : children) {
+                StringBuilder sb = new StringBuilder();
+                queryGenerator.setQueryBuffer(sb);
+                child.accept(queryGenerator);
+                keys.put(child, sb.toString());
+            }
+        } finally {
+            queryGenerator.setCanonicalKeyMode(false);
+        }
+
+        // The sort is stable, so structurally equal predicates keep their order
+        Collections.sort(children, new Comparator<Predicate>() {
+
+            @Override
+            public int compare(Predicate o1, Predicate o2) {
+                return keys.get(o1).compareTo(keys.get(o2));
+            }
+        });
+    }
+
     boolean hasPredicates() {
         return rootPredicate.predicate.getChildren().size() > 0;
     }
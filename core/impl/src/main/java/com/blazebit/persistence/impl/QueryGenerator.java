@@ -21,6 +21,7 @@ import com.blazebit.persistence.impl.expression.ArrayExpression;
 import com.blazebit.persistence.impl.expression.CompositeExpression;
 import com.blazebit.persistence.impl.expression.Expression;
 import com.blazebit.persistence.impl.expression.FooExpression;
+import com.blazebit.persistence.impl.expression.OuterExpression;
 import com.blazebit.persistence.impl.expression.ParameterExpression;
 import com.blazebit.persistence.impl.expression.PathExpression;
 import com.blazebit.persistence.impl.expression.SubqueryExpression;
@@ -54,14 +55,21 @@ public class QueryGenerator extends VisitorAdapter {
 
     private StringBuilder sb;
     private boolean replaceSelectAliases = false;
+    // when set, unresolved expressions are rendered as they were written which is used for query string cache keys
+    private boolean queryShapeMode = false;
+    private boolean queryShapeComplete = true;
+    // when set, expressions are rendered as they were written and generated parameter names are omitted, which is used to order predicates canonically
+    private boolean canonicalKeyMode = false;
     // cyclic dependency
     private SelectManager<?> selectManager;
     private final BaseQueryBuilder<?, ?> aliasOwner;
     private final AliasManager aliasManager;
+    private final ParameterManager parameterManager;
 
-    public QueryGenerator(BaseQueryBuilder<?, ?> aliasOwner, AliasManager aliasManager) {
+    public QueryGenerator(BaseQueryBuilder<?, ?> aliasOwner, AliasManager aliasManager, ParameterManager parameterManager) {
         this.aliasOwner = aliasOwner;
         this.aliasManager = aliasManager;
+        this.parameterManager = parameterManager;
     }
 
     void setSelectManager(SelectManager<?> selectManager) {
@@ -210,6 +218,9 @@ public class QueryGenerator extends VisitorAdapter {
 
     @Override
     public void visit(InPredicate predicate) {
+        if (predicate.getRight() instanceof ParameterExpression && renderChunkedIn(predicate.getLeft(), (ParameterExpression) predicate.getRight(), false)) {
+            return;
+        }
         predicate.getLeft().accept(this);
         if (predicate.getRight() instanceof ParameterExpression) {
             sb.append(" IN ");
@@ -222,6 +233,9 @@ public class QueryGenerator extends VisitorAdapter {
 
     @Override
     public void visit(NotInPredicate predicate) {
+        if (predicate.getRight() instanceof ParameterExpression && renderChunkedIn(predicate.getLeft(), (ParameterExpression) predicate.getRight(), true)) {
+            return;
+        }
         predicate.getLeft().accept(this);
         sb.append(" NOT");
         if (predicate.getRight() instanceof ParameterExpression) {
@@ -233,6 +247,37 @@ public class QueryGenerator extends VisitorAdapter {
         }
     }
 
+    /**
+     * Renders an IN predicate for every chunk of a large collection parameter, the chunk parameter values are provided by the
+     * {@link ParameterManager}. The chunk parameters are enclosed in parentheses because Hibernate doesn't expand a collection
+     * parameter that is directly followed by a closing parenthesis.
+     *
+     * @return True if the predicate was rendered, false if the parameter does not need chunking
+     */
+    private boolean renderChunkedIn(Expression left, ParameterExpression parameter, boolean not) {
+        int chunkCount = parameterManager.getChunkCount(parameter.getName());
+
+        if (chunkCount < 2) {
+            return false;
+        }
+
+        String operator = not ? " NOT IN (:" : " IN (:";
+        String connector = not ? " AND " : " OR ";
+        sb.append('(');
+
+        for (int i = 0; i < chunkCount; i++) {
+            if (i != 0) {
+                sb.append(connector);
+            }
+
+            left.accept(this);
+            sb.append(operator).append(ParameterManager.getChunkParameterName(parameter.getName(), i)).append(')');
+        }
+
+        sb.append(')');
+        return true;
+    }
+
     @Override
     public void visit(ExistsPredicate predicate) {
         sb.append("EXISTS ");
@@ -279,6 +324,13 @@ public class QueryGenerator extends VisitorAdapter {
             paramName = expression.getName();
         }
         sb.append(":");
+
+        if (canonicalKeyMode && parameterManager.isGeneratedParameterName(paramName)) {
+            // Generated names depend on the call order, so only the position of the parameter is relevant
+            sb.append('?');
+            return;
+        }
+
         sb.append(paramName);
     }
 
@@ -296,6 +348,10 @@ public class QueryGenerator extends VisitorAdapter {
 
     @Override
     public void visit(PathExpression expression) {
+        if (queryShapeMode || canonicalKeyMode) {
+            sb.append(expression.getPath());
+            return;
+        }
         if (replaceSelectAliases) {
             if (expression.getBaseNode() != null) {
                 JoinNode baseNode = (JoinNode) expression.getBaseNode();
@@ -341,13 +397,49 @@ public class QueryGenerator extends VisitorAdapter {
         }
     }
 
+    @Override
+    public void visit(OuterExpression expression) {
+        if (queryShapeMode || canonicalKeyMode) {
+            sb.append("OUTER(");
+            expression.getPath().accept(this);
+            sb.append(')');
+        } else {
+            super.visit(expression);
+        }
+    }
+
     @Override
     public void visit(SubqueryExpression expression) {
         sb.append('(');
-        sb.append(expression.getBuilder().getQueryString());
+        if (canonicalKeyMode) {
+            ((AbstractBaseQueryBuilder<?, ?>) expression.getBuilder()).buildCanonicalKey(sb);
+        } else if (queryShapeMode) {
+            if (!((AbstractBaseQueryBuilder<?, ?>) expression.getBuilder()).buildQueryShape(sb)) {
+                queryShapeComplete = false;
+            }
+        } else {
+            sb.append(expression.getBuilder().getQueryString());
+        }
         sb.append(')');
     }
 
+    boolean isQueryShapeMode() {
+        return queryShapeMode;
+    }
+
+    void setQueryShapeMode(boolean queryShapeMode) {
+        this.queryShapeMode = queryShapeMode;
+        this.queryShapeComplete = true;
+    }
+
+    boolean isQueryShapeComplete() {
+        return queryShapeComplete;
+    }
+
+    void setCanonicalKeyMode(boolean canonicalKeyMode) {
+        this.canonicalKeyMode = canonicalKeyMode;
+    }
+
     public boolean isReplaceSelectAliases() {
         return replaceSelectAliases;
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.metamodel.Metamodel;
+
+/**
+ * A size bounded cache for generated query strings that evicts the least recently used entries.
+ * Entries are keyed by the metamodel of the persistence unit and the query shape of a builder.
+ * The parameter binding plans of the query strings are cached along with them, keyed by the metamodel and the query string,
+ * since the same query string may be bound differently in another persistence unit.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class QueryStringCache {
+
+    private final Map<CacheKey, String> cache;
+    private final Map<CacheKey, ParameterBindingPlan> bindingPlans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public QueryStringCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+
+        this.cache = new LinkedHashMap<CacheKey, String>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.bindingPlans = new LinkedHashMap<CacheKey, ParameterBindingPlan>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, ParameterBindingPlan> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public String get(Metamodel metamodel, String queryShape) {
+        String queryString;
+
+        synchronized (cache) {
+            queryString = cache.get(new CacheKey(metamodel, queryShape));
+        }
+
+        if (queryString == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return queryString;
+    }
+
+    public void put(Metamodel metamodel, String queryShape, String queryString) {
+        synchronized (cache) {
+            cache.put(new CacheKey(metamodel, queryShape), queryString);
+        }
+    }
+
+    public ParameterBindingPlan getBindingPlan(Metamodel metamodel, String queryString) {
+        synchronized (bindingPlans) {
+            return bindingPlans.get(new CacheKey(metamodel, queryString));
+        }
+    }
+
+    public void putBindingPlan(Metamodel metamodel, String queryString, ParameterBindingPlan bindingPlan) {
+        synchronized (bindingPlans) {
+            bindingPlans.put(new CacheKey(metamodel, queryString), bindingPlan);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class CacheKey {
+
+        // The metamodel is compared by identity since join types depend on the persistence unit
+        private final Metamodel metamodel;
+        // Either a query shape or a query string
+        private final String query;
+
+        public CacheKey(Metamodel metamodel, String query) {
+            this.metamodel = metamodel;
+            this.query = query;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 53 * hash + System.identityHashCode(this.metamodel);
+            hash = 53 * hash + this.query.hashCode();
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return this.metamodel == other.metamodel && this.query.equals(other.query);
+        }
+    }
+}
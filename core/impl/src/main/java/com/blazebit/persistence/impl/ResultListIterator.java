@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl;
+
+import com.blazebit.persistence.ResultIterator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A result iterator over an already fetched result list, used when the JPA provider has no scrolling integration.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class ResultListIterator implements ResultIterator<Object[]> {
+
+    private final Iterator<?> iterator;
+
+    public ResultListIterator(List<?> resultList) {
+        this.iterator = resultList.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public Object[] next() {
+        Object row = iterator.next();
+
+        if (row instanceof Object[]) {
+            return (Object[]) row;
+        }
+
+        return new Object[]{ row };
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing is not supported");
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -117,6 +117,21 @@ public class SelectManager<T> extends AbstractManager {
         return sb.toString();
     }
 
+    void buildSelectShape(StringBuilder sb) {
+        sb.append("SELECT ");
+
+        if (distinct) {
+            sb.append("DISTINCT ");
+        }
+
+        // Select alias paths are not populated here since the expressions are not resolved yet
+        queryGenerator.setQueryBuffer(sb);
+        for (SelectInfo selectInfo : selectInfos) {
+            applySelect(queryGenerator, sb, selectInfo);
+            sb.append(", ");
+        }
+    }
+
     void applyTransformer(ExpressionTransformer transformer) {
         // carry out transformations
         for (SelectInfo selectInfo : selectInfos) {
@@ -17,6 +17,7 @@ package com.blazebit.persistence.impl.objectbuilder;
 
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.SelectBuilder;
+import com.blazebit.persistence.StreamableObjectBuilder;
 import java.lang.reflect.Constructor;
 import java.util.List;
 
@@ -25,7 +26,7 @@ import java.util.List;
  * @author Moritz Becker
  * @since 1.0
  */
-public class ClassObjectBuilder<T> implements ObjectBuilder<T> {
+public class ClassObjectBuilder<T> implements StreamableObjectBuilder<T> {
 
     private final Class<T> clazz;
     private Constructor<T> constructor;
@@ -73,6 +74,11 @@ public class ClassObjectBuilder<T> implements ObjectBuilder<T> {
         }
     }
 
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
     @Override
     public List<T> buildList(List<T> list) {
         return list;
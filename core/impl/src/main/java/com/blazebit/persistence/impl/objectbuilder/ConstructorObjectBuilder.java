@@ -17,6 +17,7 @@ package com.blazebit.persistence.impl.objectbuilder;
 
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.SelectBuilder;
+import com.blazebit.persistence.StreamableObjectBuilder;
 import java.lang.reflect.Constructor;
 import java.util.List;
 
@@ -25,7 +26,7 @@ import java.util.List;
  * @author Moritz Becker
  * @since 1.0
  */
-public class ConstructorObjectBuilder<T> implements ObjectBuilder<T> {
+public class ConstructorObjectBuilder<T> implements StreamableObjectBuilder<T> {
 
     private final Constructor<T> constructor;
 
@@ -46,6 +47,11 @@ public class ConstructorObjectBuilder<T> implements ObjectBuilder<T> {
         }
     }
 
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
     @Override
     public List<T> buildList(List<T> list) {
         return list;
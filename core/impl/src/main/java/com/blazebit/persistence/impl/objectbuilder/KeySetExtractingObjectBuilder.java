@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl.objectbuilder;
+
+import com.blazebit.persistence.ObjectBuilder;
+import com.blazebit.persistence.SelectBuilder;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Object builder for tuples that contain the key set elements after the actual select items.
+ * The key set elements are removed from every tuple and remembered before the remaining tuple is passed to the delegate.
+ * Without a delegate the first select item is the result.
+ *
+ * @param <T> The type that this builder produces
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class KeySetExtractingObjectBuilder<T> implements ObjectBuilder<T> {
+
+    private final ObjectBuilder<T> delegate;
+    private final int selectSize;
+    private final int keySize;
+    private final List<Serializable[]> keys = new ArrayList<Serializable[]>();
+
+    public KeySetExtractingObjectBuilder(ObjectBuilder<T> delegate, int selectSize, int keySize) {
+        this.delegate = delegate;
+        this.selectSize = selectSize;
+        this.keySize = keySize;
+    }
+
+    /**
+     * Returns the key of the tuple with the given index in the order the tuples were built.
+     *
+     * @param index The index of the tuple
+     * @return The key set elements of the tuple
+     */
+    public Serializable[] getKey(int index) {
+        return keys.get(index);
+    }
+
+    @Override
+    public void applySelects(SelectBuilder<?, ?> selectBuilder) {
+        // The select items and the key set elements are already part of the query
+    }
+
+    @Override
+    public T build(Object[] tuple) {
+        Serializable[] key = new Serializable[keySize];
+        System.arraycopy(tuple, selectSize, key, 0, keySize);
+        keys.add(key);
+
+        if (delegate == null) {
+            return (T) tuple[0];
+        }
+
+        Object[] selectTuple = new Object[selectSize];
+        System.arraycopy(tuple, 0, selectTuple, 0, selectSize);
+        return delegate.build(selectTuple);
+    }
+
+    @Override
+    public List<T> buildList(List<T> list) {
+        if (delegate == null) {
+            return list;
+        }
+
+        return delegate.buildList(list);
+    }
+}
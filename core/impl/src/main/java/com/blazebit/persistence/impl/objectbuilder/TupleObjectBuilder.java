@@ -17,6 +17,7 @@ package com.blazebit.persistence.impl.objectbuilder;
 
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.SelectBuilder;
+import com.blazebit.persistence.StreamableObjectBuilder;
 import com.blazebit.persistence.impl.SelectManager;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,7 +31,7 @@ import javax.persistence.TupleElement;
  * @author Moritz Becker
  * @since 1.0
  */
-public class TupleObjectBuilder implements ObjectBuilder<Tuple> {
+public class TupleObjectBuilder implements StreamableObjectBuilder<Tuple> {
 
     private final List<SelectManager.SelectInfo> selectInfos;
     private final Map<String, Integer> selectAliasToPositionMap;
@@ -46,6 +47,11 @@ public class TupleObjectBuilder implements ObjectBuilder<Tuple> {
         return new TupleImpl(tuple);
     }
 
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
     @Override
     public List<Tuple> buildList(List<Tuple> list) {
         return list;
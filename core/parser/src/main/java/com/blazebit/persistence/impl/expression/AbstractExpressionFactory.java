@@ -17,16 +17,28 @@ package com.blazebit.persistence.impl.expression;
 
 import com.blazebit.persistence.parser.JPQLSelectExpressionLexer;
 import com.blazebit.persistence.parser.JPQLSelectExpressionParser;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.antlr.v4.runtime.ANTLRErrorListener;
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 /**
@@ -37,6 +49,34 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
  */
 public abstract class AbstractExpressionFactory implements ExpressionFactory {
 
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    // Parsed expressions are only handed out as clones since the query builders modify expressions
+    private final ConcurrentMap<CacheKey, CacheEntry> cache;
+    private final int cacheSize;
+    private final AtomicLong accessClock = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public AbstractExpressionFactory() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates an expression factory that caches up to the given number of parsed expressions. When the cache is full, the least
+     * recently used entries are evicted in a batch so that lookups never have to lock the cache.
+     *
+     * @param cacheSize The maximum number of cached expressions, a value of 0 or less disables the cache
+     */
+    public AbstractExpressionFactory(int cacheSize) {
+        if (cacheSize > 0) {
+            this.cache = new ConcurrentHashMap<CacheKey, CacheEntry>();
+        } else {
+            this.cache = null;
+        }
+
+        this.cacheSize = cacheSize;
+    }
+
     @Override
     public Expression createSimpleExpression(String expression, boolean allowCaseWhen) {
         if (expression == null) {
@@ -45,12 +85,102 @@ public abstract class AbstractExpressionFactory implements ExpressionFactory {
         if (expression.isEmpty()) {
             throw new IllegalArgumentException("expression");
         }
+
+        // Simple paths and parameters are cheaper to parse than to look up and clone
+        Expression simpleExpression = SimpleExpressionParser.parse(expression);
+        if (simpleExpression != null) {
+            return simpleExpression;
+        }
+        if (cache == null) {
+            return parseSimpleExpression(expression, allowCaseWhen);
+        }
+
+        CacheKey key = new CacheKey(expression, allowCaseWhen);
+        CacheEntry entry = cache.get(key);
+
+        if (entry == null) {
+            entry = new CacheEntry(parseSimpleExpression(expression, allowCaseWhen), accessClock.incrementAndGet());
+
+            if (cache.putIfAbsent(key, entry) == null && cache.size() > cacheSize) {
+                evictLeastRecentlyUsedEntries();
+            }
+        } else {
+            entry.lastAccess = accessClock.incrementAndGet();
+        }
+
+        return entry.expression.clone();
+    }
+
+    /**
+     * Returns whether the parse result of the given expression is currently cached.
+     *
+     * @param expression The expression
+     * @param allowCaseWhen Whether the expression was parsed with case when expressions allowed
+     * @return True if the expression is cached, false otherwise
+     */
+    public boolean isCached(String expression, boolean allowCaseWhen) {
+        return cache != null && cache.containsKey(new CacheKey(expression, allowCaseWhen));
+    }
+
+    private void evictLeastRecentlyUsedEntries() {
+        // Only one thread evicts, the others may overshoot the cache size until the eviction is done
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            List<Map.Entry<CacheKey, CacheEntry>> entries = new ArrayList<Map.Entry<CacheKey, CacheEntry>>(cache.entrySet());
+            // Evict a quarter of the entries at once so that the access times don't have to be sorted on every insert
+            int evictCount = entries.size() - cacheSize + cacheSize / 4;
+
+            if (evictCount <= 0) {
+                return;
+            }
+
+            // Access times change concurrently, so the eviction works on a snapshot of them
+            long[] lastAccesses = new long[entries.size()];
+            for (int i = 0; i < lastAccesses.length; i++) {
+                lastAccesses[i] = entries.get(i).getValue().lastAccess;
+            }
+
+            long[] sortedLastAccesses = lastAccesses.clone();
+            Arrays.sort(sortedLastAccesses);
+            long evictionThreshold = sortedLastAccesses[evictCount - 1];
+
+            for (int i = 0; i < lastAccesses.length && evictCount > 0; i++) {
+                if (lastAccesses[i] <= evictionThreshold) {
+                    Map.Entry<CacheKey, CacheEntry> entry = entries.get(i);
+                    cache.remove(entry.getKey(), entry.getValue());
+                    evictCount--;
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private Expression parseSimpleExpression(String expression, boolean allowCaseWhen) {
         JPQLSelectExpressionLexer l = new JPQLSelectExpressionLexer(new ANTLRInputStream(expression));
         l.addErrorListener(ERR_LISTENER);
         CommonTokenStream tokens = new CommonTokenStream(l);
         JPQLSelectExpressionParser p = new JPQLSelectExpressionParser(tokens, allowCaseWhen);
-        p.addErrorListener(ERR_LISTENER);
-        ParserRuleContext ctx = callStartRule(p);
+        ParserRuleContext ctx;
+
+        // The faster SLL prediction is sufficient for almost all expressions, full LL is only needed if SLL fails
+        p.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        p.removeErrorListeners();
+        p.setErrorHandler(new BailErrorStrategy());
+
+        try {
+            ctx = callStartRule(p);
+        } catch (ParseCancellationException ex) {
+            tokens.reset();
+            p.reset();
+            p.getInterpreter().setPredictionMode(PredictionMode.LL);
+            p.addErrorListener(ERR_LISTENER);
+            p.setErrorHandler(new DefaultErrorStrategy());
+            ctx = callStartRule(p);
+        }
 
         ParseTreeWalker w = new ParseTreeWalker();
 
@@ -84,6 +214,48 @@ public abstract class AbstractExpressionFactory implements ExpressionFactory {
 
     protected abstract ParserRuleContext callStartRule(JPQLSelectExpressionParser parser);
 
+    private static class CacheEntry {
+
+        private final Expression expression;
+        private volatile long lastAccess;
+
+        public CacheEntry(Expression expression, long lastAccess) {
+            this.expression = expression;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static class CacheKey {
+
+        private final String expression;
+        private final boolean allowCaseWhen;
+
+        public CacheKey(String expression, boolean allowCaseWhen) {
+            this.expression = expression;
+            this.allowCaseWhen = allowCaseWhen;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 41 * hash + this.expression.hashCode();
+            hash = 41 * hash + (this.allowCaseWhen ? 1 : 0);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return this.allowCaseWhen == other.allowCaseWhen && this.expression.equals(other.expression);
+        }
+    }
+
     protected static final ANTLRErrorListener ERR_LISTENER = new ANTLRErrorListener() {
 
         @Override
@@ -36,6 +36,11 @@ public class ArrayExpression extends PathElementExpression {
         visitor.visit(this);
     }
 
+    @Override
+    public ArrayExpression clone() {
+        return new ArrayExpression(base.clone(), index == null ? null : index.clone());
+    }
+
     public PropertyExpression getBase() {
         return base;
     }
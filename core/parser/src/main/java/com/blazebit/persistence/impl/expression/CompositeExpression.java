@@ -15,6 +15,7 @@
  */
 package com.blazebit.persistence.impl.expression;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -36,6 +37,18 @@ public class CompositeExpression implements Expression {
         visitor.visit(this);
     }
 
+    @Override
+    public CompositeExpression clone() {
+        int size = expressions.size();
+        List<Expression> newExpressions = new ArrayList<Expression>(size);
+
+        for (int i = 0; i < size; i++) {
+            newExpressions.add(expressions.get(i).clone());
+        }
+
+        return new CompositeExpression(newExpressions);
+    }
+
     public List<Expression> getExpressions() {
         return expressions;
     }
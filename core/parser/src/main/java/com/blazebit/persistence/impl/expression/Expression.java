@@ -49,6 +49,13 @@ public interface Expression {
      */
     public void accept(Visitor visitor);
 
+    /**
+     * Creates a deep copy of this expression so that the copy can be modified without affecting this expression.
+     *
+     * @return A deep copy of this expression
+     */
+    public Expression clone();
+
     /**
      * Returns the trimmed original string representation of the expression.
      *
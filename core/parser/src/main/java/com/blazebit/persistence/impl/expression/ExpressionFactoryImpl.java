@@ -26,6 +26,13 @@ import org.antlr.v4.runtime.ParserRuleContext;
  */
 public final class ExpressionFactoryImpl extends AbstractExpressionFactory {
 
+    public ExpressionFactoryImpl() {
+    }
+
+    public ExpressionFactoryImpl(int cacheSize) {
+        super(cacheSize);
+    }
+
     @Override
     protected ParserRuleContext callStartRule(JPQLSelectExpressionParser parser) {
         return parser.parseSimpleExpression();
@@ -34,6 +34,11 @@ public class FooExpression implements Expression {
         visitor.visit(this);
     }
 
+    @Override
+    public FooExpression clone() {
+        return new FooExpression(string);
+    }
+
     public String getString() {
         return string;
     }
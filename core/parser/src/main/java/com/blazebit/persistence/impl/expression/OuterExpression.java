@@ -25,6 +25,17 @@ public class OuterExpression implements Expression {
 
     private PathExpression path;
 
+    @Override
+    public OuterExpression clone() {
+        OuterExpression outerExpression = new OuterExpression();
+
+        if (path != null) {
+            outerExpression.setPath(path.clone());
+        }
+
+        return outerExpression;
+    }
+
     public void setPath(PathExpression path) {
         this.path = path;
     }
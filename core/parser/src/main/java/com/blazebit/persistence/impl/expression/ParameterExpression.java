@@ -40,6 +40,17 @@ public class ParameterExpression implements Expression {
         visitor.visit(this);
     }
 
+    @Override
+    public ParameterExpression clone() {
+        if (value == null) {
+            return new ParameterExpression(name);
+        }
+
+        ParameterExpression parameterExpression = new ParameterExpression(value);
+        parameterExpression.setName(name);
+        return parameterExpression;
+    }
+
     public String getName() {
         return name;
     }
@@ -23,4 +23,6 @@ package com.blazebit.persistence.impl.expression;
  */
 public abstract class PathElementExpression implements Expression {
 
+    @Override
+    public abstract PathElementExpression clone();
 }
@@ -24,7 +24,7 @@ import java.util.List;
  * @author Moritz Becker
  * @since 1.0
  */
-public class PathExpression implements Expression, Cloneable {
+public class PathExpression implements Expression {
 
     private final List<PathElementExpression> pathProperties;
     // Although this node will always be a JoinNode we will use casting at use site to be able to reuse the parser
@@ -146,8 +146,18 @@ public class PathExpression implements Expression, Cloneable {
     }
 
     @Override
-    protected Object clone() throws CloneNotSupportedException {
-        //TODO: implement
-        return super.clone();
+    public PathExpression clone() {
+        int size = pathProperties.size();
+        List<PathElementExpression> newPathProperties = new ArrayList<PathElementExpression>(size);
+
+        for (int i = 0; i < size; i++) {
+            newPathProperties.add(pathProperties.get(i).clone());
+        }
+
+        PathExpression pathExpression = new PathExpression(newPathProperties, collectionKeyPath);
+        pathExpression.setBaseNode(baseNode);
+        pathExpression.setField(field);
+        pathExpression.setUsedInCollectionFunction(usedInCollectionFunction);
+        return pathExpression;
     }
 }
@@ -34,6 +34,11 @@ public class PropertyExpression extends PathElementExpression {
         visitor.visit(this);
     }
 
+    @Override
+    public PropertyExpression clone() {
+        return new PropertyExpression(property);
+    }
+
     public String getProperty() {
         return property;
     }
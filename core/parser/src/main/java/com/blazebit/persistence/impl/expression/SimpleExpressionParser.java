@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hand written parser for the most common kinds of expressions, i.e. plain paths like <code>d.owner.name</code>, paths with
+ * array accesses like <code>d.contacts[:key].name</code> and input parameters like <code>:param</code>.
+ * The produced expressions are the same as the ones produced by the ANTLR based parsing. If an expression can not be handled,
+ * null is returned so that the caller can fall back to the ANTLR based parsing.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+final class SimpleExpressionParser {
+
+    private SimpleExpressionParser() {
+    }
+
+    /**
+     * Parses the given expression if it is a simple path or input parameter expression.
+     *
+     * @param expression The expression to parse
+     * @return The parsed expression or null if the expression is not simple
+     */
+    public static Expression parse(String expression) {
+        int length = expression.length();
+
+        if (expression.charAt(0) == ':') {
+            if (identifierEnd(expression, 1) != length) {
+                return null;
+            }
+
+            return new ParameterExpression(expression.substring(1));
+        }
+
+        PathExpression path = new PathExpression(new ArrayList<PathElementExpression>());
+
+        if (parsePath(expression, 0, length, path.getExpressions()) != length) {
+            return null;
+        }
+
+        return path;
+    }
+
+    /**
+     * Parses path elements starting at the given index and returns the index after the last parsed path element,
+     * or -1 if the path is not simple.
+     */
+    private static int parsePath(String expression, int start, int end, List<PathElementExpression> pathElements) {
+        int index = start;
+
+        while (true) {
+            int identifierEnd = identifierEnd(expression, index);
+
+            if (identifierEnd == -1 || isPotentialKeyword(expression, index, identifierEnd)) {
+                return -1;
+            }
+
+            PropertyExpression property = new PropertyExpression(expression.substring(index, identifierEnd));
+            index = identifierEnd;
+
+            if (index < end && expression.charAt(index) == '[') {
+                int indexEnd = expression.indexOf(']', index + 1);
+
+                if (indexEnd == -1) {
+                    return -1;
+                }
+
+                Expression arrayIndex = parseArrayIndex(expression, index + 1, indexEnd);
+
+                if (arrayIndex == null) {
+                    return -1;
+                }
+
+                pathElements.add(new ArrayExpression(property, arrayIndex));
+                index = indexEnd + 1;
+            } else {
+                pathElements.add(property);
+            }
+
+            if (index == end) {
+                return index;
+            }
+            if (expression.charAt(index) != '.') {
+                return -1;
+            }
+
+            index++;
+        }
+    }
+
+    private static Expression parseArrayIndex(String expression, int start, int end) {
+        if (start == end) {
+            return null;
+        }
+
+        char c = expression.charAt(start);
+
+        if (c == ':') {
+            if (identifierEnd(expression, start + 1) != end) {
+                return null;
+            }
+
+            return new ParameterExpression(expression.substring(start + 1, end));
+        } else if (c >= '0' && c <= '9') {
+            for (int i = start + 1; i < end; i++) {
+                c = expression.charAt(i);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+            }
+
+            return new FooExpression(expression.substring(start, end));
+        }
+
+        // Nested array expressions are left to the ANTLR based parser
+        List<PathElementExpression> pathElements = new ArrayList<PathElementExpression>();
+
+        if (parsePath(expression, start, end, pathElements) != end) {
+            return null;
+        }
+
+        for (int i = 0; i < pathElements.size(); i++) {
+            if (pathElements.get(i) instanceof ArrayExpression) {
+                return null;
+            }
+        }
+
+        return new PathExpression(pathElements);
+    }
+
+    /**
+     * Returns the end index of the identifier starting at the given index or -1 if there is no identifier.
+     * Only ASCII identifiers are recognized, everything else is left to the ANTLR based parser.
+     */
+    private static int identifierEnd(String expression, int start) {
+        int length = expression.length();
+
+        if (start >= length || !isIdentifierStart(expression.charAt(start))) {
+            return -1;
+        }
+
+        int index = start + 1;
+
+        while (index < length && isIdentifierPart(expression.charAt(index))) {
+            index++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Keywords of the grammar are upper case, except for the boolean literals. Identifiers without lower case letters are
+     * left to the ANTLR based parser since they might be lexed as keyword.
+     */
+    private static boolean isPotentialKeyword(String expression, int start, int end) {
+        int length = end - start;
+
+        if (length == 4 && expression.regionMatches(start, "true", 0, 4)) {
+            return true;
+        }
+        if (length == 5 && expression.regionMatches(start, "false", 0, 5)) {
+            return true;
+        }
+
+        for (int i = start; i < end; i++) {
+            char c = expression.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '$' || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+}
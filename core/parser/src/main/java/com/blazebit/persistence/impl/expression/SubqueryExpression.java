@@ -36,6 +36,16 @@ public class SubqueryExpression implements Expression {
         visitor.visit(this);
     }
 
+    /**
+     * The subquery builder is shared with the copy since builders can not be copied.
+     *
+     * @return A new subquery expression for the same builder
+     */
+    @Override
+    public SubqueryExpression clone() {
+        return new SubqueryExpression(builder);
+    }
+
     public SubqueryBuilder<?> getBuilder() {
         return builder;
     }
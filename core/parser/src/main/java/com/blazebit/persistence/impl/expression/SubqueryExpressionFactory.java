@@ -26,6 +26,13 @@ import org.antlr.v4.runtime.ParserRuleContext;
  */
 public class SubqueryExpressionFactory extends AbstractExpressionFactory {
 
+    public SubqueryExpressionFactory() {
+    }
+
+    public SubqueryExpressionFactory(int cacheSize) {
+        super(cacheSize);
+    }
+
     @Override
     protected ParserRuleContext callStartRule(JPQLSelectExpressionParser parser) {
         return parser.parseSimpleSubqueryExpression();
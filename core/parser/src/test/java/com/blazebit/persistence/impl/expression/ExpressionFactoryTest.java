@@ -29,25 +29,37 @@ import org.junit.rules.TestRule;
  */
 public class ExpressionFactoryTest {
 
+    private static final String EXPRESSION = "SIZE(Hello.world[:hahaha].criteria[1].api.lsls[a.b.c.d.e]) + SIZE(Hello.world[:hahaha].criteria[1].api.lsls[a.b.c.d.e])";
+
     @Rule
     public TestRule benchmarkRun = new BenchmarkRule();
     private ExpressionFactory ef;
+    private ExpressionFactory cachingEf;
+    private Expression expression;
 
     @Before
     public void createFactory() {
-        ef = new ExpressionFactoryImpl();
+        ef = new ExpressionFactoryImpl(0);
+        cachingEf = new ExpressionFactoryImpl();
+        cachingEf.createSimpleExpression(EXPRESSION);
+        expression = ef.createSimpleExpression(EXPRESSION);
     }
 
     @BenchmarkOptions(benchmarkRounds = 100, warmupRounds = 0)
     @Test
     public void testCreateSimpleExpressionPerformance() {
-        ef.createSimpleExpression(
-            "SIZE(Hello.world[:hahaha].criteria[1].api.lsls[a.b.c.d.e]) + SIZE(Hello.world[:hahaha].criteria[1].api.lsls[a.b.c.d.e])");
+        ef.createSimpleExpression(EXPRESSION);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 100, warmupRounds = 0)
+    @Test
+    public void testCreateSimpleExpressionCachedPerformance() {
+        cachingEf.createSimpleExpression(EXPRESSION);
     }
 
     @BenchmarkOptions(benchmarkRounds = 100, warmupRounds = 0)
     @Test
     public void testExpressionClone() {
-        //TODO: implement
+        expression.clone();
     }
 }
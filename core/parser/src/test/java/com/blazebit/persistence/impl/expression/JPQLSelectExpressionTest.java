@@ -19,12 +19,17 @@ import com.blazebit.persistence.parser.JPQLSelectExpressionLexer;
 import com.blazebit.persistence.parser.JPQLSelectExpressionParser;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -496,4 +501,111 @@ public class JPQLSelectExpressionTest {
         assertTrue(expressions.get(4).equals(path("supportedLocales")));
         assertTrue(expressions.get(5).equals(new FooExpression(" THEN true ELSE false END")));
     }
+
+    @Test
+    public void testCachedExpressionIsNotShared() {
+        ExpressionFactory ef = new ExpressionFactoryImpl();
+        CompositeExpression first = (CompositeExpression) ef.createSimpleExpression("SIZE(d.contacts[:key]) + 1");
+        CompositeExpression second = (CompositeExpression) ef.createSimpleExpression("SIZE(d.contacts[:key]) + 1");
+
+        assertTrue(first != second);
+        assertTrue(first.equals(second));
+
+        PathExpression firstPath = (PathExpression) first.getExpressions().get(1);
+        firstPath.getExpressions().clear();
+        first.getExpressions().clear();
+
+        CompositeExpression third = (CompositeExpression) ef.createSimpleExpression("SIZE(d.contacts[:key]) + 1");
+        assertTrue(third.equals(second));
+        assertTrue(((PathExpression) third.getExpressions().get(1)).getExpressions().size() == 2);
+    }
+
+    @Test
+    public void testCachedOuterExpressionIsNotShared() {
+        ExpressionFactory ef = new SubqueryExpressionFactory();
+        OuterExpression first = (OuterExpression) ef.createSimpleExpression("OUTER(owner.name)");
+        first.getPath().setBaseNode(new Object());
+        first.getPath().setField("name");
+
+        OuterExpression second = (OuterExpression) ef.createSimpleExpression("OUTER(owner.name)");
+        assertTrue(first.getPath() != second.getPath());
+        assertTrue(second.getPath().getBaseNode() == null);
+        assertTrue(second.getPath().getField() == null);
+    }
+
+    @Test
+    public void testBoundedCacheConcurrentAccess() throws Exception {
+        final ExpressionFactory ef = new ExpressionFactoryImpl(2);
+        final String[] expressions = new String[]{ "SIZE(d.contacts) + 1", "SIZE(d.partners) + 2", "SIZE(d.people) + 3", "SIZE(d.versions) + 4" };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        try {
+            for (int i = 0; i < 4; i++) {
+                final int offset = i;
+                results.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() {
+                        for (int j = 0; j < 1000; j++) {
+                            String expression = expressions[(offset + j) % expressions.length];
+
+                            if (!expression.equals(ef.createSimpleExpression(expression).toString())) {
+                                return false;
+                            }
+                        }
+
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBoundedCacheEvictsLeastRecentlyUsed() {
+        AbstractExpressionFactory ef = new ExpressionFactoryImpl(4);
+        ef.createSimpleExpression("SIZE(d.contacts) + 1");
+        ef.createSimpleExpression("SIZE(d.partners) + 2");
+        ef.createSimpleExpression("SIZE(d.people) + 3");
+        ef.createSimpleExpression("SIZE(d.versions) + 4");
+        // Use the first expression again so that it is the most recently used one before the eviction
+        ef.createSimpleExpression("SIZE(d.contacts) + 1");
+        ef.createSimpleExpression("SIZE(d.owners) + 5");
+
+        assertTrue(ef.isCached("SIZE(d.contacts) + 1", false));
+        assertTrue(ef.isCached("SIZE(d.owners) + 5", false));
+        assertFalse(ef.isCached("SIZE(d.partners) + 2", false));
+    }
+
+    @Test
+    public void testBoundedCacheKeepsHotExpressions() {
+        AbstractExpressionFactory ef = new ExpressionFactoryImpl(16);
+
+        for (int i = 0; i < 1000; i++) {
+            ef.createSimpleExpression("SIZE(d.contacts) + 1");
+            ef.createSimpleExpression("SIZE(d.partners) + " + i);
+
+            assertTrue(ef.isCached("SIZE(d.contacts) + 1", false));
+            assertTrue(ef.isCached("SIZE(d.partners) + " + i, false));
+        }
+    }
+
+    @Test(expected = SyntaxErrorException.class)
+    public void testFactorySyntaxError() {
+        new ExpressionFactoryImpl(0).createSimpleExpression("CASE WHEN KEY(localized[:locale]) NOT MEMBER OF supportedLocales THEN true ELSE false END", false);
+    }
+
+    @Test
+    public void testFactoryCaseWhen() {
+        Expression result = new ExpressionFactoryImpl(0).createSimpleExpression("CASE WHEN KEY(localized[:locale]) NOT MEMBER OF supportedLocales THEN true ELSE false END", true);
+
+        assertTrue(result.toString().equals("CASE WHEN KEY(localized[:locale]) NOT MEMBER OF supportedLocales THEN true ELSE false END"));
+    }
 }
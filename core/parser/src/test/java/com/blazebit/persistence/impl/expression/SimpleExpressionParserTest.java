@@ -0,0 +1,307 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl.expression;
+
+import com.blazebit.persistence.parser.JPQLSelectExpressionLexer;
+import com.blazebit.persistence.parser.JPQLSelectExpressionParser;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Compares the results of the hand written parser with the results of the ANTLR based parser.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class SimpleExpressionParserTest {
+
+    // Test sources whose string literals make up the corpus, relative to the directory of this module
+    private static final String[] CORPUS_SOURCE_DIRECTORIES = {
+        "src/test/java", "../testsuite/src/test/java", "../../entity-view/testsuite/src/test/java"
+    };
+    private static final Pattern STRING_LITERAL = Pattern.compile("\"((?:[^\"\\\\\\n]|\\\\.)*)\"");
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z_$][a-zA-Z_$0-9]*");
+
+    // Corner cases of the identifiers and array indexes that the fast path handles
+    private static final String[] FAST_PATH = {
+        ":locale", "d", "d.owner.name", "contacts[1]", "d.contacts[01]", "d.contacts[:age].localized[d.idx]",
+        "localized[defaultLanguage].name", "$value", "_id", "d.$x_1", "d.trueValue"
+    };
+
+    // Expressions that must be handled by the ANTLR based parser
+    private static final String[] FALLBACK = {
+        "d.age + 1", "SIZE(d.contacts)", "KEY(d.contacts)", "d.partners + 1", "LENGTH(d.name)", "COUNT(d.id)", "d.age)", "true",
+        "d.true", "d. name", " d.name", "d.name ", "d..name", "d.", ".d", "d[]", "d[:]", "d[1", "d[1a]", "d[a[1]]", ":1",
+        ":a.b", "1", "'abc'", "d.äge"
+    };
+
+    /**
+     * Compares the fast path with the ANTLR based parser for every string literal of the test sources that ANTLR can parse.
+     * The fast path must handle every expression that it is meant to handle, see {@link #isFastPathExpression(String, Expression)}.
+     */
+    @Test
+    public void testCorpusMatchesAntlr() throws IOException {
+        Set<String> corpus = loadCorpus();
+        int fastPathCount = 0;
+
+        for (String expression : corpus) {
+            Expression expected = parseAntlr(expression);
+
+            if (expected == null) {
+                continue;
+            }
+
+            Expression actual = SimpleExpressionParser.parse(expression);
+
+            if (isFastPathExpression(expression, expected)) {
+                assertNotNull(expression, actual);
+                assertSameStructure(expression, expected, actual);
+                fastPathCount++;
+            } else {
+                assertNull(expression, actual);
+            }
+        }
+
+        // Guards against an empty corpus, e.g. because the test sources could not be found
+        assertTrue("Only " + fastPathCount + " expressions of the corpus used the fast path", fastPathCount >= 50);
+    }
+
+    @Test
+    public void testSimpleExpressionsUseFastPath() {
+        for (String expression : FAST_PATH) {
+            Expression actual = SimpleExpressionParser.parse(expression);
+            assertNotNull(expression, actual);
+            assertSameStructure(expression, parseAntlr(expression), actual);
+        }
+    }
+
+    @Test
+    public void testFallback() {
+        for (String expression : FALLBACK) {
+            assertNull(expression, SimpleExpressionParser.parse(expression));
+        }
+    }
+
+    @Test
+    public void testFactoryResultMatchesAntlr() throws IOException {
+        ExpressionFactory ef = new ExpressionFactoryImpl(0);
+
+        for (String expression : loadCorpus()) {
+            Expression expected = parseAntlr(expression);
+
+            if (expected != null) {
+                assertSameStructure(expression, expected, ef.createSimpleExpression(expression, true));
+            }
+        }
+    }
+
+    private Set<String> loadCorpus() throws IOException {
+        Set<String> corpus = new TreeSet<String>(Arrays.asList(FAST_PATH));
+        File baseDirectory = new File(System.getProperty("basedir", "."));
+
+        for (String sourceDirectory : CORPUS_SOURCE_DIRECTORIES) {
+            collectStringLiterals(new File(baseDirectory, sourceDirectory), corpus);
+        }
+
+        return corpus;
+    }
+
+    private void collectStringLiterals(File file, Set<String> corpus) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+
+            for (File child : children) {
+                collectStringLiterals(child, corpus);
+            }
+        } else if (file.getName().endsWith(".java")) {
+            Matcher matcher = STRING_LITERAL.matcher(readFile(file));
+
+            while (matcher.find()) {
+                String literal = matcher.group(1).replace("\\\"", "\"").replace("\\\\", "\\");
+
+                if (!literal.isEmpty()) {
+                    corpus.add(literal);
+                }
+            }
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns whether the expression is a path of ASCII identifiers that may not be keywords, with array indexes that are
+     * parameters, integers or such paths without array indexes, or a parameter, written without any whitespace.
+     */
+    private boolean isFastPathExpression(String expression, Expression expected) {
+        if (!expression.equals(expected.toString())) {
+            return false;
+        }
+        if (expected instanceof ParameterExpression) {
+            return IDENTIFIER.matcher(((ParameterExpression) expected).getName()).matches();
+        }
+        if (!(expected instanceof PathExpression)) {
+            return false;
+        }
+
+        for (PathElementExpression element : ((PathExpression) expected).getExpressions()) {
+            if (element instanceof PropertyExpression) {
+                if (!isFastPathIdentifier(((PropertyExpression) element).getProperty())) {
+                    return false;
+                }
+            } else if (element instanceof ArrayExpression) {
+                ArrayExpression arrayExpression = (ArrayExpression) element;
+
+                if (!isFastPathIdentifier(arrayExpression.getBase().getProperty()) || !isFastPathArrayIndex(arrayExpression.getIndex())) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isFastPathArrayIndex(Expression index) {
+        if (index instanceof ParameterExpression) {
+            return IDENTIFIER.matcher(((ParameterExpression) index).getName()).matches();
+        }
+        if (index instanceof FooExpression) {
+            return index.toString().matches("[0-9]+");
+        }
+        if (!(index instanceof PathExpression)) {
+            return false;
+        }
+
+        for (PathElementExpression element : ((PathExpression) index).getExpressions()) {
+            if (!(element instanceof PropertyExpression) || !isFastPathIdentifier(((PropertyExpression) element).getProperty())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isFastPathIdentifier(String identifier) {
+        // Keywords are upper case except for the boolean literals
+        return IDENTIFIER.matcher(identifier).matches() && !"true".equals(identifier) && !"false".equals(identifier)
+            && !identifier.equals(identifier.toUpperCase());
+    }
+
+    /**
+     * Parses the expression like the expression factory does or returns null if it is not a valid expression.
+     */
+    private Expression parseAntlr(String expression) {
+        JPQLSelectExpressionLexer l = new JPQLSelectExpressionLexer(new ANTLRInputStream(expression));
+        l.removeErrorListeners();
+        l.addErrorListener(AbstractExpressionFactory.ERR_LISTENER);
+        CommonTokenStream tokens = new CommonTokenStream(l);
+        JPQLSelectExpressionParser p = new JPQLSelectExpressionParser(tokens, true);
+        p.removeErrorListeners();
+        p.addErrorListener(AbstractExpressionFactory.ERR_LISTENER);
+        JPQLSelectExpressionParser.ParseSimpleExpressionContext ctx;
+
+        try {
+            ctx = p.parseSimpleExpression();
+        } catch (SyntaxErrorException ex) {
+            return null;
+        }
+
+        JPQLSelectExpressionListenerImpl listener = new JPQLSelectExpressionListenerImpl(tokens);
+        new ParseTreeWalker().walk(listener, ctx);
+        CompositeExpression result = listener.getCompositeExpression();
+
+        try {
+            // The listener leaves the index of nested array expressions like d[a[1]] empty
+            result.toString();
+        } catch (NullPointerException ex) {
+            return null;
+        }
+
+        if (result.getExpressions().size() == 1) {
+            return result.getExpressions().get(0);
+        }
+
+        return result;
+    }
+
+    private void assertSameStructure(String expression, Expression expected, Expression actual) {
+        if (expected == null || actual == null) {
+            assertEquals(expression, expected, actual);
+            return;
+        }
+
+        assertEquals(expression, expected.getClass(), actual.getClass());
+        assertEquals(expression, expected.toString(), actual.toString());
+        assertEquals(expression, expected, actual);
+
+        if (expected instanceof PathExpression) {
+            PathExpression expectedPath = (PathExpression) expected;
+            PathExpression actualPath = (PathExpression) actual;
+            assertEquals(expression, expectedPath.isUsedInCollectionFunction(), actualPath.isUsedInCollectionFunction());
+            assertEquals(expression, expectedPath.isCollectionKeyPath(), actualPath.isCollectionKeyPath());
+            assertSameStructure(expression, expectedPath.getExpressions(), actualPath.getExpressions());
+        } else if (expected instanceof ArrayExpression) {
+            ArrayExpression expectedArray = (ArrayExpression) expected;
+            ArrayExpression actualArray = (ArrayExpression) actual;
+            assertSameStructure(expression, expectedArray.getBase(), actualArray.getBase());
+            assertSameStructure(expression, expectedArray.getIndex(), actualArray.getIndex());
+        } else if (expected instanceof CompositeExpression) {
+            assertSameStructure(expression, ((CompositeExpression) expected).getExpressions(), ((CompositeExpression) actual).getExpressions());
+        }
+    }
+
+    private void assertSameStructure(String expression, List<? extends Expression> expected, List<? extends Expression> actual) {
+        assertEquals(expression, expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameStructure(expression, expected.get(i), actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+import com.blazebit.persistence.entity.Document;
+import com.blazebit.persistence.entity.Person;
+import com.blazebit.persistence.impl.ConfigurationProperties;
+import java.util.List;
+import javax.persistence.EntityTransaction;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class CanonicalQueryStringTest extends AbstractCoreTest {
+
+    private CriteriaBuilderFactory canonicalCbf;
+
+    @Before
+    public void setUp() {
+        canonicalCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.CANONICAL_QUERY_STRINGS, "true")
+            .createCriteriaBuilderFactory();
+
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            Person p1 = new Person("Karl1");
+            Person p2 = new Person("Karl2");
+            em.persist(p1);
+            em.persist(p2);
+
+            Document doc1 = new Document("Doc1", p1);
+            doc1.setAge(10L);
+            Document doc2 = new Document("Doc2", p2);
+            doc2.setAge(20L);
+            em.persist(doc1);
+            em.persist(doc2);
+
+            p2.setPartnerDocument(doc1);
+
+            em.flush();
+            tx.commit();
+            em.clear();
+        } catch (Exception e) {
+            tx.rollback();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testDifferentCallOrderWithoutCanonicalization() {
+        CriteriaBuilder<Document> cb1 = cbf.from(em, Document.class, "d")
+            .where("d.name").eq("Doc1")
+            .where("d.age").gt(5L);
+        CriteriaBuilder<Document> cb2 = cbf.from(em, Document.class, "d")
+            .where("d.age").gt(5L)
+            .where("d.name").eq("Doc1");
+
+        assertFalse(cb1.getQueryString().equals(cb2.getQueryString()));
+    }
+
+    @Test
+    public void testPredicateOrderAndParameterNames() {
+        CriteriaBuilder<Document> cb1 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.name").eq("Doc1")
+            .where("d.age").gt(5L);
+        CriteriaBuilder<Document> cb2 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.age").gt(5L)
+            .where("d.name").eq("Doc1");
+
+        String expected = "SELECT d FROM Document d WHERE d.age > :param_0 AND d.name = :param_1";
+        assertEquals(expected, cb1.getQueryString());
+        assertEquals(expected, cb2.getQueryString());
+        assertEquals(1, cb1.getResultList().size());
+        assertEquals(1, cb2.getResultList().size());
+    }
+
+    @Test
+    public void testModificationAfterCanonicalization() {
+        CriteriaBuilder<Document> cb = canonicalCbf.from(em, Document.class, "d")
+            .where("d.name").eq("Doc1");
+
+        assertEquals("SELECT d FROM Document d WHERE d.name = :param_0", cb.getQueryString());
+        assertEquals("SELECT d FROM Document d WHERE d.name = :param_0", cb.getQueryString());
+
+        cb.where("d.age").gt(5L);
+
+        assertEquals("SELECT d FROM Document d WHERE d.age > :param_0 AND d.name = :param_1", cb.getQueryString());
+        assertEquals(1, cb.getResultList().size());
+    }
+
+    @Test
+    public void testImplicitJoinAliases() {
+        CriteriaBuilder<Document> cb1 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.owner.name").eq("Karl1")
+            .where("d.partners.name").eq("Karl2");
+        CriteriaBuilder<Document> cb2 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.partners.name").eq("Karl2")
+            .where("d.owner.name").eq("Karl1");
+
+        String queryString = cb1.getQueryString();
+        assertEquals(queryString, cb2.getQueryString());
+        List<Document> result1 = cb1.getResultList();
+        List<Document> result2 = cb2.getResultList();
+        assertEquals(1, result1.size());
+        assertEquals(1, result2.size());
+        assertEquals("Doc1", result1.get(0).getName());
+        assertEquals("Doc1", result2.get(0).getName());
+    }
+
+    @Test
+    public void testSubqueryParameters() {
+        CriteriaBuilder<Document> cb1 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.name").notEq("Doc3")
+            .where("d.owner.id").in()
+                .from(Person.class, "p")
+                .select("p.id")
+                .where("p.name").eq("Karl1")
+                .where("p.age").ge(0L)
+            .end();
+        CriteriaBuilder<Document> cb2 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.owner.id").in()
+                .from(Person.class, "p")
+                .select("p.id")
+                .where("p.age").ge(0L)
+                .where("p.name").eq("Karl1")
+            .end()
+            .where("d.name").notEq("Doc3");
+
+        String queryString = cb1.getQueryString();
+        assertEquals(queryString, cb2.getQueryString());
+        assertEquals(1, cb1.getResultList().size());
+        assertEquals(1, cb2.getResultList().size());
+    }
+
+    @Test
+    public void testPaginatedQueries() {
+        PaginatedCriteriaBuilder<Document> cb1 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.name").like("Doc%")
+            .where("d.partners.name").isNotNull()
+            .orderByAsc("d.id")
+            .page(0, 1);
+        PaginatedCriteriaBuilder<Document> cb2 = canonicalCbf.from(em, Document.class, "d")
+            .where("d.partners.name").isNotNull()
+            .where("d.name").like("Doc%")
+            .orderByAsc("d.id")
+            .page(0, 1);
+
+        assertEquals(cb1.getPageCountQueryString(), cb2.getPageCountQueryString());
+        assertEquals(cb1.getPageIdQueryString(), cb2.getPageIdQueryString());
+        assertEquals(1, cb1.getResultList().size());
+        assertEquals(1, cb2.getResultList().size());
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+import com.blazebit.persistence.entity.IdClassOrderLine;
+import com.blazebit.persistence.entity.OrderLine;
+import com.blazebit.persistence.impl.ConfigurationProperties;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Tuple;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class CompositeIdPaginationTest extends AbstractCoreTest {
+
+    @Override
+    protected Class<?>[] getEntityClasses() {
+        return new Class<?>[]{
+            OrderLine.class,
+            IdClassOrderLine.class
+        };
+    }
+
+    @Before
+    public void setUp() {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            OrderLine line1 = new OrderLine("o1", 1, "a1");
+            OrderLine line2 = new OrderLine("o1", 2, "a2");
+            OrderLine line3 = new OrderLine("o2", 1, "a3");
+            line1.getNotes().add("n1");
+            line1.getNotes().add("n2");
+            line3.getNotes().add("n3");
+            em.persist(line1);
+            em.persist(line2);
+            em.persist(line3);
+
+            IdClassOrderLine idClassLine1 = new IdClassOrderLine("o1", 1, "a1");
+            IdClassOrderLine idClassLine2 = new IdClassOrderLine("o1", 2, "a2");
+            IdClassOrderLine idClassLine3 = new IdClassOrderLine("o2", 1, "a3");
+            idClassLine1.getNotes().add("n1");
+            idClassLine1.getNotes().add("n2");
+            idClassLine3.getNotes().add("n3");
+            em.persist(idClassLine1);
+            em.persist(idClassLine2);
+            em.persist(idClassLine3);
+
+            em.flush();
+            tx.commit();
+            em.clear();
+        } catch (Exception e) {
+            tx.rollback();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testEmbeddedIdPagination() {
+        PaginatedCriteriaBuilder<Tuple> pcb = cbf.from(em, OrderLine.class, "l")
+            .select("l.article")
+            .select("l.notes")
+            .orderByDesc("l.article")
+            .page(0, 2);
+
+        String expectedCountQuery = "SELECT COUNT(l.id.lineNumber) FROM OrderLine l";
+        String expectedIdQuery = "SELECT l.id.lineNumber, l.id.orderNumber FROM OrderLine l ORDER BY l.article DESC NULLS LAST";
+        // Before the ids are fetched, the object query has an id tuple for every element of the page
+        String expectedObjectQuery = "SELECT l.article, notes_1 FROM OrderLine l LEFT JOIN l.notes notes_1 "
+            + "WHERE ((l.id.lineNumber = :ids_0_0 AND l.id.orderNumber = :ids_0_1) OR (l.id.lineNumber = :ids_1_0 AND l.id.orderNumber = :ids_1_1)) "
+            + "ORDER BY l.article DESC NULLS LAST";
+        assertEquals(expectedCountQuery, pcb.getPageCountQueryString());
+        assertEquals(expectedIdQuery, pcb.getPageIdQueryString());
+        assertEquals(expectedObjectQuery, pcb.getQueryString());
+
+        PagedList<Tuple> result = pcb.getResultList();
+        assertEquals(3L, result.totalSize());
+        // Line o2/1 has one note and line o1/2 has none
+        assertEquals(2, result.size());
+        assertEquals("a3", result.get(0).get(0));
+        assertEquals("a2", result.get(1).get(0));
+        assertEquals(expectedObjectQuery, pcb.getQueryString());
+
+        // The last page only has one id, so only one id tuple is rendered
+        pcb = cbf.from(em, OrderLine.class, "l")
+            .select("l.article")
+            .select("l.notes")
+            .orderByDesc("l.article")
+            .page(2, 2);
+        result = pcb.getResultList();
+        // Line o1/1 has two notes
+        assertEquals(2, result.size());
+        assertEquals("a1", result.get(0).get(0));
+        assertEquals("a1", result.get(1).get(0));
+        String expectedLastPageObjectQuery = "SELECT l.article, notes_1 FROM OrderLine l LEFT JOIN l.notes notes_1 "
+            + "WHERE ((l.id.lineNumber = :ids_0_0 AND l.id.orderNumber = :ids_0_1)) "
+            + "ORDER BY l.article DESC NULLS LAST";
+        assertEquals(expectedLastPageObjectQuery, pcb.getQueryString());
+    }
+
+    @Test
+    public void testEmbeddedIdPaginationPadding() {
+        CriteriaBuilderFactory paddingCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.IN_LIST_PADDING, "true")
+            .createCriteriaBuilderFactory();
+        PaginatedCriteriaBuilder<Tuple> pcb = paddingCbf.from(em, OrderLine.class, "l")
+            .select("l.article")
+            .select("l.notes")
+            .orderByAsc("l.article")
+            .page(0, 10);
+        PagedList<Tuple> result = pcb.getResultList();
+        assertEquals(3L, result.totalSize());
+        // Line o1/1 has two notes
+        assertEquals(4, result.size());
+        assertEquals("a1", result.get(0).get(0));
+        assertEquals("a1", result.get(1).get(0));
+        assertEquals("a2", result.get(2).get(0));
+        assertEquals("a3", result.get(3).get(0));
+
+        // The three fetched ids are padded to four id tuples with the last id instead of one for every element of the page
+        String expectedObjectQuery = "SELECT l.article, notes_1 FROM OrderLine l LEFT JOIN l.notes notes_1 "
+            + "WHERE ((l.id.lineNumber = :ids_0_0 AND l.id.orderNumber = :ids_0_1) OR (l.id.lineNumber = :ids_1_0 AND l.id.orderNumber = :ids_1_1) "
+            + "OR (l.id.lineNumber = :ids_2_0 AND l.id.orderNumber = :ids_2_1) OR (l.id.lineNumber = :ids_3_0 AND l.id.orderNumber = :ids_3_1)) "
+            + "ORDER BY l.article ASC NULLS LAST";
+        assertEquals(expectedObjectQuery, pcb.getQueryString());
+    }
+
+    @Test
+    public void testEmbeddedIdPaginationRowValueIn() {
+        CriteriaBuilderFactory rowValueCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.COMPOSITE_ID_ROW_VALUE_IN, "true")
+            .createCriteriaBuilderFactory();
+        PaginatedCriteriaBuilder<Tuple> pcb = rowValueCbf.from(em, OrderLine.class, "l")
+            .select("l.article")
+            .select("l.notes")
+            .orderByDesc("l.article")
+            .page(0, 2);
+        PagedList<Tuple> result = pcb.getResultList();
+        assertEquals(2, result.size());
+        assertEquals("a3", result.get(0).get(0));
+        assertEquals("a2", result.get(1).get(0));
+
+        String expectedObjectQuery = "SELECT l.article, notes_1 FROM OrderLine l LEFT JOIN l.notes notes_1 "
+            + "WHERE (l.id.lineNumber, l.id.orderNumber) IN ((:ids_0_0, :ids_0_1), (:ids_1_0, :ids_1_1)) "
+            + "ORDER BY l.article DESC NULLS LAST";
+        assertEquals(expectedObjectQuery, pcb.getQueryString());
+    }
+
+    @Test
+    public void testEmbeddedIdKeySetPagination() {
+        PaginatedCriteriaBuilder<Tuple> pcb = cbf.from(em, OrderLine.class, "l")
+            .select("l.article")
+            .select("l.notes")
+            .orderByAsc("l.article")
+            .page(null, 0, 1);
+        PagedList<Tuple> result = pcb.getResultList();
+        assertEquals(2, result.size());
+        assertEquals("a1", result.get(0).get(0));
+
+        result = cbf.from(em, OrderLine.class, "l")
+            .select("l.article")
+            .select("l.notes")
+            .orderByAsc("l.article")
+            .page(result.getKeySet(), 1, 1)
+            .getResultList();
+        assertEquals(1, result.size());
+        assertEquals("a2", result.get(0).get(0));
+        assertTrue(result.hasNextPage());
+    }
+
+    @Test
+    public void testIdClassPagination() {
+        PaginatedCriteriaBuilder<Tuple> pcb = cbf.from(em, IdClassOrderLine.class, "l")
+            .select("l.article")
+            .select("l.notes")
+            .orderByAsc("l.article")
+            .page(1, 2);
+
+        String expectedIdQuery = "SELECT l.lineNumber, l.orderNumber FROM IdClassOrderLine l ORDER BY l.article ASC NULLS LAST";
+        assertEquals(expectedIdQuery, pcb.getPageIdQueryString());
+
+        PagedList<Tuple> result = pcb.getResultList();
+        assertEquals(3L, result.totalSize());
+        assertEquals(2, result.size());
+        assertEquals("a2", result.get(0).get(0));
+        assertEquals("a3", result.get(1).get(0));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+import com.blazebit.persistence.entity.NamedEntity;
+import java.util.List;
+import javax.persistence.EntityTransaction;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The FROM clause uses the JPA entity name, which differs from the simple class name for entities with a custom name.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class EntityNameTest extends AbstractCoreTest {
+
+    @Override
+    protected Class<?>[] getEntityClasses() {
+        return new Class<?>[]{
+            NamedEntity.class
+        };
+    }
+
+    @Before
+    public void setUp() {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            em.persist(new NamedEntity("e1"));
+            em.persist(new NamedEntity("e2"));
+            em.flush();
+            tx.commit();
+        } catch (Exception e) {
+            tx.rollback();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testCustomEntityName() {
+        CriteriaBuilder<NamedEntity> criteria = cbf.from(em, NamedEntity.class, "e");
+        criteria.orderByAsc("name");
+
+        assertEquals("SELECT e FROM MyNamedEntity e ORDER BY e.name ASC NULLS LAST", criteria.getQueryString());
+        List<NamedEntity> result = criteria.getResultList();
+        assertEquals(2, result.size());
+        assertEquals("e1", result.get(0).getName());
+    }
+
+    @Test
+    public void testCustomEntityNamePaginated() {
+        PaginatedCriteriaBuilder<NamedEntity> criteria = cbf.from(em, NamedEntity.class, "e")
+            .orderByAsc("name")
+            .orderByAsc("id")
+            .page(0, 1);
+
+        assertEquals("SELECT COUNT(e.id) FROM MyNamedEntity e", criteria.getPageCountQueryString());
+        PagedList<NamedEntity> result = criteria.getResultList();
+        assertEquals(1, result.size());
+        assertEquals(2, result.totalSize());
+        assertEquals("e1", result.get(0).getName());
+    }
+}
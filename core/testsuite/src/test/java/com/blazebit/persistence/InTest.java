@@ -16,10 +16,13 @@
 package com.blazebit.persistence;
 
 import com.blazebit.persistence.entity.Document;
+import com.blazebit.persistence.impl.ConfigurationProperties;
 import static com.googlecode.catchexception.CatchException.verifyException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import javax.persistence.TypedQuery;
 import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 
@@ -62,4 +65,68 @@ public class InTest extends AbstractCoreTest {
         verifyException(criteria.where("d.age"), NullPointerException.class).notIn((List<?>) null);
     }
 
+    @Test
+    public void testInPadded() {
+        CriteriaBuilderFactory paddingCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.IN_LIST_PADDING, "true")
+            .createCriteriaBuilderFactory();
+        CriteriaBuilder<Document> criteria = paddingCbf.from(em, Document.class, "d");
+        List<Long> ages = new ArrayList<Long>(Arrays.asList(new Long[]{ 1L, 2L, 3L, 4L, 5L }));
+        criteria.where("d.age").in(ages);
+
+        assertEquals("SELECT d FROM Document d WHERE d.age IN :param_0", criteria.getQueryString());
+        TypedQuery<Document> query = criteria.getQuery();
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 5L, 5L, 5L), new ArrayList<Object>((Collection<?>) query.getParameterValue("param_0")));
+        query.getResultList();
+    }
+
+    @Test
+    public void testInChunked() {
+        CriteriaBuilderFactory chunkingCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.IN_LIST_PADDING, "true")
+            .setProperty(ConfigurationProperties.IN_LIST_CHUNK_SIZE, "4")
+            .createCriteriaBuilderFactory();
+        CriteriaBuilder<Document> criteria = chunkingCbf.from(em, Document.class, "d");
+        List<Long> ages = new ArrayList<Long>(Arrays.asList(new Long[]{ 1L, 2L, 3L, 4L, 5L, 6L, 7L }));
+        criteria.where("d.age").in(ages);
+
+        assertEquals("SELECT d FROM Document d WHERE (d.age IN (:param_0_chunk_0) OR d.age IN (:param_0_chunk_1))", criteria.getQueryString());
+        TypedQuery<Document> query = criteria.getQuery();
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), new ArrayList<Object>((Collection<?>) query.getParameterValue("param_0_chunk_0")));
+        assertEquals(Arrays.asList(5L, 6L, 7L, 7L), new ArrayList<Object>((Collection<?>) query.getParameterValue("param_0_chunk_1")));
+        query.getResultList();
+    }
+
+    @Test
+    public void testInChunkedPaddedChunkCount() {
+        CriteriaBuilderFactory chunkingCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.IN_LIST_PADDING, "true")
+            .setProperty(ConfigurationProperties.IN_LIST_CHUNK_SIZE, "2")
+            .createCriteriaBuilderFactory();
+        CriteriaBuilder<Document> criteria = chunkingCbf.from(em, Document.class, "d");
+        List<Long> ages = new ArrayList<Long>(Arrays.asList(new Long[]{ 1L, 2L, 3L, 4L, 5L }));
+        criteria.where("d.age").in(ages);
+
+        // Three chunks are needed, but the chunk count is padded to four so the query string stays the same up to eight elements
+        assertEquals("SELECT d FROM Document d WHERE (d.age IN (:param_0_chunk_0) OR d.age IN (:param_0_chunk_1) "
+            + "OR d.age IN (:param_0_chunk_2) OR d.age IN (:param_0_chunk_3))", criteria.getQueryString());
+        TypedQuery<Document> query = criteria.getQuery();
+        assertEquals(Arrays.asList(5L, 5L), new ArrayList<Object>((Collection<?>) query.getParameterValue("param_0_chunk_2")));
+        assertEquals(Arrays.asList(5L, 5L), new ArrayList<Object>((Collection<?>) query.getParameterValue("param_0_chunk_3")));
+        query.getResultList();
+    }
+
+    @Test
+    public void testNotInChunked() {
+        CriteriaBuilderFactory chunkingCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.IN_LIST_CHUNK_SIZE, "2")
+            .createCriteriaBuilderFactory();
+        CriteriaBuilder<Document> criteria = chunkingCbf.from(em, Document.class, "d");
+        List<Long> ages = new ArrayList<Long>(Arrays.asList(new Long[]{ 1L, 2L, 3L }));
+        criteria.where("d.age").notIn(ages);
+
+        assertEquals("SELECT d FROM Document d WHERE (d.age NOT IN (:param_0_chunk_0) AND d.age NOT IN (:param_0_chunk_1))", criteria.getQueryString());
+        criteria.getResultList();
+    }
+
 }
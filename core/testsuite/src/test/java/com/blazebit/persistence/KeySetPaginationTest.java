@@ -17,9 +17,19 @@ package com.blazebit.persistence;
 
 import com.blazebit.persistence.entity.Document;
 import com.blazebit.persistence.entity.Person;
+import com.blazebit.persistence.impl.ConfigurationProperties;
+import com.blazebit.persistence.impl.KeySetImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Tuple;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -74,7 +84,6 @@ public class KeySetPaginationTest extends AbstractCoreTest {
         PagedList<Tuple> result = pcb.getResultList();
         // The first time we have to use the offset
         String expectedIdQuery = "SELECT d.id, owner_1.name, d.name FROM Document d JOIN d.owner owner_1 "
-            + "GROUP BY d.id "
             + "ORDER BY owner_1.name DESC NULLS LAST, d.name ASC NULLS LAST";
         assertEquals(expectedIdQuery, pcb.getPageIdQueryString());
         
@@ -86,8 +95,8 @@ public class KeySetPaginationTest extends AbstractCoreTest {
         result = pcb.getResultList();
         // Finally we can use the key set
         expectedIdQuery = "SELECT d.id, owner_1.name, d.name FROM Document d JOIN d.owner owner_1 "
-            + "WHERE (owner_1.name > :_keySetParameter_0 OR (owner_1.name = :_keySetParameter_0 AND d.name > :_keySetParameter_1)) "
-            + "GROUP BY d.id "
+            + "WHERE (owner_1.name <= :_keySetParameter_0 OR owner_1.name IS NULL) "
+            + "AND ((owner_1.name < :_keySetParameter_0 OR owner_1.name IS NULL) OR (owner_1.name = :_keySetParameter_0 AND (d.name > :_keySetParameter_1 OR d.name IS NULL))) "
             + "ORDER BY owner_1.name DESC NULLS LAST, d.name ASC NULLS LAST";
         assertEquals(expectedIdQuery, pcb.getPageIdQueryString());
         
@@ -95,8 +104,8 @@ public class KeySetPaginationTest extends AbstractCoreTest {
         result = pcb.getResultList();
         // Same page again key set
         expectedIdQuery = "SELECT d.id, owner_1.name, d.name FROM Document d JOIN d.owner owner_1 "
-            + "WHERE (owner_1.name >= :_keySetParameter_0 AND d.name >= :_keySetParameter_1) "
-            + "GROUP BY d.id "
+            + "WHERE (owner_1.name <= :_keySetParameter_0 OR owner_1.name IS NULL) "
+            + "AND ((owner_1.name < :_keySetParameter_0 OR owner_1.name IS NULL) OR (owner_1.name = :_keySetParameter_0 AND (d.name >= :_keySetParameter_1 OR d.name IS NULL))) "
             + "ORDER BY owner_1.name DESC NULLS LAST, d.name ASC NULLS LAST";
         assertEquals(expectedIdQuery, pcb.getPageIdQueryString());
         
@@ -106,15 +115,281 @@ public class KeySetPaginationTest extends AbstractCoreTest {
         
         pcb = crit.page(result.getKeySet(), 0, 1);
         result = pcb.getResultList();
-        // Now we scroll back
+        // Now we scroll back, the elements before the key set are fetched in reverse order
         expectedIdQuery = "SELECT d.id, owner_1.name, d.name FROM Document d JOIN d.owner owner_1 "
-            + "WHERE (owner_1.name < :_keySetParameter_0 OR (owner_1.name = :_keySetParameter_0 AND d.name < :_keySetParameter_1)) "
-            + "GROUP BY d.id "
-            + "ORDER BY owner_1.name DESC NULLS LAST, d.name ASC NULLS LAST";
+            + "WHERE owner_1.name >= :_keySetParameter_0 "
+            + "AND (owner_1.name > :_keySetParameter_0 OR (owner_1.name = :_keySetParameter_0 AND d.name < :_keySetParameter_1)) "
+            + "ORDER BY owner_1.name ASC NULLS FIRST, d.name DESC NULLS FIRST";
         assertEquals(expectedIdQuery, pcb.getPageIdQueryString());
         
         assertEquals(1, result.size());
         assertEquals(3, result.totalSize());
         assertEquals("doc1", result.get(0).get(0));
     }
+
+    @Test
+    public void testKeySetWithoutCountQuery() {
+        CriteriaBuilder<Tuple> crit = cbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).withCountQuery(false).getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc1", result.get(0).get(0));
+        assertTrue(result.hasNextPage());
+        assertFalse(result.isTotalSizeKnown());
+        assertEquals(2, result.totalSize());
+        assertNotNull(result.getKeySet());
+
+        PaginatedCriteriaBuilder<Tuple> pcb = crit.page(result.getKeySet(), 1, 1).withCountQuery(false);
+        result = pcb.getResultList();
+        // The key set of the first page is the one of the page and not the one of the additionally fetched element
+        String expectedIdQuery = "SELECT d.id, d.name, d.id FROM Document d "
+            + "WHERE (d.name >= :_keySetParameter_0 OR d.name IS NULL) "
+            + "AND ((d.name > :_keySetParameter_0 OR d.name IS NULL) OR (d.name = :_keySetParameter_0 AND d.id > :_keySetParameter_1)) "
+            + "ORDER BY d.name ASC NULLS LAST, d.id ASC NULLS LAST";
+        assertEquals(expectedIdQuery, pcb.getPageIdQueryString());
+        assertEquals(1, result.size());
+        assertEquals("doc2", result.get(0).get(0));
+        assertTrue(result.hasNextPage());
+
+        result = crit.page(result.getKeySet(), 2, 1).withCountQuery(false).getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc3", result.get(0).get(0));
+        assertFalse(result.hasNextPage());
+        assertEquals(3, result.totalSize());
+    }
+
+    @Test
+    public void testKeySetSingleQuery() {
+        CriteriaBuilder<Tuple> crit = cbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        // The key set elements are removed from the rows before the tuple object builder sees them
+        PaginatedCriteriaBuilder<Tuple> pcb = crit.page(null, 0, 2);
+        PagedList<Tuple> result = pcb.getResultList();
+        assertEquals(2, result.size());
+        assertEquals(3, result.totalSize());
+        assertEquals("doc1", result.get(0).get(0));
+        assertEquals("doc2", result.get(1).get(0));
+        assertEquals(1, result.get(0).toArray().length);
+
+        pcb = crit.page(result.getKeySet(), 2, 2);
+        result = pcb.getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc3", result.get(0).get(0));
+        assertEquals(1, result.get(0).toArray().length);
+    }
+
+    @Test
+    public void testKeySetSingleQueryPreviousPage() {
+        CriteriaBuilder<Tuple> crit = cbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).getResultList();
+        result = crit.page(result.getKeySet(), 1, 1).getResultList();
+        PagedList<Tuple> lastPage = crit.page(result.getKeySet(), 2, 1).getResultList();
+        assertEquals("doc3", lastPage.get(0).get(0));
+
+        // Going back must fetch the element right before the key set and not the first one
+        result = crit.page(lastPage.getKeySet(), 1, 1).getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc2", result.get(0).get(0));
+        assertTrue(result.hasNextPage());
+
+        result = crit.page(result.getKeySet(), 0, 1).getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc1", result.get(0).get(0));
+
+        // The key set of a page before the key set allows going forward again
+        result = crit.page(result.getKeySet(), 1, 1).getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc2", result.get(0).get(0));
+
+        // Without a count query the additional element lies before the page, but there is always a next page
+        result = crit.page(lastPage.getKeySet(), 1, 1).withCountQuery(false).getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc2", result.get(0).get(0));
+        assertTrue(result.hasNextPage());
+        assertEquals(3, result.totalSize());
+    }
+
+    @Test
+    public void testKeySetPreviousPageWithIdQuery() {
+        CriteriaBuilder<Tuple> crit = cbf.from(em, Document.class, "d")
+            .select("d.name")
+            .select("d.contacts");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 2, 1).getResultList();
+        assertEquals("doc3", result.get(0).get(0));
+
+        result = crit.page(result.getKeySet(), 1, 1).getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc2", result.get(0).get(0));
+    }
+
+    @Test
+    public void testKeySetWithNullKeyElements() {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        Document doc4 = new Document();
+        doc4.setOwner(em.createQuery("SELECT p FROM Person p WHERE p.name = 'Karl1'", Person.class).getSingleResult());
+        em.persist(doc4);
+        em.flush();
+        tx.commit();
+
+        CriteriaBuilder<Tuple> crit = cbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).getResultList();
+        List<Object> names = new ArrayList<Object>();
+
+        for (int i = 1; i < 5; i++) {
+            assertEquals(1, result.size());
+            names.add(result.get(0).get(0));
+            result = crit.page(result.getKeySet(), i, 1).getResultList();
+        }
+
+        // The null name is ordered last and must not be skipped
+        assertEquals(Arrays.<Object>asList("doc1", "doc2", "doc3", null), names);
+        assertEquals(0, result.size());
+
+        result = crit.page(null, 3, 1).getResultList();
+        PaginatedCriteriaBuilder<Tuple> pcb = crit.page(result.getKeySet(), 4, 1);
+        // Only other nulls can come after a null key element
+        String expectedObjectQuery = "SELECT d.id, d.name, d.id FROM Document d "
+            + "WHERE d.name IS NULL AND (d.name IS NULL AND d.id > :_keySetParameter_1) "
+            + "ORDER BY d.name ASC NULLS LAST, d.id ASC NULLS LAST";
+        assertEquals(expectedObjectQuery, pcb.getPageIdQueryString());
+    }
+
+    @Test
+    public void testKeySetRowValueComparison() {
+        CriteriaBuilderFactory rowValueCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.KEY_SET_ROW_VALUE_COMPARISON, "true")
+            .createCriteriaBuilderFactory();
+        CriteriaBuilder<Tuple> crit = rowValueCbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.age")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).getResultList();
+        PaginatedCriteriaBuilder<Tuple> pcb = crit.page(result.getKeySet(), 1, 1);
+        String expectedObjectQuery = "SELECT d.id, d.age, d.id FROM Document d "
+            + "WHERE (d.age, d.id) > (:_keySetParameter_0, :_keySetParameter_1) "
+            + "ORDER BY d.age ASC NULLS LAST, d.id ASC NULLS LAST";
+        assertEquals(expectedObjectQuery, pcb.getPageIdQueryString());
+
+        result = pcb.getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc2", result.get(0).get(0));
+
+        // Nullable key columns that are ordered last can't use a row value comparison
+        crit = rowValueCbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+        result = crit.page(null, 0, 1).getResultList();
+        pcb = crit.page(result.getKeySet(), 1, 1);
+        expectedObjectQuery = "SELECT d.id, d.name, d.id FROM Document d "
+            + "WHERE (d.name >= :_keySetParameter_0 OR d.name IS NULL) "
+            + "AND ((d.name > :_keySetParameter_0 OR d.name IS NULL) OR (d.name = :_keySetParameter_0 AND d.id > :_keySetParameter_1)) "
+            + "ORDER BY d.name ASC NULLS LAST, d.id ASC NULLS LAST";
+        assertEquals(expectedObjectQuery, pcb.getPageIdQueryString());
+    }
+
+    private CriteriaBuilderFactory createTokenCriteriaBuilderFactory() {
+        return Criteria.getDefault()
+            .setProperty(ConfigurationProperties.KEY_SET_TOKEN_SECRET, "secret")
+            .createCriteriaBuilderFactory();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testKeySetTokenRequiresSecret() {
+        CriteriaBuilder<Tuple> crit = cbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).getResultList();
+        cbf.serializeKeySet(result.getKeySet());
+    }
+
+    @Test
+    public void testKeySetTokenRoundTrip() {
+        CriteriaBuilderFactory tokenCbf = createTokenCriteriaBuilderFactory();
+        CriteriaBuilder<Tuple> crit = tokenCbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).getResultList();
+        String token = tokenCbf.serializeKeySet(result.getKeySet());
+        KeySet keySet = tokenCbf.deserializeKeySet(token);
+        assertNotNull(keySet);
+        assertEquals(0, keySet.getFirstResult());
+        assertEquals(1, keySet.getMaxResults());
+        assertArrayEquals(result.getKeySet().getLowest(), keySet.getLowest());
+        assertArrayEquals(result.getKeySet().getHighest(), keySet.getHighest());
+        assertArrayEquals(((KeySetImpl) result.getKeySet()).getOrderByExpressions(), ((KeySetImpl) keySet).getOrderByExpressions());
+
+        PaginatedCriteriaBuilder<Tuple> pcb = crit.page(keySet, 1, 1);
+        assertTrue(pcb.getPageIdQueryString().contains(":_keySetParameter_0"));
+        result = pcb.getResultList();
+        assertEquals(1, result.size());
+        assertEquals("doc2", result.get(0).get(0));
+    }
+
+    @Test
+    public void testKeySetTokenTampered() {
+        CriteriaBuilderFactory tokenCbf = createTokenCriteriaBuilderFactory();
+        CriteriaBuilder<Tuple> crit = tokenCbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).getResultList();
+        String token = tokenCbf.serializeKeySet(result.getKeySet());
+        char[] chars = token.toCharArray();
+        chars[3] = chars[3] == 'A' ? 'B' : 'A';
+
+        assertNull(tokenCbf.deserializeKeySet(new String(chars)));
+        assertNull(tokenCbf.deserializeKeySet("not a token"));
+        assertNull(tokenCbf.deserializeKeySet(""));
+
+        // Invalid tokens result in offset pagination
+        PaginatedCriteriaBuilder<Tuple> pcb = crit.page(tokenCbf.deserializeKeySet(new String(chars)), 1, 1);
+        assertFalse(pcb.getPageIdQueryString().contains(":_keySetParameter_0"));
+        result = pcb.getResultList();
+        assertEquals("doc2", result.get(0).get(0));
+    }
+
+    @Test
+    public void testKeySetTokenWithDifferentOrdering() {
+        CriteriaBuilderFactory tokenCbf = createTokenCriteriaBuilderFactory();
+        CriteriaBuilder<Tuple> crit = tokenCbf.from(em, Document.class, "d")
+            .select("d.name");
+        crit.orderByAsc("d.name")
+            .orderByAsc("d.id");
+
+        PagedList<Tuple> result = crit.page(null, 0, 1).getResultList();
+        KeySet keySet = tokenCbf.deserializeKeySet(tokenCbf.serializeKeySet(result.getKeySet()));
+
+        CriteriaBuilder<Tuple> otherCrit = tokenCbf.from(em, Document.class, "d")
+            .select("d.name");
+        otherCrit.orderByDesc("d.name")
+            .orderByAsc("d.id");
+
+        PaginatedCriteriaBuilder<Tuple> pcb = otherCrit.page(keySet, 1, 1);
+        assertFalse(pcb.getPageIdQueryString().contains(":_keySetParameter_0"));
+    }
 }
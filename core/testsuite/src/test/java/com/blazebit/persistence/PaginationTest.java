@@ -17,12 +17,22 @@ package com.blazebit.persistence;
 
 import com.blazebit.persistence.entity.Document;
 import com.blazebit.persistence.entity.Person;
+import com.blazebit.persistence.impl.ConfigurationProperties;
 import com.blazebit.persistence.model.DocumentViewModel;
 import static com.googlecode.catchexception.CatchException.verifyException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Tuple;
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -139,10 +149,85 @@ public class PaginationTest extends AbstractCoreTest {
         assertEquals("DOC5", result.get(0).getName());
     }
 
+    @Test
+    public void testSingleQueryWithoutCollectionJoins() {
+        CriteriaBuilder<DocumentViewModel> crit = cbf.from(em, Document.class, "d")
+            .selectNew(DocumentViewModel.class)
+            .with("d.name")
+            .end()
+            .where("d.owner.name").eq("Karl2")
+            .orderByAsc("d.id");
+
+        // Only to-one joins, so the limits are applied to the object query directly, but the query string stays the same
+        String expectedObjectQuery = "SELECT d.name FROM Document d JOIN d.owner owner_1 "
+            + "WHERE d.id IN :ids "
+            + "ORDER BY d.id ASC NULLS LAST";
+
+        PaginatedCriteriaBuilder<DocumentViewModel> pcb = crit.page(1, 2);
+        assertEquals(expectedObjectQuery, pcb.getQueryString());
+
+        PagedList<DocumentViewModel> result = pcb.getResultList();
+        assertEquals(2, result.size());
+        assertEquals(4, result.totalSize());
+        assertEquals("DOC5", result.get(0).getName());
+        assertEquals("bdoc", result.get(1).getName());
+    }
+
+    @Test
+    public void testWithoutCountQuery() {
+        CriteriaBuilder<Document> crit = cbf.from(em, Document.class, "d")
+            .where("d.name").like("doc%", false, null)
+            .orderByAsc("d.id");
+
+        PagedList<Document> result = crit.page(0, 2).withCountQuery(false).getResultList();
+        assertEquals(2, result.size());
+        assertFalse(result.isTotalSizeKnown());
+        assertTrue(result.hasNextPage());
+        // Two elements on the page and at least one after it
+        assertEquals(3, result.totalSize());
+        assertEquals("doc1", result.get(0).getName());
+        assertEquals("Doc2", result.get(1).getName());
+
+        result = crit.page(2, 2).withCountQuery(false).getResultList();
+        assertEquals(2, result.size());
+        assertTrue(result.hasNextPage());
+        assertEquals(5, result.totalSize());
+        assertEquals("doC3", result.get(0).getName());
+        assertEquals("dOc4", result.get(1).getName());
+
+        result = crit.page(4, 2).withCountQuery(false).getResultList();
+        assertEquals(1, result.size());
+        assertFalse(result.hasNextPage());
+        assertEquals(5, result.totalSize());
+        assertEquals("DOC5", result.get(0).getName());
+
+        result = crit.page(6, 2).withCountQuery(false).getResultList();
+        assertEquals(0, result.size());
+        assertFalse(result.hasNextPage());
+        assertFalse(result.isTotalSizeKnown());
+        // An empty page does not tell anything about the elements before it
+        assertEquals(-1, result.totalSize());
+    }
+
+    @Test
+    public void testWithCountQueryHasNextPage() {
+        CriteriaBuilder<Document> crit = cbf.from(em, Document.class, "d")
+            .where("d.name").like("doc%", false, null)
+            .orderByAsc("d.id");
+
+        PagedList<Document> result = crit.page(2, 2).getResultList();
+        assertTrue(result.isTotalSizeKnown());
+        assertTrue(result.hasNextPage());
+        assertEquals(5, result.totalSize());
+
+        result = crit.page(3, 2).getResultList();
+        assertFalse(result.hasNextPage());
+    }
+
     @Test
     public void testSelectIndexedWithParameter() {
         String expectedCountQuery = "SELECT COUNT(d.id) FROM Document d JOIN d.owner owner_1 WHERE owner_1.name = :param_0";
-        String expectedIdQuery = "SELECT d.id FROM Document d JOIN d.owner owner_1 WHERE owner_1.name = :param_0 GROUP BY d.id";
+        String expectedIdQuery = "SELECT d.id FROM Document d JOIN d.owner owner_1 WHERE owner_1.name = :param_0";
         String expectedObjectQuery = "SELECT contacts_contactNr.name FROM Document d LEFT JOIN d.contacts contacts_contactNr " + ON_CLAUSE
             + " KEY(contacts_contactNr) = :contactNr JOIN d.owner owner_1 WHERE d.id IN :ids";
         PaginatedCriteriaBuilder<Tuple> cb = cbf.from(em, Document.class, "d")
@@ -253,7 +338,7 @@ public class PaginationTest extends AbstractCoreTest {
             .end()
             .orderByAsc("contactCount")
             .page(0, 1);
-        String expectedIdQuery = "SELECT d.id, (SELECT COUNT(contacts_1.id) FROM Document d2 LEFT JOIN d2.contacts contacts_1 WHERE d2.id = d.id) AS contactCount FROM Document d GROUP BY d.id ORDER BY contactCount ASC NULLS LAST";
+        String expectedIdQuery = "SELECT d.id, (SELECT COUNT(contacts_1.id) FROM Document d2 LEFT JOIN d2.contacts contacts_1 WHERE d2.id = d.id) AS contactCount FROM Document d ORDER BY contactCount ASC NULLS LAST";
         assertEquals(expectedIdQuery, cb.getPageIdQueryString());
         cb.getResultList();
     }
@@ -265,7 +350,7 @@ public class PaginationTest extends AbstractCoreTest {
             .select("SIZE(d.contacts)", "contactCount")
             .orderByAsc("contactCount")
             .page(0, 1);
-        String expectedIdQuery = "SELECT d.id FROM Document d GROUP BY d.id ORDER BY SIZE(d.contacts) ASC NULLS LAST";
+        String expectedIdQuery = "SELECT d.id FROM Document d ORDER BY SIZE(d.contacts) ASC NULLS LAST";
         em.createQuery(expectedIdQuery).getResultList();
         assertEquals(expectedIdQuery, cb.getPageIdQueryString());
         cb.getResultList();
@@ -295,4 +380,251 @@ public class PaginationTest extends AbstractCoreTest {
         assertEquals(expectedCountQuery, pcb.getPageCountQueryString());
         
     }
+
+    @Test
+    public void testCountQueryPrunesOrderByOnlyJoins() {
+        PaginatedCriteriaBuilder<Tuple> pcb = cbf.from(em, Person.class, "p")
+            .select("p.name")
+            .leftJoin("p.partnerDocument", "partnerDoc")
+            .orderByAsc("partnerDoc.name")
+            .orderByAsc("p.id")
+            .page(0, 1);
+
+        assertEquals("SELECT COUNT(p.id) FROM Person p", pcb.getPageCountQueryString());
+        assertEquals(2L, pcb.getResultList().totalSize());
+    }
+
+    @Test
+    public void testCountQueryKeepsFilteringJoins() {
+        PaginatedCriteriaBuilder<Tuple> pcb = cbf.from(em, Person.class, "p")
+            .select("p.name")
+            .leftJoin("p.partnerDocument", "partnerDoc")
+            .where("partnerDoc.name").isNull()
+            .orderByAsc("partnerDoc.owner.name")
+            .orderByAsc("p.id")
+            .page(0, 1);
+
+        // The inner join of the owner filters rows so its parent join must be kept too
+        assertEquals("SELECT COUNT(p.id) FROM Person p LEFT JOIN p.partnerDocument partnerDoc JOIN partnerDoc.owner owner_1 "
+            + "WHERE partnerDoc.name IS NULL", pcb.getPageCountQueryString());
+    }
+
+    @Test
+    public void testIdQueryWithoutGroupByForSelectOnlyCollectionJoins() {
+        PaginatedCriteriaBuilder<Tuple> pcb = cbf.from(em, Document.class, "d")
+            .select("d.name")
+            .select("d.partners.name")
+            .orderByAsc("d.id")
+            .page(0, 2);
+
+        // The collection join is not part of the id query so the ids are unique without grouping
+        assertEquals("SELECT d.id FROM Document d ORDER BY d.id ASC NULLS LAST", pcb.getPageIdQueryString());
+        assertEquals(7L, pcb.getResultList().totalSize());
+    }
+
+    @Test
+    public void testChunkedIdList() {
+        CriteriaBuilderFactory chunkingCbf = Criteria.getDefault()
+            .setProperty(ConfigurationProperties.IN_LIST_PADDING, "true")
+            .setProperty(ConfigurationProperties.IN_LIST_CHUNK_SIZE, "2")
+            .createCriteriaBuilderFactory();
+        PagedList<Tuple> result = chunkingCbf.from(em, Document.class, "d")
+            .select("d.name")
+            .select("d.partners.name")
+            .orderByAsc("d.name")
+            .orderByAsc("d.id")
+            .page(0, 3)
+            .getResultList();
+
+        assertEquals(3, result.size());
+        assertEquals("DOC5", result.get(0).get(0));
+        assertEquals("Doc2", result.get(1).get(0));
+        assertEquals("adoc", result.get(2).get(0));
+    }
+
+    @Test
+    public void testGetResultListAsync() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            PaginatedCriteriaBuilder<Tuple> pcb = cbf.from(em, Document.class, "d")
+                .select("d.name")
+                .select("d.partners.name")
+                .orderByAsc("d.name")
+                .orderByAsc("d.id")
+                .page(0, 2);
+
+            PagedList<Tuple> result = pcb.getResultListAsync(em.getEntityManagerFactory(), executor).get();
+            assertEquals(2, result.size());
+            assertEquals("DOC5", result.get(0).get(0));
+            assertEquals("Doc2", result.get(1).get(0));
+            assertTrue(result.isTotalSizeKnown());
+            assertTrue(result.hasNextPage());
+            assertEquals(7L, result.totalSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testGetResultListAsyncWithoutCountQuery() throws Exception {
+        Executor executor = new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                throw new IllegalStateException("The executor should not be used without a count query");
+            }
+        };
+        Future<PagedList<Tuple>> future = cbf.from(em, Document.class, "d")
+            .select("d.name")
+            .orderByAsc("d.name")
+            .orderByAsc("d.id")
+            .page(0, 2)
+            .withCountQuery(false)
+            .getResultListAsync(em.getEntityManagerFactory(), executor);
+
+        assertTrue(future.isDone());
+        PagedList<Tuple> result = future.get();
+        assertEquals(2, result.size());
+        assertFalse(result.isTotalSizeKnown());
+        assertEquals(3L, result.totalSize());
+    }
+
+    @Test
+    public void testChunkedResultIterator() {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        Person person = new Person("Unrelated");
+        em.persist(person);
+
+        ResultIterator<Document> iterator = cbf.from(em, Document.class, "d")
+            .orderByAsc("d.name")
+            .orderByAsc("d.id")
+            .page(0, 3)
+            .getChunkedResultIterator();
+        List<String> names = new ArrayList<String>();
+        Document first = null;
+
+        try {
+            while (iterator.hasNext()) {
+                Document document = iterator.next();
+
+                if (first == null) {
+                    first = document;
+                }
+
+                names.add(document.getName());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(Arrays.asList("DOC5", "Doc2", "adoc", "bdoc", "dOc4", "doC3", "doc1"), names);
+        // Only the results of previous chunks are detached
+        assertFalse(em.contains(first));
+        assertTrue(em.contains(person));
+        tx.rollback();
+    }
+
+    @Test
+    public void testChunkedResultIteratorClearPersistenceContext() {
+        ResultIterator<Document> iterator = cbf.from(em, Document.class, "d")
+            .orderByAsc("d.name")
+            .orderByAsc("d.id")
+            .page(0, 3)
+            .getChunkedResultIterator(true);
+        List<String> names = new ArrayList<String>();
+        Document first = null;
+
+        try {
+            while (iterator.hasNext()) {
+                Document document = iterator.next();
+
+                if (first == null) {
+                    first = document;
+                    // The owner is loaded together with the document
+                    assertTrue(em.contains(first.getOwner()));
+                }
+
+                names.add(document.getName());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(Arrays.asList("DOC5", "Doc2", "adoc", "bdoc", "dOc4", "doC3", "doc1"), names);
+        // The entities loaded together with the results of previous chunks are detached too
+        assertFalse(em.contains(first));
+        assertFalse(em.contains(first.getOwner()));
+    }
+
+    @Test
+    public void testChunkedResultIteratorWithCollectionJoin() {
+        ResultIterator<Tuple> iterator = cbf.from(em, Document.class, "d")
+            .select("d.name")
+            .select("d.partners.name")
+            .orderByDesc("d.name")
+            .orderByAsc("d.id")
+            .page(0, 2)
+            .getChunkedResultIterator();
+        List<Object> names = new ArrayList<Object>();
+
+        try {
+            while (iterator.hasNext()) {
+                names.add(iterator.next().get(0));
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(Arrays.<Object>asList("doc1", "doC3", "dOc4", "bdoc", "adoc", "Doc2", "DOC5"), names);
+    }
+
+    @Test
+    public void testChunkedResultIteratorPrefetch() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            ResultIterator<Document> iterator = cbf.from(em, Document.class, "d")
+                .orderByAsc("d.name")
+                .orderByAsc("d.id")
+                .page(0, 2)
+                .getChunkedResultIterator(em.getEntityManagerFactory(), executor);
+            List<String> names = new ArrayList<String>();
+
+            try {
+                while (iterator.hasNext()) {
+                    Document document = iterator.next();
+                    names.add(document.getName());
+                    // Chunks are fetched with other entity managers
+                    assertFalse(em.contains(document));
+                }
+            } finally {
+                iterator.close();
+            }
+
+            assertEquals(Arrays.asList("DOC5", "Doc2", "adoc", "bdoc", "dOc4", "doC3", "doc1"), names);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testChunkedResultIteratorClosePrematurely() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            ResultIterator<Document> iterator = cbf.from(em, Document.class, "d")
+                .orderByAsc("d.name")
+                .orderByAsc("d.id")
+                .page(0, 2)
+                .getChunkedResultIterator(em.getEntityManagerFactory(), executor);
+
+            assertEquals("DOC5", iterator.next().getName());
+            iterator.close();
+            assertFalse(iterator.hasNext());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
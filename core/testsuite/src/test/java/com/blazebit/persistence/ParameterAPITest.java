@@ -16,14 +16,20 @@
 package com.blazebit.persistence;
 
 import com.blazebit.persistence.entity.Document;
+import com.blazebit.persistence.entity.Person;
 import static com.googlecode.catchexception.CatchException.verifyException;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
+import javax.persistence.EntityTransaction;
 import javax.persistence.Parameter;
 import javax.persistence.TemporalType;
 import javax.persistence.Tuple;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
@@ -82,12 +88,18 @@ public class ParameterAPITest extends AbstractCoreTest {
         crit.setParameter("index", 1);
         crit.setParameter("where_index", 2);
         crit.setParameter("minAge", 3);
-        crit.setParameter("lastModifiedFilter", new Date(), TemporalType.TIMESTAMP);
+        Date lastModifiedFilter = new Date();
+        crit.setParameter("lastModifiedFilter", lastModifiedFilter, TemporalType.TIMESTAMP);
 
         assertTrue(crit.isParameterSet("index"));
         assertTrue(crit.isParameterSet("where_index"));
         assertTrue(crit.isParameterSet("minAge"));
         assertTrue(crit.isParameterSet("lastModifiedFilter"));
+
+        // Temporal values are returned without their temporal type which can be queried separately
+        assertEquals(lastModifiedFilter, crit.getParameterValue("lastModifiedFilter"));
+        assertEquals(TemporalType.TIMESTAMP, crit.getParameterTemporalType("lastModifiedFilter"));
+        assertNull(crit.getParameterTemporalType("minAge"));
     }
 
     @Test
@@ -108,4 +120,50 @@ public class ParameterAPITest extends AbstractCoreTest {
         CriteriaBuilder<Document> cb = cbf.from(em, Document.class);
         assertFalse(cb.isParameterSet("test"));
     }
+
+    @Test
+    public void testReexecuteWithChangedParameterValues() {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        Person owner = new Person("Owner");
+        em.persist(owner);
+        Document doc = new Document("MyDoc", owner);
+        doc.setLastModified(new Date(1000L));
+        em.persist(doc);
+        em.flush();
+        tx.commit();
+        em.clear();
+
+        CriteriaBuilder<Document> crit = cbf.from(em, Document.class, "d")
+            .where("d.lastModified").lt().expression(":lastModifiedFilter")
+            .where("d.name").in(Arrays.asList("MyDoc", "OtherDoc"));
+
+        crit.setParameter("lastModifiedFilter", new Date(2000L), TemporalType.TIMESTAMP);
+        assertEquals(1, crit.getResultList().size());
+
+        // The same query string is executed again with a value that is bound without a temporal type
+        crit.setParameter("lastModifiedFilter", new Date(500L));
+        assertEquals(0, crit.getResultList().size());
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(new Date(2000L));
+        crit.setParameter("lastModifiedFilter", calendar, TemporalType.TIMESTAMP);
+        List<Document> result = crit.getResultList();
+        assertEquals(1, result.size());
+        assertEquals("MyDoc", result.get(0).getName());
+    }
+
+    @Test
+    public void testUnsatisfiedParameterOnReexecution() {
+        CriteriaBuilder<Document> crit = cbf.from(em, Document.class, "d")
+            .where("d.age").gt().expression(":minAge");
+        verifyException(crit, IllegalStateException.class).getResultList();
+
+        crit.setParameter("minAge", 1L);
+        assertEquals(0, crit.getResultList().size());
+
+        CriteriaBuilder<Document> other = cbf.from(em, Document.class, "d")
+            .where("d.age").gt().expression(":minAge");
+        verifyException(other, IllegalStateException.class).getResultList();
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+import com.blazebit.persistence.entity.Document;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class QueryStringCacheTest extends AbstractCoreTest {
+
+    @Test
+    public void testSameShapeDifferentParameterValues() {
+        CriteriaBuilder<Document> first = cbf.from(em, Document.class, "d");
+        first.where("owner.name").eq("A").orderByAsc("d.id");
+        CriteriaBuilder<Document> second = cbf.from(em, Document.class, "d");
+        second.where("owner.name").eq("B").orderByAsc("d.id");
+        String expected = "SELECT d FROM Document d JOIN d.owner owner_1 WHERE owner_1.name = :param_0 ORDER BY d.id ASC NULLS LAST";
+
+        assertEquals(expected, first.getQueryString());
+        assertEquals(0, cbf.getQueryStringCacheHits());
+        assertEquals(1, cbf.getQueryStringCacheMisses());
+
+        assertEquals(expected, second.getQueryString());
+        assertEquals(1, cbf.getQueryStringCacheHits());
+        assertEquals(1, cbf.getQueryStringCacheMisses());
+        assertEquals("B", second.getParameterValue("param_0"));
+        second.getResultList();
+    }
+
+    @Test
+    public void testDifferentShapes() {
+        CriteriaBuilder<Document> first = cbf.from(em, Document.class, "d");
+        first.where("d.name").eq("A");
+        CriteriaBuilder<Document> second = cbf.from(em, Document.class, "d");
+        second.where("d.name").notEq("A");
+
+        assertEquals("SELECT d FROM Document d WHERE d.name = :param_0", first.getQueryString());
+        assertEquals("SELECT d FROM Document d WHERE NOT d.name = :param_0", second.getQueryString());
+        assertEquals(0, cbf.getQueryStringCacheHits());
+        assertEquals(2, cbf.getQueryStringCacheMisses());
+    }
+
+    @Test
+    public void testSameShapeWithSubquery() {
+        CriteriaBuilder<Document> first = cbf.from(em, Document.class, "d");
+        first.where("d.id").in().from(Document.class, "sub").select("sub.id").where("sub.name").eq("A").end();
+        CriteriaBuilder<Document> second = cbf.from(em, Document.class, "d");
+        second.where("d.id").in().from(Document.class, "sub").select("sub.id").where("sub.name").eq("B").end();
+
+        String expected = first.getQueryString();
+        assertEquals(expected, second.getQueryString());
+        assertEquals(1, cbf.getQueryStringCacheHits());
+        second.getResultList();
+    }
+
+    @Test
+    public void testModifiedBuilderIsNotServedFromCache() {
+        CriteriaBuilder<Document> criteria = cbf.from(em, Document.class, "d");
+        criteria.where("d.name").eq("A");
+        assertEquals("SELECT d FROM Document d WHERE d.name = :param_0", criteria.getQueryString());
+
+        criteria.where("d.age").gt(1L);
+        assertEquals("SELECT d FROM Document d WHERE d.name = :param_0 AND d.age > :param_1", criteria.getQueryString());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence;
+
+import com.blazebit.persistence.entity.Document;
+import com.blazebit.persistence.entity.Person;
+import com.blazebit.persistence.model.DocumentViewModel;
+import com.blazebit.persistence.spi.CriteriaBuilderConfiguration;
+import com.blazebit.persistence.spi.QueryTransformer;
+import static com.googlecode.catchexception.CatchException.verifyException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class ResultIteratorTest extends AbstractCoreTest {
+
+    @Before
+    public void setUp() {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            Person p = new Person("Karl");
+            em.persist(p);
+
+            em.persist(new Document("Doc1", p));
+            em.persist(new Document("Doc2", p));
+            em.persist(new Document("Doc3", p));
+
+            em.flush();
+            tx.commit();
+            em.clear();
+        } catch (Exception e) {
+            tx.rollback();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testIterateEntities() {
+        CriteriaBuilder<Document> criteria = cbf.from(em, Document.class, "d")
+            .orderByAsc("d.name");
+        ResultIterator<Document> iterator = criteria.getResultIterator();
+        List<String> names = new ArrayList<String>();
+
+        try {
+            while (iterator.hasNext()) {
+                names.add(iterator.next().getName());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(3, names.size());
+        assertEquals("Doc1", names.get(0));
+        assertEquals("Doc2", names.get(1));
+        assertEquals("Doc3", names.get(2));
+    }
+
+    @Test
+    public void testIterateWithoutScrollableQueryTransformer() {
+        CriteriaBuilderConfiguration config = Criteria.getDefault();
+        config.getQueryTransformers().clear();
+        config.registerQueryTransformer(new QueryTransformer() {
+
+            @Override
+            public <T> TypedQuery<T> transformQuery(TypedQuery<T> query, ObjectBuilder<T> objectBuilder) {
+                return query;
+            }
+        });
+
+        // Query transformers that can't scroll make the iterator fall back to the result list
+        CriteriaBuilder<Document> criteria = config.createCriteriaBuilderFactory().from(em, Document.class, "d")
+            .orderByAsc("d.name");
+        ResultIterator<Document> iterator = criteria.getResultIterator();
+        List<String> names = new ArrayList<String>();
+
+        try {
+            while (iterator.hasNext()) {
+                names.add(iterator.next().getName());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(3, names.size());
+        assertEquals("Doc1", names.get(0));
+        assertEquals("Doc3", names.get(2));
+    }
+
+    @Test
+    public void testIterateTuples() {
+        CriteriaBuilder<Tuple> criteria = cbf.from(em, Document.class, "d")
+            .select("d.name", "docName")
+            .select("d.owner.name", "ownerName")
+            .orderByAsc("d.name");
+        ResultIterator<Tuple> iterator = criteria.getResultIterator();
+        List<Tuple> tuples = new ArrayList<Tuple>();
+
+        try {
+            while (iterator.hasNext()) {
+                tuples.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(3, tuples.size());
+        assertEquals("Doc1", tuples.get(0).get("docName"));
+        assertEquals("Karl", tuples.get(0).get("ownerName"));
+        assertEquals("Doc3", tuples.get(2).get(0));
+    }
+
+    @Test
+    public void testIterateSelectNew() {
+        CriteriaBuilder<DocumentViewModel> criteria = cbf.from(em, Document.class, "d")
+            .selectNew(DocumentViewModel.class).with("d.name").end()
+            .orderByDesc("d.name");
+        ResultIterator<DocumentViewModel> iterator = criteria.getResultIterator();
+        List<String> names = new ArrayList<String>();
+
+        try {
+            while (iterator.hasNext()) {
+                names.add(iterator.next().getName());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(3, names.size());
+        assertEquals("Doc3", names.get(0));
+        assertEquals("Doc1", names.get(2));
+    }
+
+    @Test
+    public void testIteratePartiallyAndClose() {
+        CriteriaBuilder<Document> criteria = cbf.from(em, Document.class, "d")
+            .orderByAsc("d.name");
+        ResultIterator<Document> iterator = criteria.getResultIterator();
+
+        try {
+            assertEquals("Doc1", iterator.next().getName());
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Test
+    public void testIteratePaginated() {
+        PaginatedCriteriaBuilder<Document> criteria = cbf.from(em, Document.class, "d")
+            .orderByAsc("d.name")
+            .orderByAsc("d.id")
+            .page(1, 1);
+        ResultIterator<Document> iterator = criteria.getResultIterator();
+
+        try {
+            assertEquals("Doc2", iterator.next().getName());
+            assertFalse(iterator.hasNext());
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Test
+    public void testIteratePaginatedSingleElementArrays() {
+        PaginatedCriteriaBuilder<Object[]> criteria = cbf.from(em, Document.class, "d")
+            .selectNew(new ObjectBuilder<Object[]>() {
+
+                @Override
+                public void applySelects(SelectBuilder<?, ?> queryBuilder) {
+                    queryBuilder.select("d.name");
+                }
+
+                @Override
+                public Object[] build(Object[] tuple) {
+                    return new Object[]{ tuple[0] };
+                }
+
+                @Override
+                public List<Object[]> buildList(List<Object[]> list) {
+                    return list;
+                }
+            })
+            .orderByAsc("d.name")
+            .orderByAsc("d.id")
+            .page(0, 2);
+        ResultIterator<Object[]> iterator = criteria.getResultIterator();
+        List<Object[]> results = new ArrayList<Object[]>();
+
+        try {
+            while (iterator.hasNext()) {
+                results.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        // The results of the page are returned as they are
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(0).length);
+        assertEquals("Doc1", results.get(0)[0]);
+        assertEquals("Doc2", results.get(1)[0]);
+    }
+
+    @Test
+    public void testFailFastForNonStreamableObjectBuilder() {
+        CriteriaBuilder<String> criteria = cbf.from(em, Document.class, "d")
+            .selectNew(new ObjectBuilder<String>() {
+
+                @Override
+                public void applySelects(SelectBuilder<?, ?> queryBuilder) {
+                    queryBuilder.select("d.name");
+                }
+
+                @Override
+                public String build(Object[] tuple) {
+                    return (String) tuple[0];
+                }
+
+                @Override
+                public List<String> buildList(List<String> list) {
+                    return list;
+                }
+            });
+
+        verifyException(criteria, IllegalStateException.class).getResultIterator();
+    }
+}
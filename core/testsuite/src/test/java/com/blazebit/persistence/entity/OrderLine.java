@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.entity;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+import javax.persistence.CollectionTable;
+import javax.persistence.ElementCollection;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+@Entity
+public class OrderLine implements Serializable {
+
+    private OrderLineId id;
+    private String article;
+    private Set<String> notes = new HashSet<String>();
+
+    public OrderLine() {
+    }
+
+    public OrderLine(String orderNumber, int lineNumber, String article) {
+        this.id = new OrderLineId(orderNumber, lineNumber);
+        this.article = article;
+    }
+
+    @EmbeddedId
+    public OrderLineId getId() {
+        return id;
+    }
+
+    public void setId(OrderLineId id) {
+        this.id = id;
+    }
+
+    public String getArticle() {
+        return article;
+    }
+
+    public void setArticle(String article) {
+        this.article = article;
+    }
+
+    @ElementCollection
+    @CollectionTable(name = "order_line_notes")
+    public Set<String> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(Set<String> notes) {
+        this.notes = notes;
+    }
+}
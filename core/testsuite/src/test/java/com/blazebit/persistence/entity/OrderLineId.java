@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.entity;
+
+import java.io.Serializable;
+import javax.persistence.Embeddable;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+@Embeddable
+public class OrderLineId implements Serializable {
+
+    private String orderNumber;
+    private int lineNumber;
+
+    public OrderLineId() {
+    }
+
+    public OrderLineId(String orderNumber, int lineNumber) {
+        this.orderNumber = orderNumber;
+        this.lineNumber = lineNumber;
+    }
+
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public void setLineNumber(int lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 47 * hash + (this.orderNumber != null ? this.orderNumber.hashCode() : 0);
+        hash = 47 * hash + this.lineNumber;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final OrderLineId other = (OrderLineId) obj;
+        if ((this.orderNumber == null) ? (other.orderNumber != null) : !this.orderNumber.equals(other.orderNumber)) {
+            return false;
+        }
+        if (this.lineNumber != other.lineNumber) {
+            return false;
+        }
+        return true;
+    }
+}
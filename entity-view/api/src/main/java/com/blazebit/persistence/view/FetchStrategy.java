@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view;
+
+/**
+ * The different strategies which can be used to fetch a collection of an entity view.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public enum FetchStrategy {
+
+    /**
+     * The collection is joined into the query of the entity view.
+     */
+    JOIN,
+    /**
+     * The collection is fetched by a separate query for the ids of multiple entity views at once.
+     */
+    SELECT;
+}
@@ -43,6 +43,11 @@ import java.lang.annotation.Target;
  * Example 1 shows a getter which is implicitly mapped to the attribute name which in this case is "name".
  * Example 2 shows that a mapping can contain arbitrary JPQL expressions.
  *
+ * Collections are joined into the query of the entity view by default. A collection mapping can use the fetch strategy
+ * {@link FetchStrategy#SELECT} instead, which fetches the collection with a separate query for the ids of up to
+ * {@link Mapping#batchSize()} entity views at once. This avoids the cartesian product that is produced when multiple collections
+ * of an entity view are joined.
+ *
  * @author Christian Beikov
  * @since 1.0
  */
@@ -56,4 +61,20 @@ public @interface Mapping {
      * @return The JPQL expression mapping
      */
     String value();
+
+    /**
+     * The strategy that is used to fetch the collection the annotated getter or parameter maps to.
+     * Fetch strategies other than {@link FetchStrategy#JOIN} may only be used for collections.
+     *
+     * @return The fetch strategy
+     */
+    FetchStrategy fetch() default FetchStrategy.JOIN;
+
+    /**
+     * The maximum number of entity view ids for which a collection is fetched with one query when using the fetch strategy
+     * {@link FetchStrategy#SELECT}. A value lower than 1 means that the configured default batch size is used.
+     *
+     * @return The batch size
+     */
+    int batchSize() default -1;
 }
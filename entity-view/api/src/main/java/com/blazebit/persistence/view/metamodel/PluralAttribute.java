@@ -15,6 +15,8 @@
  */
 package com.blazebit.persistence.view.metamodel;
 
+import com.blazebit.persistence.view.FetchStrategy;
+
 /**
  * Instances of the type {@linkplain PluralAttribute} represent collection-valued attributes.
  *
@@ -40,6 +42,21 @@ public interface PluralAttribute<X, C, E> extends MappingAttribute<X, C> {
      */
     public Class<E> getElementType();
 
+    /**
+     * Returns the strategy that is used to fetch the collection.
+     *
+     * @return The fetch strategy
+     */
+    public FetchStrategy getFetchStrategy();
+
+    /**
+     * Returns the batch size that is used to fetch the collection with the fetch strategy {@link FetchStrategy#SELECT}
+     * or a value lower than 1 if the configured default batch size is used.
+     *
+     * @return The batch size
+     */
+    public int getBatchSize();
+
     /**
      * The different collection types.
      */
@@ -15,8 +15,11 @@
  */
 package com.blazebit.persistence.view.spi;
 
+import com.blazebit.persistence.CriteriaBuilderFactory;
 import com.blazebit.persistence.view.EntityViewManager;
+import java.util.Properties;
 import java.util.Set;
+import javax.persistence.EntityManagerFactory;
 
 /**
  * This class is used to configure the entity view manager that it creates.
@@ -40,6 +43,19 @@ public interface EntityViewConfiguration {
      */
     public EntityViewManager createEntityViewManager();
 
+    /**
+     * Like {@link EntityViewConfiguration#createEntityViewManager()} but additionally runs the bootstrap steps that are enabled
+     * by the configuration properties before returning, like parsing the mapping expressions of all known entity views into the
+     * expression cache of the given criteria builder factory or creating the object builder templates with the metamodel of the
+     * given entity manager factory. The entity view manager should then be used with queries of that criteria builder factory
+     * and persistence unit.
+     *
+     * @param criteriaBuilderFactory The criteria builder factory whose queries the entity views are applied to
+     * @param entityManagerFactory The entity manager factory of the persistence unit for which the entity views are used
+     * @return A new entity view manager
+     */
+    public EntityViewManager createEntityViewManager(CriteriaBuilderFactory criteriaBuilderFactory, EntityManagerFactory entityManagerFactory);
+
     /**
      * Returns the currently known entity views.
      *
@@ -47,4 +63,28 @@ public interface EntityViewConfiguration {
      */
     public Set<Class<?>> getEntityViews();
 
+    /**
+     * Returns all properties.
+     *
+     * @return All properties
+     */
+    public Properties getProperties();
+
+    /**
+     * Returns a property value by name.
+     *
+     * @param propertyName The name of the property
+     * @return The value currently associated with that property name; may be null.
+     */
+    public String getProperty(String propertyName);
+
+    /**
+     * Set a property value by name.
+     *
+     * @param propertyName The name of the property to set
+     * @param value        The new property value
+     * @return this for method chaining
+     */
+    public EntityViewConfiguration setProperty(String propertyName, String value);
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.impl;
+
+/**
+ * A list of configuration properties that can be set on an entity view configuration.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public interface ConfigurationProperties {
+
+    /**
+     * If set to true, the mapping expressions of all registered entity views are parsed when the entity view manager is
+     * created with {@link com.blazebit.persistence.view.spi.EntityViewConfiguration#createEntityViewManager(com.blazebit.persistence.CriteriaBuilderFactory, javax.persistence.EntityManagerFactory)}.
+     * This fills the expression cache of the criteria builder factory and warms up the parser so that the first requests do
+     * not pay for it. The default value is false.
+     */
+    public static final String EXPRESSION_WARMUP = "com.blazebit.persistence.view.expression_warmup";
+
+    /**
+     * If set to true, the collections of entity views whose collections are all owned by the root view, i.e. that have no
+     * collections of subviews, are assembled in a single pass over the result that only keeps the current view in its owner
+     * index instead of indexing all views of the result. The result list itself is still materialized. The query is ordered
+     * by the id of the entity view after all other order by items so that the tuples of a view are adjacent, which requires
+     * that the other order by items do not refer to collections. Otherwise building the query fails.
+     * The default value is false.
+     */
+    public static final String STREAMING_COLLECTION_ASSEMBLY = "com.blazebit.persistence.view.streaming_collection_assembly";
+
+    /**
+     * The maximum number of entity view ids for which a collection with the fetch strategy
+     * {@link com.blazebit.persistence.view.FetchStrategy#SELECT} is fetched with one query, unless the mapping of the
+     * collection specifies a batch size. The default value is 100.
+     */
+    public static final String DEFAULT_BATCH_SIZE = "com.blazebit.persistence.view.default_batch_size";
+
+    /**
+     * If set to true, the object builder templates and proxy classes of all registered entity views and their mapping
+     * constructors are created when the entity view manager is created with
+     * {@link com.blazebit.persistence.view.spi.EntityViewConfiguration#createEntityViewManager(com.blazebit.persistence.CriteriaBuilderFactory, javax.persistence.EntityManagerFactory)}
+     * instead of on first use. The templates are created in parallel with the metamodel of the given entity manager factory.
+     * The default value is false.
+     */
+    public static final String TEMPLATE_BOOTSTRAP = "com.blazebit.persistence.view.template_bootstrap";
+
+    /**
+     * The number of threads that create the object builder templates of all entity views when {@link #TEMPLATE_BOOTSTRAP} is
+     * enabled. With a value of 1 the templates are created by the calling thread. The default value is the number of available
+     * processors.
+     */
+    public static final String TEMPLATE_BOOTSTRAP_THREADS = "com.blazebit.persistence.view.template_bootstrap_threads";
+
+    /**
+     * If set to true, the proxy classes that were generated at build time by the entity view annotation processor are used for
+     * the entity views instead of creating them at runtime. Entity views without a matching precompiled proxy class always get
+     * a proxy class created at runtime. The default value is true.
+     */
+    public static final String PRECOMPILED_PROXIES = "com.blazebit.persistence.view.precompiled_proxies";
+}
@@ -15,10 +15,13 @@
  */
 package com.blazebit.persistence.view.impl;
 
+import com.blazebit.persistence.CriteriaBuilderFactory;
 import com.blazebit.persistence.view.EntityViewManager;
 import com.blazebit.persistence.view.spi.EntityViewConfiguration;
 import java.util.HashSet;
+import java.util.Properties;
 import java.util.Set;
+import javax.persistence.EntityManagerFactory;
 
 /**
  *
@@ -28,6 +31,20 @@ import java.util.Set;
 public class EntityViewConfigurationImpl implements EntityViewConfiguration {
 
     private final Set<Class<?>> entityViewClasses = new HashSet<Class<?>>();
+    private final Properties properties = new Properties();
+
+    public EntityViewConfigurationImpl() {
+        loadDefaultProperties();
+    }
+
+    private void loadDefaultProperties() {
+        properties.put(ConfigurationProperties.EXPRESSION_WARMUP, "false");
+        properties.put(ConfigurationProperties.STREAMING_COLLECTION_ASSEMBLY, "false");
+        properties.put(ConfigurationProperties.DEFAULT_BATCH_SIZE, "100");
+        properties.put(ConfigurationProperties.TEMPLATE_BOOTSTRAP, "false");
+        properties.put(ConfigurationProperties.TEMPLATE_BOOTSTRAP_THREADS, String.valueOf(Runtime.getRuntime().availableProcessors()));
+        properties.put(ConfigurationProperties.PRECOMPILED_PROXIES, "true");
+    }
 
     @Override
     public void addEntityView(Class<?> clazz) {
@@ -43,4 +60,34 @@ public class EntityViewConfigurationImpl implements EntityViewConfiguration {
     public EntityViewManager createEntityViewManager() {
         return new EntityViewManagerImpl(this);
     }
+
+    @Override
+    public EntityViewManager createEntityViewManager(CriteriaBuilderFactory criteriaBuilderFactory, EntityManagerFactory entityManagerFactory) {
+        EntityViewManagerImpl evm = new EntityViewManagerImpl(this);
+
+        if (Boolean.valueOf(getProperty(ConfigurationProperties.EXPRESSION_WARMUP))) {
+            evm.warmUpExpressions(criteriaBuilderFactory);
+        }
+        if (Boolean.valueOf(getProperty(ConfigurationProperties.TEMPLATE_BOOTSTRAP))) {
+            evm.bootstrapTemplates(entityManagerFactory.getMetamodel(), Integer.parseInt(getProperty(ConfigurationProperties.TEMPLATE_BOOTSTRAP_THREADS)));
+        }
+
+        return evm;
+    }
+
+    @Override
+    public Properties getProperties() {
+        return properties;
+    }
+
+    @Override
+    public String getProperty(String propertyName) {
+        return properties.getProperty(propertyName);
+    }
+
+    @Override
+    public EntityViewConfiguration setProperty(String propertyName, String value) {
+        properties.setProperty(propertyName, value);
+        return this;
+    }
 }
@@ -16,6 +16,7 @@
 package com.blazebit.persistence.view.impl;
 
 import com.blazebit.persistence.CriteriaBuilder;
+import com.blazebit.persistence.CriteriaBuilderFactory;
 import com.blazebit.persistence.PaginatedCriteriaBuilder;
 import com.blazebit.persistence.QueryBuilder;
 import com.blazebit.persistence.impl.expression.ExpressionFactory;
@@ -51,15 +52,30 @@ import com.blazebit.persistence.view.impl.filter.StartsWithIgnoreCaseFilterImpl;
 import com.blazebit.persistence.view.impl.metamodel.ViewMetamodelImpl;
 import com.blazebit.persistence.view.impl.objectbuilder.ViewTypeObjectBuilderTemplate;
 import com.blazebit.persistence.view.impl.proxy.ProxyFactory;
+import com.blazebit.persistence.view.metamodel.Attribute;
+import com.blazebit.persistence.view.metamodel.MappingAttribute;
 import com.blazebit.persistence.view.metamodel.MappingConstructor;
+import com.blazebit.persistence.view.metamodel.MethodAttribute;
+import com.blazebit.persistence.view.metamodel.ParameterAttribute;
+import com.blazebit.persistence.view.metamodel.SubqueryAttribute;
 import com.blazebit.persistence.view.metamodel.ViewMetamodel;
 import com.blazebit.persistence.view.metamodel.ViewType;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import javax.persistence.metamodel.Metamodel;
 
 /**
@@ -72,15 +88,24 @@ public class EntityViewManagerImpl implements EntityViewManager {
     private final ViewMetamodel metamodel;
     private final ProxyFactory proxyFactory;
     private final ExpressionFactory expressionFactory;
-    private final ConcurrentMap<ViewTypeObjectBuilderTemplate.Key<?>, ViewTypeObjectBuilderTemplate<?>> objectBuilderCache;
+    // Holds the computations of the templates, so that concurrent requests for the same key wait for one computation
+    private final ConcurrentMap<ViewTypeObjectBuilderTemplate.Key<?>, FutureTask<ViewTypeObjectBuilderTemplate<?>>> objectBuilderCache;
     private final Map<String, Class<? extends AttributeFilterProvider>> filterMappings;
+    private final boolean streamingCollectionAssembly;
+    private final int defaultBatchSize;
 
     public EntityViewManagerImpl(EntityViewConfigurationImpl config) {
         this.metamodel = new ViewMetamodelImpl(config.getEntityViews());
-        this.proxyFactory = new ProxyFactory();
+        this.proxyFactory = new ProxyFactory(Boolean.valueOf(config.getProperty(ConfigurationProperties.PRECOMPILED_PROXIES)));
         this.expressionFactory = new ExpressionFactoryImpl();
-        this.objectBuilderCache = new ConcurrentHashMap<ViewTypeObjectBuilderTemplate.Key<?>, ViewTypeObjectBuilderTemplate<?>>();
+        this.objectBuilderCache = new ConcurrentHashMap<ViewTypeObjectBuilderTemplate.Key<?>, FutureTask<ViewTypeObjectBuilderTemplate<?>>>();
         this.filterMappings = new HashMap<String, Class<? extends AttributeFilterProvider>>();
+        this.streamingCollectionAssembly = Boolean.valueOf(config.getProperty(ConfigurationProperties.STREAMING_COLLECTION_ASSEMBLY));
+        this.defaultBatchSize = Integer.parseInt(config.getProperty(ConfigurationProperties.DEFAULT_BATCH_SIZE));
+
+        if (defaultBatchSize < 1) {
+            throw new IllegalArgumentException("The default batch size must be greater than 0 but was " + defaultBatchSize);
+        }
         registerFilterMappings();
     }
 
@@ -94,6 +119,14 @@ public class EntityViewManagerImpl implements EntityViewManager {
         return EntityViewSettingHelper.apply(setting, this, criteriaBuilder);
     }
 
+    public boolean isStreamingCollectionAssembly() {
+        return streamingCollectionAssembly;
+    }
+
+    public int getDefaultBatchSize() {
+        return defaultBatchSize;
+    }
+
     public ExpressionFactory getExpressionFactory() {
         return expressionFactory;
     }
@@ -213,20 +246,166 @@ public class EntityViewManagerImpl implements EntityViewManager {
         criteriaBuilder.selectNew(getTemplate(criteriaBuilder.getMetamodel(), viewType, mappingConstructor).createObjectBuilder(criteriaBuilder));
     }
 
-    private <T> ViewTypeObjectBuilderTemplate<T> getTemplate(Metamodel metamodel, ViewType<T> viewType, MappingConstructor<T> mappingConstructor) {
-        ViewTypeObjectBuilderTemplate.Key<T> key = new ViewTypeObjectBuilderTemplate.Key<T>(viewType, mappingConstructor);
-        ViewTypeObjectBuilderTemplate<?> value = objectBuilderCache.get(key);
+    private <T> ViewTypeObjectBuilderTemplate<T> getTemplate(final Metamodel metamodel, ViewType<T> viewType, MappingConstructor<T> mappingConstructor) {
+        final ViewTypeObjectBuilderTemplate.Key<T> key = new ViewTypeObjectBuilderTemplate.Key<T>(viewType, mappingConstructor);
+        FutureTask<ViewTypeObjectBuilderTemplate<?>> future = objectBuilderCache.get(key);
+
+        if (future == null) {
+            FutureTask<ViewTypeObjectBuilderTemplate<?>> newFuture = new FutureTask<ViewTypeObjectBuilderTemplate<?>>(new Callable<ViewTypeObjectBuilderTemplate<?>>() {
+
+                @Override
+                public ViewTypeObjectBuilderTemplate<?> call() {
+                    return key.createValue(metamodel, EntityViewManagerImpl.this, proxyFactory);
+                }
+            });
+            future = objectBuilderCache.putIfAbsent(key, newFuture);
+
+            if (future == null) {
+                future = newFuture;
+                future.run();
+            }
+        }
+
+        try {
+            return (ViewTypeObjectBuilderTemplate<T>) future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the object builder template of the entity view '" + viewType.getName() + "'", ex);
+        } catch (ExecutionException ex) {
+            // Failed computations are not cached so that the exception is not hidden from later requests
+            objectBuilderCache.remove(key, future);
+            throw unwrap(ex);
+        }
+    }
+
+    /**
+     * Creates the object builder templates of all entity views and their mapping constructors with the given number of threads.
+     *
+     * @param jpaMetamodel The JPA metamodel with which the templates are created
+     * @param threads The number of threads
+     */
+    public void bootstrapTemplates(final Metamodel jpaMetamodel, int threads) {
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+        for (ViewType<?> viewType : metamodel.getViews()) {
+            // Without a constructor name, only views with at most one constructor can be used
+            if (viewType.getConstructors().size() <= 1) {
+                tasks.add(new TemplateBootstrapTask(jpaMetamodel, (ViewType<Object>) viewType, null));
+            }
+
+            for (MappingConstructor<?> constructor : viewType.getConstructors()) {
+                tasks.add(new TemplateBootstrapTask(jpaMetamodel, (ViewType<Object>) viewType, (MappingConstructor<Object>) constructor));
+            }
+        }
+
+        if (threads <= 1 || tasks.size() <= 1) {
+            for (Callable<Object> task : tasks) {
+                try {
+                    task.call();
+                } catch (RuntimeException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while bootstrapping the object builder templates", ex);
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        return new RuntimeException(cause);
+    }
+
+    private class TemplateBootstrapTask implements Callable<Object> {
+
+        private final Metamodel jpaMetamodel;
+        private final ViewType<Object> viewType;
+        private final MappingConstructor<Object> mappingConstructor;
+
+        public TemplateBootstrapTask(Metamodel jpaMetamodel, ViewType<Object> viewType, MappingConstructor<Object> mappingConstructor) {
+            this.jpaMetamodel = jpaMetamodel;
+            this.viewType = viewType;
+            this.mappingConstructor = mappingConstructor;
+        }
 
-        if (value == null) {
-            value = key.createValue(metamodel, this, proxyFactory);
-            ViewTypeObjectBuilderTemplate<?> oldValue = objectBuilderCache.putIfAbsent(key, value);
+        @Override
+        public Object call() {
+            return getTemplate(jpaMetamodel, viewType, mappingConstructor);
+        }
+    }
 
-            if (oldValue != null) {
-                value = oldValue;
+    /**
+     * Parses the mapping expressions of all entity views into the expression cache of the given criteria builder factory.
+     *
+     * @param cbf The criteria builder factory
+     */
+    public void warmUpExpressions(CriteriaBuilderFactory cbf) {
+        for (ViewType<?> viewType : metamodel.getViews()) {
+            for (MethodAttribute<?, ?> attribute : viewType.getAttributes()) {
+                warmUpExpression(cbf, viewType, attribute);
+            }
+            for (MappingConstructor<?> constructor : viewType.getConstructors()) {
+                for (ParameterAttribute<?, ?> attribute : constructor.getParameterAttributes()) {
+                    warmUpExpression(cbf, viewType, attribute);
+                }
             }
         }
+    }
+
+    private void warmUpExpression(CriteriaBuilderFactory cbf, ViewType<?> viewType, Attribute<?, ?> attribute) {
+        String expression;
+        boolean subquery;
+
+        if (attribute instanceof MappingAttribute<?, ?>) {
+            expression = ((MappingAttribute<?, ?>) attribute).getMapping();
+            subquery = false;
+        } else if (attribute instanceof SubqueryAttribute<?, ?>) {
+            expression = ((SubqueryAttribute<?, ?>) attribute).getSubqueryExpression();
+            subquery = true;
+        } else {
+            return;
+        }
+
+        if (expression == null || expression.isEmpty()) {
+            return;
+        }
+
+        Collection<String> expressions = Collections.singleton(expression);
+        Collection<String> noExpressions = Collections.emptySet();
 
-        return (ViewTypeObjectBuilderTemplate<T>) value;
+        try {
+            if (subquery) {
+                cbf.warmUpExpressions(noExpressions, expressions);
+            } else {
+                cbf.warmUpExpressions(expressions, noExpressions);
+            }
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("The expression '" + expression + "' of the entity view '" + viewType.getJavaType().getName() + "' could not be parsed", ex);
+        }
     }
 
     private void registerFilterMappings() {
@@ -15,6 +15,7 @@
  */
 package com.blazebit.persistence.view.impl.metamodel;
 
+import com.blazebit.persistence.view.FetchStrategy;
 import com.blazebit.persistence.view.Mapping;
 import com.blazebit.persistence.view.MappingParameter;
 import com.blazebit.persistence.view.MappingSubquery;
@@ -23,6 +24,8 @@ import com.blazebit.persistence.view.metamodel.Attribute;
 import com.blazebit.persistence.view.metamodel.PluralAttribute;
 import com.blazebit.persistence.view.metamodel.ViewType;
 import java.lang.annotation.Annotation;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -35,6 +38,8 @@ public abstract class AbstractAttribute<X, Y> implements Attribute<X, Y> {
     protected final ViewType<X> declaringType;
     protected final Class<Y> javaType;
     protected final String mapping;
+    protected final FetchStrategy fetchStrategy;
+    protected final int batchSize;
     protected final Class<? extends SubqueryProvider> subqueryProvider;
     protected final String subqueryExpression;
     protected final String subqueryAlias;
@@ -48,7 +53,10 @@ public abstract class AbstractAttribute<X, Y> implements Attribute<X, Y> {
         this.subview = entityViews.contains(javaType);
 
         if (mapping instanceof Mapping) {
-            this.mapping = ((Mapping) mapping).value();
+            Mapping mappingAnnotation = (Mapping) mapping;
+            this.mapping = mappingAnnotation.value();
+            this.fetchStrategy = mappingAnnotation.fetch();
+            this.batchSize = mappingAnnotation.batchSize();
             this.subqueryProvider = null;
             this.mappingParameter = false;
             this.subqueryMapping = false;
@@ -56,6 +64,8 @@ public abstract class AbstractAttribute<X, Y> implements Attribute<X, Y> {
             this.subqueryAlias = null;
         } else if (mapping instanceof MappingParameter) {
             this.mapping = ((MappingParameter) mapping).value();
+            this.fetchStrategy = FetchStrategy.JOIN;
+            this.batchSize = -1;
             this.subqueryProvider = null;
             this.mappingParameter = true;
             this.subqueryMapping = false;
@@ -64,6 +74,8 @@ public abstract class AbstractAttribute<X, Y> implements Attribute<X, Y> {
         } else if (mapping instanceof MappingSubquery) {
             MappingSubquery mappingSubquery = (MappingSubquery) mapping;
             this.mapping = null;
+            this.fetchStrategy = FetchStrategy.JOIN;
+            this.batchSize = -1;
             this.subqueryProvider = mappingSubquery.value();
             this.mappingParameter = false;
             this.subqueryMapping = true;
@@ -76,6 +88,10 @@ public abstract class AbstractAttribute<X, Y> implements Attribute<X, Y> {
         } else {
             throw new IllegalArgumentException("No mapping annotation could be found " + errorLocation);
         }
+
+        if (fetchStrategy != FetchStrategy.JOIN && !Collection.class.isAssignableFrom(javaType) && !Map.class.isAssignableFrom(javaType)) {
+            throw new IllegalArgumentException("The fetch strategy '" + fetchStrategy + "' is only allowed for collections " + errorLocation);
+        }
     }
 
     public PluralAttribute.CollectionType getCollectionType() {
@@ -121,4 +137,12 @@ public abstract class AbstractAttribute<X, Y> implements Attribute<X, Y> {
     public String getMapping() {
         return mapping;
     }
+
+    public FetchStrategy getFetchStrategy() {
+        return fetchStrategy;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
 }
@@ -15,10 +15,12 @@
  */
 package com.blazebit.persistence.view.impl.objectbuilder;
 
+import com.blazebit.persistence.GroupingObjectBuilder;
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.QueryBuilder;
 import com.blazebit.persistence.SelectBuilder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -26,15 +28,25 @@ import java.util.List;
  * @author Christian Beikov
  * @since 1.0
  */
-public class ChainingObjectBuilder<T> implements ObjectBuilder<T> {
+public class ChainingObjectBuilder<T> implements GroupingObjectBuilder<T> {
 
     private final TupleTransformator transformator;
     private final ObjectBuilder<T> objectBuilder;
+    private final List<String> groupingExpressions;
 
     public ChainingObjectBuilder(TupleTransformator transformator, ObjectBuilder<T> objectBuilder, QueryBuilder<?, ?> queryBuilder, int startIndex) {
-        this.transformator = transformator;
+        this(transformator, objectBuilder, queryBuilder, startIndex, Collections.<String>emptyList());
+    }
+
+    public ChainingObjectBuilder(TupleTransformator transformator, ObjectBuilder<T> objectBuilder, QueryBuilder<?, ?> queryBuilder, int startIndex, List<String> groupingExpressions) {
+        this.transformator = transformator.init(queryBuilder);
         this.objectBuilder = objectBuilder;
-        transformator.init(queryBuilder);
+        this.groupingExpressions = groupingExpressions;
+    }
+
+    @Override
+    public List<String> getGroupingExpressions() {
+        return groupingExpressions;
     }
 
     @Override
@@ -17,6 +17,7 @@ package com.blazebit.persistence.view.impl.objectbuilder;
 
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.SelectBuilder;
+import com.blazebit.persistence.StreamableObjectBuilder;
 import java.util.List;
 
 /**
@@ -24,7 +25,7 @@ import java.util.List;
  * @author Christian Beikov
  * @since 1.0
  */
-public class DelegatingObjectBuilder<T> implements ObjectBuilder<T> {
+public class DelegatingObjectBuilder<T> implements StreamableObjectBuilder<T> {
 
     private final ObjectBuilder<T> delegate;
 
@@ -42,6 +43,11 @@ public class DelegatingObjectBuilder<T> implements ObjectBuilder<T> {
         return delegate.build(tuple);
     }
 
+    @Override
+    public boolean isStreamable() {
+        return delegate instanceof StreamableObjectBuilder<?> && ((StreamableObjectBuilder<?>) delegate).isStreamable();
+    }
+
     @Override
     public List<T> buildList(List<T> list) {
         return delegate.buildList(list);
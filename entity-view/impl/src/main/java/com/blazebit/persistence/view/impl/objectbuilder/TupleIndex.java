@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.impl.objectbuilder;
+
+/**
+ * Maps the ids of collection owners to the tuples that hold their collections while a tuple list is transformed.
+ * If the tuples are grouped, i.e. all tuples of a collection owner are adjacent, only the owner of the previous tuple
+ * is kept, otherwise all owners of the tuple list are indexed.
+ *
+ * The ids are not copied out of the tuples. Instead the index keeps the first tuple of every owner and compares the id
+ * positions of the tuples directly, which is valid because the id positions are not changed while a tuple list is transformed.
+ * The owners are stored in an open addressing table, so indexing a tuple does not allocate anything.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class TupleIndex {
+
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private final int[] idPositions;
+    private final boolean grouped;
+    private Object[][] keyTuples;
+    private int[] hashes;
+    private TupleIndexValue[] values;
+    private int size;
+    // The slot in which the tuple of the last unsuccessful lookup is put
+    private Object[] pendingTuple;
+    private int pendingHash;
+    private int pendingSlot;
+    private Object[] currentTuple;
+    private TupleIndexValue currentValue;
+
+    public TupleIndex(int[] idPositions, boolean grouped, int expectedSize) {
+        this.idPositions = idPositions;
+        this.grouped = grouped;
+
+        if (!grouped) {
+            int capacity = MINIMUM_CAPACITY;
+            while (capacity < expectedSize) {
+                capacity <<= 1;
+            }
+
+            this.keyTuples = new Object[capacity][];
+            this.hashes = new int[capacity];
+            this.values = new TupleIndexValue[capacity];
+        }
+    }
+
+    public TupleIndexValue get(Object[] tuple) {
+        if (grouped) {
+            return currentTuple != null && idEquals(currentTuple, tuple) ? currentValue : null;
+        }
+
+        int hash = hash(tuple);
+        int mask = keyTuples.length - 1;
+        int slot = hash & mask;
+        Object[] keyTuple;
+
+        while ((keyTuple = keyTuples[slot]) != null) {
+            if (hashes[slot] == hash && idEquals(keyTuple, tuple)) {
+                return values[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        pendingTuple = tuple;
+        pendingHash = hash;
+        pendingSlot = slot;
+        return null;
+    }
+
+    public void put(Object[] tuple, TupleIndexValue value) {
+        if (grouped) {
+            // The previous owner is complete since its tuples are adjacent
+            currentTuple = tuple;
+            currentValue = value;
+            return;
+        }
+
+        if (tuple != pendingTuple && get(tuple) != null) {
+            throw new IllegalArgumentException("The owner of the given tuple is already indexed");
+        }
+
+        keyTuples[pendingSlot] = tuple;
+        hashes[pendingSlot] = pendingHash;
+        values[pendingSlot] = value;
+        pendingTuple = null;
+
+        // Keep the load factor at most 0.5 so that the probe sequences stay short
+        if (++size > keyTuples.length >> 1) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        Object[][] oldKeyTuples = keyTuples;
+        int[] oldHashes = hashes;
+        TupleIndexValue[] oldValues = values;
+        int capacity = oldKeyTuples.length << 1;
+        int mask = capacity - 1;
+        keyTuples = new Object[capacity][];
+        hashes = new int[capacity];
+        values = new TupleIndexValue[capacity];
+
+        for (int i = 0; i < oldKeyTuples.length; i++) {
+            if (oldKeyTuples[i] != null) {
+                int slot = oldHashes[i] & mask;
+
+                while (keyTuples[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keyTuples[slot] = oldKeyTuples[i];
+                hashes[slot] = oldHashes[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private int hash(Object[] tuple) {
+        int h;
+
+        if (idPositions.length == 1) {
+            h = TupleRest.hashCode0(tuple[idPositions[0]]);
+        } else {
+            h = 1;
+            for (int i = 0; i < idPositions.length; i++) {
+                h = 31 * h + TupleRest.hashCode0(tuple[idPositions[i]]);
+            }
+        }
+
+        // Spread the higher bits since the table index only uses the lower bits
+        return h ^ (h >>> 16);
+    }
+
+    private boolean idEquals(Object[] tuple1, Object[] tuple2) {
+        for (int i = 0; i < idPositions.length; i++) {
+            Object e1 = tuple1[idPositions[i]];
+            Object e2 = tuple2[idPositions[i]];
+
+            if (e1 != e2 && (e1 == null || !TupleRest.deepEquals0(e1, e2))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -26,11 +26,18 @@ import java.util.Set;
 public class TupleIndexValue {
 
     private final Object[] tuple;
-    private final Set<TupleRest> restTuples = new HashSet<TupleRest>();
+    // Null if the tuples have no elements after the collection, so all tuples have the same rest
+    private final Set<TupleRest> restTuples;
 
     public TupleIndexValue(Object[] tuple, int restTupleIndex) {
         this.tuple = tuple;
-        restTuples.add(new TupleRest(tuple, restTupleIndex));
+
+        if (restTupleIndex < tuple.length) {
+            this.restTuples = new HashSet<TupleRest>();
+            restTuples.add(new TupleRest(tuple, restTupleIndex));
+        } else {
+            this.restTuples = null;
+        }
     }
 
     public Object[] getTuple() {
@@ -38,6 +45,10 @@ public class TupleIndexValue {
     }
 
     public boolean addRestTuple(Object[] tuple, int tupleIndex) {
+        if (restTuples == null) {
+            return false;
+        }
+
         return restTuples.add(new TupleRest(tuple, tupleIndex));
     }
 
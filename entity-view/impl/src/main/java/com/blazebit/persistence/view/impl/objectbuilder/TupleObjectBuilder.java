@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.impl.objectbuilder;
+
+import com.blazebit.persistence.ObjectBuilder;
+import com.blazebit.persistence.SelectBuilder;
+import com.blazebit.persistence.view.impl.objectbuilder.mapper.TupleElementMapper;
+import java.util.List;
+
+/**
+ * An object builder that applies the selects of the given mappers and returns the plain tuples.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class TupleObjectBuilder implements ObjectBuilder<Object[]> {
+
+    private final TupleElementMapper[] mappers;
+
+    public TupleObjectBuilder(TupleElementMapper[] mappers) {
+        this.mappers = mappers;
+    }
+
+    @Override
+    public Object[] build(Object[] tuple) {
+        return tuple;
+    }
+
+    @Override
+    public List<Object[]> buildList(List<Object[]> list) {
+        return list;
+    }
+
+    @Override
+    public void applySelects(SelectBuilder<?, ?> queryBuilder) {
+        for (int i = 0; i < mappers.length; i++) {
+            mappers[i].applyMapping(queryBuilder);
+        }
+    }
+}
@@ -37,31 +37,7 @@ public class TupleRest {
         int hash = 7;
         int result = 1;
         for (int i = index; i < tuple.length; i++) {
-            Object element = tuple[i];
-            int elementHash = 0;
-            if (element instanceof Object[]) {
-                elementHash = Arrays.deepHashCode((Object[]) element);
-            } else if (element instanceof byte[]) {
-                elementHash = Arrays.hashCode((byte[]) element);
-            } else if (element instanceof short[]) {
-                elementHash = Arrays.hashCode((short[]) element);
-            } else if (element instanceof int[]) {
-                elementHash = Arrays.hashCode((int[]) element);
-            } else if (element instanceof long[]) {
-                elementHash = Arrays.hashCode((long[]) element);
-            } else if (element instanceof char[]) {
-                elementHash = Arrays.hashCode((char[]) element);
-            } else if (element instanceof float[]) {
-                elementHash = Arrays.hashCode((float[]) element);
-            } else if (element instanceof double[]) {
-                elementHash = Arrays.hashCode((double[]) element);
-            } else if (element instanceof boolean[]) {
-                elementHash = Arrays.hashCode((boolean[]) element);
-            } else if (element != null) {
-                elementHash = element.hashCode();
-            }
-
-            result = 31 * result + elementHash;
+            result = 31 * result + hashCode0(tuple[i]);
         }
         hash = 53 * hash + result;
         return hash;
@@ -115,8 +91,42 @@ public class TupleRest {
         return true;
     }
 
+    static int hashCode0(Object element) {
+        if (element == null) {
+            return 0;
+        }
+        // Most elements are no arrays, so check that before checking every array type
+        if (!element.getClass().isArray()) {
+            return element.hashCode();
+        }
+
+        if (element instanceof Object[]) {
+            return Arrays.deepHashCode((Object[]) element);
+        } else if (element instanceof byte[]) {
+            return Arrays.hashCode((byte[]) element);
+        } else if (element instanceof short[]) {
+            return Arrays.hashCode((short[]) element);
+        } else if (element instanceof int[]) {
+            return Arrays.hashCode((int[]) element);
+        } else if (element instanceof long[]) {
+            return Arrays.hashCode((long[]) element);
+        } else if (element instanceof char[]) {
+            return Arrays.hashCode((char[]) element);
+        } else if (element instanceof float[]) {
+            return Arrays.hashCode((float[]) element);
+        } else if (element instanceof double[]) {
+            return Arrays.hashCode((double[]) element);
+        } else {
+            return Arrays.hashCode((boolean[]) element);
+        }
+    }
+
     static boolean deepEquals0(Object e1, Object e2) {
         assert e1 != null;
+        if (!e1.getClass().isArray()) {
+            return e1.equals(e2);
+        }
+
         boolean eq;
         if (e1 instanceof Object[] && e2 instanceof Object[]) {
             eq = Arrays.deepEquals((Object[]) e1, (Object[]) e2);
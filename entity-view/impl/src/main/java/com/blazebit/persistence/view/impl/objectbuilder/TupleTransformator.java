@@ -19,9 +19,9 @@ import com.blazebit.persistence.QueryBuilder;
 import com.blazebit.persistence.view.impl.objectbuilder.transformer.TupleListTransformer;
 import com.blazebit.persistence.view.impl.objectbuilder.transformer.TupleTransformer;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.RandomAccess;
 
 /**
  *
@@ -45,13 +45,11 @@ public class TupleTransformator {
     public List<Object[]> transformAll(List<Object[]> tupleList) {
         List<Object[]> newTupleList;
 
-        // Performance optimization
-        // LinkedList can remove elements from the list very fast
-        // This is important because transformers avoid copying of tuples and instead remove elements from the tupleList
-        if (tupleList instanceof LinkedList<?>) {
+        // The tuple list transformers access the tuples by index and remove the consumed tuples in place
+        if (tupleList instanceof RandomAccess) {
             newTupleList = tupleList;
         } else {
-            newTupleList = new LinkedList(tupleList);
+            newTupleList = new ArrayList<Object[]>(tupleList);
         }
 
         for (int i = 0; i < transformatorLevels.size(); i++) {
@@ -117,12 +115,32 @@ public class TupleTransformator {
         transformatorLevels.get(currentLevel).tupleTransformers.add(tupleTransformer);
     }
 
-    public void init(QueryBuilder<?, ?> queryBuilder) {
+    /**
+     * Returns a tuple transformator with the transformers initialized for the given query builder. The transformators of the
+     * templates are shared between queries, so they are never initialized themselves.
+     *
+     * @param queryBuilder The query builder of the tuples
+     * @return The tuple transformator for the query builder
+     */
+    public TupleTransformator init(QueryBuilder<?, ?> queryBuilder) {
+        TupleTransformator tupleTransformator = new TupleTransformator();
+        tupleTransformator.transformatorLevels.clear();
+
         for (TupleTransformatorLevel thisLevel : transformatorLevels) {
+            TupleTransformatorLevel newLevel = new TupleTransformatorLevel();
+
             for (TupleTransformer t : thisLevel.tupleTransformers) {
-                t.init(queryBuilder);
+                newLevel.tupleTransformers.add(t.init(queryBuilder));
+            }
+            for (TupleListTransformer t : thisLevel.tupleListTransformers) {
+                newLevel.tupleListTransformers.add(t.init(queryBuilder));
             }
+
+            tupleTransformator.transformatorLevels.add(newLevel);
         }
+
+        tupleTransformator.currentLevel = currentLevel;
+        return tupleTransformator;
     }
 
     private static class TupleTransformatorLevel {
@@ -17,7 +17,9 @@ package com.blazebit.persistence.view.impl.objectbuilder;
 
 import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.SelectBuilder;
+import com.blazebit.persistence.StreamableObjectBuilder;
 import com.blazebit.persistence.view.impl.objectbuilder.mapper.TupleElementMapper;
+import com.blazebit.persistence.view.impl.proxy.ObjectInstantiator;
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
 import java.util.List;
@@ -27,29 +29,38 @@ import java.util.List;
  * @author Christian Beikov
  * @since 1.0
  */
-public class ViewTypeObjectBuilder<T> implements ObjectBuilder<T> {
+public class ViewTypeObjectBuilder<T> implements StreamableObjectBuilder<T> {
 
     protected final Constructor<? extends T> proxyConstructor;
+    protected final ObjectInstantiator<T> objectInstantiator;
     protected final TupleElementMapper[] mappers;
+    protected final int idPosition;
 
     public ViewTypeObjectBuilder(ViewTypeObjectBuilderTemplate<T> template) {
         this.proxyConstructor = template.getProxyConstructor();
+        this.objectInstantiator = template.getObjectInstantiator();
         this.mappers = template.getMappers();
+        this.idPosition = template.getTupleOffset();
     }
 
     @Override
     public T build(Object[] tuple) {
-        if (tuple[0] == null) {
+        if (tuple[idPosition] == null) {
             return null;
         }
 
         try {
-            return proxyConstructor.newInstance(tuple);
-        } catch (Exception ex) {
+            return objectInstantiator.newInstance(tuple);
+        } catch (RuntimeException ex) {
             throw new RuntimeException("Could not invoke the proxy constructor '" + proxyConstructor + "' with the given tuple: " + Arrays.toString(tuple), ex);
         }
     }
 
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
     @Override
     public List<T> buildList(List<T> list) {
         return list;
@@ -19,6 +19,7 @@ import com.blazebit.persistence.ObjectBuilder;
 import com.blazebit.persistence.QueryBuilder;
 import com.blazebit.persistence.impl.expression.Expression;
 import com.blazebit.persistence.view.EntityViewManager;
+import com.blazebit.persistence.view.FetchStrategy;
 import com.blazebit.persistence.view.SubqueryProvider;
 import com.blazebit.persistence.view.impl.EntityViewManagerImpl;
 import com.blazebit.persistence.view.impl.SubviewPrefixExpressionVisitor;
@@ -30,10 +31,12 @@ import com.blazebit.persistence.view.impl.objectbuilder.mapper.ExpressionTupleEl
 import com.blazebit.persistence.view.impl.objectbuilder.mapper.SubqueryTupleElementMapper;
 import com.blazebit.persistence.view.impl.objectbuilder.mapper.TupleElementMapper;
 import com.blazebit.persistence.view.impl.objectbuilder.mapper.TupleParameterMapper;
+import com.blazebit.persistence.view.impl.objectbuilder.transformer.BatchFetchTupleListTransformer;
 import com.blazebit.persistence.view.impl.objectbuilder.transformer.ListTupleListTransformer;
 import com.blazebit.persistence.view.impl.objectbuilder.transformer.MapTupleListTransformer;
 import com.blazebit.persistence.view.impl.objectbuilder.transformer.SetTupleListTransformer;
 import com.blazebit.persistence.view.impl.objectbuilder.transformer.SubviewTupleTransformer;
+import com.blazebit.persistence.view.impl.proxy.ObjectInstantiator;
 import com.blazebit.persistence.view.impl.proxy.ProxyFactory;
 import com.blazebit.persistence.view.metamodel.Attribute;
 import com.blazebit.persistence.view.metamodel.ListAttribute;
@@ -46,9 +49,11 @@ import com.blazebit.persistence.view.metamodel.PluralAttribute;
 import com.blazebit.persistence.view.metamodel.SetAttribute;
 import com.blazebit.persistence.view.metamodel.SingularAttribute;
 import com.blazebit.persistence.view.metamodel.SubqueryAttribute;
+import com.blazebit.persistence.view.metamodel.ViewMetamodel;
 import com.blazebit.persistence.view.metamodel.ViewType;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -63,6 +68,7 @@ import javax.persistence.metamodel.Metamodel;
 public class ViewTypeObjectBuilderTemplate<T> {
 
     private final Constructor<? extends T> proxyConstructor;
+    private final ObjectInstantiator<T> objectInstantiator;
     private final TupleElementMapper[] mappers;
     private final TupleParameterMapper parameterMapper;
     private final int effectiveTupleSize;
@@ -79,8 +85,13 @@ public class ViewTypeObjectBuilderTemplate<T> {
     private final EntityViewManagerImpl evm;
     private final ProxyFactory proxyFactory;
     private final TupleTransformator tupleTransformator = new TupleTransformator();
+    // The positions of the mapping list that are replaced by TupleReuse.CONSUMED by the tuple transformers
+    private final BitSet consumedPositions = new BitSet();
+    // Whether the tuples of the owners of collections are adjacent, so that collections can be assembled in a single pass
+    private final boolean groupedCollections;
+    private final String idMapping;
 
-    private ViewTypeObjectBuilderTemplate(String aliasPrefix, List<String> mappingPrefix, String idPrefix, int[] idPositions, int tupleOffset, Metamodel metamodel, EntityViewManagerImpl evm, ViewType<T> viewType, MappingConstructor<T> mappingConstructor, ProxyFactory proxyFactory) {
+    private ViewTypeObjectBuilderTemplate(String aliasPrefix, List<String> mappingPrefix, String idPrefix, int[] idPositions, int tupleOffset, Metamodel metamodel, EntityViewManagerImpl evm, ViewType<T> viewType, MappingConstructor<T> mappingConstructor, ProxyFactory proxyFactory, boolean groupedCollections) {
         if (mappingConstructor == null) {
             if (viewType.getConstructors().size() > 1) {
                 throw new IllegalArgumentException("The given view type '" + viewType.getJavaType().getName() + "' has multiple constructors but the given constructor was null.");
@@ -97,6 +108,7 @@ public class ViewTypeObjectBuilderTemplate<T> {
         this.metamodel = metamodel;
         this.evm = evm;
         this.proxyFactory = proxyFactory;
+        this.groupedCollections = groupedCollections;
 
         Class<?> proxyClass = proxyFactory.getProxy(viewType);
         Constructor<?>[] constructors = proxyClass.getDeclaredConstructors();
@@ -121,6 +133,7 @@ public class ViewTypeObjectBuilderTemplate<T> {
         EntityType<?> entityType = metamodel.entity(viewType.getEntityClass());
         String idAttributeName = entityType.getId(entityType.getIdType().getJavaType()).getName();
         String idMapping = idPrefix == null? idAttributeName : idPrefix + "." + idAttributeName;
+        this.idMapping = idMapping;
         mappingList.add(0, new Object[]{ idMapping, getAlias("_" + aliasPrefix, idAttributeName) });
         parameterMappingList.add(0, null);
 
@@ -163,10 +176,72 @@ public class ViewTypeObjectBuilderTemplate<T> {
         this.hasSubviews = featuresFound[2];
         this.effectiveTupleSize = length;
         this.proxyConstructor = javaConstructor;
+        this.objectInstantiator = proxyFactory.getInstantiator(javaConstructor, getTuplePositions(mappingList.size(), length));
         this.mappers = getMappers(mappingList);
         this.parameterMapper = new TupleParameterMapper(parameterMappingList, tupleOffset);
     }
 
+    /**
+     * Creates a template for the query that fetches the given collection of views of the given view type in batches.
+     * The tuples of the query consist of the id of a view and its collection.
+     */
+    private ViewTypeObjectBuilderTemplate(ViewType<?> viewType, PluralAttribute<?, ?, ?> attribute, Metamodel metamodel, EntityViewManagerImpl evm, ProxyFactory proxyFactory) {
+        this.aliasPrefix = viewType.getName();
+        this.mappingPrefix = null;
+        this.idPrefix = null;
+        this.idPositions = new int[]{ 0 };
+        this.tupleOffset = 0;
+        this.metamodel = metamodel;
+        this.evm = evm;
+        this.proxyFactory = proxyFactory;
+        this.groupedCollections = false;
+
+        List<Object> mappingList = new ArrayList<Object>();
+        List<String> parameterMappingList = new ArrayList<String>();
+        boolean[] featuresFound = new boolean[3];
+
+        EntityType<?> entityType = metamodel.entity(viewType.getEntityClass());
+        String idAttributeName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        this.idMapping = idAttributeName;
+        mappingList.add(new Object[]{ idAttributeName, getAlias("_" + aliasPrefix, idAttributeName) });
+        parameterMappingList.add(null);
+        applyCollectionMapping((MappingAttribute<? super T, ?>) attribute, attribute, mappingList, parameterMappingList, featuresFound);
+
+        this.hasParameters = featuresFound[0];
+        this.hasIndexedCollections = featuresFound[1];
+        this.hasSubviews = featuresFound[2];
+        this.effectiveTupleSize = 2;
+        this.proxyConstructor = null;
+        this.objectInstantiator = null;
+        this.mappers = getMappers(mappingList);
+        this.parameterMapper = new TupleParameterMapper(parameterMappingList, tupleOffset);
+    }
+
+    /**
+     * Returns the tuple positions of the constructor arguments, which are all positions of the mappings of this template that
+     * are not consumed by the tuple transformers of collections or subviews.
+     */
+    private int[] getTuplePositions(int mappingCount, int argumentCount) {
+        int[] tuplePositions = new int[argumentCount];
+        int argumentIndex = 0;
+
+        for (int i = 0; i < mappingCount; i++) {
+            if (!consumedPositions.get(i)) {
+                if (argumentIndex == argumentCount) {
+                    throw new IllegalStateException("More tuple elements than constructor arguments for the proxy constructor " + proxyConstructor);
+                }
+
+                tuplePositions[argumentIndex++] = tupleOffset + i;
+            }
+        }
+
+        if (argumentIndex != argumentCount) {
+            throw new IllegalStateException("Less tuple elements than constructor arguments for the proxy constructor " + proxyConstructor);
+        }
+
+        return tuplePositions;
+    }
+
     private static TupleElementMapper[] getMappers(List<Object> mappingList) {
         TupleElementMapper[] mappers = new TupleElementMapper[mappingList.size()];
 
@@ -224,50 +299,10 @@ public class ViewTypeObjectBuilderTemplate<T> {
         } else {
             MappingAttribute<? super T, ?> mappingAttribute = (MappingAttribute<? super T, ?>) attribute;
             if (attribute.isCollection()) {
-                boolean listKey = attribute instanceof ListAttribute<?, ?>;
-                boolean mapKey = attribute instanceof MapAttribute<?, ?, ?>;
-                int startIndex = tupleOffset + mappingList.size();
-
-                if (listKey) {
-                    featuresFound[1] = true;
-                    applyCollectionKeyMapping("INDEX", mappingAttribute, attribute, mappingList);
-                    parameterMappingList.add(null);
-                } else if (mapKey) {
-                    featuresFound[1] = true;
-                    applyCollectionKeyMapping("KEY", mappingAttribute, attribute, mappingList);
-                    parameterMappingList.add(null);
-                }
-
-                if (attribute.isSubview()) {
-                    featuresFound[2] = true;
-
-                    PluralAttribute<?, ?, ?> pluralAttribute = (PluralAttribute<?, ?, ?>) attribute;
-                    int[] newIdPositions;
-
-                    if (listKey || mapKey) {
-                        newIdPositions = new int[idPositions.length + 1];
-                        System.arraycopy(idPositions, 0, newIdPositions, 0, idPositions.length);
-                        newIdPositions[idPositions.length] = mappingList.size();
-                    } else {
-                        newIdPositions = idPositions;
-                    }
-
-                    applySubviewMapping(attribute, newIdPositions, pluralAttribute.getElementType(), mappingAttribute, mappingList, parameterMappingList);
+                if (((PluralAttribute<?, ?, ?>) attribute).getFetchStrategy() == FetchStrategy.SELECT) {
+                    applyBatchFetchMapping((PluralAttribute<?, ?, ?>) attribute, mappingList, parameterMappingList);
                 } else {
-                    applyBasicMapping(mappingAttribute, attribute, mappingList, parameterMappingList);
-                }
-
-                if (listKey) {
-                    tupleTransformator.add(new ListTupleListTransformer(idPositions, startIndex));
-                } else if (mapKey) {
-                    tupleTransformator.add(new MapTupleListTransformer(idPositions, startIndex));
-                } else {
-                    if (attribute instanceof SetAttribute<?, ?>) {
-                        tupleTransformator.add(new SetTupleListTransformer(idPositions, startIndex));
-                    } else {
-                        // Collection
-                        throw new IllegalArgumentException("Collection types are not supported. Please use a Set or a List instead.");
-                    }
+                    applyCollectionMapping(mappingAttribute, attribute, mappingList, parameterMappingList, featuresFound);
                 }
             } else if (((SingularAttribute) attribute).isQueryParameter()) {
                 featuresFound[0] = true;
@@ -281,6 +316,72 @@ public class ViewTypeObjectBuilderTemplate<T> {
         }
     }
 
+    private void applyCollectionMapping(MappingAttribute<? super T, ?> mappingAttribute, Attribute<?, ?> attribute, List<Object> mappingList, List<String> parameterMappingList, boolean[] featuresFound) {
+        boolean listKey = attribute instanceof ListAttribute<?, ?>;
+        boolean mapKey = attribute instanceof MapAttribute<?, ?, ?>;
+        int startIndex = tupleOffset + mappingList.size();
+
+        if (listKey) {
+            featuresFound[1] = true;
+            applyCollectionKeyMapping("INDEX", mappingAttribute, attribute, mappingList);
+            parameterMappingList.add(null);
+        } else if (mapKey) {
+            featuresFound[1] = true;
+            applyCollectionKeyMapping("KEY", mappingAttribute, attribute, mappingList);
+            parameterMappingList.add(null);
+        }
+
+        if (attribute.isSubview()) {
+            featuresFound[2] = true;
+
+            PluralAttribute<?, ?, ?> pluralAttribute = (PluralAttribute<?, ?, ?>) attribute;
+            int[] newIdPositions;
+
+            if (listKey || mapKey) {
+                newIdPositions = new int[idPositions.length + 1];
+                System.arraycopy(idPositions, 0, newIdPositions, 0, idPositions.length);
+                newIdPositions[idPositions.length] = mappingList.size();
+            } else {
+                newIdPositions = idPositions;
+            }
+
+            applySubviewMapping(attribute, newIdPositions, pluralAttribute.getElementType(), mappingAttribute, mappingList, parameterMappingList);
+        } else {
+            applyBasicMapping(mappingAttribute, attribute, mappingList, parameterMappingList);
+        }
+
+        if (listKey || mapKey) {
+            // The element is consumed after it was added to the collection that replaces the key
+            consumedPositions.set(startIndex - tupleOffset + 1);
+        }
+
+        if (listKey) {
+            tupleTransformator.add(new ListTupleListTransformer(idPositions, startIndex, groupedCollections));
+        } else if (mapKey) {
+            tupleTransformator.add(new MapTupleListTransformer(idPositions, startIndex, groupedCollections));
+        } else {
+            if (attribute instanceof SetAttribute<?, ?>) {
+                tupleTransformator.add(new SetTupleListTransformer(idPositions, startIndex, groupedCollections));
+            } else {
+                // Collection
+                throw new IllegalArgumentException("Collection types are not supported. Please use a Set or a List instead.");
+            }
+        }
+    }
+
+    private void applyBatchFetchMapping(PluralAttribute<?, ?, ?> attribute, List<Object> mappingList, List<String> parameterMappingList) {
+        ViewType<?> declaringType = attribute.getDeclaringType();
+        ViewTypeObjectBuilderTemplate<Object[]> template = new ViewTypeObjectBuilderTemplate<Object[]>(declaringType, attribute, metamodel, evm, proxyFactory);
+        int batchSize = attribute.getBatchSize() < 1 ? evm.getDefaultBatchSize() : attribute.getBatchSize();
+        int startIndex = tupleOffset + mappingList.size();
+        // The collection is fetched by the batch query, so the query of this view only selects a placeholder
+        Object[] mapping = new Object[2];
+        mapping[0] = "NULLIF(1,1)";
+        mappingList.add(mapping);
+        parameterMappingList.add(null);
+        tupleTransformator.add(new BatchFetchTupleListTransformer(template, declaringType.getEntityClass(), attribute.getCollectionType(), tupleOffset, startIndex, batchSize));
+    }
+
     private void applyCollectionKeyMapping(String keyFunction, MappingAttribute<? super T, ?> mappingAttribute, Attribute<?, ?> attribute, List<Object> mappingList) {
         Object[] mapping = new Object[2];
         mapping[0] = keyFunction + "(" + getMapping(mappingPrefix, mappingAttribute) + ")";
@@ -297,9 +398,12 @@ public class ViewTypeObjectBuilderTemplate<T> {
         System.arraycopy(idPositions, 0, subviewIdPositions, 0, idPositions.length);
         subviewIdPositions[idPositions.length] = mappingList.size();
         int startIndex = tupleOffset + mappingList.size();
+        int startPosition = mappingList.size();
         ViewTypeObjectBuilderTemplate<Object[]> template = new ViewTypeObjectBuilderTemplate<Object[]>(subviewAliasPrefix, subviewMappingPrefix, subviewIdPrefix, subviewIdPositions,
-                                                                                                       startIndex, metamodel, evm, subviewType, null, proxyFactory);
+                                                                                                       startIndex, metamodel, evm, subviewType, null, proxyFactory, groupedCollections);
         Collections.addAll(mappingList, template.mappers);
+        // The subview object replaces the id and the other elements of the subview are consumed
+        consumedPositions.set(startPosition + 1, mappingList.size());
         // We do not copy because the subview object builder will populate the subview's parameters
         for (int i = 0; i < template.mappers.length; i++) {
             parameterMappingList.add(null);
@@ -391,30 +495,45 @@ public class ViewTypeObjectBuilderTemplate<T> {
     }
 
     public ObjectBuilder<T> createObjectBuilder(QueryBuilder<?, ?> queryBuilder, boolean isSubview) {
-        boolean hasOffset = tupleOffset != 0;
         ObjectBuilder<T> result;
 
+        // The object instantiator reads the constructor arguments from the tuple positions that are not consumed
         result = new ViewTypeObjectBuilder<T>(this);
 
-        if (hasOffset || isSubview || hasIndexedCollections || hasSubviews) {
-            result = new ReducerViewTypeObjectBuilder<T>(result, tupleOffset, mappers.length);
-        }
-
         if (hasParameters) {
             result = new ParameterViewTypeObjectBuilder(result, this, queryBuilder, tupleOffset);
         }
 
         if (tupleTransformator.hasTransformers() && !isSubview) {
-            result = new ChainingObjectBuilder<T>(tupleTransformator, result, queryBuilder, tupleOffset);
+            if (groupedCollections) {
+                // The collections are assembled in a single pass which requires the tuples of a view to be adjacent
+                result = new ChainingObjectBuilder<T>(tupleTransformator, result, queryBuilder, tupleOffset, Collections.singletonList(idMapping));
+            } else {
+                result = new ChainingObjectBuilder<T>(tupleTransformator, result, queryBuilder, tupleOffset);
+            }
         }
 
         return result;
     }
 
+    /**
+     * Creates the object builder for the query of a template that fetches a collection in batches.
+     *
+     * @param queryBuilder The query builder of the views that own the collection
+     * @return The object builder producing tuples of the id of a view and its collection
+     */
+    public ObjectBuilder<Object[]> createBatchFetchObjectBuilder(QueryBuilder<?, ?> queryBuilder) {
+        return new ChainingObjectBuilder<Object[]>(tupleTransformator, new TupleObjectBuilder(mappers), queryBuilder, tupleOffset);
+    }
+
     public Constructor<? extends T> getProxyConstructor() {
         return proxyConstructor;
     }
 
+    public ObjectInstantiator<T> getObjectInstantiator() {
+        return objectInstantiator;
+    }
+
     public TupleElementMapper[] getMappers() {
         return mappers;
     }
@@ -431,6 +550,10 @@ public class ViewTypeObjectBuilderTemplate<T> {
         return tupleOffset;
     }
 
+    public String getIdMapping() {
+        return idMapping;
+    }
+
     public int getEffectiveTupleSize() {
         return effectiveTupleSize;
     }
@@ -447,7 +570,49 @@ public class ViewTypeObjectBuilderTemplate<T> {
 
         public ViewTypeObjectBuilderTemplate<T> createValue(Metamodel metamodel, EntityViewManagerImpl evm, ProxyFactory proxyFactory) {
             int[] idPositions = new int[]{ 0 };
-            return new ViewTypeObjectBuilderTemplate<T>(viewType.getName(), null, null, idPositions, 0, metamodel, evm, viewType, constructor, proxyFactory);
+            boolean groupedCollections = false;
+
+            if (evm.isStreamingCollectionAssembly()) {
+                boolean[] collectionsFound = new boolean[2];
+                findCollections(evm.getMetamodel(), viewType, constructor, collectionsFound);
+                // Without collections of subviews all collections are owned by the root view, so ordering by its id suffices
+                groupedCollections = collectionsFound[0] && !collectionsFound[1];
+            }
+
+            return new ViewTypeObjectBuilderTemplate<T>(viewType.getName(), null, null, idPositions, 0, metamodel, evm, viewType, constructor, proxyFactory, groupedCollections);
+        }
+
+        /**
+         * Sets the first element of the given array to true if the view type or one of its singular subviews has a collection
+         * and the second element if one of the collections has subview elements.
+         */
+        private static void findCollections(ViewMetamodel viewMetamodel, ViewType<?> viewType, MappingConstructor<?> constructor, boolean[] collectionsFound) {
+            if (constructor == null && viewType.getConstructors().size() == 1) {
+                constructor = viewType.getConstructors().iterator().next();
+            }
+
+            List<Attribute<?, ?>> attributes = new ArrayList<Attribute<?, ?>>(viewType.getAttributes());
+
+            if (constructor != null) {
+                attributes.addAll(constructor.getParameterAttributes());
+            }
+
+            for (Attribute<?, ?> attribute : attributes) {
+                if (attribute.isCollection()) {
+                    if (((PluralAttribute<?, ?, ?>) attribute).getFetchStrategy() == FetchStrategy.SELECT) {
+                        // The collection is fetched by a separate query
+                        continue;
+                    }
+
+                    collectionsFound[0] = true;
+
+                    if (attribute.isSubview()) {
+                        collectionsFound[1] = true;
+                    }
+                } else if (attribute.isSubview()) {
+                    findCollections(viewMetamodel, viewMetamodel.view(attribute.getJavaType()), null, collectionsFound);
+                }
+            }
         }
 
         @Override
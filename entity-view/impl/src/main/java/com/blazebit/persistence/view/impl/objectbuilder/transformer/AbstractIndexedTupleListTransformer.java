@@ -15,13 +15,10 @@
  */
 package com.blazebit.persistence.view.impl.objectbuilder.transformer;
 
-import com.blazebit.persistence.view.impl.objectbuilder.TupleId;
+import com.blazebit.persistence.view.impl.objectbuilder.TupleIndex;
 import com.blazebit.persistence.view.impl.objectbuilder.TupleIndexValue;
 import com.blazebit.persistence.view.impl.objectbuilder.TupleReuse;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
  *
@@ -31,22 +28,23 @@ import java.util.Map;
 public abstract class AbstractIndexedTupleListTransformer<C, K> extends TupleListTransformer {
 
     private final int[] parentIdPositions;
+    private final boolean grouped;
 
-    public AbstractIndexedTupleListTransformer(int[] parentIdPositions, int startIndex) {
+    public AbstractIndexedTupleListTransformer(int[] parentIdPositions, int startIndex, boolean grouped) {
         super(startIndex);
         this.parentIdPositions = parentIdPositions;
+        this.grouped = grouped;
     }
 
     @Override
     public List<Object[]> transform(List<Object[]> tuples) {
-        Map<TupleId, TupleIndexValue> tupleIndex = new HashMap<TupleId, TupleIndexValue>(tuples.size());
-        // Implementation detail: the tuple list is a LinkedList
-        Iterator<Object[]> tupleListIter = tuples.iterator();
+        TupleIndex tupleIndex = new TupleIndex(parentIdPositions, grouped, tuples.size());
+        // The remaining tuples are moved to the front of the list instead of copying them into a new list
+        int size = 0;
 
-        while (tupleListIter.hasNext()) {
-            Object[] tuple = tupleListIter.next();
-            TupleId id = new TupleId(parentIdPositions, tuple);
-            TupleIndexValue tupleIndexValue = tupleIndex.get(id);
+        for (int i = 0; i < tuples.size(); i++) {
+            Object[] tuple = tuples.get(i);
+            TupleIndexValue tupleIndexValue = tupleIndex.get(tuple);
 
             if (tupleIndexValue == null) {
                 Object key = tuple[startIndex];
@@ -54,20 +52,22 @@ public abstract class AbstractIndexedTupleListTransformer<C, K> extends TupleLis
                 add(tuple[startIndex], key, tuple[startIndex + 1]);
                 tuple[startIndex + 1] = TupleReuse.CONSUMED;
                 tupleIndexValue = new TupleIndexValue(tuple, startIndex + 2);
-                tupleIndex.put(id, tupleIndexValue);
+                tupleIndex.put(tuple, tupleIndexValue);
+                tuples.set(size++, tuple);
             } else if (tupleIndexValue.addRestTuple(tuple, startIndex + 2)) {
                 Object key = tuple[startIndex];
                 tuple[startIndex] = tupleIndexValue.getTuple()[startIndex];
                 add(tuple[startIndex], key, tuple[startIndex + 1]);
                 tuple[startIndex + 1] = TupleReuse.CONSUMED;
+                tuples.set(size++, tuple);
             } else {
                 Object key = tuple[startIndex];
                 add(tupleIndexValue.getTuple()[startIndex], key, tuple[startIndex + 1]);
                 tuple[startIndex + 1] = TupleReuse.CONSUMED;
-                tupleListIter.remove();
             }
         }
 
+        tuples.subList(size, tuples.size()).clear();
         return tuples;
     }
 
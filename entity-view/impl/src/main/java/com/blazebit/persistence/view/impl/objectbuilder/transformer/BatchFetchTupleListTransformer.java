@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.impl.objectbuilder.transformer;
+
+import com.blazebit.persistence.CriteriaBuilder;
+import com.blazebit.persistence.QueryBuilder;
+import com.blazebit.persistence.view.impl.objectbuilder.ViewTypeObjectBuilderTemplate;
+import com.blazebit.persistence.view.metamodel.PluralAttribute;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.Parameter;
+import javax.persistence.TemporalType;
+
+/**
+ * Fetches the collection at the start index for the views of all tuples with separate queries that select the collections of
+ * up to batch size views at once. The transformer of a template is shared, so {@link #init(QueryBuilder)} returns a new
+ * transformer for the query.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class BatchFetchTupleListTransformer extends TupleListTransformer {
+
+    private final ViewTypeObjectBuilderTemplate<Object[]> template;
+    private final Class<?> entityClass;
+    private final PluralAttribute.CollectionType collectionType;
+    private final int idPosition;
+    private final int batchSize;
+    private final QueryBuilder<?, ?> queryBuilder;
+
+    public BatchFetchTupleListTransformer(ViewTypeObjectBuilderTemplate<Object[]> template, Class<?> entityClass, PluralAttribute.CollectionType collectionType, int idPosition, int startIndex, int batchSize) {
+        this(template, entityClass, collectionType, idPosition, startIndex, batchSize, null);
+    }
+
+    private BatchFetchTupleListTransformer(ViewTypeObjectBuilderTemplate<Object[]> template, Class<?> entityClass, PluralAttribute.CollectionType collectionType, int idPosition, int startIndex, int batchSize, QueryBuilder<?, ?> queryBuilder) {
+        super(startIndex);
+        this.template = template;
+        this.entityClass = entityClass;
+        this.collectionType = collectionType;
+        this.idPosition = idPosition;
+        this.batchSize = batchSize;
+        this.queryBuilder = queryBuilder;
+    }
+
+    @Override
+    public TupleListTransformer init(QueryBuilder<?, ?> queryBuilder) {
+        return new BatchFetchTupleListTransformer(template, entityClass, collectionType, idPosition, startIndex, batchSize, queryBuilder);
+    }
+
+    @Override
+    public List<Object[]> transform(List<Object[]> tuples) {
+        if (queryBuilder == null) {
+            throw new IllegalStateException("The transformer was not initialized with the query builder of the views");
+        }
+
+        Map<Object, Object> collections = new HashMap<Object, Object>(tuples.size());
+        List<Object> ids = new ArrayList<Object>(Math.min(batchSize, tuples.size()));
+
+        for (int i = 0; i < tuples.size(); i++) {
+            Object id = tuples.get(i)[idPosition];
+
+            if (id != null && !collections.containsKey(id)) {
+                collections.put(id, null);
+                ids.add(id);
+
+                if (ids.size() == batchSize) {
+                    fetch(ids, collections);
+                    ids.clear();
+                }
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            fetch(ids, collections);
+        }
+
+        for (int i = 0; i < tuples.size(); i++) {
+            Object[] tuple = tuples.get(i);
+            Object id = tuple[idPosition];
+
+            if (id != null) {
+                Object collection = collections.get(id);
+
+                if (collection == null) {
+                    // The view has no elements in the collection
+                    collection = createCollection();
+                    collections.put(id, collection);
+                }
+
+                tuple[startIndex] = collection;
+            }
+        }
+
+        return tuples;
+    }
+
+    private void fetch(List<Object> ids, Map<Object, Object> collections) {
+        CriteriaBuilder<?> criteriaBuilder = queryBuilder.getCriteriaBuilderFactory().from(queryBuilder.getEntityManager(), entityClass);
+        criteriaBuilder.where(template.getIdMapping()).in(ids);
+        // The tuples of the batch query consist of the id of a view and its collection
+        CriteriaBuilder<Object[]> batchCriteriaBuilder = criteriaBuilder.selectNew(template.createBatchFetchObjectBuilder(queryBuilder));
+
+        // The mappings of the collection may use the parameters of the query of the views
+        for (Parameter<?> parameter : batchCriteriaBuilder.getParameters()) {
+            String name = parameter.getName();
+
+            if (!batchCriteriaBuilder.isParameterSet(name) && queryBuilder.containsParameter(name) && queryBuilder.isParameterSet(name)) {
+                Object value = queryBuilder.getParameterValue(name);
+                TemporalType temporalType = queryBuilder.getParameterTemporalType(name);
+
+                // Temporal values have to be copied with their temporal type
+                if (temporalType == null) {
+                    batchCriteriaBuilder.setParameter(name, value);
+                } else if (value instanceof Calendar) {
+                    batchCriteriaBuilder.setParameter(name, (Calendar) value, temporalType);
+                } else {
+                    batchCriteriaBuilder.setParameter(name, (Date) value, temporalType);
+                }
+            }
+        }
+
+        List<Object[]> resultList = batchCriteriaBuilder.getResultList();
+
+        for (int i = 0; i < resultList.size(); i++) {
+            Object[] tuple = resultList.get(i);
+            collections.put(tuple[0], tuple[1]);
+        }
+    }
+
+    private Object createCollection() {
+        switch (collectionType) {
+            case LIST:
+                return new ArrayList<Object>();
+            case MAP:
+                return new HashMap<Object, Object>();
+            case SET:
+                return new HashSet<Object>();
+            default:
+                throw new IllegalArgumentException("Collection types are not supported. Please use a Set or a List instead.");
+        }
+    }
+}
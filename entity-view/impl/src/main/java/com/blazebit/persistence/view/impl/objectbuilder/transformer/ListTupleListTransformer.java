@@ -25,8 +25,8 @@ import java.util.List;
  */
 public class ListTupleListTransformer extends AbstractIndexedTupleListTransformer<List<Object>, Integer> {
 
-    public ListTupleListTransformer(int[] parentIdPositions, int startIndex) {
-        super(parentIdPositions, startIndex);
+    public ListTupleListTransformer(int[] parentIdPositions, int startIndex, boolean grouped) {
+        super(parentIdPositions, startIndex, grouped);
     }
 
     @Override
@@ -25,8 +25,8 @@ import java.util.Map;
  */
 public class MapTupleListTransformer extends AbstractIndexedTupleListTransformer<Map<Object, Object>, Object> {
 
-    public MapTupleListTransformer(int[] parentIdPositions, int startIndex) {
-        super(parentIdPositions, startIndex);
+    public MapTupleListTransformer(int[] parentIdPositions, int startIndex, boolean grouped) {
+        super(parentIdPositions, startIndex, grouped);
     }
 
     @Override
@@ -15,13 +15,10 @@
  */
 package com.blazebit.persistence.view.impl.objectbuilder.transformer;
 
-import com.blazebit.persistence.view.impl.objectbuilder.TupleId;
+import com.blazebit.persistence.view.impl.objectbuilder.TupleIndex;
 import com.blazebit.persistence.view.impl.objectbuilder.TupleIndexValue;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -32,39 +29,42 @@ import java.util.Set;
 public class SetTupleListTransformer extends TupleListTransformer {
 
     private final int[] parentIdPositions;
+    private final boolean grouped;
 
-    public SetTupleListTransformer(int[] parentIdPositions, int startIndex) {
+    public SetTupleListTransformer(int[] parentIdPositions, int startIndex, boolean grouped) {
         super(startIndex);
         this.parentIdPositions = parentIdPositions;
+        this.grouped = grouped;
     }
 
     @Override
     public List<Object[]> transform(List<Object[]> tuples) {
-        Map<TupleId, TupleIndexValue> tupleIndex = new HashMap<TupleId, TupleIndexValue>(tuples.size());
-        // Implementation detail: the tuple list is a LinkedList
-        Iterator<Object[]> tupleListIter = tuples.iterator();
+        TupleIndex tupleIndex = new TupleIndex(parentIdPositions, grouped, tuples.size());
+        // The remaining tuples are moved to the front of the list instead of copying them into a new list
+        int size = 0;
 
-        while (tupleListIter.hasNext()) {
-            Object[] tuple = tupleListIter.next();
-            TupleId id = new TupleId(parentIdPositions, tuple);
-            TupleIndexValue tupleIndexValue = tupleIndex.get(id);
+        for (int i = 0; i < tuples.size(); i++) {
+            Object[] tuple = tuples.get(i);
+            TupleIndexValue tupleIndexValue = tupleIndex.get(tuple);
 
             if (tupleIndexValue == null) {
                 tupleIndexValue = new TupleIndexValue(tuple, startIndex + 1);
                 Object collection = createCollection();
                 add(collection, tuple[startIndex]);
                 tuple[startIndex] = collection;
-                tupleIndex.put(id, tupleIndexValue);
+                tupleIndex.put(tuple, tupleIndexValue);
+                tuples.set(size++, tuple);
             } else if (tupleIndexValue.addRestTuple(tuple, startIndex + 1)) {
                 Object collection = tupleIndexValue.getTuple()[startIndex];
                 add(collection, tuple[startIndex]);
                 tuple[startIndex] = collection;
+                tuples.set(size++, tuple);
             } else {
                 add(tupleIndexValue.getTuple()[startIndex], tuple[startIndex]);
-                tupleListIter.remove();
             }
         }
 
+        tuples.subList(size, tuples.size()).clear();
         return tuples;
     }
 
@@ -30,18 +30,23 @@ public class SubviewTupleTransformer extends TupleTransformer {
     private final ViewTypeObjectBuilderTemplate<Object[]> template;
     private final int consumeStartIndex;
     private final int consumeEndIndex;
-    private ObjectBuilder<Object[]> objectBuilder;
+    private final ObjectBuilder<Object[]> objectBuilder;
 
     public SubviewTupleTransformer(ViewTypeObjectBuilderTemplate<Object[]> template) {
+        this(template, null);
+    }
+
+    private SubviewTupleTransformer(ViewTypeObjectBuilderTemplate<Object[]> template, ObjectBuilder<Object[]> objectBuilder) {
         this.template = template;
         this.consumeStartIndex = template.getTupleOffset() + 1;
         this.consumeEndIndex = template.getTupleOffset() + template.getMappers().length;
+        this.objectBuilder = objectBuilder;
     }
 
     @Override
     public TupleTransformer init(QueryBuilder<?, ?> queryBuilder) {
-        this.objectBuilder = template.createObjectBuilder(queryBuilder, true);
-        return this;
+        // The transformer of the template is shared, so the object builder of the query is kept by a new transformer
+        return new SubviewTupleTransformer(template, template.createObjectBuilder(queryBuilder, true));
     }
 
     @Override
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.impl.proxy;
+
+/**
+ * Creates instances of an entity view proxy class from tuples. Implementations are generated by the {@link ProxyFactory}
+ * for a proxy constructor and read the constructor arguments from fixed positions of the tuple.
+ *
+ * @param <T> The type of the entity view
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public interface ObjectInstantiator<T> {
+
+    /**
+     * Invokes the proxy constructor with the arguments of the given tuple.
+     *
+     * @param tuple The tuple that contains the constructor arguments
+     * @return The new instance
+     */
+    public T newInstance(Object[] tuple);
+}
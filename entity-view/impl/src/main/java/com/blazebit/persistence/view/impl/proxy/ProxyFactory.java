@@ -20,7 +20,10 @@ import com.blazebit.persistence.view.metamodel.MethodAttribute;
 import com.blazebit.persistence.view.metamodel.ParameterAttribute;
 import com.blazebit.persistence.view.metamodel.ViewType;
 import com.blazebit.reflection.ReflectionUtils;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -34,6 +37,7 @@ import javassist.CtClass;
 import javassist.CtConstructor;
 import javassist.CtField;
 import javassist.CtMethod;
+import javassist.CtNewConstructor;
 import javassist.CtNewMethod;
 import javassist.Modifier;
 import javassist.NotFoundException;
@@ -52,12 +56,37 @@ import javassist.bytecode.SignatureAttribute;
  */
 public class ProxyFactory {
 
+    /**
+     * The suffix that is appended to the binary name of an entity view to get the name of its precompiled proxy class. This
+     * has to be in sync with the annotation processor that generates the proxy classes.
+     */
+    public static final String PRECOMPILED_PROXY_SUFFIX = "_$$_entityview_impl";
+    /**
+     * The name of the static field of a precompiled proxy class that holds the comma separated names of the attributes in
+     * the order of the constructor parameters. This has to be in sync with the annotation processor that generates the proxy
+     * classes.
+     */
+    public static final String PRECOMPILED_ATTRIBUTE_NAMES_FIELD = "$$_attribute_names";
+
     private static final AtomicInteger classCounter = new AtomicInteger();
     private final ConcurrentMap<Class<?>, Class<?>> proxyClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
+    private final ConcurrentMap<InstantiatorKey, ObjectInstantiator<?>> instantiators = new ConcurrentHashMap<InstantiatorKey, ObjectInstantiator<?>>();
     private final ClassPool pool;
     private final CtClass objectCc;
+    private final boolean usePrecompiledProxies;
 
     public ProxyFactory() {
+        this(true);
+    }
+
+    /**
+     * Creates a proxy factory that, if enabled, prefers the proxy classes generated at build time over creating them with
+     * Javassist.
+     *
+     * @param usePrecompiledProxies Whether precompiled proxy classes should be used when present
+     */
+    public ProxyFactory(boolean usePrecompiledProxies) {
+        this.usePrecompiledProxies = usePrecompiledProxies;
         this.pool = new ClassPool(ClassPool.getDefault());
         try {
             this.objectCc = pool.getCtClass("java.lang.Object");
@@ -71,7 +100,12 @@ public class ProxyFactory {
         Class<? extends T> proxyClass = (Class<? extends T>) proxyClasses.get(clazz);
 
         if (proxyClass == null) {
-            proxyClass = createProxyClass(viewType);
+            if (usePrecompiledProxies) {
+                proxyClass = loadPrecompiledProxyClass(viewType);
+            }
+            if (proxyClass == null) {
+                proxyClass = createProxyClass(viewType);
+            }
             Class<? extends T> oldProxyClass = (Class<? extends T>) proxyClasses.putIfAbsent(clazz, proxyClass);
 
             if (oldProxyClass != null) {
@@ -82,7 +116,157 @@ public class ProxyFactory {
         return proxyClass;
     }
 
-    private <T> Class<? extends T> createProxyClass(ViewType<T> viewType) {
+    /**
+     * Returns an instantiator that invokes the given constructor of a proxy class created by this factory. The i-th argument
+     * of the constructor is read from the tuple position at the i-th index of the given positions.
+     *
+     * @param <T> The type of the entity view
+     * @param proxyConstructor The constructor of the proxy class
+     * @param tuplePositions The tuple positions of the constructor arguments
+     * @return The instantiator
+     */
+    public <T> ObjectInstantiator<T> getInstantiator(Constructor<? extends T> proxyConstructor, int[] tuplePositions) {
+        if (proxyConstructor.getParameterTypes().length != tuplePositions.length) {
+            throw new IllegalArgumentException("The constructor '" + proxyConstructor + "' expects " + proxyConstructor.getParameterTypes().length
+                + " arguments but " + tuplePositions.length + " tuple positions were given");
+        }
+
+        InstantiatorKey key = new InstantiatorKey(proxyConstructor, tuplePositions);
+        ObjectInstantiator<T> instantiator = (ObjectInstantiator<T>) instantiators.get(key);
+
+        if (instantiator == null) {
+            instantiator = createInstantiator(proxyConstructor, tuplePositions);
+            ObjectInstantiator<T> oldInstantiator = (ObjectInstantiator<T>) instantiators.putIfAbsent(key, instantiator);
+
+            if (oldInstantiator != null) {
+                instantiator = oldInstantiator;
+            }
+        }
+
+        return instantiator;
+    }
+
+    // The class pool is not thread safe, so the classes of a factory are created one at a time
+    private synchronized <T> ObjectInstantiator<T> createInstantiator(Constructor<? extends T> proxyConstructor, int[] tuplePositions) {
+        Class<?> proxyClass = proxyConstructor.getDeclaringClass();
+        CtClass cc = pool.makeClass(proxyClass.getName() + "_$$_instantiator_" + classCounter.getAndIncrement());
+
+        ClassPath classPath = new ClassClassPath(ObjectInstantiator.class);
+        pool.insertClassPath(classPath);
+
+        try {
+            cc.addInterface(pool.get(ObjectInstantiator.class.getName()));
+
+            Class<?>[] parameterTypes = proxyConstructor.getParameterTypes();
+            StringBuilder sb = new StringBuilder();
+            sb.append("public Object newInstance(Object[] tuple) {\n");
+            sb.append("\treturn new ").append(proxyClass.getName()).append('(');
+
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (i != 0) {
+                    sb.append(", ");
+                }
+
+                appendArgument(sb, parameterTypes[i], tuplePositions[i]);
+            }
+
+            sb.append(");\n}");
+            cc.addMethod(CtNewMethod.make(sb.toString(), cc));
+            cc.addConstructor(CtNewConstructor.defaultConstructor(cc));
+
+            return (ObjectInstantiator<T>) cc.toClass(proxyClass.getClassLoader(), proxyClass.getProtectionDomain()).newInstance();
+        } catch (Exception ex) {
+            throw new RuntimeException("Probably we did something wrong, please contact us if you see this message.", ex);
+        } finally {
+            pool.removeClassPath(classPath);
+        }
+    }
+
+    private static void appendArgument(StringBuilder sb, Class<?> type, int tuplePosition) {
+        if (type.isPrimitive()) {
+            Class<?> wrapperType = ReflectionUtils.getObjectClassOfPrimitve(type);
+            sb.append("((").append(wrapperType.getName()).append(") tuple[").append(tuplePosition).append("]).");
+            sb.append(type.getName()).append("Value()");
+        } else {
+            sb.append('(').append(getSourceName(type)).append(") tuple[").append(tuplePosition).append(']');
+        }
+    }
+
+    private static String getSourceName(Class<?> type) {
+        if (type.isArray()) {
+            return getSourceName(type.getComponentType()) + "[]";
+        }
+
+        return type.getName();
+    }
+
+    /**
+     * Returns the precompiled proxy class of the given view type or null if there is none or it does not match the view type,
+     * e.g. because it was generated for an older version of the entity view. Since the constructor parameters of attributes
+     * with the same type can not be told apart by their types, the attribute names of the proxy class have to be in the same
+     * order as the attributes of the view type.
+     */
+    private <T> Class<? extends T> loadPrecompiledProxyClass(ViewType<T> viewType) {
+        Class<T> clazz = viewType.getJavaType();
+        Class<?> proxyClass;
+
+        try {
+            proxyClass = Class.forName(clazz.getName() + PRECOMPILED_PROXY_SUFFIX, false, clazz.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+
+        if (!clazz.isAssignableFrom(proxyClass)) {
+            return null;
+        }
+
+        Set<MethodAttribute<? super T, ?>> attributes = viewType.getAttributes();
+        Class<?>[] attributeTypes = new Class<?>[attributes.size() + 1];
+        StringBuilder attributeNames = new StringBuilder();
+        int i = 1;
+
+        attributeTypes[0] = Object.class;
+        for (MethodAttribute<?, ?> attribute : attributes) {
+            if (i != 1) {
+                attributeNames.append(',');
+            }
+
+            attributeNames.append(attribute.getName());
+            attributeTypes[i++] = attribute.getJavaType();
+        }
+
+        try {
+            Field attributeNamesField = proxyClass.getDeclaredField(PRECOMPILED_ATTRIBUTE_NAMES_FIELD);
+
+            if (!Modifier.isStatic(attributeNamesField.getModifiers()) || !attributeNames.toString().equals(attributeNamesField.get(null))) {
+                return null;
+            }
+        } catch (NoSuchFieldException ex) {
+            return null;
+        } catch (IllegalAccessException ex) {
+            return null;
+        }
+
+        try {
+            if (clazz.isInterface()) {
+                proxyClass.getConstructor(attributeTypes);
+            }
+
+            for (MappingConstructor<T> constructor : viewType.getConstructors()) {
+                Class<?>[] superParameterTypes = constructor.getJavaConstructor().getParameterTypes();
+                Class<?>[] parameterTypes = Arrays.copyOf(attributeTypes, attributeTypes.length + superParameterTypes.length);
+                System.arraycopy(superParameterTypes, 0, parameterTypes, attributeTypes.length, superParameterTypes.length);
+                proxyClass.getConstructor(parameterTypes);
+            }
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+
+        return proxyClass.asSubclass(clazz);
+    }
+
+    // The class pool is not thread safe, so the classes of a factory are created one at a time
+    private synchronized <T> Class<? extends T> createProxyClass(ViewType<T> viewType) {
         Class<?> clazz = viewType.getJavaType();
         CtClass cc = pool.makeClass(clazz.getName() + "_$$_javassist_entityview_" + classCounter.getAndIncrement());
         CtClass superCc;
@@ -368,4 +552,35 @@ public class ProxyFactory {
 
         return sb.toString();
     }
+
+    private static class InstantiatorKey {
+
+        private final Constructor<?> constructor;
+        private final int[] tuplePositions;
+
+        public InstantiatorKey(Constructor<?> constructor, int[] tuplePositions) {
+            this.constructor = constructor;
+            this.tuplePositions = tuplePositions;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 5;
+            hash = 29 * hash + this.constructor.hashCode();
+            hash = 29 * hash + Arrays.hashCode(this.tuplePositions);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final InstantiatorKey other = (InstantiatorKey) obj;
+            return this.constructor.equals(other.constructor) && Arrays.equals(this.tuplePositions, other.tuplePositions);
+        }
+    }
 }
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.processor;
+
+import com.blazebit.apt.service.ServiceProvider;
+import com.blazebit.persistence.view.EntityView;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the proxy classes of entity views at build time, so that they do not have to be created with Javassist when the
+ * entity view manager is created. A proxy class is generated with the same structure as the one the proxy factory of the
+ * entity view implementation would create at runtime and is named like the binary name of the entity view with the suffix
+ * {@link EntityViewProxyProcessor#PROXY_CLASS_SUFFIX}.
+ *
+ * Entity views for which no proxy can be generated, e.g. because they are private, declare equals or hashCode or have abstract
+ * methods that are no valid attributes, are skipped. Their proxies are still created at runtime, which also reports the errors.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+@ServiceProvider(Processor.class)
+@SupportedAnnotationTypes("com.blazebit.persistence.view.EntityView")
+public class EntityViewProxyProcessor extends AbstractProcessor {
+
+    /**
+     * The suffix that is appended to the binary name of an entity view to get the name of its proxy class. This has to be in
+     * sync with the proxy factory of the entity view implementation.
+     */
+    public static final String PROXY_CLASS_SUFFIX = "_$$_entityview_impl";
+    /**
+     * The name of the static field of a proxy class that holds the comma separated names of the attributes in the order of
+     * the constructor parameters. This has to be in sync with the proxy factory of the entity view implementation.
+     */
+    public static final String ATTRIBUTE_NAMES_FIELD = "$$_attribute_names";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(EntityView.class)) {
+            if (element.getKind() == ElementKind.CLASS || element.getKind() == ElementKind.INTERFACE) {
+                TypeElement viewElement = (TypeElement) element;
+                String reason = getUnsupportedReason(viewElement);
+
+                if (reason == null) {
+                    reason = generateProxy(viewElement);
+                }
+                if (reason != null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "The proxy of the entity view '" + viewElement.getQualifiedName()
+                        + "' is created at runtime because " + reason, viewElement);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private String getUnsupportedReason(TypeElement viewElement) {
+        if (!viewElement.getTypeParameters().isEmpty()) {
+            return "it declares type parameters";
+        }
+        if (viewElement.getKind() == ElementKind.CLASS && !viewElement.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "it is no abstract class";
+        }
+
+        Element element = viewElement;
+
+        while (element.getKind() != ElementKind.PACKAGE) {
+            TypeElement typeElement = (TypeElement) element;
+
+            if (typeElement.getNestingKind() != NestingKind.TOP_LEVEL && typeElement.getNestingKind() != NestingKind.MEMBER) {
+                return "it is no top level or member type";
+            }
+            if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+                return "it is not accessible from its package";
+            }
+            if (typeElement.getNestingKind() == NestingKind.MEMBER && typeElement.getKind() == ElementKind.CLASS
+                && !typeElement.getModifiers().contains(Modifier.STATIC)) {
+                return "it is an inner class";
+            }
+
+            element = element.getEnclosingElement();
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(viewElement.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return "it declares a private constructor";
+            }
+        }
+
+        return null;
+    }
+
+    private String generateProxy(TypeElement viewElement) {
+        DeclaredType viewType = (DeclaredType) viewElement.asType();
+        Map<String, ExecutableElement> getters = new TreeMap<String, ExecutableElement>();
+        Map<String, ExecutableElement> setters = new HashMap<String, ExecutableElement>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(viewElement))) {
+            String name = method.getSimpleName().toString();
+
+            if (isEquals(method) || isHashCode(method)) {
+                if (!isDeclaredByObject(method)) {
+                    return "it declares '" + method + "'";
+                }
+                continue;
+            }
+
+            if (isSetter(method)) {
+                String attributeName = firstToLower(name.substring(3));
+
+                if (!setters.containsKey(attributeName)) {
+                    setters.put(attributeName, method);
+                }
+                continue;
+            }
+
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+                return "the abstract method '" + name + "' is not public";
+            }
+            if (!isGetter(method)) {
+                return "the abstract method '" + name + "' is no bean style getter or setter";
+            }
+            if (!method.getThrownTypes().isEmpty() || !method.getTypeParameters().isEmpty()) {
+                return "the getter '" + name + "' declares exceptions or type parameters";
+            }
+
+            String attributeName = firstToLower(name.substring(name.startsWith("is") ? 2 : 3));
+
+            if (!getters.containsKey(attributeName)) {
+                getters.put(attributeName, method);
+            }
+        }
+
+        List<Attribute> attributes = new ArrayList<Attribute>(getters.size());
+
+        for (Map.Entry<String, ExecutableElement> entry : getters.entrySet()) {
+            ExecutableElement getter = entry.getValue();
+            ExecutableElement setter = setters.remove(entry.getKey());
+            TypeMirror type = asMemberOf(viewType, getter).getReturnType();
+
+            if (type.getKind().isPrimitive() || containsTypeVariable(type)) {
+                return "the type of the attribute '" + entry.getKey() + "' is primitive or not fully resolved";
+            }
+            if (setter != null && !setter.getModifiers().contains(Modifier.ABSTRACT)) {
+                return "the setter of the attribute '" + entry.getKey() + "' is not abstract";
+            }
+            if (setter != null && !processingEnv.getTypeUtils().isSameType(type, asMemberOf(viewType, setter).getParameterTypes().get(0))) {
+                return "the setter of the attribute '" + entry.getKey() + "' does not accept the type of its getter";
+            }
+
+            attributes.add(new Attribute(entry.getKey(), type.toString(), getter, setter));
+        }
+
+        for (Map.Entry<String, ExecutableElement> entry : setters.entrySet()) {
+            if (entry.getValue().getModifiers().contains(Modifier.ABSTRACT)) {
+                return "the setter of the attribute '" + entry.getKey() + "' has no corresponding abstract getter";
+            }
+        }
+
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(viewElement);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(viewElement).toString();
+        String proxyName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + PROXY_CLASS_SUFFIX;
+        String qualifiedProxyName = packageName.isEmpty() ? proxyName : packageName + "." + proxyName;
+        String source = createSource(viewElement, packageName, proxyName, attributes);
+
+        try {
+            Writer writer = processingEnv.getFiler().createSourceFile(qualifiedProxyName, viewElement).openWriter();
+
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+        } catch (FilerException ex) {
+            // The proxy has already been generated in a previous round
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write the proxy '" + qualifiedProxyName + "': " + ex.getMessage(), viewElement);
+        }
+
+        return null;
+    }
+
+    private String createSource(TypeElement viewElement, String packageName, String proxyName, List<Attribute> attributes) {
+        String viewName = viewElement.getQualifiedName().toString();
+        StringBuilder sb = new StringBuilder();
+
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+
+        sb.append("/**\n * The proxy of the entity view {@link ").append(viewName).append("}.\n *\n");
+        sb.append(" * Generated by ").append(EntityViewProxyProcessor.class.getName()).append(", do not edit.\n */\n");
+        sb.append("public class ").append(proxyName);
+        sb.append(viewElement.getKind() == ElementKind.INTERFACE ? " implements " : " extends ").append(viewName).append(" {\n\n");
+
+        // Fields, the attribute names allow the runtime to verify the order of the constructor parameters
+        sb.append("    public static final java.lang.String ").append(ATTRIBUTE_NAMES_FIELD).append(" = \"");
+        for (int i = 0; i < attributes.size(); i++) {
+            if (i != 0) {
+                sb.append(',');
+            }
+
+            sb.append(attributes.get(i).name);
+        }
+        sb.append("\";\n");
+        sb.append("    private final java.lang.Object _id;\n");
+        for (Attribute attribute : attributes) {
+            sb.append("    private ").append(attribute.setter == null ? "final " : "").append(attribute.type).append(' ');
+            sb.append(attribute.name).append(";\n");
+        }
+
+        // Constructors, abstract classes only get the constructors that correspond to their own
+        if (viewElement.getKind() == ElementKind.INTERFACE) {
+            appendConstructor(sb, proxyName, attributes, null);
+        } else {
+            for (ExecutableElement constructor : ElementFilter.constructorsIn(viewElement.getEnclosedElements())) {
+                appendConstructor(sb, proxyName, attributes, constructor);
+            }
+        }
+
+        // Accessors
+        for (Attribute attribute : attributes) {
+            sb.append("\n    @Override\n");
+            sb.append("    public ").append(attribute.type).append(' ').append(attribute.getter.getSimpleName()).append("() {\n");
+            sb.append("        return ").append(attribute.name).append(";\n");
+            sb.append("    }\n");
+
+            if (attribute.setter != null) {
+                sb.append("\n    @Override\n");
+                sb.append("    public void ").append(attribute.setter.getSimpleName()).append('(').append(attribute.type).append(' ');
+                sb.append(attribute.name).append(") {\n");
+                sb.append("        this.").append(attribute.name).append(" = ").append(attribute.name).append(";\n");
+                sb.append("    }\n");
+            }
+        }
+
+        // Equality is based on the id only
+        sb.append("\n    @Override\n");
+        sb.append("    public boolean equals(java.lang.Object obj) {\n");
+        sb.append("        if (obj == null) {\n            return false;\n        }\n");
+        sb.append("        if (getClass() != obj.getClass()) {\n            return false;\n        }\n");
+        sb.append("        final ").append(proxyName).append(" other = (").append(proxyName).append(") obj;\n");
+        sb.append("        if (this._id != other._id && (this._id == null || !this._id.equals(other._id))) {\n");
+        sb.append("            return false;\n        }\n");
+        sb.append("        return true;\n    }\n");
+
+        sb.append("\n    @Override\n");
+        sb.append("    public int hashCode() {\n");
+        sb.append("        int hash = 3;\n");
+        sb.append("        hash = 83 * hash + (this._id != null ? this._id.hashCode() : 0);\n");
+        sb.append("        return hash;\n    }\n");
+        sb.append("}\n");
+
+        return sb.toString();
+    }
+
+    private void appendConstructor(StringBuilder sb, String proxyName, List<Attribute> attributes, ExecutableElement superConstructor) {
+        sb.append("\n    public ").append(proxyName).append("(java.lang.Object _id");
+
+        for (Attribute attribute : attributes) {
+            sb.append(", ").append(attribute.type).append(' ').append(attribute.name);
+        }
+
+        List<? extends VariableElement> superParameters = superConstructor == null ? new ArrayList<VariableElement>() : superConstructor.getParameters();
+
+        for (int i = 0; i < superParameters.size(); i++) {
+            sb.append(", ").append(superParameters.get(i).asType()).append(" $param").append(i);
+        }
+
+        sb.append(')');
+
+        if (superConstructor != null && !superConstructor.getThrownTypes().isEmpty()) {
+            sb.append(" throws ");
+
+            for (int i = 0; i < superConstructor.getThrownTypes().size(); i++) {
+                if (i != 0) {
+                    sb.append(", ");
+                }
+
+                sb.append(superConstructor.getThrownTypes().get(i));
+            }
+        }
+
+        sb.append(" {\n");
+
+        if (superConstructor != null) {
+            sb.append("        super(");
+
+            for (int i = 0; i < superParameters.size(); i++) {
+                if (i != 0) {
+                    sb.append(", ");
+                }
+
+                sb.append("$param").append(i);
+            }
+
+            sb.append(");\n");
+        }
+
+        sb.append("        this._id = _id;\n");
+
+        for (Attribute attribute : attributes) {
+            sb.append("        this.").append(attribute.name).append(" = ").append(attribute.name).append(";\n");
+        }
+
+        sb.append("    }\n");
+    }
+
+    private ExecutableType asMemberOf(DeclaredType viewType, ExecutableElement method) {
+        return (ExecutableType) processingEnv.getTypeUtils().asMemberOf(viewType, method);
+    }
+
+    private static boolean isEquals(ExecutableElement method) {
+        return method.getSimpleName().contentEquals("equals") && method.getParameters().size() == 1
+            && method.getParameters().get(0).asType().toString().equals(Object.class.getName());
+    }
+
+    private static boolean isHashCode(ExecutableElement method) {
+        return method.getSimpleName().contentEquals("hashCode") && method.getParameters().isEmpty();
+    }
+
+    private static boolean isDeclaredByObject(ExecutableElement method) {
+        return ((TypeElement) method.getEnclosingElement()).getQualifiedName().contentEquals(Object.class.getName());
+    }
+
+    private static boolean isGetter(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        return (name.startsWith("get") && name.length() > 3 || name.startsWith("is") && name.length() > 2)
+            && method.getParameters().isEmpty() && method.getReturnType().getKind() != TypeKind.VOID;
+    }
+
+    private static boolean isSetter(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        return name.startsWith("set") && name.length() > 3 && method.getParameters().size() == 1
+            && method.getReturnType().getKind() == TypeKind.VOID;
+    }
+
+    private static boolean containsTypeVariable(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return containsTypeVariable(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                WildcardType wildcardType = (WildcardType) type;
+                return wildcardType.getExtendsBound() != null && containsTypeVariable(wildcardType.getExtendsBound())
+                    || wildcardType.getSuperBound() != null && containsTypeVariable(wildcardType.getSuperBound());
+            case DECLARED:
+                for (TypeMirror typeArgument : ((DeclaredType) type).getTypeArguments()) {
+                    if (containsTypeVariable(typeArgument)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static String firstToLower(String s) {
+        return Character.toLowerCase(s.charAt(0)) + s.substring(1);
+    }
+
+    private static class Attribute {
+
+        private final String name;
+        private final String type;
+        private final ExecutableElement getter;
+        private final ExecutableElement setter;
+
+        public Attribute(String name, String type, ExecutableElement getter, ExecutableElement setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.blazebit.persistence.view.basic;
 
 import com.blazebit.persistence.CriteriaBuilder;
+import com.blazebit.persistence.ResultIterator;
 import com.blazebit.persistence.view.AbstractEntityViewTest;
 import com.blazebit.persistence.view.EntityViewManager;
 import com.blazebit.persistence.view.basic.model.DocumentViewAbstractClass;
@@ -24,6 +25,7 @@ import com.blazebit.persistence.view.basic.model.PersonView1;
 import com.blazebit.persistence.view.entity.Document;
 import com.blazebit.persistence.view.entity.Person;
 import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
+import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.EntityTransaction;
 import static org.junit.Assert.assertEquals;
@@ -118,4 +120,30 @@ public class InterfaceViewTest extends AbstractEntityViewTest {
         assertEquals(Integer.valueOf(2), results.get(1).getContactPersonNumber2());
         assertEquals(Long.valueOf(1), results.get(1).getContactCount());
     }
+
+    @Test
+    public void testInterfaceResultIterator() {
+        CriteriaBuilder<Document> criteria = cbf.from(em, Document.class, "d")
+            .orderByAsc("id");
+        ResultIterator<DocumentViewInterface> iterator = evm.applyObjectBuilder(DocumentViewInterface.class, criteria)
+            .setParameter("contactPersonNumber", 2)
+            .getResultIterator();
+        List<DocumentViewInterface> results = new ArrayList<DocumentViewInterface>();
+
+        try {
+            while (iterator.hasNext()) {
+                results.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        assertEquals(2, results.size());
+        assertEquals(doc1.getId(), results.get(0).getId());
+        assertEquals(doc1.getName(), results.get(0).getName());
+        assertEquals(doc1.getContacts().get(1), results.get(0).getFirstContactPerson());
+        assertEquals(Long.valueOf(1), results.get(0).getContactCount());
+        assertEquals(doc2.getId(), results.get(1).getId());
+        assertEquals(doc2.getName(), results.get(1).getName());
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.basic;
+
+import com.blazebit.persistence.CriteriaBuilder;
+import com.blazebit.persistence.impl.CriteriaBuilderFactoryImpl;
+import com.blazebit.persistence.impl.expression.AbstractExpressionFactory;
+import com.blazebit.persistence.view.AbstractEntityViewTest;
+import com.blazebit.persistence.view.EntityViewManager;
+import com.blazebit.persistence.view.basic.model.DocumentViewAbstractClass;
+import com.blazebit.persistence.view.basic.model.DocumentViewInterface;
+import com.blazebit.persistence.view.basic.model.PersonView1;
+import com.blazebit.persistence.view.collections.subview.model.SubviewPersonForCollectionsView;
+import com.blazebit.persistence.view.entity.Document;
+import com.blazebit.persistence.view.entity.Person;
+import com.blazebit.persistence.view.impl.ConfigurationProperties;
+import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
+import java.util.List;
+import javax.persistence.EntityTransaction;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class TemplateBootstrapTest extends AbstractEntityViewTest {
+
+    private Document doc1;
+    private Document doc2;
+
+    @Before
+    public void setUp() {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            doc1 = new Document("doc1");
+            doc2 = new Document("doc2");
+
+            Person o1 = new Person("pers1");
+            Person o2 = new Person("pers2");
+            o1.setPartnerDocument(doc1);
+            o2.setPartnerDocument(doc2);
+
+            doc1.setOwner(o1);
+            doc2.setOwner(o2);
+
+            doc1.getContacts().put(1, o1);
+            doc2.getContacts().put(1, o2);
+
+            em.persist(o1);
+            em.persist(o2);
+
+            em.persist(doc1);
+            em.persist(doc2);
+
+            em.flush();
+            tx.commit();
+            em.clear();
+
+            doc1 = em.find(Document.class, doc1.getId());
+            doc2 = em.find(Document.class, doc2.getId());
+        } catch (Exception e) {
+            tx.rollback();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testBootstrapTemplates() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(DocumentViewInterface.class);
+        cfg.addEntityView(DocumentViewAbstractClass.class);
+        cfg.addEntityView(PersonView1.class);
+        cfg.setProperty(ConfigurationProperties.TEMPLATE_BOOTSTRAP, "true");
+        cfg.setProperty(ConfigurationProperties.TEMPLATE_BOOTSTRAP_THREADS, "4");
+        cfg.setProperty(ConfigurationProperties.EXPRESSION_WARMUP, "true");
+        EntityViewManager evm = cfg.createEntityViewManager(cbf, em.getEntityManagerFactory());
+        // The expression warm-up and the template bootstrap can be enabled together
+        AbstractExpressionFactory expressionFactory = (AbstractExpressionFactory) ((CriteriaBuilderFactoryImpl) cbf).getExpressionFactory();
+        assertTrue(expressionFactory.isCached("age + 1", true));
+
+        CriteriaBuilder<Document> criteria = cbf.from(em, Document.class, "d")
+            .orderByAsc("id");
+        List<DocumentViewAbstractClass> results = evm.applyObjectBuilder(DocumentViewAbstractClass.class, criteria)
+            .setParameter("contactPersonNumber", 1)
+            .getResultList();
+
+        assertEquals(2, results.size());
+        assertEquals(doc1.getId(), results.get(0).getId());
+        assertEquals(doc1.getName(), results.get(0).getName());
+        assertEquals(doc1.getAge() + 1, results.get(0).getAge());
+        assertEquals(Integer.valueOf(1), results.get(0).getContactPersonNumber());
+        assertEquals(doc2.getId(), results.get(1).getId());
+        assertEquals(doc2.getName(), results.get(1).getName());
+    }
+
+    @Test
+    public void testBootstrapFailsOnCreation() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(DocumentViewInterface.class);
+        cfg.addEntityView(PersonView1.class);
+        // The entity of this view is not part of the persistence unit
+        cfg.addEntityView(SubviewPersonForCollectionsView.class);
+        cfg.setProperty(ConfigurationProperties.TEMPLATE_BOOTSTRAP, "true");
+        cfg.setProperty(ConfigurationProperties.TEMPLATE_BOOTSTRAP_THREADS, "1");
+        cfg.setProperty(ConfigurationProperties.EXPRESSION_WARMUP, "true");
+
+        try {
+            cfg.createEntityViewManager(cbf, em.getEntityManagerFactory());
+            Assert.fail("Expected the bootstrap of the templates to fail");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+}
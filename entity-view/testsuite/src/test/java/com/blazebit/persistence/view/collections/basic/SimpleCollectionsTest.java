@@ -27,12 +27,15 @@ import com.blazebit.persistence.view.collections.basic.model.BasicDocumentSetLis
 import com.blazebit.persistence.view.collections.basic.model.BasicDocumentSetMapListView;
 import com.blazebit.persistence.view.collections.entity.DocumentForCollections;
 import com.blazebit.persistence.view.collections.entity.PersonForCollections;
+import com.blazebit.persistence.view.impl.ConfigurationProperties;
 import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
+import static com.googlecode.catchexception.CatchException.verifyException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import javax.persistence.EntityTransaction;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -154,4 +157,78 @@ public class SimpleCollectionsTest<T extends BasicDocumentCollectionsView> exten
         assertEquals(doc2.getPartners(), results.get(1).getPartners());
         assertEquals(doc2.getPersonList(), results.get(1).getPersonList());
     }
+
+    private EntityViewManager createStreamingEntityViewManager() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(viewType);
+        cfg.setProperty(ConfigurationProperties.STREAMING_COLLECTION_ASSEMBLY, "true");
+        return cfg.createEntityViewManager();
+    }
+
+    @Test
+    public void testCollectionsStreamingAssembly() {
+        EntityViewManager evm = createStreamingEntityViewManager();
+
+        CriteriaBuilder<DocumentForCollections> criteria = cbf.from(em, DocumentForCollections.class, "d")
+            .orderByDesc("name");
+        CriteriaBuilder<T> cb = evm.applyObjectBuilder(viewType, criteria);
+        // The id is appended to the order by items so that the tuples of a document are adjacent
+        assertTrue(cb.getQueryString().endsWith("ORDER BY d.name DESC NULLS LAST, d.id ASC NULLS LAST"));
+        List<T> results = cb.getResultList();
+
+        assertEquals(2, results.size());
+        // Doc2
+        assertEquals(doc2.getName(), results.get(0).getName());
+        assertEquals(doc2.getContacts(), results.get(0).getContacts());
+        assertEquals(doc2.getPartners(), results.get(0).getPartners());
+        assertEquals(doc2.getPersonList(), results.get(0).getPersonList());
+
+        // Doc1
+        assertEquals(doc1.getName(), results.get(1).getName());
+        assertEquals(doc1.getContacts(), results.get(1).getContacts());
+        assertEquals(doc1.getPartners(), results.get(1).getPartners());
+        assertEquals(doc1.getPersonList(), results.get(1).getPersonList());
+    }
+
+    @Test
+    public void testCollectionsStreamingAssemblyOrderByAfterApply() {
+        EntityViewManager evm = createStreamingEntityViewManager();
+
+        CriteriaBuilder<DocumentForCollections> criteria = cbf.from(em, DocumentForCollections.class, "d");
+        CriteriaBuilder<T> cb = evm.applyObjectBuilder(viewType, criteria);
+        cb.orderByDesc("name");
+        // The id stays the last order by item even if order by items are added after applying the view
+        assertTrue(cb.getQueryString().endsWith("ORDER BY d.name DESC NULLS LAST, d.id ASC NULLS LAST"));
+        List<T> results = cb.getResultList();
+
+        assertEquals(2, results.size());
+        assertEquals(doc2.getName(), results.get(0).getName());
+        assertEquals(doc2.getContacts(), results.get(0).getContacts());
+        assertEquals(doc1.getName(), results.get(1).getName());
+        assertEquals(doc1.getContacts(), results.get(1).getContacts());
+    }
+
+    @Test
+    public void testCollectionsStreamingAssemblyCollectionOrderBy() {
+        EntityViewManager evm = createStreamingEntityViewManager();
+
+        CriteriaBuilder<DocumentForCollections> criteria = cbf.from(em, DocumentForCollections.class, "d")
+            .orderByAsc("partners.name");
+        CriteriaBuilder<T> cb = evm.applyObjectBuilder(viewType, criteria);
+
+        verifyException(cb, IllegalStateException.class).getQueryString();
+    }
+
+    @Test
+    public void testCollectionsResultIteratorNotSupported() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(viewType);
+        EntityViewManager evm = cfg.createEntityViewManager();
+
+        CriteriaBuilder<DocumentForCollections> criteria = cbf.from(em, DocumentForCollections.class, "d")
+            .orderByAsc("id");
+        CriteriaBuilder<T> cb = evm.applyObjectBuilder(viewType, criteria);
+
+        verifyException(cb, IllegalStateException.class).getResultIterator();
+    }
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.collections.subview;
+
+import com.blazebit.persistence.CriteriaBuilder;
+import com.blazebit.persistence.PaginatedCriteriaBuilder;
+import com.blazebit.persistence.view.AbstractEntityViewTest;
+import com.blazebit.persistence.view.EntityViewManager;
+import com.blazebit.persistence.view.collections.entity.DocumentForCollections;
+import com.blazebit.persistence.view.collections.entity.PersonForCollections;
+import static com.blazebit.persistence.view.collections.subview.SubviewAssert.assertSubviewEquals;
+import com.blazebit.persistence.view.collections.subview.model.SubviewDocumentBatchFetchView;
+import com.blazebit.persistence.view.collections.subview.model.SubviewDocumentParameterView;
+import com.blazebit.persistence.view.collections.subview.model.SubviewDocumentTemporalParameterView;
+import com.blazebit.persistence.view.collections.subview.model.SubviewPersonForCollectionsView;
+import com.blazebit.persistence.view.collections.subview.model.variations.PersonForCollectionsBatchFetchMasterView;
+import com.blazebit.persistence.view.collections.subview.model.variations.PersonForCollectionsBatchFetchParameterMasterView;
+import com.blazebit.persistence.view.collections.subview.model.variations.PersonForCollectionsBatchFetchTemporalParameterMasterView;
+import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import javax.persistence.EntityTransaction;
+import javax.persistence.TemporalType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class BatchFetchCollectionsTest extends AbstractEntityViewTest {
+
+    private DocumentForCollections doc1;
+    private DocumentForCollections doc2;
+    private DocumentForCollections doc3;
+
+    @Override
+    protected Class<?>[] getEntityClasses() {
+        return new Class<?>[]{
+            DocumentForCollections.class,
+            PersonForCollections.class
+        };
+    }
+
+    @Before
+    public void setUp() {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            doc1 = new DocumentForCollections("doc1");
+            doc2 = new DocumentForCollections("doc2");
+            doc3 = new DocumentForCollections("doc3");
+
+            PersonForCollections o1 = new PersonForCollections("pers1");
+            PersonForCollections o2 = new PersonForCollections("pers2");
+            PersonForCollections o3 = new PersonForCollections("pers3");
+            PersonForCollections o4 = new PersonForCollections("pers4");
+            o1.setPartnerDocument(doc1);
+            o2.setPartnerDocument(doc2);
+            o3.setPartnerDocument(doc1);
+            o4.setPartnerDocument(doc2);
+
+            doc1.setOwner(o1);
+            doc2.setOwner(o2);
+            doc3.setOwner(o1);
+
+            doc1.getContacts().put(1, o1);
+            doc2.getContacts().put(1, o2);
+            doc1.getContacts().put(2, o3);
+            doc2.getContacts().put(2, o4);
+
+            em.persist(o1);
+            em.persist(o2);
+            em.persist(o3);
+            em.persist(o4);
+
+            doc1.getPartners().add(o1);
+            doc1.getPartners().add(o3);
+            doc2.getPartners().add(o2);
+            doc2.getPartners().add(o4);
+
+            doc1.getPersonList().add(o1);
+            doc1.getPersonList().add(o2);
+            doc2.getPersonList().add(o3);
+            doc2.getPersonList().add(o4);
+
+            em.persist(doc1);
+            em.persist(doc2);
+            em.persist(doc3);
+
+            em.flush();
+            tx.commit();
+            em.clear();
+
+            doc1 = em.find(DocumentForCollections.class, doc1.getId());
+            doc2 = em.find(DocumentForCollections.class, doc2.getId());
+            doc3 = em.find(DocumentForCollections.class, doc3.getId());
+        } catch (Exception e) {
+            tx.rollback();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private EntityViewManager createEntityViewManager() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(PersonForCollectionsBatchFetchMasterView.class);
+        cfg.addEntityView(SubviewDocumentBatchFetchView.class);
+        cfg.addEntityView(SubviewPersonForCollectionsView.class);
+        return cfg.createEntityViewManager();
+    }
+
+    @Test
+    public void testBatchFetchCollections() {
+        EntityViewManager evm = createEntityViewManager();
+
+        CriteriaBuilder<DocumentForCollections> criteria = cbf.from(em, DocumentForCollections.class, "d")
+            .orderByAsc("id");
+        CriteriaBuilder<SubviewDocumentBatchFetchView> cb = evm.applyObjectBuilder(SubviewDocumentBatchFetchView.class, criteria);
+        // Only the collection with the join fetch strategy is joined
+        assertFalse(cb.getQueryString().contains("contacts"));
+        assertFalse(cb.getQueryString().contains("partners"));
+        List<SubviewDocumentBatchFetchView> results = cb.getResultList();
+
+        assertEquals(3, results.size());
+        assertDocumentEquals(doc1, results.get(0));
+        assertDocumentEquals(doc2, results.get(1));
+        // Views without elements get empty collections
+        assertDocumentEquals(doc3, results.get(2));
+    }
+
+    @Test
+    public void testBatchFetchCollectionsPaginated() {
+        EntityViewManager evm = createEntityViewManager();
+
+        CriteriaBuilder<DocumentForCollections> criteria = cbf.from(em, DocumentForCollections.class, "d")
+            .orderByAsc("id");
+        PaginatedCriteriaBuilder<SubviewDocumentBatchFetchView> cb = evm.applyObjectBuilder(SubviewDocumentBatchFetchView.class, criteria)
+            .page(1, 2);
+        List<SubviewDocumentBatchFetchView> results = cb.getResultList();
+
+        assertEquals(2, results.size());
+        assertDocumentEquals(doc2, results.get(0));
+        assertDocumentEquals(doc3, results.get(1));
+    }
+
+    @Test
+    public void testNestedBatchFetchCollections() {
+        EntityViewManager evm = createEntityViewManager();
+
+        CriteriaBuilder<PersonForCollections> criteria = cbf.from(em, PersonForCollections.class, "p")
+            .orderByAsc("id");
+        CriteriaBuilder<PersonForCollectionsBatchFetchMasterView> cb = evm.applyObjectBuilder(PersonForCollectionsBatchFetchMasterView.class, criteria);
+        assertFalse(cb.getQueryString().contains("ownedDocuments"));
+        List<PersonForCollectionsBatchFetchMasterView> results = cb.getResultList();
+
+        assertEquals(4, results.size());
+        // pers1 owns doc1 and doc3, pers2 owns doc2
+        assertEquals(2, results.get(0).getOwnedDocuments().size());
+        assertDocumentEquals(doc1, findDocument(results.get(0).getOwnedDocuments(), doc1.getName()));
+        assertDocumentEquals(doc3, findDocument(results.get(0).getOwnedDocuments(), doc3.getName()));
+        assertEquals(1, results.get(1).getOwnedDocuments().size());
+        assertDocumentEquals(doc2, findDocument(results.get(1).getOwnedDocuments(), doc2.getName()));
+        assertEquals(0, results.get(2).getOwnedDocuments().size());
+        assertEquals(0, results.get(3).getOwnedDocuments().size());
+    }
+
+    @Test
+    public void testBatchFetchCollectionsWithParameters() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(PersonForCollectionsBatchFetchParameterMasterView.class);
+        cfg.addEntityView(SubviewDocumentParameterView.class);
+        EntityViewManager evm = cfg.createEntityViewManager();
+
+        CriteriaBuilder<PersonForCollections> criteria = cbf.from(em, PersonForCollections.class, "p")
+            .where("name").notEqExpression(":personName")
+            .orderByAsc("id");
+        CriteriaBuilder<PersonForCollectionsBatchFetchParameterMasterView> cb = evm.applyObjectBuilder(PersonForCollectionsBatchFetchParameterMasterView.class, criteria)
+            .setParameter("personName", "pers3");
+        List<PersonForCollectionsBatchFetchParameterMasterView> results = cb.getResultList();
+
+        assertEquals(3, results.size());
+        // The batch query uses the parameter values of the query of the views
+        assertEquals(2, results.get(0).getOwnedDocuments().size());
+        assertEquals(Long.valueOf(1L), findParameterDocument(results.get(0).getOwnedDocuments(), doc1.getName()).getPersonNameCount());
+        assertEquals(Long.valueOf(1L), findParameterDocument(results.get(0).getOwnedDocuments(), doc3.getName()).getPersonNameCount());
+        assertEquals(1, results.get(1).getOwnedDocuments().size());
+        assertEquals(Long.valueOf(1L), findParameterDocument(results.get(1).getOwnedDocuments(), doc2.getName()).getPersonNameCount());
+    }
+
+    @Test
+    public void testBatchFetchCollectionsWithTemporalParameters() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(PersonForCollectionsBatchFetchTemporalParameterMasterView.class);
+        cfg.addEntityView(SubviewDocumentTemporalParameterView.class);
+        EntityViewManager evm = cfg.createEntityViewManager();
+
+        CriteriaBuilder<PersonForCollections> criteria = cbf.from(em, PersonForCollections.class, "p")
+            .where("CURRENT_DATE").lt().expression(":referenceTime")
+            .orderByAsc("id");
+        // Without the temporal type the parameter would be bound like CURRENT_DATE which cuts off the time
+        CriteriaBuilder<PersonForCollectionsBatchFetchTemporalParameterMasterView> cb = evm.applyObjectBuilder(PersonForCollectionsBatchFetchTemporalParameterMasterView.class, criteria)
+            .setParameter("referenceTime", new Date(), TemporalType.TIMESTAMP);
+        List<PersonForCollectionsBatchFetchTemporalParameterMasterView> results = cb.getResultList();
+
+        assertEquals(4, results.size());
+        // The batch query binds the parameter with the temporal type of the query of the views
+        assertEquals(2, results.get(0).getOwnedDocuments().size());
+
+        for (SubviewDocumentTemporalParameterView document : results.get(0).getOwnedDocuments()) {
+            assertEquals(Long.valueOf(4L), document.getReferenceTimePersonCount());
+        }
+    }
+
+    private static SubviewDocumentParameterView findParameterDocument(Set<SubviewDocumentParameterView> documents, String name) {
+        for (SubviewDocumentParameterView document : documents) {
+            if (name.equals(document.getName())) {
+                return document;
+            }
+        }
+
+        return null;
+    }
+
+    private static SubviewDocumentBatchFetchView findDocument(Set<SubviewDocumentBatchFetchView> documents, String name) {
+        for (SubviewDocumentBatchFetchView document : documents) {
+            if (name.equals(document.getName())) {
+                return document;
+            }
+        }
+
+        return null;
+    }
+
+    private static void assertDocumentEquals(DocumentForCollections document, SubviewDocumentBatchFetchView view) {
+        assertNotNull(view);
+        assertEquals(document.getName(), view.getName());
+        assertSubviewEquals(document.getContacts(), view.getContacts());
+        assertSubviewEquals(document.getPartners(), view.getPartners());
+        assertSubviewEquals(document.getPersonList(), view.getPersonList());
+    }
+}
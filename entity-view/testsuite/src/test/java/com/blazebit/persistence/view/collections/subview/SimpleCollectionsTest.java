@@ -29,12 +29,14 @@ import com.blazebit.persistence.view.collections.subview.model.SubviewDocumentMa
 import com.blazebit.persistence.view.collections.subview.model.SubviewDocumentSetListMapView;
 import com.blazebit.persistence.view.collections.subview.model.SubviewDocumentSetMapListView;
 import com.blazebit.persistence.view.collections.subview.model.SubviewPersonForCollectionsView;
+import com.blazebit.persistence.view.impl.ConfigurationProperties;
 import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import javax.persistence.EntityTransaction;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -157,4 +159,28 @@ public class SimpleCollectionsTest<T extends SubviewDocumentCollectionsView> ext
         assertSubviewEquals(doc2.getPartners(), results.get(1).getPartners());
         assertSubviewEquals(doc2.getPersonList(), results.get(1).getPersonList());
     }
+
+    @Test
+    public void testCollectionsStreamingAssemblyNotApplicable() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(viewType);
+        cfg.addEntityView(SubviewPersonForCollectionsView.class);
+        cfg.setProperty(ConfigurationProperties.STREAMING_COLLECTION_ASSEMBLY, "true");
+        EntityViewManager evm = cfg.createEntityViewManager();
+
+        CriteriaBuilder<DocumentForCollections> criteria = cbf.from(em, DocumentForCollections.class, "d")
+            .orderByAsc("id");
+        CriteriaBuilder<T> cb = evm.applyObjectBuilder(viewType, criteria);
+        // Collections of subviews are not owned by the root view, so they are still assembled by indexing the owners
+        assertTrue(cb.getQueryString().endsWith("ORDER BY d.id ASC NULLS LAST"));
+        List<T> results = cb.getResultList();
+
+        assertEquals(2, results.size());
+        assertSubviewEquals(doc1.getContacts(), results.get(0).getContacts());
+        assertSubviewEquals(doc1.getPartners(), results.get(0).getPartners());
+        assertSubviewEquals(doc1.getPersonList(), results.get(0).getPersonList());
+        assertSubviewEquals(doc2.getContacts(), results.get(1).getContacts());
+        assertSubviewEquals(doc2.getPartners(), results.get(1).getPartners());
+        assertSubviewEquals(doc2.getPersonList(), results.get(1).getPersonList());
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.objectbuilder;
+
+import com.blazebit.persistence.view.impl.objectbuilder.TupleIndex;
+import com.blazebit.persistence.view.impl.objectbuilder.TupleIndexValue;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class TupleIndexTest {
+
+    @Test
+    public void testSingleIdWithResize() {
+        TupleIndex index = new TupleIndex(new int[]{ 0 }, false, 0);
+        TupleIndexValue[] values = new TupleIndexValue[1000];
+
+        for (int i = 0; i < values.length; i++) {
+            Object[] tuple = new Object[]{ Long.valueOf(i), "element" };
+            assertNull(index.get(tuple));
+            values[i] = new TupleIndexValue(tuple, 1);
+            index.put(tuple, values[i]);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            assertSame(values[i], index.get(new Object[]{ Long.valueOf(i), "other" }));
+        }
+
+        assertNull(index.get(new Object[]{ Long.valueOf(values.length), "element" }));
+    }
+
+    @Test
+    public void testCompositeIdWithArraysAndNulls() {
+        TupleIndex index = new TupleIndex(new int[]{ 0, 2 }, false, 4);
+        Object[] tuple1 = new Object[]{ 1L, "a", new byte[]{ 1, 2 } };
+        Object[] tuple2 = new Object[]{ 1L, "a", null };
+        TupleIndexValue value1 = new TupleIndexValue(tuple1, 3);
+        TupleIndexValue value2 = new TupleIndexValue(tuple2, 3);
+
+        assertNull(index.get(tuple1));
+        index.put(tuple1, value1);
+        assertNull(index.get(tuple2));
+        index.put(tuple2, value2);
+
+        // Only the id positions are compared and arrays are compared by content
+        assertSame(value1, index.get(new Object[]{ 1L, "b", new byte[]{ 1, 2 } }));
+        assertSame(value2, index.get(new Object[]{ 1L, "b", null }));
+        assertNull(index.get(new Object[]{ 2L, "a", null }));
+    }
+
+    @Test
+    public void testGrouped() {
+        TupleIndex index = new TupleIndex(new int[]{ 0 }, true, 4);
+        Object[] tuple1 = new Object[]{ 1L };
+        Object[] tuple2 = new Object[]{ 2L };
+        TupleIndexValue value1 = new TupleIndexValue(tuple1, 1);
+        TupleIndexValue value2 = new TupleIndexValue(tuple2, 1);
+
+        assertNull(index.get(tuple1));
+        index.put(tuple1, value1);
+        assertSame(value1, index.get(new Object[]{ 1L }));
+        assertNull(index.get(tuple2));
+        index.put(tuple2, value2);
+        assertSame(value2, index.get(new Object[]{ 2L }));
+        // Only the owner of the previous tuples is kept
+        assertNull(index.get(new Object[]{ 1L }));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.proxy;
+
+import com.blazebit.persistence.view.entity.Person;
+import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
+import com.blazebit.persistence.view.impl.proxy.ProxyFactory;
+import com.blazebit.persistence.view.metamodel.ViewMetamodel;
+import com.blazebit.persistence.view.metamodel.ViewType;
+import com.blazebit.persistence.view.proxy.model.DocumentClassView;
+import com.blazebit.persistence.view.proxy.model.DocumentInterfaceView;
+import com.blazebit.persistence.view.proxy.model.DocumentStaleProxyView;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class PrecompiledProxyFactoryTest {
+
+    private ViewMetamodel getViewMetamodel() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(DocumentInterfaceView.class);
+        cfg.addEntityView(DocumentClassView.class);
+        cfg.addEntityView(DocumentStaleProxyView.class);
+        return cfg.createEntityViewManager().getMetamodel();
+    }
+
+    @Test
+    public void testPrecompiledInterfaceProxy() throws Exception {
+        ViewType<DocumentInterfaceView> viewType = getViewMetamodel().view(DocumentInterfaceView.class);
+        Class<? extends DocumentInterfaceView> proxyClass = new ProxyFactory(true).getProxy(viewType);
+
+        assertEquals(DocumentInterfaceView.class.getName() + ProxyFactory.PRECOMPILED_PROXY_SUFFIX, proxyClass.getName());
+        assertEquals(1, proxyClass.getDeclaredConstructors().length);
+        // 5 Fields, 1 _id Field, 1 attribute names Field
+        assertEquals(5 + 1 + 1, proxyClass.getDeclaredFields().length);
+        assertEquals("contacts,firstContactPerson,id,myContactPerson,name",
+                     proxyClass.getField(ProxyFactory.PRECOMPILED_ATTRIBUTE_NAMES_FIELD).get(null));
+        assertEquals(Modifier.PRIVATE, proxyClass.getDeclaredField("id").getModifiers());
+        assertEquals(Modifier.PRIVATE | Modifier.FINAL, proxyClass.getDeclaredField("name").getModifiers());
+
+        // The parameter order is _id, contacts, firstContactPerson, id, myContactPerson, name
+        Constructor<? extends DocumentInterfaceView> constructor = proxyClass.getConstructor(Object.class, Map.class,
+                                                                                             Person.class, Long.class,
+                                                                                             Person.class, String.class);
+        Map<Integer, Person> expectedContacts = new HashMap<Integer, Person>();
+        Person expectedFirstContactPerson = new Person("pers");
+        Person expectedMyContactPerson = new Person("my-pers");
+
+        DocumentInterfaceView instance1 = constructor.newInstance(1L, expectedContacts, expectedFirstContactPerson, 1L,
+                                                                  expectedMyContactPerson, "doc");
+        DocumentInterfaceView instance2 = constructor.newInstance(1L, null, null, 2L, null, "other");
+        DocumentInterfaceView instance3 = constructor.newInstance(2L, expectedContacts, expectedFirstContactPerson, 1L,
+                                                                  expectedMyContactPerson, "doc");
+
+        assertTrue(expectedContacts == instance1.getContacts());
+        assertTrue(expectedFirstContactPerson == instance1.getFirstContactPerson());
+        assertTrue(expectedMyContactPerson == instance1.getMyContactPerson());
+        assertEquals(Long.valueOf(1L), instance1.getId());
+        assertEquals("doc", instance1.getName());
+
+        instance1.setId(3L);
+        assertEquals(Long.valueOf(3L), instance1.getId());
+
+        // Equality is based on the id of the entity only
+        assertEquals(instance1, instance2);
+        assertEquals(instance1.hashCode(), instance2.hashCode());
+        assertFalse(instance1.equals(instance3));
+    }
+
+    @Test
+    public void testPrecompiledProxiesDisabled() {
+        ViewType<DocumentInterfaceView> viewType = getViewMetamodel().view(DocumentInterfaceView.class);
+        Class<? extends DocumentInterfaceView> proxyClass = new ProxyFactory(false).getProxy(viewType);
+
+        assertNotNull(proxyClass);
+        assertFalse(proxyClass.getName().endsWith(ProxyFactory.PRECOMPILED_PROXY_SUFFIX));
+    }
+
+    @Test
+    public void testFallbackWithoutPrecompiledProxy() throws Exception {
+        // DocumentClassView is no annotated entity view, so there is no precompiled proxy for it
+        ViewType<DocumentClassView> viewType = getViewMetamodel().view(DocumentClassView.class);
+        Class<? extends DocumentClassView> proxyClass = new ProxyFactory(true).getProxy(viewType);
+
+        assertFalse(proxyClass.getName().endsWith(ProxyFactory.PRECOMPILED_PROXY_SUFFIX));
+        assertNotNull(proxyClass.getConstructor(Object.class, Map.class, Person.class, Long.class, Person.class, String.class,
+                                                Long.class, Integer.class));
+    }
+
+    @Test
+    public void testFallbackWithStalePrecompiledProxy() throws Exception {
+        // The precompiled proxy has the right constructor parameter types but a different attribute order
+        ViewType<DocumentStaleProxyView> viewType = getViewMetamodel().view(DocumentStaleProxyView.class);
+        Class<? extends DocumentStaleProxyView> proxyClass = new ProxyFactory(true).getProxy(viewType);
+
+        assertFalse(proxyClass.getName().endsWith(ProxyFactory.PRECOMPILED_PROXY_SUFFIX));
+
+        Constructor<? extends DocumentStaleProxyView> constructor = proxyClass.getConstructor(Object.class, Map.class,
+                                                                                              Person.class, Long.class,
+                                                                                              Person.class, String.class);
+        Person expectedFirstContactPerson = new Person("pers");
+        Person expectedMyContactPerson = new Person("my-pers");
+        DocumentStaleProxyView instance = constructor.newInstance(1L, null, expectedFirstContactPerson, 1L,
+                                                                  expectedMyContactPerson, "doc");
+
+        assertTrue(expectedFirstContactPerson == instance.getFirstContactPerson());
+        assertTrue(expectedMyContactPerson == instance.getMyContactPerson());
+    }
+}
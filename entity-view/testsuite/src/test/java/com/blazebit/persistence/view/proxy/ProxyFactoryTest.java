@@ -17,6 +17,7 @@ package com.blazebit.persistence.view.proxy;
 
 import com.blazebit.persistence.view.entity.Person;
 import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
+import com.blazebit.persistence.view.impl.proxy.ObjectInstantiator;
 import com.blazebit.persistence.view.impl.proxy.ProxyFactory;
 import com.blazebit.persistence.view.metamodel.ViewMetamodel;
 import com.blazebit.persistence.view.metamodel.ViewType;
@@ -42,7 +43,8 @@ import org.junit.Test;
  */
 public class ProxyFactoryTest {
 
-    private final ProxyFactory proxyFactory = new ProxyFactory();
+    // Tests the proxies created at runtime, the precompiled ones are tested by PrecompiledProxyFactoryTest
+    private final ProxyFactory proxyFactory = new ProxyFactory(false);
 
     private ViewMetamodel getViewMetamodel() {
         EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
@@ -126,6 +128,41 @@ public class ProxyFactoryTest {
         assertTrue(expectedId == instance.getId());
     }
 
+    @Test
+    public void testClassProxyInstantiator() throws Exception {
+        ViewType<DocumentClassView> viewType = getViewMetamodel().view(DocumentClassView.class);
+        Class<? extends DocumentClassView> proxyClass = proxyFactory.getProxy(viewType);
+        Constructor<? extends DocumentClassView> constructor = proxyClass.getConstructor(Object.class, Map.class, Person.class,
+                                                                                         Long.class, Person.class, String.class,
+                                                                                         Long.class, Integer.class);
+
+        // The arguments are read from the given positions, so the unused tuple elements are skipped
+        int[] tuplePositions = new int[]{ 1, 2, 4, 5, 6, 7, 9, 10 };
+        ObjectInstantiator<DocumentClassView> instantiator = proxyFactory.getInstantiator(constructor, tuplePositions);
+        assertTrue(instantiator == proxyFactory.getInstantiator(constructor, tuplePositions.clone()));
+
+        Map<Integer, Person> expectedContacts = new HashMap<Integer, Person>();
+        Person expectedFirstContactPerson = new Person("pers");
+        Long expectedId = 1L;
+        Person expectedMyContactPerson = new Person("my-pers");
+        String expectedName = "doc";
+        Long expectedAge = 10L;
+        Integer expectedContactPersonNumber = 2;
+        Object[] tuple = new Object[]{ "unused", 1L, expectedContacts, "unused", expectedFirstContactPerson, expectedId,
+            expectedMyContactPerson, expectedName, "unused", expectedAge, expectedContactPersonNumber };
+
+        DocumentClassView instance = instantiator.newInstance(tuple);
+
+        assertTrue(proxyClass == instance.getClass());
+        assertTrue(expectedContacts == instance.getContacts());
+        assertTrue(expectedFirstContactPerson == instance.getFirstContactPerson());
+        assertTrue(expectedId == instance.getId());
+        assertTrue(expectedMyContactPerson == instance.getMyContactPerson());
+        assertTrue(expectedName == instance.getName());
+        assertEquals(10L, instance.getAge());
+        assertTrue(expectedContactPersonNumber == instance.getContactPersonNumber());
+    }
+
     @Test
     public void testInterfaceEqualsHashCode() throws Exception {
         ViewType<DocumentInterfaceView> viewType = getViewMetamodel().view(DocumentInterfaceView.class);
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.view.proxy.model;
+
+import com.blazebit.persistence.view.entity.Person;
+import java.util.Map;
+
+/**
+ * A precompiled proxy that does not match the attributes of {@link DocumentStaleProxyView}. The constructor parameters have the
+ * types the proxy factory expects, but the two person attributes are swapped.
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class DocumentStaleProxyView_$$_entityview_impl implements DocumentStaleProxyView {
+
+    public static final String $$_attribute_names = "contacts,myContactPerson,id,firstContactPerson,name";
+    private final Object _id;
+    private Map<Integer, Person> contacts;
+    private final Person myContactPerson;
+    private Long id;
+    private final Person firstContactPerson;
+    private final String name;
+
+    public DocumentStaleProxyView_$$_entityview_impl(Object _id, Map<Integer, Person> contacts, Person myContactPerson, Long id,
+        Person firstContactPerson, String name) {
+        this._id = _id;
+        this.contacts = contacts;
+        this.myContactPerson = myContactPerson;
+        this.id = id;
+        this.firstContactPerson = firstContactPerson;
+        this.name = name;
+    }
+
+    @Override
+    public Map<Integer, Person> getContacts() {
+        return contacts;
+    }
+
+    @Override
+    public void setContacts(Map<Integer, Person> contacts) {
+        this.contacts = contacts;
+    }
+
+    @Override
+    public Person getMyContactPerson() {
+        return myContactPerson;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    @Override
+    public Person getFirstContactPerson() {
+        return firstContactPerson;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
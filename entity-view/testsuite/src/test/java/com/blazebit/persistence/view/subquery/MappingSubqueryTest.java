@@ -18,18 +18,23 @@ package com.blazebit.persistence.view.subquery;
 import com.blazebit.persistence.CriteriaBuilder;
 import com.blazebit.persistence.PagedList;
 import com.blazebit.persistence.PaginatedCriteriaBuilder;
+import com.blazebit.persistence.impl.CriteriaBuilderFactoryImpl;
+import com.blazebit.persistence.impl.expression.AbstractExpressionFactory;
 import com.blazebit.persistence.view.AbstractEntityViewTest;
 import com.blazebit.persistence.view.EntityViewManager;
 import com.blazebit.persistence.view.EntityViewSetting;
 import com.blazebit.persistence.view.Sorters;
 import com.blazebit.persistence.view.entity.Document;
 import com.blazebit.persistence.view.entity.Person;
+import com.blazebit.persistence.view.impl.ConfigurationProperties;
 import com.blazebit.persistence.view.impl.EntityViewConfigurationImpl;
 import com.blazebit.persistence.view.subquery.model.DocumentWithExpressionSubqueryView;
 import com.blazebit.persistence.view.subquery.model.DocumentWithSubquery;
 import java.util.List;
 import javax.persistence.EntityTransaction;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -134,6 +139,26 @@ public class MappingSubqueryTest extends AbstractEntityViewTest {
         assertEquals(Long.valueOf(11), result.get(1).getContactCount());
     }
 
+    @Test
+    public void testSubqueryWithExpressionWarmUp() {
+        EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
+        cfg.addEntityView(DocumentWithExpressionSubqueryView.class);
+        cfg.setProperty(ConfigurationProperties.EXPRESSION_WARMUP, "true");
+        AbstractExpressionFactory expressionFactory = (AbstractExpressionFactory) ((CriteriaBuilderFactoryImpl) cbf).getExpressionFactory();
+        assertFalse(expressionFactory.isCached("age + s", false));
+
+        EntityViewManager evm = cfg.createEntityViewManager(cbf, em.getEntityManagerFactory());
+        // The expression around the subquery is parsed like selectSubquery does
+        assertTrue(expressionFactory.isCached("age + s", false));
+
+        CriteriaBuilder<Document> cb = cbf.from(em, Document.class).orderByAsc("id");
+        List<DocumentWithExpressionSubqueryView> list = evm.applyObjectBuilder(DocumentWithExpressionSubqueryView.class, cb).getResultList();
+
+        assertEquals(2, list.size());
+        assertEquals(Long.valueOf(11), list.get(0).getContactCount());
+        assertEquals(Long.valueOf(22), list.get(1).getContactCount());
+    }
+
     @Test
     public void testSubqueryEntityViewSettings() {
         EntityViewConfigurationImpl cfg = new EntityViewConfigurationImpl();
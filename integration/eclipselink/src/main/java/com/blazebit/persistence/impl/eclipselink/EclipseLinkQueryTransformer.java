@@ -17,10 +17,16 @@ package com.blazebit.persistence.impl.eclipselink;
 
 import com.blazebit.apt.service.ServiceProvider;
 import com.blazebit.persistence.ObjectBuilder;
+import com.blazebit.persistence.ResultIterator;
 import com.blazebit.persistence.spi.QueryTransformer;
+import com.blazebit.persistence.spi.ScrollableQueryTransformer;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 import org.eclipse.persistence.jpa.JpaHelper;
 import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.queries.ScrollableCursor;
 
 /**
  *
@@ -28,7 +34,7 @@ import org.eclipse.persistence.queries.DatabaseQuery;
  * @since 1.0
  */
 @ServiceProvider(QueryTransformer.class)
-public class EclipseLinkQueryTransformer implements QueryTransformer {
+public class EclipseLinkQueryTransformer implements ScrollableQueryTransformer {
 
     @Override
     public <X> TypedQuery<X> transformQuery(TypedQuery<X> query, ObjectBuilder<X> objectBuilder) {
@@ -37,4 +43,10 @@ public class EclipseLinkQueryTransformer implements QueryTransformer {
         return query;
     }
 
+    @Override
+    public ResultIterator<Object[]> scrollQuery(Query query) {
+        query.setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE);
+        return new ScrollableCursorIterator((ScrollableCursor) query.getSingleResult());
+    }
+
 }
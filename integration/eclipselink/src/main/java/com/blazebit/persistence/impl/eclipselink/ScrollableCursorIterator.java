@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl.eclipselink;
+
+import com.blazebit.persistence.ResultIterator;
+import org.eclipse.persistence.queries.ReportQueryResult;
+import org.eclipse.persistence.queries.ScrollableCursor;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class ScrollableCursorIterator implements ResultIterator<Object[]> {
+
+    private final ScrollableCursor cursor;
+    private boolean closed;
+
+    public ScrollableCursorIterator(ScrollableCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!cursor.hasNext()) {
+            close();
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Object[] next() {
+        Object row = cursor.next();
+
+        if (row instanceof Object[]) {
+            return (Object[]) row;
+        }
+        if (row instanceof ReportQueryResult) {
+            // The cursor of a report query returns the raw report results instead of the object arrays of the result list
+            return ((ReportQueryResult) row).toArray();
+        }
+
+        return new Object[]{ row };
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing is not supported");
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cursor.close();
+        }
+    }
+}
@@ -17,9 +17,12 @@ package com.blazebit.persistence.impl.hibernate;
 
 import com.blazebit.apt.service.ServiceProvider;
 import com.blazebit.persistence.ObjectBuilder;
+import com.blazebit.persistence.ResultIterator;
 import com.blazebit.persistence.spi.QueryTransformer;
+import com.blazebit.persistence.spi.ScrollableQueryTransformer;
 import javax.persistence.TypedQuery;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
 
 /**
  *
@@ -27,7 +30,7 @@ import org.hibernate.Query;
  * @since 1.0
  */
 @ServiceProvider(QueryTransformer.class)
-public class HibernateQueryTransformer implements QueryTransformer {
+public class HibernateQueryTransformer implements ScrollableQueryTransformer {
 
     @Override
     public <X> TypedQuery<X> transformQuery(TypedQuery<X> query, ObjectBuilder<X> objectBuilder) {
@@ -36,4 +39,10 @@ public class HibernateQueryTransformer implements QueryTransformer {
         return query;
     }
 
+    @Override
+    public ResultIterator<Object[]> scrollQuery(javax.persistence.Query query) {
+        Query hQuery = query.unwrap(Query.class);
+        return new ScrollableResultsIterator(hQuery.scroll(ScrollMode.FORWARD_ONLY));
+    }
+
 }
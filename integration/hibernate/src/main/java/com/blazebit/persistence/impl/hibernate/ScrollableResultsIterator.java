@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl.hibernate;
+
+import com.blazebit.persistence.ResultIterator;
+import java.util.NoSuchElementException;
+import org.hibernate.ScrollableResults;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class ScrollableResultsIterator implements ResultIterator<Object[]> {
+
+    private final ScrollableResults results;
+    private boolean hasNext;
+    private boolean advanced;
+    private boolean closed;
+
+    public ScrollableResultsIterator(ScrollableResults results) {
+        this.results = results;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!advanced) {
+            hasNext = results.next();
+            advanced = true;
+
+            if (!hasNext) {
+                close();
+            }
+        }
+
+        return hasNext;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        advanced = false;
+        return results.get();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing is not supported");
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            results.close();
+        }
+    }
+}
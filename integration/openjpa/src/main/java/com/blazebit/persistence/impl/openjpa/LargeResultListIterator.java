@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Blazebit.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blazebit.persistence.impl.openjpa;
+
+import com.blazebit.persistence.ResultIterator;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+
+/**
+ *
+ * @author Christian Beikov
+ * @since 1.0
+ */
+public class LargeResultListIterator implements ResultIterator<Object[]> {
+
+    private final List<?> resultList;
+    private final Iterator<?> iterator;
+    private boolean closed;
+
+    public LargeResultListIterator(List<?> resultList) {
+        this.resultList = resultList;
+        this.iterator = resultList.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!iterator.hasNext()) {
+            close();
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Object[] next() {
+        Object row = iterator.next();
+
+        if (row instanceof Object[]) {
+            return (Object[]) row;
+        }
+
+        return new Object[]{ row };
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing is not supported");
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            OpenJPAPersistence.close(iterator);
+            OpenJPAPersistence.close(resultList);
+        }
+    }
+}
@@ -17,8 +17,12 @@ package com.blazebit.persistence.impl.openjpa;
 
 import com.blazebit.apt.service.ServiceProvider;
 import com.blazebit.persistence.ObjectBuilder;
+import com.blazebit.persistence.ResultIterator;
 import com.blazebit.persistence.spi.QueryTransformer;
+import com.blazebit.persistence.spi.ScrollableQueryTransformer;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import org.apache.openjpa.persistence.OpenJPAQuery;
 import org.apache.openjpa.persistence.OpenJPAQuerySPI;
 
 /**
@@ -27,7 +31,9 @@ import org.apache.openjpa.persistence.OpenJPAQuerySPI;
  * @since 1.0
  */
 @ServiceProvider(QueryTransformer.class)
-public class OpenJPAQueryTransformer implements QueryTransformer {
+public class OpenJPAQueryTransformer implements ScrollableQueryTransformer {
+
+    private static final int FETCH_BATCH_SIZE = 100;
 
     @Override
     public <X> TypedQuery<X> transformQuery(TypedQuery<X> query, ObjectBuilder<X> objectBuilder) {
@@ -36,4 +42,13 @@ public class OpenJPAQueryTransformer implements QueryTransformer {
         return query;
     }
 
+    @Override
+    public ResultIterator<Object[]> scrollQuery(Query query) {
+        // A positive fetch batch size makes OpenJPA return a large result set list that loads the rows lazily
+        OpenJPAQuery<?> openJpaQuery = query.unwrap(OpenJPAQuery.class);
+        openJpaQuery.getFetchPlan().setFetchBatchSize(FETCH_BATCH_SIZE);
+        openJpaQuery.setHint("openjpa.FetchPlan.ResultSetType", "forward-only");
+        return new LargeResultListIterator(openJpaQuery.getResultList());
+    }
+
 }